@@ -0,0 +1,138 @@
+package com.example.glean.db;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.room.migration.Migration;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.glean.model.LocationPointEntity;
+import com.example.glean.model.RecordEntity;
+import com.example.glean.model.UserAggregateEntity;
+import com.example.glean.model.UserEntity;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrades a populated version 19 database through {@link AppDatabase#ALL_MIGRATIONS}.
+ *
+ * MigrationTestHelper builds each version from the schemas exported to app/schemas and
+ * checks the migrated tables, indices and foreign keys against the exported schema.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+    private static final int FIRST_MIGRATED_VERSION = 19;
+    private static final int LATEST_VERSION = 24;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    @Test
+    public void testEachMigrationMatchesItsSchema() throws IOException {
+        helper.createDatabase(TEST_DB, FIRST_MIGRATED_VERSION).close();
+
+        for (Migration migration : AppDatabase.ALL_MIGRATIONS) {
+            helper.runMigrationsAndValidate(TEST_DB, migration.endVersion, true, migration).close();
+        }
+    }
+
+    @Test
+    public void testMigrateFrom19KeepsUserData() throws IOException {
+        createVersion19();
+        helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true, AppDatabase.ALL_MIGRATIONS).close();
+
+        AppDatabase db = openMigrated();
+
+        UserEntity user = db.userDao().getUserByIdSync(1);
+        assertNotNull("User lost in migration", user);
+        assertEquals("plogger", user.getUsername());
+        assertEquals(120, user.getPoints());
+
+        List<RecordEntity> records = db.recordDao().getRecordsByUserIdSync(1);
+        assertEquals(2, records.size());
+        assertEquals(2, db.trashDao().getTrashCountByRecordIdSync(1));
+
+        List<LocationPointEntity> points = db.locationPointDao().getLocationPointsByRecordIdSync(1);
+        assertEquals(3, points.size());
+    }
+
+    @Test
+    public void testMigrateFrom19BackfillsAggregates() throws IOException {
+        createVersion19();
+        helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true, AppDatabase.ALL_MIGRATIONS).close();
+
+        AppDatabase db = openMigrated();
+
+        UserAggregateEntity aggregate = db.userAggregateDao().getAggregateByUserIdSync(1);
+        assertNotNull("Aggregates not backfilled", aggregate);
+        assertEquals(2, aggregate.getTotalSessions());
+        assertEquals(70, aggregate.getTotalPoints());
+        assertEquals(1500, aggregate.getTotalDistance(), 0.01);
+        assertEquals(2, aggregate.getTotalTrash());
+    }
+
+    @Test
+    public void testMigratedTriggersTrackNewRecords() throws IOException {
+        createVersion19();
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true,
+                AppDatabase.ALL_MIGRATIONS);
+
+        db.execSQL("INSERT INTO records (userId, distance, duration, averageSpeed, points, "
+                + "startLatitude, startLongitude, endLatitude, endLongitude, createdAt, updatedAt, "
+                + "isUploaded) VALUES (1, 250, 60000, 1.2, 5, 0, 0, 0, 0, 0, 0, 0)");
+
+        try (Cursor cursor = db.query("SELECT totalSessions, totalPoints FROM user_aggregates WHERE userId = 1")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(3, cursor.getInt(0));
+            assertEquals(75, cursor.getInt(1));
+        }
+        db.close();
+    }
+
+    private AppDatabase openMigrated() {
+        AppDatabase db = Room.databaseBuilder(
+                        InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                        AppDatabase.class, TEST_DB)
+                .addMigrations(AppDatabase.ALL_MIGRATIONS)
+                .allowMainThreadQueries()
+                .build();
+        helper.closeWhenFinished(db);
+        return db;
+    }
+
+    private void createVersion19() throws IOException {
+        SupportSQLiteDatabase v19 = helper.createDatabase(TEST_DB, FIRST_MIGRATED_VERSION);
+        v19.execSQL("INSERT INTO users (id, email, username, createdAt, points) "
+                + "VALUES (1, 'plogger@example.com', 'plogger', 1700000000000, 120)");
+        v19.execSQL("INSERT INTO records (id, userId, distance, duration, averageSpeed, points, "
+                + "startLatitude, startLongitude, endLatitude, endLongitude, createdAt, updatedAt, "
+                + "isUploaded, type) VALUES "
+                + "(1, 1, 1000, 600000, 1.6, 40, -5.1477, 119.4327, -5.1400, 119.4400, "
+                + "1700000000000, 1700000600000, 0, 'plog'), "
+                + "(2, 1, 500, 300000, 1.6, 30, -5.1477, 119.4327, -5.1450, 119.4350, "
+                + "1700100000000, 1700100300000, 1, 'plog')");
+        v19.execSQL("INSERT INTO trash (userId, recordId, trashType, latitude, longitude, "
+                + "timestamp, confidence) VALUES "
+                + "(1, 1, 'plastic', -5.1470, 119.4330, 1700000100000, 0.9), "
+                + "(1, 1, 'paper', -5.1460, 119.4340, 1700000200000, 0.8)");
+        v19.execSQL("INSERT INTO location_points (recordId, latitude, longitude, altitude, "
+                + "timestamp, distanceFromLast) VALUES "
+                + "(1, -5.1477, 119.4327, 10, 1700000000000, 0), "
+                + "(1, -5.1440, 119.4360, 11, 1700000300000, 550), "
+                + "(1, -5.1400, 119.4400, 12, 1700000600000, 450)");
+        v19.close();
+    }
+}
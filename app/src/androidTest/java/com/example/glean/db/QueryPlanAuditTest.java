@@ -0,0 +1,351 @@
+package com.example.glean.db;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs EXPLAIN QUERY PLAN for every DAO query against tables seeded with 100k rows
+ * and fails if any of them scans a whole table.
+ *
+ * The SQL is not copied here: every query method of every DAO on {@link AppDatabase}
+ * is called once against an empty database, and Room's query callback records the
+ * statements it runs. A changed or new DAO query is therefore audited as written.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanAuditTest {
+
+    private static final int SEED_ROWS = 100000;
+
+    // "SCAN users" / "SCAN TABLE users" without "USING ... INDEX"
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (TABLE )?\\w+( AS \\w+)?$");
+    private static final Pattern DAO_STATEMENT = Pattern.compile("^(SELECT|UPDATE|DELETE)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * Subqueries of UserAggregateTriggers. Triggers run inside SQLite, where the query
+     * callback does not see them.
+     */
+    private static final String[] TRIGGER_SUBQUERIES = {
+        "SELECT COUNT(*) FROM trash WHERE recordId = ?",
+        "SELECT userId FROM records WHERE id = ?",
+    };
+
+    /**
+     * DAO methods that read a whole table on purpose: unfiltered listings, bulk deletes
+     * and searches no B-tree index can serve.
+     */
+    private static final Set<String> ALLOWED_FULL_SCANS = new HashSet<>(Arrays.asList(
+        "UserDao.getAllUsers",
+        "UserDao.getAllUsersSync",
+        "UserDao.getFirstUser",
+        "UserDao.deleteAll",
+        "DaoRecord.getAllRecords",
+        "DaoRecord.getAllRecordsSync",
+        "DaoRecord.deleteAll",
+        "DaoTrash.getTrashByTypeContaining",
+        "DaoTrash.getAllTrash",
+        "DaoTrash.getAllTrashSync",
+        "DaoTrash.deleteAll",
+        "RankingCacheDao.deleteAll",
+        "LocationPointDao.getAllLocationPoints",
+        "LocationPointDao.getAllLocationPointsSync"
+    ));
+
+    private AppDatabase db;
+    private SupportSQLiteDatabase sqlite;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        sqlite = db.getOpenHelper().getWritableDatabase();
+
+        Map<String, String> users = new HashMap<>();
+        users.put("id", "x");
+        users.put("username", "'user' || x");
+        users.put("email", "'user' || x || '@example.com'");
+        users.put("points", "x % 5000");
+        seed("users", users);
+
+        Map<String, String> records = new HashMap<>();
+        records.put("id", "x");
+        records.put("userId", "1 + (x * 7919) % " + SEED_ROWS);
+        records.put("distance", "x % 5000");
+        records.put("duration", "x * 1000");
+        records.put("points", "x % 100");
+        records.put("createdAt", "1700000000000 + x * 60000");
+        records.put("type", "'plog'");
+        seed("records", records);
+
+        Map<String, String> trash = new HashMap<>();
+        trash.put("id", "x");
+        trash.put("userId", "1 + (x * 7919) % " + SEED_ROWS);
+        trash.put("recordId", "1 + (x * 31) % " + SEED_ROWS);
+        trash.put("trashType", "CASE x % 5 WHEN 0 THEN 'plastic' WHEN 1 THEN 'paper' "
+                + "WHEN 2 THEN 'metal' WHEN 3 THEN 'glass' ELSE 'organic' END");
+        trash.put("timestamp", "1700000000000 + x * 1000");
+        seed("trash", trash);
+
+        Map<String, String> points = new HashMap<>();
+        points.put("id", "x");
+        points.put("recordId", "1 + x % " + SEED_ROWS);
+        points.put("latitude", "-5.2 + (x % 1000) * 0.0004");
+        points.put("longitude", "119.4 + (x / 1000) * 0.004");
+        points.put("timestamp", "1700000000000 + x * 2000");
+        seed("location_points", points);
+
+        Map<String, String> routes = new HashMap<>();
+        routes.put("recordId", "x");
+        routes.put("encodedPoints", "zeroblob(16)");
+        seed("record_routes", routes);
+
+        Map<String, String> rankingCache = new HashMap<>();
+        rankingCache.put("metric", "CASE x % 2 WHEN 0 THEN 'totalPoints' ELSE 'totalDistance' END");
+        rankingCache.put("userId", "'uid' || x");
+        rankingCache.put("position", "x / 2");
+        seed("ranking_cache", rankingCache);
+
+        Map<String, String> outbox = new HashMap<>();
+        outbox.put("id", "x");
+        outbox.put("opId", "'op' || x");
+        outbox.put("type", "CASE x % 3 WHEN 0 THEN 'session' WHEN 1 THEN 'trash' ELSE 'profile' END");
+        outbox.put("userId", "'uid' || (x % 50)");
+        outbox.put("targetId", "x");
+        outbox.put("payload", "'{}'");
+        seed("sync_outbox", outbox);
+
+        Map<String, String> aggregates = new HashMap<>();
+        aggregates.put("userId", "x");
+        seed("user_aggregates", aggregates);
+
+        // Give the planner real statistics, as a long-lived database would have
+        sqlite.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testSeededTablesHaveAllRows() {
+        for (String table : new String[]{"users", "records", "trash", "location_points"}) {
+            try (Cursor cursor = sqlite.query("SELECT COUNT(*) FROM " + table)) {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(table, SEED_ROWS, cursor.getInt(0));
+            }
+        }
+    }
+
+    @Test
+    public void testNoDaoQueryScansAWholeTable() throws Exception {
+        Map<String, List<String>> queries = captureDaoQueries();
+        queries.put("UserAggregateTriggers", Arrays.asList(TRIGGER_SUBQUERIES));
+
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : queries.entrySet()) {
+            if (ALLOWED_FULL_SCANS.contains(entry.getKey())) {
+                continue;
+            }
+            for (String query : entry.getValue()) {
+                for (String step : explain(query)) {
+                    if (FULL_SCAN.matcher(step).matches()) {
+                        failures.add(entry.getKey() + ": " + query + "\n    -> " + step);
+                    }
+                }
+            }
+        }
+        assertTrue("Full table scans:\n" + String.join("\n", failures), failures.isEmpty());
+    }
+
+    /**
+     * Call every query method of every DAO once on an empty database and record the
+     * statements Room runs, keyed by "Dao.method". Insert, update and delete methods
+     * that take entities are skipped: Room writes those by primary key. Default methods
+     * are skipped too, as they only combine the abstract ones.
+     */
+    private Map<String, List<String>> captureDaoQueries() throws Exception {
+        List<String> statements = Collections.synchronizedList(new ArrayList<>());
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        AppDatabase empty = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .setQueryCallback((sql, bindArgs) -> statements.add(sql.trim()), Runnable::run)
+                // LiveData queries then run on the observing thread, before observeForever returns
+                .setQueryExecutor(Runnable::run)
+                .allowMainThreadQueries()
+                .build();
+
+        Map<String, List<String>> queries = new TreeMap<>();
+        try {
+            for (Method getter : AppDatabase.class.getDeclaredMethods()) {
+                if (!Modifier.isAbstract(getter.getModifiers()) || getter.getParameterTypes().length > 0
+                        || !getter.getReturnType().isInterface()) {
+                    continue;
+                }
+                Object dao = getter.invoke(empty);
+                for (Method method : getter.getReturnType().getDeclaredMethods()) {
+                    Object[] args = arguments(method);
+                    if (method.isDefault() || Modifier.isStatic(method.getModifiers()) || args == null) {
+                        continue;
+                    }
+                    statements.clear();
+                    call(dao, method, args);
+
+                    List<String> daoStatements = new ArrayList<>();
+                    for (String sql : statements) {
+                        if (DAO_STATEMENT.matcher(sql).matches() && !sql.contains("room_")
+                                && !sql.contains("sqlite_")) {
+                            daoStatements.add(sql);
+                        }
+                    }
+                    String name = getter.getReturnType().getSimpleName() + "." + method.getName();
+                    assertFalse("No query recorded for " + name, daoStatements.isEmpty());
+                    queries.put(name, daoStatements);
+                }
+            }
+        } finally {
+            empty.close();
+        }
+        return queries;
+    }
+
+    private static void call(Object dao, Method method, Object[] args) throws Exception {
+        if (!LiveData.class.isAssignableFrom(method.getReturnType())) {
+            method.invoke(dao, args);
+            return;
+        }
+        LiveData<?> liveData = (LiveData<?>) method.invoke(dao, args);
+        Observer<Object> observer = value -> { };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            liveData.observeForever(observer);
+            liveData.removeObserver(observer);
+        });
+    }
+
+    /**
+     * Placeholder arguments for a DAO method, or null if it takes an entity.
+     * Lists get two elements so IN clauses are audited with more than one value.
+     */
+    private static Object[] arguments(Method method) {
+        Type[] types = method.getGenericParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Type type = types[i];
+            if (type instanceof ParameterizedType
+                    && ((ParameterizedType) type).getRawType() == List.class) {
+                Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+                Object value = element instanceof Class ? argument((Class<?>) element) : null;
+                args[i] = value == null ? null : Arrays.asList(value, value);
+            } else if (type == long[].class) {
+                args[i] = new long[]{1, 2};
+            } else if (type == int[].class) {
+                args[i] = new int[]{1, 2};
+            } else {
+                args[i] = type instanceof Class ? argument((Class<?>) type) : null;
+            }
+            if (args[i] == null) {
+                return null;
+            }
+        }
+        return args;
+    }
+
+    private static Object argument(Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return 1;
+        } else if (type == long.class || type == Long.class) {
+            return 1L;
+        } else if (type == float.class || type == Float.class) {
+            return 1f;
+        } else if (type == double.class || type == Double.class) {
+            return 1d;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return true;
+        } else if (type == String.class) {
+            return "x";
+        }
+        return null;
+    }
+
+    private List<String> explain(String query) {
+        Object[] args = new Object[countParameters(query)];
+        List<String> steps = new ArrayList<>();
+        try (Cursor cursor = sqlite.query("EXPLAIN QUERY PLAN " + query, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                steps.add(cursor.getString(detail));
+            }
+        }
+        return steps;
+    }
+
+    private static int countParameters(String query) {
+        int count = 0;
+        for (int i = 0; i < query.length(); i++) {
+            if (query.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Insert SEED_ROWS rows in one statement. Columns without an expression get NULL,
+     * or a zero value when they are NOT NULL, so the seed keeps up with the schema.
+     */
+    private void seed(String table, Map<String, String> expressions) {
+        List<String> columns = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        try (Cursor cursor = sqlite.query("PRAGMA table_info(" + table + ")")) {
+            int nameIndex = cursor.getColumnIndexOrThrow("name");
+            int typeIndex = cursor.getColumnIndexOrThrow("type");
+            int notNullIndex = cursor.getColumnIndexOrThrow("notnull");
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(nameIndex);
+                String expression = expressions.get(name);
+                if (expression == null) {
+                    if (cursor.getInt(notNullIndex) == 0) {
+                        continue;
+                    }
+                    String type = cursor.getString(typeIndex);
+                    expression = "TEXT".equalsIgnoreCase(type) ? "''"
+                            : "BLOB".equalsIgnoreCase(type) ? "zeroblob(0)" : "0";
+                }
+                columns.add(name);
+                values.add(expression);
+            }
+        }
+
+        sqlite.execSQL("WITH RECURSIVE seq(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM seq WHERE x < "
+                + SEED_ROWS + ") INSERT INTO " + table + " (" + String.join(", ", columns) + ") "
+                + "SELECT " + String.join(", ", values) + " FROM seq");
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.glean.ml;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.tensorflow.lite.support.common.FileUtil;
+
+import java.nio.MappedByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * On-device benchmark report of every execution backend on the bundled classifier.
+ *
+ * Run with `./gradlew connectedAndroidTest` and read the report from logcat
+ * (tag BackendBenchmark). The plain CPU backend must always work, since every other
+ * backend falls back to it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BackendBenchmarkTest {
+
+    @Test
+    public void benchmarkBundledModel() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String modelPath = WasteClassifierModel.MODEL_FLOAT;
+        MappedByteBuffer model = FileUtil.loadMappedFile(context, modelPath);
+        BackendSelector selector = new BackendSelector(context, modelPath, model.capacity());
+
+        BackendSelector.Report report = selector.benchmark(model, BackendSelector.candidates());
+        Log.i("BackendBenchmark", report.toString());
+
+        BackendSelector.Measurement cpu = report.measurements.get(0);
+        assertEquals(ExecutionBackend.CPU_DEFAULT, cpu.backend);
+        assertTrue("Plain CPU backend failed: " + cpu.error, cpu.works());
+        assertFalse(report.ranking().isEmpty());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.glean.ml;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Accuracy and latency regression of the quantised classifier variants against the
+ * float model.
+ *
+ * The labelled images live in the test APK under assets/classifier_eval/<label>/, one
+ * directory per label of waste_labels.txt. Every bundled INT8/FP16 variant must stay
+ * within {@link #MAX_TOP1_DROP} of the float model's top-1 accuracy. The test is skipped
+ * when no quantised variant or no image set is present.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QuantizedAccuracyTest {
+
+    private static final String TAG = "QuantizedAccuracy";
+    private static final String EVAL_DIR = "classifier_eval";
+    private static final float MAX_TOP1_DROP = 0.02f;
+
+    private Context targetContext;
+    private List<String> labels;
+    private List<String> images;
+
+    private static class Score {
+        final String variant;
+        final float top1;
+        final long averageInferenceMs;
+
+        Score(String variant, float top1, long averageInferenceMs) {
+            this.variant = variant;
+            this.top1 = top1;
+            this.averageInferenceMs = averageInferenceMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-60s top-1 %5.1f%%  inference %d ms", variant, top1 * 100, averageInferenceMs);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        targetContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        AssetManager testAssets = InstrumentationRegistry.getInstrumentation().getContext().getAssets();
+
+        labels = new ArrayList<>();
+        images = new ArrayList<>();
+        String[] labelDirs = testAssets.list(EVAL_DIR);
+        if (labelDirs == null) {
+            return;
+        }
+        for (String label : labelDirs) {
+            String[] files = testAssets.list(EVAL_DIR + "/" + label);
+            for (String file : files != null ? files : new String[0]) {
+                labels.add(label);
+                images.add(EVAL_DIR + "/" + label + "/" + file);
+            }
+        }
+    }
+
+    @Test
+    public void quantisedVariantsKeepTop1Accuracy() throws IOException {
+        List<String> bundled = Arrays.asList(targetContext.getAssets().list("model"));
+        List<String> quantised = new ArrayList<>();
+        for (String variant : new String[]{WasteClassifierModel.MODEL_INT8, WasteClassifierModel.MODEL_FP16}) {
+            if (bundled.contains(variant.substring(variant.lastIndexOf('/') + 1))) {
+                quantised.add(variant);
+            }
+        }
+        assumeFalse("No quantised model variant bundled", quantised.isEmpty());
+        assumeFalse("No labelled images in assets/" + EVAL_DIR, images.isEmpty());
+
+        Score baseline = evaluate(WasteClassifierModel.MODEL_FLOAT);
+        Log.i(TAG, baseline.toString());
+
+        List<String> failures = new ArrayList<>();
+        for (String variant : quantised) {
+            Score score = evaluate(variant);
+            Log.i(TAG, score.toString());
+            if (score.top1 < baseline.top1 - MAX_TOP1_DROP) {
+                failures.add(score + " vs " + baseline);
+            }
+        }
+        assertTrue("Top-1 accuracy dropped by more than " + MAX_TOP1_DROP * 100 + "%:\n"
+                + String.join("\n", failures), failures.isEmpty());
+    }
+
+    private Score evaluate(String modelPath) throws IOException {
+        AssetManager testAssets = InstrumentationRegistry.getInstrumentation().getContext().getAssets();
+        WasteClassifierModel model = new WasteClassifierModel(targetContext, modelPath);
+        try {
+            int correct = 0;
+            for (int i = 0; i < images.size(); i++) {
+                Bitmap bitmap;
+                try (InputStream stream = testAssets.open(images.get(i))) {
+                    bitmap = BitmapFactory.decodeStream(stream);
+                }
+                assertNotNull("Cannot decode " + images.get(i), bitmap);
+                if (labels.get(i).equalsIgnoreCase(model.classify(bitmap).wasteType)) {
+                    correct++;
+                }
+                bitmap.recycle();
+            }
+            return new Score(model.describe(), correct / (float) images.size(), model.getAverageInferenceMs());
+        } finally {
+            model.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.glean.service;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.glean.model.LeaderboardRank;
+import com.example.glean.model.RankingUser;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs LeaderboardService against the Firestore emulator.
+ *
+ * Start it with `firebase emulators:start --only firestore` on the host; the Android
+ * emulator reaches the host as 10.0.2.2. Tests are skipped when it is not running.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LeaderboardServiceEmulatorTest {
+
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final int EMULATOR_PORT = 8080;
+    private static final long TIMEOUT_SECONDS = 20;
+
+    private static FirebaseFirestore firestore;
+    private LeaderboardService service;
+
+    @BeforeClass
+    public static void connectEmulator() {
+        firestore = FirebaseFirestore.getInstance();
+        try {
+            firestore.useEmulator(EMULATOR_HOST, EMULATOR_PORT);
+        } catch (IllegalStateException e) {
+            // Instance was already used by another test in this process
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        try {
+            await(firestore.collection(LeaderboardService.COLLECTION_LEADERBOARDS)
+                    .document(LeaderboardRanker.METRIC_POINTS).get(Source.SERVER));
+        } catch (Exception e) {
+            Assume.assumeNoException("Firestore emulator not reachable", e);
+        }
+
+        deleteLeaderboardData();
+        service = new LeaderboardService(firestore);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (service != null) {
+            deleteLeaderboardData();
+        }
+    }
+
+    @Test
+    public void testSubmittedScoresMatchFullSort() throws Exception {
+        Random random = new Random(1);
+        List<RankingUser> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            RankingUser user = new RankingUser("emu-" + i, "user" + i, "User " + i,
+                    random.nextInt(1000), random.nextInt(20000), 0, i);
+            users.add(user);
+            await(service.submit(user));
+        }
+
+        List<Map<String, Object>> expected = LeaderboardRanker.build(users, LeaderboardRanker.METRIC_POINTS,
+                LeaderboardService.TOP_N);
+        List<RankingUser> shard = readShard(LeaderboardRanker.METRIC_POINTS);
+        assertEquals(expected.size(), shard.size());
+        for (int i = 0; i < shard.size(); i++) {
+            assertEquals(expected.get(i).get("userId"), shard.get(i).getUserId());
+        }
+
+        // The rank cache of the last submitter agrees with the shard
+        RankingUser last = users.get(users.size() - 1);
+        LeaderboardRank rank = await(service.getCachedRank(last.getUserId()));
+        assertNotNull(rank);
+        assertEquals(LeaderboardRanker.rankOf(expected, last.getUserId()), rank.getPointsRank());
+    }
+
+    @Test
+    public void testConcurrentSubmitsAreAllMerged() throws Exception {
+        List<Task<LeaderboardRank>> submits = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            submits.add(service.submit(new RankingUser("concurrent-" + i, "c" + i, "C " + i,
+                    100 + i, 0, 0, 0)));
+        }
+        await(Tasks.whenAll(submits));
+
+        List<RankingUser> shard = readShard(LeaderboardRanker.METRIC_POINTS);
+        assertEquals(10, shard.size());
+        assertEquals("concurrent-9", shard.get(0).getUserId());
+        assertEquals("concurrent-0", shard.get(9).getUserId());
+    }
+
+    @Test
+    public void testMissingShardIsSeededOnce() throws Exception {
+        List<RankingUser> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(new RankingUser("seed-" + i, "s" + i, "S " + i, 10 * i, 0, 0, 0));
+        }
+        AtomicInteger loads = new AtomicInteger();
+        service.setCandidateSource((metric, limit) -> {
+            loads.incrementAndGet();
+            return Tasks.forResult(users);
+        });
+
+        // Every missing-shard snapshot asks for a seed; they share one run
+        Task<Integer> first = service.backfill(LeaderboardRanker.METRIC_POINTS);
+        Task<Integer> second = service.backfill(LeaderboardRanker.METRIC_POINTS);
+        assertEquals(5, (int) await(first));
+        assertEquals(5, (int) await(second));
+        assertEquals(1, loads.get());
+
+        // Once the shard exists, a later seed has nothing left to add
+        assertEquals(0, (int) await(service.backfill(LeaderboardRanker.METRIC_POINTS)));
+        assertEquals(5, readShard(LeaderboardRanker.METRIC_POINTS).size());
+    }
+
+    /**
+     * Remove the shards, rank caches and histograms the tests write, so runs start clean
+     * and leave nothing behind in the emulator.
+     */
+    private void deleteLeaderboardData() throws Exception {
+        for (String metric : new String[]{LeaderboardRanker.METRIC_POINTS, LeaderboardRanker.METRIC_DISTANCE}) {
+            await(firestore.collection(LeaderboardService.COLLECTION_LEADERBOARDS).document(metric).delete());
+            await(firestore.collection(LeaderboardService.COLLECTION_HISTOGRAMS).document(metric).delete());
+        }
+        QuerySnapshot ranks = await(firestore.collection(LeaderboardService.COLLECTION_RANKS).get(Source.SERVER));
+        List<Task<Void>> deletes = new ArrayList<>();
+        for (DocumentSnapshot rank : ranks.getDocuments()) {
+            deletes.add(rank.getReference().delete());
+        }
+        await(Tasks.whenAll(deletes));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RankingUser> readShard(String metric) throws Exception {
+        DocumentSnapshot snapshot = await(firestore.collection(LeaderboardService.COLLECTION_LEADERBOARDS)
+                .document(metric).get(Source.SERVER));
+        assertTrue(snapshot.exists());
+        return LeaderboardRanker.toRankingUsers(
+                (List<Map<String, Object>>) snapshot.get(LeaderboardService.FIELD_ENTRIES));
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
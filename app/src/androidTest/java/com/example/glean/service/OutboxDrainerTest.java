@@ -0,0 +1,204 @@
+package com.example.glean.service;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.glean.db.AppDatabase;
+import com.example.glean.model.OutboxEntity;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Retry and drop rules of the outbox upload against an in-memory database and a fake server.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OutboxDrainerTest {
+
+    private static final String USER = "user-1";
+
+    private AppDatabase db;
+    private FakeUploader uploader;
+    private OutboxDrainer drainer;
+
+    /**
+     * Rejects operations by opId with a fixed error and records what it committed.
+     */
+    private static class FakeUploader implements OutboxDrainer.Uploader {
+        final Map<String, Exception> failures = new HashMap<>();
+        final Set<String> committed = new HashSet<>();
+        Exception networkError;
+        int batches = 0;
+
+        @Override
+        public void commitBatch(List<OutboxEntity> operations) throws Exception {
+            batches++;
+            check(operations);
+            for (OutboxEntity operation : operations) {
+                committed.add(operation.getOpId());
+            }
+        }
+
+        @Override
+        public boolean commitSession(OutboxEntity session) throws Exception {
+            check(Collections.singletonList(session));
+            return committed.add(session.getOpId());
+        }
+
+        private void check(List<OutboxEntity> operations) throws Exception {
+            if (networkError != null) {
+                throw networkError;
+            }
+            for (OutboxEntity operation : operations) {
+                Exception failure = failures.get(operation.getOpId());
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        uploader = new FakeUploader();
+        drainer = new OutboxDrainer(db, uploader);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testRejectedOperationOnlyChargesItself() {
+        queue("trash-1", OutboxEntity.TYPE_TRASH, 0);
+        queue("poison", OutboxEntity.TYPE_TRASH, 0);
+        queue("profile-1", OutboxEntity.TYPE_PROFILE, 0);
+        uploader.failures.put("poison", rejected());
+
+        OutboxDrainer.Report report = drainer.drain(USER, () -> false);
+
+        assertTrue(report.retry);
+        assertEquals(2, report.uploaded);
+        assertTrue(uploader.committed.contains("trash-1"));
+        assertTrue(uploader.committed.contains("profile-1"));
+        List<OutboxEntity> left = pending();
+        assertEquals(1, left.size());
+        assertEquals("poison", left.get(0).getOpId());
+        assertEquals(1, left.get(0).getAttempts());
+    }
+
+    @Test
+    public void testNetworkErrorsAreNotCharged() {
+        queue("trash-1", OutboxEntity.TYPE_TRASH, 0);
+        queue("session-1", OutboxEntity.TYPE_SESSION, 0);
+        uploader.networkError = new ExecutionException(new FirebaseFirestoreException(
+                "offline", FirebaseFirestoreException.Code.UNAVAILABLE));
+
+        OutboxDrainer.Report report = drainer.drain(USER, () -> false);
+
+        assertTrue(report.retry);
+        assertEquals(0, report.uploaded);
+        for (OutboxEntity operation : pending()) {
+            assertEquals(0, operation.getAttempts());
+        }
+
+        uploader.networkError = new TimeoutException();
+        drainer.drain(USER, () -> false);
+        for (OutboxEntity operation : pending()) {
+            assertEquals(0, operation.getAttempts());
+        }
+    }
+
+    @Test
+    public void testOperationDroppedAfterMaxAttempts() {
+        queue("poison", OutboxEntity.TYPE_TRASH, OutboxDrainer.MAX_OPERATION_ATTEMPTS - 1);
+        queue("trash-1", OutboxEntity.TYPE_TRASH, 0);
+        uploader.failures.put("poison", rejected());
+
+        drainer.drain(USER, () -> false);
+        assertEquals(1, pending().size());
+        assertEquals(OutboxDrainer.MAX_OPERATION_ATTEMPTS, pending().get(0).getAttempts());
+
+        OutboxDrainer.Report report = drainer.drain(USER, () -> false);
+        assertEquals(1, report.dropped);
+        assertFalse(report.retry);
+        assertTrue(pending().isEmpty());
+        assertTrue(uploader.committed.contains("trash-1"));
+    }
+
+    @Test
+    public void testSessionsAreCommittedOneByOne() {
+        queue("session-1", OutboxEntity.TYPE_SESSION, 0);
+        queue("session-2", OutboxEntity.TYPE_SESSION, 0);
+        uploader.failures.put("session-1", rejected());
+
+        OutboxDrainer.Report report = drainer.drain(USER, () -> false);
+
+        assertTrue(report.sessionsCounted);
+        assertEquals(1, report.uploaded);
+        assertEquals(0, uploader.batches);
+        List<OutboxEntity> left = pending();
+        assertEquals(1, left.size());
+        assertEquals("session-1", left.get(0).getOpId());
+        assertEquals(1, left.get(0).getAttempts());
+    }
+
+    @Test
+    public void testOtherUsersOperationsWait() {
+        queue("trash-1", OutboxEntity.TYPE_TRASH, 0);
+        db.outboxDao().insert(new OutboxEntity("other", OutboxEntity.TYPE_TRASH, "user-2", 2, "{}"));
+
+        OutboxDrainer.Report report = drainer.drain(USER, () -> false);
+
+        assertEquals(1, report.uploaded);
+        assertFalse(uploader.committed.contains("other"));
+        assertEquals(1, db.outboxDao().getPendingForUserSync("user-2", 10).size());
+    }
+
+    @Test
+    public void testTransientErrorClassification() {
+        assertTrue(OutboxDrainer.isTransient(new TimeoutException()));
+        assertTrue(OutboxDrainer.isTransient(new InterruptedException()));
+        assertTrue(OutboxDrainer.isTransient(new ExecutionException(new FirebaseFirestoreException(
+                "busy", FirebaseFirestoreException.Code.DEADLINE_EXCEEDED))));
+        assertFalse(OutboxDrainer.isTransient(new ExecutionException(new FirebaseFirestoreException(
+                "denied", FirebaseFirestoreException.Code.PERMISSION_DENIED))));
+        assertFalse(OutboxDrainer.isTransient(new IllegalArgumentException("Unknown outbox operation")));
+    }
+
+    private void queue(String opId, String type, int attempts) {
+        OutboxEntity operation = new OutboxEntity(opId, type, USER, opId.hashCode(), "{}");
+        operation.setAttempts(attempts);
+        db.outboxDao().insert(operation);
+    }
+
+    private List<OutboxEntity> pending() {
+        return new ArrayList<>(db.outboxDao().getPendingForUserSync(USER, 100));
+    }
+
+    private static Exception rejected() {
+        return new ExecutionException(new FirebaseFirestoreException(
+                "rejected", FirebaseFirestoreException.Code.INVALID_ARGUMENT));
+    }
+}
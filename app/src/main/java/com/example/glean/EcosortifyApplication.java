@@ -8,6 +8,9 @@ import android.util.Log;
 import androidx.appcompat.app.AppCompatDelegate;
 
 import com.example.glean.helper.NotificationHelper;
+import com.example.glean.ml.WasteClassifierModel;
+import com.example.glean.service.SyncOutbox;
+import com.example.glean.util.AppExecutors;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.firebase.FirebaseApp;
@@ -48,6 +51,12 @@ public class EcosortifyApplication extends Application {
             }
         });
         
+        // Shared worker pools used by every screen and service
+        AppExecutors.getInstance();
+        
+        // Load the waste classifier off the main thread before the classify screen needs it
+        WasteClassifierModel.preload(this);
+        
         try {
             // Check Google Play Services availability at app start
             checkGooglePlayServices();
@@ -55,6 +64,10 @@ public class EcosortifyApplication extends Application {
             // Initialize notification channels
             NotificationHelper.createNotificationChannels(this);
             
+            // Upload whatever the sync outbox still holds from earlier runs
+            SyncOutbox.scheduleUpload(this);
+            SyncOutbox.schedulePeriodicSweep(this);
+            
             // Apply saved theme
             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
             boolean isDarkMode = prefs.getBoolean("DARK_MODE", false);
@@ -67,6 +80,19 @@ public class EcosortifyApplication extends Application {
         }
     }
     
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            // Pool health when the app goes to the background
+            Log.d(TAG, "Executor metrics:\n" + AppExecutors.getInstance());
+        }
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            // Off the main thread: closing waits for a running inference. Reloaded on next use
+            AppExecutors.getInstance().cpu().execute(WasteClassifierModel::releaseInstance, AppExecutors.PRIORITY_LOW);
+        }
+    }
+    
     private void checkGooglePlayServices() {
         try {
             GoogleApiAvailability apiAvailability = GoogleApiAvailability.getInstance();
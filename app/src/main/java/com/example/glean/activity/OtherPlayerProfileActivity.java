@@ -25,8 +25,6 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Activity untuk menampilkan profil pemain lain dari ranking
@@ -42,7 +40,6 @@ public class OtherPlayerProfileActivity extends AppCompatActivity {
     private ActivityOtherPlayerProfileBinding binding;
     private FirebaseFirestore firestore;
     private AppDatabase db;
-    private ExecutorService executor;
     
     private String playerId;
     private String playerUsername;
@@ -55,7 +52,6 @@ public class OtherPlayerProfileActivity extends AppCompatActivity {
         setContentView(binding.getRoot());        // Initialize components
         firestore = FirebaseFirestore.getInstance();
         db = AppDatabase.getInstance(this);
-        executor = Executors.newFixedThreadPool(2);
 
         // Get data from intent
         getIntentData();
@@ -354,13 +350,6 @@ public class OtherPlayerProfileActivity extends AppCompatActivity {
         Log.e(TAG, message);
     }
 
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
-    }
       /**
      * Load profile background skin (supports both static images and GIF)
      */
@@ -11,6 +11,8 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
@@ -20,20 +22,48 @@ import com.example.glean.model.RankingUser;
 import com.example.glean.util.AvatarManager;
 import de.hdodenhof.circleimageview.CircleImageView;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
-public class RankingAdapter extends RecyclerView.Adapter<RankingAdapter.RankingViewHolder> {
+/**
+ * Leaderboard rows fed through {@link #submitList}. DiffUtil runs off the main thread
+ * and, with stable IDs, a single user's change animates one row instead of rebinding
+ * the whole list.
+ *
+ * Ranks are not part of a row's contents: they follow from the adapter position, and
+ * rows whose rank shifted only get their rank views rebound through {@link #PAYLOAD_RANK}.
+ */
+public class RankingAdapter extends ListAdapter<RankingUser, RankingAdapter.RankingViewHolder> {
+    
+    private static final Object PAYLOAD_RANK = new Object();
+    
+    private static final DiffUtil.ItemCallback<RankingUser> DIFF_CALLBACK = new DiffUtil.ItemCallback<RankingUser>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull RankingUser oldItem, @NonNull RankingUser newItem) {
+            return Objects.equals(oldItem.getUserId(), newItem.getUserId());
+        }
+        
+        @Override
+        public boolean areContentsTheSame(@NonNull RankingUser oldItem, @NonNull RankingUser newItem) {
+            return oldItem.hasSameStats(newItem);
+        }
+    };
     
     private Context context;
-    private List<RankingUser> rankingList;
     private boolean isPointsRanking; // true for points, false for distance
     private String currentUserId;
+    // userId -> stable row id; ids are handed out once and never reused
+    private final Map<String, Long> stableIds = new HashMap<>();
     
-    public RankingAdapter(Context context, List<RankingUser> rankingList, boolean isPointsRanking, String currentUserId) {
+    public RankingAdapter(Context context, boolean isPointsRanking, String currentUserId) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.rankingList = rankingList;
         this.isPointsRanking = isPointsRanking;
         this.currentUserId = currentUserId;
+        setHasStableIds(true);
     }
     
     @NonNull
@@ -45,19 +75,42 @@ public class RankingAdapter extends RecyclerView.Adapter<RankingAdapter.RankingV
     
     @Override
     public void onBindViewHolder(@NonNull RankingViewHolder holder, int position) {
-        RankingUser user = rankingList.get(position);
-        holder.bind(user, position + 1);
+        holder.bind(getItem(position), position + 1);
     }
     
     @Override
-    public int getItemCount() {
-        return rankingList.size();
+    public void onBindViewHolder(@NonNull RankingViewHolder holder, int position, @NonNull List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_RANK) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            holder.bindRank(position + 1);
+        }
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        String userId = getItem(position).getUserId();
+        Long id = stableIds.get(userId);
+        if (id == null) {
+            id = (long) stableIds.size();
+            stableIds.put(userId, id);
+        }
+        return id;
     }
     
     public void updateData(List<RankingUser> newRankingList) {
-        this.rankingList = newRankingList;
-        notifyDataSetChanged();
-    }    class RankingViewHolder extends RecyclerView.ViewHolder {
+        // Rows that kept their contents may still have moved up or down a rank
+        submitList(new ArrayList<>(newRankingList),
+                () -> notifyItemRangeChanged(0, getItemCount(), PAYLOAD_RANK));
+    }
+    
+    class RankingViewHolder extends RecyclerView.ViewHolder {
         private TextView tvUsername, tvPoints, tvRankingPosition, tvStats, tvScoreUnit;
         private CardView cardRanking;
         private CircleImageView ivUserProfile;
@@ -73,10 +126,35 @@ public class RankingAdapter extends RecyclerView.Adapter<RankingAdapter.RankingV
             ivUserProfile = itemView.findViewById(R.id.ivUserProfile);
             ivCrown = itemView.findViewById(R.id.ivCrown);
             cardRanking = itemView.findViewById(R.id.cardRanking);
-        }        public void bind(RankingUser user, int position) {
-            // Set position
+        }
+        
+        void bindRank(int position) {
             tvRankingPosition.setText("#" + position);
             
+            // Set border color based on ranking position
+            int borderColor;
+            if (position == 1) {
+                borderColor = ContextCompat.getColor(context, R.color.gold);
+                tvRankingPosition.setTextColor(ContextCompat.getColor(context, R.color.gold));
+            } else if (position == 2) {
+                borderColor = ContextCompat.getColor(context, R.color.silver);
+                tvRankingPosition.setTextColor(ContextCompat.getColor(context, R.color.silver));
+            } else if (position == 3) {
+                borderColor = ContextCompat.getColor(context, R.color.bronze);
+                tvRankingPosition.setTextColor(ContextCompat.getColor(context, R.color.bronze));
+            } else {
+                borderColor = ContextCompat.getColor(context, R.color.primary_color);
+                tvRankingPosition.setTextColor(ContextCompat.getColor(context, R.color.primary_color));
+            }
+
+            // Apply border color to CircleImageView
+            ivUserProfile.setBorderColor(borderColor);
+            ivUserProfile.setBorderWidth(position <= 3 ? 6 : 3); // Thicker border for top 3
+        }
+        
+        public void bind(RankingUser user, int position) {
+            bindRank(position);
+            
             // Hide crown icon (as per requirements)
             ivCrown.setVisibility(View.GONE);
             
@@ -108,26 +186,6 @@ public class RankingAdapter extends RecyclerView.Adapter<RankingAdapter.RankingV
                 tvScoreUnit.setText("km");
             }
             
-            // Set border color based on ranking position
-            int borderColor;
-            if (position == 1) {
-                borderColor = ContextCompat.getColor(context, R.color.gold);
-                tvRankingPosition.setTextColor(ContextCompat.getColor(context, R.color.gold));
-            } else if (position == 2) {
-                borderColor = ContextCompat.getColor(context, R.color.silver);
-                tvRankingPosition.setTextColor(ContextCompat.getColor(context, R.color.silver));
-            } else if (position == 3) {
-                borderColor = ContextCompat.getColor(context, R.color.bronze);
-                tvRankingPosition.setTextColor(ContextCompat.getColor(context, R.color.bronze));
-            } else {
-                borderColor = ContextCompat.getColor(context, R.color.primary_color);
-                tvRankingPosition.setTextColor(ContextCompat.getColor(context, R.color.primary_color));
-            }
-
-            // Apply border color to CircleImageView
-            ivUserProfile.setBorderColor(borderColor);
-            ivUserProfile.setBorderWidth(position <= 3 ? 6 : 3); // Thicker border for top 3
-            
             // Highlight current user
             if (currentUserId != null && currentUserId.equals(user.getUserId())) {
                 itemView.setBackgroundColor(ContextCompat.getColor(context, R.color.highlight_background));
@@ -15,29 +15,173 @@ import com.example.glean.db.DaoTrash;
 import com.example.glean.db.UserDao;
 import com.example.glean.db.LocationPointDao;
 import com.example.glean.model.LocationPointEntity;
+import com.example.glean.model.OutboxEntity;
+import com.example.glean.model.RankingCacheEntity;
 import com.example.glean.model.RecordEntity;
+import com.example.glean.model.RecordRouteEntity;
 import com.example.glean.model.TrashEntity;
+import com.example.glean.model.UserAggregateEntity;
 import com.example.glean.model.UserEntity;
 import com.example.glean.db.Converters;
+import com.example.glean.util.AppExecutors;
 
 @Database(
     entities = {
         UserEntity.class, 
         RecordEntity.class, 
         TrashEntity.class,
-        LocationPointEntity.class
+        LocationPointEntity.class,
+        RecordRouteEntity.class,
+        UserAggregateEntity.class,
+        RankingCacheEntity.class,
+        OutboxEntity.class
     },
-    version = 19, // Increment version to fix schema integrity error
-    exportSchema = false
+    version = 24, // Durable sync outbox
+    exportSchema = true
 )
 @TypeConverters({Converters.class})
 public abstract class AppDatabase extends RoomDatabase {
     
     private static final String DATABASE_NAME = "glean_database";
-    private static volatile AppDatabase INSTANCE;    public abstract UserDao userDao();
+    private static volatile AppDatabase INSTANCE;
+    
+    /**
+     * Versions before 19 predate the shipped schema and are still rebuilt from scratch.
+     */
+    private static final int[] DESTRUCTIVE_FROM = {
+        1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18
+    };
+    
+    /**
+     * 19 -> 20: sealed route blobs
+     */
+    static final Migration MIGRATION_19_20 = new Migration(19, 20) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `record_routes` ("
+                    + "`recordId` INTEGER NOT NULL, "
+                    + "`pointCount` INTEGER NOT NULL, "
+                    + "`formatVersion` INTEGER NOT NULL, "
+                    + "`encodedPoints` BLOB NOT NULL, "
+                    + "PRIMARY KEY(`recordId`), "
+                    + "FOREIGN KEY(`recordId`) REFERENCES `records`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+        }
+    };
+    
+    /**
+     * 20 -> 21: trigger-maintained per-user totals, backfilled from existing records
+     */
+    static final Migration MIGRATION_20_21 = new Migration(20, 21) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `user_aggregates` ("
+                    + "`userId` INTEGER NOT NULL, "
+                    + "`totalPoints` INTEGER NOT NULL DEFAULT 0, "
+                    + "`totalDistance` REAL NOT NULL DEFAULT 0, "
+                    + "`totalDuration` INTEGER NOT NULL DEFAULT 0, "
+                    + "`totalSessions` INTEGER NOT NULL DEFAULT 0, "
+                    + "`totalTrash` INTEGER NOT NULL DEFAULT 0, "
+                    + "`updatedAt` INTEGER NOT NULL DEFAULT 0, "
+                    + "PRIMARY KEY(`userId`), "
+                    + "FOREIGN KEY(`userId`) REFERENCES `users`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            UserAggregateTriggers.install(db);
+        }
+    };
+    
+    /**
+     * 21 -> 22: composite indices
+     */
+    static final Migration MIGRATION_21_22 = new Migration(21, 22) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS `index_location_points_recordId`");
+            db.execSQL("DROP INDEX IF EXISTS `index_records_userId`");
+            
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_location_points_recordId_timestamp` "
+                    + "ON `location_points` (`recordId`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_records_userId_createdAt` "
+                    + "ON `records` (`userId`, `createdAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_trash_recordId_timestamp` "
+                    + "ON `trash` (`recordId`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_trash_trashType_timestamp` "
+                    + "ON `trash` (`trashType`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_users_username` ON `users` (`username`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_users_email` ON `users` (`email`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_users_points` ON `users` (`points`)");
+        }
+    };
+    
+    /**
+     * 22 -> 23: offline leaderboard snapshot
+     */
+    static final Migration MIGRATION_22_23 = new Migration(22, 23) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `ranking_cache` ("
+                    + "`metric` TEXT NOT NULL, "
+                    + "`userId` TEXT NOT NULL, "
+                    + "`position` INTEGER NOT NULL, "
+                    + "`username` TEXT, "
+                    + "`fullName` TEXT, "
+                    + "`photoURL` TEXT, "
+                    + "`activeAvatar` TEXT, "
+                    + "`totalPoints` INTEGER NOT NULL, "
+                    + "`totalDistance` REAL NOT NULL, "
+                    + "`totalTrashCollected` INTEGER NOT NULL, "
+                    + "`cachedAt` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`metric`, `userId`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_ranking_cache_metric_position` "
+                    + "ON `ranking_cache` (`metric`, `position`)");
+        }
+    };
+    
+    /**
+     * 23 -> 24: outbox of Firestore mutations waiting for upload
+     */
+    static final Migration MIGRATION_23_24 = new Migration(23, 24) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_outbox` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`opId` TEXT NOT NULL, "
+                    + "`type` TEXT NOT NULL, "
+                    + "`userId` TEXT NOT NULL, "
+                    + "`targetId` INTEGER NOT NULL, "
+                    + "`payload` TEXT NOT NULL, "
+                    + "`createdAt` INTEGER NOT NULL, "
+                    + "`attempts` INTEGER NOT NULL, "
+                    + "`lastError` TEXT)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_sync_outbox_opId` "
+                    + "ON `sync_outbox` (`opId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_sync_outbox_type_targetId` "
+                    + "ON `sync_outbox` (`type`, `targetId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_sync_outbox_userId` "
+                    + "ON `sync_outbox` (`userId`)");
+        }
+    };
+    
+    /**
+     * Every migration in order. Add a migration here with each version bump;
+     * MigrationTest upgrades a populated version 19 database through all of them.
+     */
+    static final Migration[] ALL_MIGRATIONS = {
+        MIGRATION_19_20,
+        MIGRATION_20_21,
+        MIGRATION_21_22,
+        MIGRATION_22_23,
+        MIGRATION_23_24
+    };
+    
+    public abstract UserDao userDao();
     public abstract DaoRecord recordDao();
     public abstract DaoTrash trashDao();
     public abstract LocationPointDao locationPointDao();
+    public abstract RecordRouteDao recordRouteDao();
+    public abstract UserAggregateDao userAggregateDao();
+    public abstract RankingCacheDao rankingCacheDao();
+    public abstract OutboxDao outboxDao();
     
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
@@ -48,8 +192,12 @@ public abstract class AppDatabase extends RoomDatabase {
                             AppDatabase.class,
                             DATABASE_NAME
                     )
-                    // Use destructive migration to handle schema mismatches
-                    .fallbackToDestructiveMigration()                    // Optional: Add callback to populate initial data
+                    // Upgrade in place so updates keep local records instead of resyncing
+                    .addMigrations(ALL_MIGRATIONS)
+                    .fallbackToDestructiveMigrationFrom(DESTRUCTIVE_FROM)
+                    // LiveData queries share the app's IO pool instead of Room's own threads
+                    .setQueryExecutor(AppExecutors.getInstance().io())
+                    // Optional: Add callback to populate initial data
                     .addCallback(new RoomDatabase.Callback() {
                         @Override
                         public void onCreate(SupportSQLiteDatabase db) {
@@ -57,6 +205,13 @@ public abstract class AppDatabase extends RoomDatabase {
                             // Database is created fresh - seed initial data
                             seedInitialData(context);
                         }
+                        
+                        @Override
+                        public void onOpen(SupportSQLiteDatabase db) {
+                            super.onOpen(db);
+                            // Keep user_aggregates in step with records and trash
+                            UserAggregateTriggers.install(db);
+                        }
                     })
                     .build();
                 }
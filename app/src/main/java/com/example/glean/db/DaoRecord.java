@@ -5,6 +5,7 @@ import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.example.glean.model.RecordEntity;
@@ -14,6 +15,12 @@ import java.util.List;
 @Dao
 public interface DaoRecord {
     
+    /**
+     * Points earned by the trash of record :recordId.
+     */
+    String SESSION_POINTS = "(SELECT COALESCE(SUM(" + DaoTrash.POINTS_BY_TYPE + "), 0) "
+            + "FROM trash WHERE recordId = :recordId)";
+    
     @Insert
     long insert(RecordEntity record);
     
@@ -29,6 +36,12 @@ public interface DaoRecord {
     @Query("SELECT * FROM records WHERE id = :recordId")
     RecordEntity getRecordByIdSync(int recordId);
     
+    @Query("UPDATE records SET isUploaded = 1 WHERE id IN (:recordIds)")
+    void markUploaded(List<Integer> recordIds);
+    
+    @Query("SELECT COUNT(*) FROM records WHERE userId = :userId AND createdAt = :createdAt")
+    int countByCreatedAtSync(int userId, long createdAt);
+    
     @Query("SELECT * FROM records WHERE userId = :userId ORDER BY createdAt DESC")
     LiveData<List<RecordEntity>> getRecordsByUserId(int userId);
     
@@ -56,6 +69,32 @@ public interface DaoRecord {
     @Query("UPDATE records SET distance = :distance, duration = :duration, updatedAt = :updatedAt WHERE id = :recordId")
     void updateRecordStats(int recordId, float distance, long duration, long updatedAt);
     
+    /**
+     * Finish a plogging session in one transaction. Points come from the record's trash and
+     * duration from its start time, both in SQL; the user is credited the difference to
+     * the points the record already had, so finishing the same session twice is harmless.
+     *
+     * @param distance filtered route distance in meters, as measured by the tracking engine
+     * @return the finished record, or null if it does not exist
+     */
+    @Transaction
+    default RecordEntity finalizeSession(int recordId, float distance, long finishedAt) {
+        creditSessionPoints(recordId);
+        if (applySessionTotals(recordId, distance, finishedAt) == 0) {
+            return null;
+        }
+        return getRecordByIdSync(recordId);
+    }
+    
+    @Query("UPDATE users SET points = points + " + SESSION_POINTS + " - "
+            + "(SELECT points FROM records WHERE id = :recordId) "
+            + "WHERE id = (SELECT userId FROM records WHERE id = :recordId)")
+    void creditSessionPoints(int recordId);
+    
+    @Query("UPDATE records SET points = " + SESSION_POINTS + ", distance = :distance, "
+            + "duration = MAX(0, :finishedAt - createdAt), updatedAt = :finishedAt WHERE id = :recordId")
+    int applySessionTotals(int recordId, float distance, long finishedAt);
+    
     @Query("SELECT COUNT(*) FROM records WHERE userId = :userId")
     int getRecordCountByUserId(int userId);
     
@@ -14,6 +14,18 @@ import java.util.List;
 @Dao
 public interface DaoTrash {
     
+    /**
+     * Points of one trash row, by type. Shared with the session finalisation in DaoRecord.
+     */
+    String POINTS_BY_TYPE = "CASE " +
+           "WHEN trashType = 'plastic' THEN 10 " +
+           "WHEN trashType = 'paper' THEN 8 " +
+           "WHEN trashType = 'metal' THEN 15 " +
+           "WHEN trashType = 'glass' THEN 12 " +
+           "WHEN trashType = 'organic' THEN 5 " +
+           "ELSE 10 " +  // Default points for unrecognized types
+           "END";
+    
     @Insert
     long insert(TrashEntity trash);
     
@@ -47,14 +59,7 @@ public interface DaoTrash {
     @Query("SELECT COUNT(*) FROM trash WHERE recordId = :recordId")
     int getTrashCountByRecordIdSync(int recordId);
     
-    @Query("SELECT SUM(CASE " +
-           "WHEN trashType = 'plastic' THEN 10 " +
-           "WHEN trashType = 'paper' THEN 8 " +
-           "WHEN trashType = 'metal' THEN 15 " +
-           "WHEN trashType = 'glass' THEN 12 " +
-           "WHEN trashType = 'organic' THEN 5 " +
-           "ELSE 10 " +  // Default points for unrecognized types
-           "END) FROM trash WHERE recordId = :recordId")
+    @Query("SELECT SUM(" + POINTS_BY_TYPE + ") FROM trash WHERE recordId = :recordId")
     int getTotalPointsByRecordIdSync(int recordId);
     
     @Query("SELECT * FROM trash ORDER BY timestamp DESC")
@@ -5,17 +5,18 @@ import android.util.Log;
 
 import com.example.glean.model.UserEntity;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import com.example.glean.util.AppExecutors;
+
+import java.util.concurrent.Executor;
 
 public class DatabaseSeeder {
     private static final String TAG = "DatabaseSeeder";
     private AppDatabase database;
-    private ExecutorService executor;
+    private Executor executor;
     
     public DatabaseSeeder(Context context) {
         database = AppDatabase.getInstance(context);
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().dbWriter();
     }    public void seedDatabaseIfEmpty() {        executor.execute(() -> {            synchronized (this) {
                 // Check if database already has data
                 int userCount = database.userDao().getUserCount();
@@ -5,6 +5,7 @@ import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.example.glean.model.LocationPointEntity;
@@ -17,6 +18,9 @@ public interface LocationPointDao {
     @Insert
     long insert(LocationPointEntity locationPoint);
     
+    @Insert
+    void insertAll(List<LocationPointEntity> locationPoints);
+    
     @Update
     void update(LocationPointEntity locationPoint);
     
@@ -53,6 +57,18 @@ public interface LocationPointDao {
     @Query("SELECT * FROM location_points WHERE recordId = :recordId AND timestamp BETWEEN :startTime AND :endTime ORDER BY timestamp ASC")
     List<LocationPointEntity> getLocationPointsByTimeRange(int recordId, long startTime, long endTime);
     
-    @Query("SELECT * FROM location_points WHERE latitude BETWEEN :minLat AND :maxLat AND longitude BETWEEN :minLon AND :maxLon")
-    List<LocationPointEntity> getLocationPointsByBounds(double minLat, double maxLat, double minLon, double maxLon);
+    @Query("UPDATE records SET distance = distance + :additionalDistance WHERE id = :recordId")
+    void addDistanceToRecord(int recordId, float additionalDistance);
+    
+    /**
+     * Insert a batch of buffered location points and add their distance to the
+     * owning record in a single transaction.
+     */
+    @Transaction
+    default void insertBatch(int recordId, List<LocationPointEntity> locationPoints, float batchDistance) {
+        insertAll(locationPoints);
+        if (batchDistance > 0) {
+            addDistanceToRecord(recordId, batchDistance);
+        }
+    }
 }
\ No newline at end of file
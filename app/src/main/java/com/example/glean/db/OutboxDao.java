@@ -0,0 +1,29 @@
+package com.example.glean.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.glean.model.OutboxEntity;
+
+import java.util.List;
+
+@Dao
+public interface OutboxDao {
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(OutboxEntity operation);
+
+    @Query("SELECT * FROM sync_outbox WHERE userId = :userId ORDER BY id ASC LIMIT :limit")
+    List<OutboxEntity> getPendingForUserSync(String userId, int limit);
+
+    @Query("SELECT COUNT(*) FROM sync_outbox WHERE type = :type AND targetId = :targetId")
+    int countByTargetSync(String type, long targetId);
+
+    @Query("DELETE FROM sync_outbox WHERE id IN (:ids)")
+    void deleteByIds(List<Long> ids);
+
+    @Query("UPDATE sync_outbox SET attempts = attempts + 1, lastError = :error WHERE id IN (:ids)")
+    void markFailed(List<Long> ids, String error);
+}
@@ -0,0 +1,39 @@
+package com.example.glean.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.example.glean.model.RankingCacheEntity;
+
+import java.util.List;
+
+@Dao
+public interface RankingCacheDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<RankingCacheEntity> entries);
+
+    @Query("SELECT * FROM ranking_cache WHERE metric = :metric ORDER BY position ASC")
+    List<RankingCacheEntity> getRankingSync(String metric);
+
+    @Query("SELECT MIN(cachedAt) FROM ranking_cache WHERE metric = :metric")
+    Long getCachedAtSync(String metric);
+
+    @Query("DELETE FROM ranking_cache WHERE metric = :metric")
+    void deleteByMetric(String metric);
+
+    @Query("DELETE FROM ranking_cache")
+    void deleteAll();
+
+    /**
+     * Swap the cached snapshot of a metric for a new one.
+     */
+    @Transaction
+    default void replaceRanking(String metric, List<RankingCacheEntity> entries) {
+        deleteByMetric(metric);
+        insertAll(entries);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.glean.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.example.glean.model.LocationPointEntity;
+import com.example.glean.model.RecordRouteEntity;
+import com.example.glean.util.RouteCodec;
+
+import java.util.List;
+
+@Dao
+public interface RecordRouteDao {
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(RecordRouteEntity route);
+    
+    @Query("SELECT * FROM record_routes WHERE recordId = :recordId")
+    RecordRouteEntity getRouteByRecordIdSync(int recordId);
+    
+    @Query("SELECT * FROM location_points WHERE recordId = :recordId ORDER BY timestamp ASC")
+    List<LocationPointEntity> getLivePointsSync(int recordId);
+    
+    @Query("DELETE FROM location_points WHERE recordId = :recordId")
+    void deleteLivePoints(int recordId);
+    
+    /**
+     * Points of a record, sealed and live, without decoding the blob.
+     */
+    @Query("SELECT COALESCE((SELECT pointCount FROM record_routes WHERE recordId = :recordId), 0) "
+            + "+ (SELECT COUNT(*) FROM location_points WHERE recordId = :recordId)")
+    int getPointCountSync(int recordId);
+    
+    @Query("DELETE FROM record_routes WHERE recordId = :recordId")
+    void deleteRouteByRecordId(int recordId);
+    
+    /**
+     * Move the live location_points of a record into its encoded route blob.
+     * Points sealed earlier (e.g. before a resumed session) are kept in front.
+     *
+     * @return number of points in the sealed route
+     */
+    @Transaction
+    default int sealRoute(int recordId) {
+        List<LocationPointEntity> livePoints = getLivePointsSync(recordId);
+        if (livePoints.isEmpty()) {
+            RecordRouteEntity existing = getRouteByRecordIdSync(recordId);
+            return existing != null ? existing.getPointCount() : 0;
+        }
+        
+        RouteCodec.Route route = loadRoute(recordId);
+        insert(new RecordRouteEntity(recordId, route.size(), RouteCodec.FORMAT_VERSION, RouteCodec.encode(route)));
+        deleteLivePoints(recordId);
+        return route.size();
+    }
+    
+    /**
+     * Load the full route of a record: the sealed blob followed by any live points.
+     */
+    @Transaction
+    default RouteCodec.Route loadRoute(int recordId) {
+        RecordRouteEntity sealed = getRouteByRecordIdSync(recordId);
+        List<LocationPointEntity> livePoints = getLivePointsSync(recordId);
+        
+        RouteCodec.Route route = sealed != null
+                ? RouteCodec.decode(sealed.getEncodedPoints(), livePoints.size())
+                : new RouteCodec.Route(livePoints.size());
+        for (LocationPointEntity point : livePoints) {
+            route.add(point.getLatitude(), point.getLongitude(), point.getAltitude(),
+                    point.getTimestamp(), point.getDistanceFromLast());
+        }
+        return route;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.glean.db;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.example.glean.model.UserAggregateEntity;
+
+/**
+ * Read access to user_aggregates. Rows are written only by the triggers in
+ * {@link UserAggregateTriggers}.
+ */
+@Dao
+public interface UserAggregateDao {
+    
+    @Query("SELECT * FROM user_aggregates WHERE userId = :userId")
+    LiveData<UserAggregateEntity> getAggregateByUserId(int userId);
+    
+    @Query("SELECT * FROM user_aggregates WHERE userId = :userId")
+    UserAggregateEntity getAggregateByUserIdSync(int userId);
+}
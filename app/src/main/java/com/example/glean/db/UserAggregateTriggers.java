@@ -0,0 +1,129 @@
+package com.example.glean.db;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQL triggers that keep user_aggregates in step with the records and trash tables.
+ *
+ * Every insert, update or delete of a record or trash row adjusts the owning user's
+ * totals inside the same statement, so the aggregate can never drift from the
+ * underlying rows. Trash counts towards the user owning its record, matching the
+ * per-record totals the dashboards used to compute.
+ */
+public final class UserAggregateTriggers {
+    
+    private static final String TAG = "UserAggregateTriggers";
+    
+    private static final String NOW_MS = "CAST(strftime('%s','now') AS INTEGER) * 1000";
+    
+    private static final String[] TRIGGERS = {
+        "CREATE TRIGGER IF NOT EXISTS user_aggregates_record_insert AFTER INSERT ON records BEGIN "
+            + "INSERT OR IGNORE INTO user_aggregates (userId) VALUES (NEW.userId); "
+            + "UPDATE user_aggregates SET "
+            + "totalPoints = totalPoints + NEW.points, "
+            + "totalDistance = totalDistance + NEW.distance, "
+            + "totalDuration = totalDuration + NEW.duration, "
+            + "totalSessions = totalSessions + 1, "
+            + "totalTrash = totalTrash + (SELECT COUNT(*) FROM trash WHERE recordId = NEW.id), "
+            + "updatedAt = " + NOW_MS + " "
+            + "WHERE userId = NEW.userId; "
+            + "END",
+        
+        "CREATE TRIGGER IF NOT EXISTS user_aggregates_record_update "
+            + "AFTER UPDATE OF id, userId, points, distance, duration ON records BEGIN "
+            + "UPDATE user_aggregates SET "
+            + "totalPoints = totalPoints - OLD.points, "
+            + "totalDistance = totalDistance - OLD.distance, "
+            + "totalDuration = totalDuration - OLD.duration, "
+            + "totalSessions = totalSessions - 1, "
+            + "totalTrash = totalTrash - (SELECT COUNT(*) FROM trash WHERE recordId = OLD.id) "
+            + "WHERE userId = OLD.userId; "
+            + "INSERT OR IGNORE INTO user_aggregates (userId) VALUES (NEW.userId); "
+            + "UPDATE user_aggregates SET "
+            + "totalPoints = totalPoints + NEW.points, "
+            + "totalDistance = totalDistance + NEW.distance, "
+            + "totalDuration = totalDuration + NEW.duration, "
+            + "totalSessions = totalSessions + 1, "
+            + "totalTrash = totalTrash + (SELECT COUNT(*) FROM trash WHERE recordId = NEW.id), "
+            + "updatedAt = " + NOW_MS + " "
+            + "WHERE userId = NEW.userId; "
+            + "END",
+        
+        "CREATE TRIGGER IF NOT EXISTS user_aggregates_record_delete AFTER DELETE ON records BEGIN "
+            + "UPDATE user_aggregates SET "
+            + "totalPoints = totalPoints - OLD.points, "
+            + "totalDistance = totalDistance - OLD.distance, "
+            + "totalDuration = totalDuration - OLD.duration, "
+            + "totalSessions = totalSessions - 1, "
+            + "totalTrash = totalTrash - (SELECT COUNT(*) FROM trash WHERE recordId = OLD.id), "
+            + "updatedAt = " + NOW_MS + " "
+            + "WHERE userId = OLD.userId; "
+            + "END",
+        
+        "CREATE TRIGGER IF NOT EXISTS user_aggregates_trash_insert AFTER INSERT ON trash BEGIN "
+            + "UPDATE user_aggregates SET totalTrash = totalTrash + 1, updatedAt = " + NOW_MS + " "
+            + "WHERE userId = (SELECT userId FROM records WHERE id = NEW.recordId); "
+            + "END",
+        
+        "CREATE TRIGGER IF NOT EXISTS user_aggregates_trash_update AFTER UPDATE OF recordId ON trash "
+            + "WHEN OLD.recordId != NEW.recordId BEGIN "
+            + "UPDATE user_aggregates SET totalTrash = totalTrash - 1 "
+            + "WHERE userId = (SELECT userId FROM records WHERE id = OLD.recordId); "
+            + "UPDATE user_aggregates SET totalTrash = totalTrash + 1, updatedAt = " + NOW_MS + " "
+            + "WHERE userId = (SELECT userId FROM records WHERE id = NEW.recordId); "
+            + "END",
+        
+        "CREATE TRIGGER IF NOT EXISTS user_aggregates_trash_delete AFTER DELETE ON trash BEGIN "
+            + "UPDATE user_aggregates SET totalTrash = totalTrash - 1, updatedAt = " + NOW_MS + " "
+            + "WHERE userId = (SELECT userId FROM records WHERE id = OLD.recordId); "
+            + "END"
+    };
+    
+    private static final String REBUILD =
+        "INSERT INTO user_aggregates "
+            + "(userId, totalPoints, totalDistance, totalDuration, totalSessions, totalTrash, updatedAt) "
+            + "SELECT r.userId, SUM(r.points), SUM(r.distance), SUM(r.duration), COUNT(*), "
+            + "(SELECT COUNT(*) FROM trash t JOIN records r2 ON t.recordId = r2.id WHERE r2.userId = r.userId), "
+            + NOW_MS + " "
+            + "FROM records r GROUP BY r.userId";
+    
+    private UserAggregateTriggers() {
+    }
+    
+    /**
+     * Create the triggers if missing and backfill user_aggregates when it is empty
+     * but records already exist (e.g. after the table was added to an existing database).
+     */
+    public static void install(SupportSQLiteDatabase db) {
+        for (String trigger : TRIGGERS) {
+            db.execSQL(trigger);
+        }
+        
+        boolean needsRebuild;
+        try (Cursor cursor = db.query("SELECT NOT EXISTS (SELECT 1 FROM user_aggregates) "
+                + "AND EXISTS (SELECT 1 FROM records)")) {
+            needsRebuild = cursor.moveToFirst() && cursor.getInt(0) == 1;
+        }
+        if (needsRebuild) {
+            rebuild(db);
+        }
+    }
+    
+    /**
+     * Recompute every user's totals from scratch in one transaction.
+     */
+    public static void rebuild(SupportSQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM user_aggregates");
+            db.execSQL(REBUILD);
+            db.setTransactionSuccessful();
+            Log.d(TAG, "✅ user_aggregates rebuilt from records");
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -18,10 +18,10 @@ import com.example.glean.R;
 import com.example.glean.databinding.FragmentAddTrashBinding;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.model.TrashEntity;
+import com.example.glean.util.AppExecutors;
 
 import java.io.File;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class AddTrashFragment extends Fragment {
 
@@ -31,13 +31,13 @@ public class AddTrashFragment extends Fragment {
     private long trashId = -1;
     private TrashEntity trashEntity;
     private AppDatabase db;
-    private ExecutorService executor;
+    private Executor executor;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().dbWriter().serial(this);
         
         if (getArguments() != null) {
             trashId = getArguments().getLong("TRASH_ID", -1);
@@ -165,10 +165,4 @@ public class AddTrashFragment extends Fragment {
         super.onDestroyView();
         binding = null;
     }
-    
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        executor.shutdown();
-    }
 }
\ No newline at end of file
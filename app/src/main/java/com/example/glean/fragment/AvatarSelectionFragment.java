@@ -41,6 +41,7 @@ public class AvatarSelectionFragment extends Fragment implements AvatarSelection
     private String selectedAvatarId = "default";
     private String originalAvatarId = null;
     private FirebaseDataManager firebaseDataManager;
+    private boolean profileSubscribed = false;
     private UserProfile userProfile;
     
     @Nullable
@@ -252,8 +253,10 @@ public class AvatarSelectionFragment extends Fragment implements AvatarSelection
      * Load UserProfile dari Firebase untuk memastikan save ke Firestore berhasil
      */
     private void loadUserProfileFromFirebase() {
-        if (firebaseDataManager != null) {
-            firebaseDataManager.subscribeToUserProfile(new FirebaseDataManager.ProfileDataCallback() {
+        // The user LiveData fires on every change; one profile subscription per view is enough
+        if (firebaseDataManager != null && !profileSubscribed) {
+            profileSubscribed = true;
+            firebaseDataManager.subscribeToUserProfile(getViewLifecycleOwner(), new FirebaseDataManager.ProfileDataCallback() {
                 @Override
                 public void onProfileLoaded(UserProfile profile) {
                     userProfile = profile;
@@ -277,6 +280,7 @@ public class AvatarSelectionFragment extends Fragment implements AvatarSelection
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        profileSubscribed = false;
         binding = null;
     }
 }
@@ -1,10 +1,10 @@
 package com.example.glean.fragment;
 
 import android.Manifest;
+import android.content.ContentResolver;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.net.Uri;
 import android.os.Build;
@@ -30,10 +30,13 @@ import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
+import androidx.navigation.Navigation;
 
 import com.example.glean.R;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.ml.ClassificationHelper;
+import com.example.glean.util.AppExecutors;
+import com.example.glean.util.SampledBitmapDecoder;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.progressindicator.CircularProgressIndicator;
@@ -41,14 +44,16 @@ import com.google.android.material.progressindicator.CircularProgressIndicator;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 public class ClassifyFragment extends Fragment {
 
     private static final String TAG = "ClassifyFragment";
+    // Shorter side of decoded photos: sharp in the preview and enough detail for Gemini
+    private static final int DECODE_SIZE = 512;
     
     // UI components
     private ImageView imagePreview;    private MaterialCardView cardCamera;
@@ -65,6 +70,7 @@ public class ClassifyFragment extends Fragment {
     
     // API and data
     private ClassificationHelper classificationHelper;
+    private Executor decodeExecutor;
     private Bitmap selectedImage;
     private Uri photoUri;
     private String classificationResult;
@@ -104,6 +110,7 @@ public class ClassifyFragment extends Fragment {
         
         // Initialize API
         classificationHelper = new ClassificationHelper(requireContext());
+        decodeExecutor = AppExecutors.getInstance().io().serialUntilDestroyed(this);
         
         // Setup permission and activity result launchers
         setupPermissionLaunchers();
@@ -112,6 +119,9 @@ public class ClassifyFragment extends Fragment {
         // Setup click listeners
         cardCamera.setOnClickListener(v -> checkCameraPermission());
         cardGallery.setOnClickListener(v -> checkStoragePermission());
+        view.findViewById(R.id.btn_live_classify).setOnClickListener(v ->
+                Navigation.findNavController(requireView())
+                        .navigate(R.id.action_classifyFragment_to_liveClassifyFragment));
         shareButton.setOnClickListener(v -> shareResults());        // Setup help button
         androidx.appcompat.widget.Toolbar toolbar = view.findViewById(R.id.toolbar_classification);
         if (toolbar != null) {
@@ -158,16 +168,8 @@ public class ClassifyFragment extends Fragment {
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == requireActivity().RESULT_OK) {
-                        try {
-                            // Load the captured image
-                            Bitmap bitmap = MediaStore.Images.Media.getBitmap(
-                                    requireContext().getContentResolver(), photoUri);
-                            handleImageSelected(bitmap);
-                        } catch (IOException e) {
-                            Log.e(TAG, "Error loading camera image", e);
-                            Toast.makeText(requireContext(), 
-                                    "Gagal memuat gambar", Toast.LENGTH_SHORT).show();
-                        }
+                        // Load the captured image
+                        loadImage(photoUri);
                     }
                 });
         
@@ -176,25 +178,39 @@ public class ClassifyFragment extends Fragment {
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == requireActivity().RESULT_OK && result.getData() != null) {
-                        try {
-                            Uri selectedImageUri = result.getData().getData();
-                            if (selectedImageUri != null) {
-                                InputStream inputStream = requireContext().getContentResolver()
-                                        .openInputStream(selectedImageUri);
-                                Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                                if (bitmap != null) {
-                                    handleImageSelected(bitmap);
-                                }
-                            }
-                        } catch (IOException e) {
-                            Log.e(TAG, "Error loading gallery image", e);
-                            Toast.makeText(requireContext(), 
-                                    "Gagal memuat gambar", Toast.LENGTH_SHORT).show();
+                        Uri selectedImageUri = result.getData().getData();
+                        if (selectedImageUri != null) {
+                            loadImage(selectedImageUri);
                         }
                     }
                 });
     }
     
+    /**
+     * Decode a photo at preview size, upright, off the main thread. A full-size camera
+     * bitmap is never created; the local model scales this one down to its own input.
+     */
+    private void loadImage(Uri uri) {
+        ContentResolver resolver = requireContext().getContentResolver();
+        decodeExecutor.execute(() -> {
+            try {
+                Bitmap bitmap = SampledBitmapDecoder.decode(resolver, uri, DECODE_SIZE);
+                if (getActivity() == null) {
+                    bitmap.recycle();
+                    return;
+                }
+                requireActivity().runOnUiThread(() -> handleImageSelected(bitmap));
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading image", e);
+                if (getActivity() == null) {
+                    return;
+                }
+                requireActivity().runOnUiThread(() -> Toast.makeText(requireContext(),
+                        "Gagal memuat gambar", Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+    
     private void checkCameraPermission() {
         if (ContextCompat.checkSelfPermission(
                 requireContext(), Manifest.permission.CAMERA) == 
@@ -275,6 +291,9 @@ public class ClassifyFragment extends Fragment {
         classificationHelper.classifyImage(bitmap, new ClassificationHelper.ClassificationCallback() {
             @Override
             public void onSuccess(String wasteType, String description, String tips, boolean isLocalModel) {
+                if (getActivity() == null) {
+                    return;
+                }
                 requireActivity().runOnUiThread(() -> {
                     classificationResult = wasteType;
                     classificationDescription = description;
@@ -292,6 +311,9 @@ public class ClassifyFragment extends Fragment {
             
             @Override
             public void onError(String error) {
+                if (getActivity() == null) {
+                    return;
+                }
                 requireActivity().runOnUiThread(() -> {
                     Toast.makeText(requireContext(), error, Toast.LENGTH_LONG).show();
                     showImagePreviewState();
@@ -488,10 +510,6 @@ public class ClassifyFragment extends Fragment {
         
         // Clean up temporary images and free memory
         cleanupTemporaryImages();
-        
-        if (classificationHelper != null) {
-            classificationHelper.release();
-        }
     }
     
     /**
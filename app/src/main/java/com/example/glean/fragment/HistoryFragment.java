@@ -19,18 +19,18 @@ import com.example.glean.adapter.HistoryAdapter;
 import com.example.glean.databinding.FragmentHistoryBinding;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.model.RecordEntity;
+import com.example.glean.util.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistoryClickListener {
 
     private FragmentHistoryBinding binding;
     private AppDatabase db;
     private int userId;
-    private ExecutorService executor;
+    private Executor executor;
     private HistoryAdapter adapter;
     private List<RecordEntity> recordList = new ArrayList<>();
 
@@ -40,7 +40,7 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
         db = AppDatabase.getInstance(requireContext());
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(requireContext());
         userId = prefs.getInt("USER_ID", -1);
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().io().serialUntilDestroyed(this);
     }
 
     @Nullable
@@ -122,10 +122,4 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
         super.onDestroyView();
         binding = null; // Prevent memory leaks
     }
-    
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        executor.shutdown();
-    }
 }
\ No newline at end of file
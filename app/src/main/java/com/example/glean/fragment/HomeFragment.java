@@ -28,18 +28,19 @@ import com.example.glean.databinding.FragmentHomeBinding;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.model.RecordEntity;
 import com.example.glean.model.Tip;
+import com.example.glean.model.UserAggregateEntity;
 import com.example.glean.model.UserEntity;
+import com.example.glean.util.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class HomeFragment extends Fragment {
     private FragmentHomeBinding binding;
     private AppDatabase db;
-    private ExecutorService executor;
+    private Executor executor;
     private int currentTimeFilter = -1;
     
     // Tips carousel variables
@@ -56,7 +57,7 @@ public class HomeFragment extends Fragment {
         
         try {
             db = AppDatabase.getInstance(requireContext());
-            executor = Executors.newSingleThreadExecutor();
+            executor = AppExecutors.getInstance().io().serialUntilDestroyed(this);
         } catch (Exception e) {
             // Handle error silently
         }
@@ -164,16 +165,13 @@ public class HomeFragment extends Fragment {
         return getString(R.string.user_default);
     }
     
-    private List<RecordEntity> getAllRecords(List<RecordEntity> allRecords) {
-        return allRecords;
-    }
-    
     private void loadUserStats(int userId) {
         executor.execute(() -> {
             try {
-                int totalRecords = db.recordDao().getRecordCountByUserId(userId);
-                float totalDistance = db.recordDao().getTotalDistanceByUserId(userId);
-                long totalDuration = db.recordDao().getTotalDurationByUserId(userId);
+                UserAggregateEntity aggregate = db.userAggregateDao().getAggregateByUserIdSync(userId);
+                int totalRecords = aggregate != null ? aggregate.getTotalSessions() : 0;
+                float totalDistance = aggregate != null ? (float) aggregate.getTotalDistance() : 0f;
+                long totalDuration = aggregate != null ? aggregate.getTotalDuration() : 0L;
                 
                 float distanceKm = totalDistance / 1000f;
                 float durationHours = totalDuration / (1000f * 60f * 60f);
@@ -196,39 +194,16 @@ public class HomeFragment extends Fragment {
                 android.util.Log.d("HomeFragment", "DEBUG: Updating dashboard stats for userId: " + userId);
                 
                 if (userId != -1) {
-                    List<RecordEntity> allRecords = db.recordDao().getRecordsByUserIdSync(userId);
-                    List<RecordEntity> recordsToProcess = getAllRecords(allRecords);
-                    
-                    android.util.Log.d("HomeFragment", "DEBUG: Found " + recordsToProcess.size() + " records for user");
-                    
-                    float totalDistance = 0f;
-                    int totalTrash = 0;
-                    int totalPoints = 0;
+                    // One row of running totals instead of per-record trash queries
+                    UserAggregateEntity aggregate = db.userAggregateDao().getAggregateByUserIdSync(userId);
                     
-                    for (RecordEntity record : recordsToProcess) {
-                        float recordDistance = record.getDistance();
-                        totalDistance += recordDistance;
-                        
-                        // Calculate points directly from trash data to ensure accuracy
-                        int recordTrashPoints = db.trashDao().getTotalPointsByRecordIdSync(record.getId());
-                        totalPoints += recordTrashPoints;
-                        
-                        List<com.example.glean.model.TrashEntity> trashList = db.trashDao().getTrashByRecordIdSync(record.getId());
-                        int recordTrashCount = trashList.size();
-                        totalTrash += recordTrashCount;
-                        
-                        android.util.Log.d("HomeFragment", "DEBUG: Record " + record.getId() + 
-                            " - Distance: " + recordDistance + "m, Trash: " + recordTrashCount + 
-                            ", Points: " + recordTrashPoints);
-                    }
+                    float totalDistance = aggregate != null ? (float) aggregate.getTotalDistance() : 0f;
+                    int totalTrash = aggregate != null ? aggregate.getTotalTrash() : 0;
                     
                     android.util.Log.d("HomeFragment", "DEBUG: Total stats - Distance: " + totalDistance + 
-                        "m (" + (totalDistance/1000f) + "km), Trash: " + totalTrash + ", Points: " + totalPoints);                    
-                    String badge = getBadge(totalPoints);
+                        "m (" + (totalDistance/1000f) + "km), Trash: " + totalTrash);
                     
-                    final float finalTotalDistance = totalDistance;
                     final int finalTotalTrash = totalTrash;
-                    final int finalTotalPoints = totalPoints;
                     
                     requireActivity().runOnUiThread(() -> {
                         updateChallengeProgress(finalTotalTrash);
@@ -245,14 +220,6 @@ public class HomeFragment extends Fragment {
         // Challenge Global section has been completely removed from layout
         // No UI updates needed as the section no longer exists
     }
-      private String getBadge(int points) {
-        if (points >= 1000) return "Eco Master";
-        else if (points >= 500) return "Eco Expert";
-        else if (points >= 200) return "Eco Warrior";
-        else if (points >= 50) return "Eco Fighter";
-        else return "Eco Beginner";
-    }
-    
     private int getBadgeCount(int points) {
         // Calculate badge count based on achievement levels
         int count = 1; // Everyone gets at least the starter badge
@@ -390,14 +357,6 @@ public class HomeFragment extends Fragment {
         binding = null;
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
-    }
-    
     private void setupTipsCarousel() {
         try {
             tipsViewPager = binding.getRoot().findViewById(R.id.tips_view_pager);
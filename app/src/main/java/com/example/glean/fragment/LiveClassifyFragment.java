@@ -0,0 +1,274 @@
+package com.example.glean.fragment;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.util.Log;
+import android.util.Size;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Lifecycle;
+import androidx.navigation.Navigation;
+
+import com.example.glean.R;
+import com.example.glean.ml.LiveClassifier;
+import com.example.glean.ml.WasteClassifierModel;
+import com.example.glean.util.AppExecutors;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Live classification: labels whatever the camera is pointed at, several times a second,
+ * using only the on-device model.
+ */
+public class LiveClassifyFragment extends Fragment {
+
+    private static final String TAG = "LiveClassifyFragment";
+    // Analysis frames are scaled down to 224 px anyway; VGA keeps the copy cheap
+    private static final Size ANALYSIS_SIZE = new Size(640, 480);
+
+    private PreviewView previewView;
+    private TextView liveLabel;
+    private TextView liveCategory;
+    private TextView liveStats;
+
+    private ActivityResultLauncher<String> requestCameraPermissionLauncher;
+    private Executor analysisExecutor;
+    private ImageAnalysis imageAnalysis;
+    private volatile LiveClassifier liveClassifier; // Read on the analysis thread
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        requestCameraPermissionLauncher = registerForActivityResult(
+                new ActivityResultContracts.RequestPermission(),
+                isGranted -> {
+                    if (isGranted) {
+                        startLiveClassification();
+                    } else {
+                        Toast.makeText(requireContext(),
+                                "Izin kamera diperlukan untuk deteksi live",
+                                Toast.LENGTH_SHORT).show();
+                        Navigation.findNavController(requireView()).navigateUp();
+                    }
+                });
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
+                             @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_live_classify, container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        previewView = view.findViewById(R.id.preview_view);
+        liveLabel = view.findViewById(R.id.live_label);
+        liveCategory = view.findViewById(R.id.live_category);
+        liveStats = view.findViewById(R.id.live_stats);
+        analysisExecutor = AppExecutors.getInstance().io().serialUntilDestroyed(getViewLifecycleOwner());
+
+        if (!hasCameraPermission()) {
+            requestCameraPermissionLauncher.launch(Manifest.permission.CAMERA);
+        }
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (hasCameraPermission()) {
+            startLiveClassification();
+        }
+    }
+
+    @Override
+    public void onStop() {
+        // The shared model may be released while the app is in the background,
+        // so a fresh classifier is built from getInstance() on every start
+        stopLiveClassification();
+        super.onStop();
+    }
+
+    private boolean hasCameraPermission() {
+        return ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.CAMERA)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Load the shared classifier off the main thread, then bind the camera.
+     */
+    private void startLiveClassification() {
+        if (liveClassifier != null) {
+            return;
+        }
+        liveLabel.setText("Memuat model...");
+        Context appContext = requireContext().getApplicationContext();
+        AppExecutors.getInstance().cpu().execute(() -> {
+            try {
+                WasteClassifierModel model = WasteClassifierModel.getInstance(appContext);
+                if (getActivity() == null) {
+                    return;
+                }
+                requireActivity().runOnUiThread(() -> {
+                    if (getView() == null || liveClassifier != null
+                            || !getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+                        return;
+                    }
+                    liveClassifier = new LiveClassifier(model, LiveClassifier.DEFAULT_WINDOW, this::onPrediction);
+                    liveLabel.setText("Arahkan kamera ke sampah");
+                    if (imageAnalysis == null) {
+                        bindCamera();
+                    }
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading classifier", e);
+                if (getActivity() == null) {
+                    return;
+                }
+                requireActivity().runOnUiThread(() -> {
+                    if (getView() != null) {
+                        liveLabel.setText("Model tidak tersedia");
+                    }
+                });
+            }
+        }, AppExecutors.PRIORITY_HIGH);
+    }
+
+    private void bindCamera() {
+        ListenableFuture<ProcessCameraProvider> providerFuture = ProcessCameraProvider.getInstance(requireContext());
+        providerFuture.addListener(() -> {
+            if (getView() == null) {
+                return;
+            }
+            try {
+                ProcessCameraProvider cameraProvider = providerFuture.get();
+
+                Preview preview = new Preview.Builder().build();
+                preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+                // KEEP_ONLY_LATEST: the camera never queues frames behind the analyzer
+                imageAnalysis = new ImageAnalysis.Builder()
+                        .setResolutionSelector(new ResolutionSelector.Builder()
+                                .setResolutionStrategy(new ResolutionStrategy(ANALYSIS_SIZE,
+                                        ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                                .build())
+                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                        .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888)
+                        .build();
+                imageAnalysis.setAnalyzer(analysisExecutor, this::analyze);
+
+                cameraProvider.unbindAll();
+                cameraProvider.bindToLifecycle(getViewLifecycleOwner(),
+                        CameraSelector.DEFAULT_BACK_CAMERA, preview, imageAnalysis);
+            } catch (Exception e) {
+                Log.e(TAG, "Error binding camera", e);
+                Toast.makeText(requireContext(), "Gagal membuka kamera", Toast.LENGTH_SHORT).show();
+            }
+        }, ContextCompat.getMainExecutor(requireContext()));
+    }
+
+    /**
+     * Hand the frame to the classifier, or drop it while the previous one is still being
+     * classified. The image is closed right away either way, so the camera keeps streaming.
+     */
+    private void analyze(@NonNull ImageProxy image) {
+        try {
+            LiveClassifier classifier = liveClassifier;
+            if (classifier == null) {
+                return;
+            }
+            classifier.offer(image.getWidth(), image.getHeight(),
+                    image.getImageInfo().getRotationDegrees(), frame -> copyFrame(image, frame));
+        } finally {
+            image.close();
+        }
+    }
+
+    private static void copyFrame(ImageProxy image, Bitmap frame) {
+        ImageProxy.PlaneProxy plane = image.getPlanes()[0];
+        if (plane.getRowStride() == image.getWidth() * plane.getPixelStride()) {
+            ByteBuffer pixels = plane.getBuffer();
+            pixels.rewind();
+            frame.copyPixelsFromBuffer(pixels);
+        } else {
+            // Padded rows: let CameraX strip the padding
+            Bitmap unpadded = image.toBitmap();
+            new Canvas(frame).drawBitmap(unpadded, 0, 0, null);
+            unpadded.recycle();
+        }
+    }
+
+    private void onPrediction(LiveClassifier.Prediction prediction) {
+        if (getActivity() == null) {
+            return;
+        }
+        String stats = prediction.stats.toString();
+        requireActivity().runOnUiThread(() -> {
+            if (getView() == null) {
+                return;
+            }
+            WasteClassifierModel.ClassificationResult result = prediction.result;
+            if (!prediction.settled) {
+                liveLabel.setText("Mendeteksi...");
+            } else {
+                liveLabel.setText(capitalize(result.wasteType));
+            }
+            liveCategory.setText(String.format(Locale.getDefault(), "%s · %.0f%%",
+                    result.wasteCategory, result.confidence * 100));
+            liveCategory.setAlpha(result.isHighConfidence() ? 1f : 0.6f);
+            liveStats.setText(stats);
+        });
+    }
+
+    private static String capitalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        return text.substring(0, 1).toUpperCase(Locale.getDefault()) + text.substring(1);
+    }
+
+    private void stopLiveClassification() {
+        if (liveClassifier != null) {
+            liveClassifier.stop();
+            liveClassifier = null;
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        if (imageAnalysis != null) {
+            imageAnalysis.clearAnalyzer();
+            imageAnalysis = null;
+        }
+        stopLiveClassification();
+        super.onDestroyView();
+    }
+}
@@ -26,22 +26,17 @@ import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 public class LoginFragment extends Fragment {
 
     private static final int RC_SIGN_IN = 9001;
     private FragmentLoginBinding binding;
     private AppDatabase db;
-    private ExecutorService executor;
     private FirebaseAuthManager authManager;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
         authManager = FirebaseAuthManager.getInstance(requireContext());
     }
 
@@ -181,10 +176,4 @@ public class LoginFragment extends Fragment {
         super.onDestroyView();
         binding = null; // Prevent memory leaks
     }
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        executor.shutdown();
-    }
 }
\ No newline at end of file
@@ -56,12 +56,12 @@ import com.example.glean.auth.AuthGuard;
 import com.example.glean.databinding.FragmentPloggingBinding;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.db.DaoTrash;
-import com.example.glean.model.LocationPointEntity;
 import com.example.glean.model.RecordEntity;
 import com.example.glean.model.UserEntity;
 import com.example.glean.service.LocationService;
-import com.example.glean.service.FirebaseRankingService;
-import com.example.glean.service.FirebaseDataManager;
+import com.example.glean.service.LocationTrackingEngine;
+import com.example.glean.service.SyncOutbox;
+import com.example.glean.util.AppExecutors;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.location.FusedLocationProviderClient;
@@ -85,8 +85,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 public class PloggingFragment extends Fragment implements OnMapReadyCallback {
@@ -113,10 +112,11 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
 
     private AppDatabase db;
     private int userId;
-    private ExecutorService executor;
+    private Executor executor;
     private int currentRecordId = -1;
     private Marker currentLocationMarker;
-    private LocationCallback trackingCallback;    private ConnectivityManager connectivityManager;
+    private LocationTrackingEngine trackingEngine;
+    private long lastTrackingUpdateTime = 0;    private ConnectivityManager connectivityManager;
     private ConnectivityManager.NetworkCallback networkCallback;    private BroadcastReceiver networkReceiver;
     private IntentFilter filter;
     private boolean isNetworkAvailable = false;
@@ -165,7 +165,8 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
         db = AppDatabase.getInstance(requireContext());
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(requireContext());
         userId = prefs.getInt("USER_ID", -1);
-        executor = Executors.newSingleThreadExecutor();        // Initialize auto-finish handler
+        executor = AppExecutors.getInstance().dbWriter().serial(this);
+        trackingEngine = LocationTrackingEngine.getInstance(requireContext());        // Initialize auto-finish handler
         autoFinishHandler = new Handler(Looper.getMainLooper());
         
         // Initialize movement check handler
@@ -226,6 +227,9 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
 
         restoreTrackingSession();        
         updateUIForTrackingState(isTracking);
+
+        // Location fixes come from the tracking engine in LocationService
+        trackingEngine.getUpdates().observe(getViewLifecycleOwner(), this::onTrackingUpdate);
         updateUIForNetworkState(isNetworkAvailable);          
         
         // Set up button click listeners for new UI structure        
@@ -289,7 +293,8 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
 
         updateTrashDataFromDatabase();
 
-        if (isTracking && fusedLocationClient != null && trackingCallback == null) {
+        // Restart the tracking service if the session outlived it
+        if (isTracking && !trackingEngine.isTracking()) {
             startContinuousLocationTracking();
         }
     }
@@ -516,14 +521,6 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
                 });
             }
         });
-
-        if (ActivityCompat.checkSelfPermission(requireContext(),
-                Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            Intent serviceIntent = new Intent(requireContext(), LocationService.class);
-            serviceIntent.setAction(LocationService.ACTION_START_TRACKING);
-            serviceIntent.putExtra("RECORD_ID", currentRecordId);
-            requireActivity().startService(serviceIntent);
-        }
     }    private void internalPauseTracking() {
         isTracking = false;
 
@@ -535,11 +532,6 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
 
         binding.chronometer.stop();
 
-        if (fusedLocationClient != null && trackingCallback != null) {
-            fusedLocationClient.removeLocationUpdates(trackingCallback);
-            trackingCallback = null;
-        }
-
         // Stop movement detection when pausing
         stopMovementDetection();
 
@@ -563,11 +555,6 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
         binding.chronometer.stop();
         binding.chronometer.setBase(SystemClock.elapsedRealtime());
 
-        if (fusedLocationClient != null && trackingCallback != null) {
-            fusedLocationClient.removeLocationUpdates(trackingCallback);
-            trackingCallback = null;
-        }
-
         // Stop movement detection when stopping session
         stopMovementDetection();
 
@@ -611,14 +598,6 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
                     totalDistance / 1000f, currentTrashCount, currentPoints);
             showNetworkStatusMessage(statusMessage, false);
         });
-
-        if (ActivityCompat.checkSelfPermission(requireContext(),
-                Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            Intent serviceIntent = new Intent(requireContext(), LocationService.class);
-            serviceIntent.setAction(LocationService.ACTION_START_TRACKING);
-            serviceIntent.putExtra("RECORD_ID", currentRecordId);
-            requireActivity().startService(serviceIntent);
-        }
     }
 
     private void finishPlogging() {
@@ -638,87 +617,25 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
         }
 
         if (currentRecordId != -1) {
+            int recordId = currentRecordId;
+            float distance = totalDistance;
             executor.execute(() -> {
                 try {
-                    RecordEntity record = db.recordDao().getRecordByIdSync(currentRecordId);
-                    if (record != null) {
-                        long elapsedTimeMillis = SystemClock.elapsedRealtime() - binding.chronometer.getBase();
-
-                        int finalTrashCount = db.trashDao().getTrashCountByRecordIdSync(currentRecordId);
-                        int finalPoints = db.trashDao().getTotalPointsByRecordIdSync(currentRecordId);                        record.setDuration(elapsedTimeMillis);
-                        record.setUpdatedAt(System.currentTimeMillis());
-                        record.setDistance(totalDistance);                        record.setPoints(finalPoints);                        db.recordDao().update(record);
-                        
-                        // Log the record that was just updated
-                        Log.d(TAG, "📝 Updated record ID " + currentRecordId + ":");
-                        Log.d(TAG, "   Points: " + finalPoints + ", Distance: " + totalDistance);
-                        Log.d(TAG, "   Duration: " + elapsedTimeMillis + " ms, Trash count: " + finalTrashCount);
-                        
-                        updateUserPoints(finalPoints);
-                        
-                        // Small delay to ensure database write is completed
-                        try {
-                            Thread.sleep(100); // 100ms delay
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                        
-                        // Force immediate Firebase update with the new record
-                        FirebaseDataManager.getInstance(requireContext()).forceUpdateAfterPloggingSession(
-                            (int) currentRecordId,
-                            new FirebaseDataManager.DataSyncCallback() {
-                                @Override
-                                public void onSuccess() {
-                                    Log.d(TAG, "✅ FORCE Firebase update successful for record " + currentRecordId);
-                                }
-                                
-                                @Override
-                                public void onError(String error) {
-                                    Log.e(TAG, "❌ FORCE Firebase update failed for record " + currentRecordId + ": " + error);
-                                }
-                            }
-                        );
-                        
-                        // Update Firebase ranking data
-                        FirebaseRankingService.getInstance(requireContext()).updateUserRankingData();
-                        
-                        // Debug: Check database state before Firebase update
-                        FirebaseDataManager.getInstance(requireContext()).debugCurrentDatabaseState();
-                        
-                        // Update Firebase user statistics with retry mechanism for better reliability
-                        FirebaseDataManager.getInstance(requireContext()).updateUserStatsWithRetry(new FirebaseDataManager.DataSyncCallback() {
-                            @Override
-                            public void onSuccess() {
-                                Log.d(TAG, "✅ Firebase statistics updated successfully after plogging session completed");
-                                
-                                // Verify the update was successful by reading back the data
-                                FirebaseDataManager.getInstance(requireContext()).verifyFirebaseStatsUpdate(new FirebaseDataManager.DataSyncCallback() {
-                                    @Override
-                                    public void onSuccess() {
-                                        Log.d(TAG, "✅ Firebase stats verification completed");
-                                    }
-
-                                    @Override
-                                    public void onError(String error) {
-                                        Log.w(TAG, "⚠️ Firebase stats verification failed: " + error);
-                                    }
-                                });
-                                
-                                requireActivity().runOnUiThread(() -> {
-                                    // Show success toast to user
-                                    Toast.makeText(requireContext(), "📊 Data berhasil disimpan ke cloud", Toast.LENGTH_SHORT).show();
-                                });
-                            }
+                    // The stop intent is handled later on the main thread: stop the engine here,
+                    // so no fix can be buffered after the route is sealed
+                    if (!trackingEngine.stopAndWait()) {
+                        Log.w(TAG, "⚠️ Route points still being written while sealing record " + recordId);
+                    }
+                    int sealedPoints = db.recordRouteDao().sealRoute(recordId);
+                    Log.d(TAG, "📦 Sealed " + sealedPoints + " route points for record " + recordId);
 
-                            @Override
-                            public void onError(String error) {
-                                Log.e(TAG, "❌ Failed to update Firebase statistics: " + error);
-                                requireActivity().runOnUiThread(() -> {
-                                    // Show warning toast to user but don't block the flow
-                                    Toast.makeText(requireContext(), "⚠️ Data disimpan lokal, sinkronisasi cloud nanti", Toast.LENGTH_SHORT).show();
-                                });
-                            }
-                        });
+                    // Record totals, user points and the upload job commit together
+                    RecordEntity record = SyncOutbox.getInstance(requireContext()).finishSession(recordId, distance);
+                    if (record != null) {
+                        int finalPoints = record.getPoints();
+                        int finalTrashCount = db.trashDao().getTrashCountByRecordIdSync(recordId);
+                        Log.d(TAG, "📝 Finished record ID " + recordId + ": " + finalPoints + " points, "
+                                + record.getDistance() + " m, " + record.getDuration() + " ms");
 
                         requireActivity().runOnUiThread(() -> {
                             stopTracking();
@@ -726,7 +643,7 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
                             // Show completion toast and navigate directly to summary
                             String completionMessage = String.format(Locale.getDefault(),
                                     "🎉 Plogging selesai! Jarak: %.2f km, Sampah: %d item, Poin: %d",
-                                    totalDistance / 1000f, finalTrashCount, finalPoints);
+                                    distance / 1000f, finalTrashCount, finalPoints);
                             
                             Toast.makeText(requireContext(), completionMessage, Toast.LENGTH_LONG).show();
                             
@@ -735,6 +652,7 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
                         });
                     }
                 } catch (Exception e) {
+                    Log.e(TAG, "Error finishing plogging session", e);
                     requireActivity().runOnUiThread(() -> {
                         Toast.makeText(requireContext(), "Error saving plogging data", Toast.LENGTH_SHORT).show();
                     });
@@ -743,20 +661,7 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
         }
     }
 
-    private void updateUserPoints(int pointsEarned) {
-        if (pointsEarned > 0 && userId != -1) {
-            executor.execute(() -> {                try {
-                    UserEntity user = db.userDao().getUserByIdSync(userId);
-                    if (user != null) {
-                        int currentPoints = user.getPoints();
-                        user.setPoints(currentPoints + pointsEarned);
-                        db.userDao().update(user);
-                    }
-                } catch (Exception e) {
-
-                }
-            });
-        }    }    /**
+    /**
      * Navigate to the plogging summary fragment
      */
     private void navigateToSummary(int recordId) {
@@ -854,6 +759,10 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
         if (activeRecordId != -1) {
             currentRecordId = activeRecordId;
             totalDistance = sessionDistance;
+            if (trackingEngine.isTracking() && trackingEngine.getRecordId() == activeRecordId) {
+                // The engine kept tracking while the UI was away
+                totalDistance = trackingEngine.getTotalDistance();
+            }
 
             if (wasTracking) {
                 isTracking = true;
@@ -1340,160 +1249,43 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
     }
 
     private void startContinuousLocationTracking() {
-        if (fusedLocationClient == null) return;
-
-        try {
-            LocationRequest continuousRequest = LocationRequest.create()
-                    .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)
-                    .setInterval(2000)
-                    .setFastestInterval(1000)
-                    .setSmallestDisplacement(1f);            trackingCallback = new LocationCallback() {                @Override
-                public void onLocationResult(LocationResult locationResult) {
-                    // Safety check: ensure fragment is still attached
-                    if (!isAdded() || getContext() == null || locationResult == null || !isTracking) {
-                        Log.w(TAG, "Location result received but fragment is detached or not tracking - ignoring");
-                        return;
-                    }
+        if (currentRecordId == -1) return;
 
-                    Location location = locationResult.getLastLocation();
-                    if (location != null && mMap != null) {
-                        LatLng currentLatLng = new LatLng(location.getLatitude(), location.getLongitude());
-
-                        routePoints.add(currentLatLng);
-
-                        addCurrentLocationMarker(currentLatLng, location.getAccuracy());
-
-                        // Check for location movement and start movement detection if needed
-                        checkLocationMovement(location);
-
-                        // Calculate distance from last location
-                        float distance = 0;
-                        if (lastLocation != null) {
-                            distance = lastLocation.distanceTo(location);
-                            totalDistance += distance;
-                        }                        // Save location point to database if we have an active record
-                        if (currentRecordId != -1) {
-                            final float finalDistance = distance;
-                            Log.d(TAG, "📍 Preparing to save location point for record " + currentRecordId);
-                            Log.d(TAG, "   Coordinates: (" + location.getLatitude() + ", " + location.getLongitude() + ")");
-                            Log.d(TAG, "   Distance from last: " + finalDistance + "m");
-                            Log.d(TAG, "   Total distance so far: " + totalDistance + "m");
-                            
-                            LocationPointEntity locationPoint = new LocationPointEntity(
-                                    currentRecordId,
-                                    location.getLatitude(),
-                                    location.getLongitude(),
-                                    location.getAltitude(),
-                                    System.currentTimeMillis(),
-                                    finalDistance
-                            );
-                              // Save to database in background thread with comprehensive error handling
-                            // Check if executor is available before executing
-                            if (executor != null && !executor.isShutdown() && !executor.isTerminated()) {
-                                executor.execute(() -> {
-                                    try {
-                                        Log.d(TAG, "🔄 Starting database save operation...");
-                                        
-                                        // First verify the record exists
-                                        RecordEntity record = db.recordDao().getRecordByIdSync(currentRecordId);
-                                        if (record == null) {
-                                            Log.e(TAG, "❌ CRITICAL ERROR: Record ID " + currentRecordId + " does not exist in database!");
-                                            Log.e(TAG, "   This will cause foreign key constraint violation");
-                                            Log.e(TAG, "   Location point cannot be saved");
-                                            return;
-                                        }
-                                    
-                                    // Get current count for verification
-                                    int countBefore = db.locationPointDao().getLocationPointCountByRecordId(currentRecordId);
-                                    Log.d(TAG, "   Location points before insert: " + countBefore);
-                                    
-                                    // Insert the location point
-                                    long insertedId = db.locationPointDao().insert(locationPoint);
-                                    Log.d(TAG, "✅ Location point inserted with ID: " + insertedId);
-                                    
-                                    // Verify insertion
-                                    int countAfter = db.locationPointDao().getLocationPointCountByRecordId(currentRecordId);
-                                    Log.d(TAG, "   Location points after insert: " + countAfter);
-                                    
-                                    if (countAfter == countBefore + 1) {
-                                        Log.d(TAG, "✅ Location point insertion verified successfully");
-                                    } else {
-                                        Log.e(TAG, "⚠️  Warning: Location point count didn't increase as expected");
-                                    }
-                                    
-                                    // Update total distance in record if there's movement
-                                    if (finalDistance > 0) {
-                                        Log.d(TAG, "🔄 Updating record distance...");
-                                        db.recordDao().updateDistance(currentRecordId, finalDistance);
-                                        
-                                        // Verify distance update
-                                        RecordEntity updatedRecord = db.recordDao().getRecordByIdSync(currentRecordId);
-                                        if (updatedRecord != null) {
-                                            Log.d(TAG, "✅ Record distance updated to: " + updatedRecord.getDistance() + "m");
-                                        }
-                                    }
-                                    
-                                    Log.d(TAG, "✅ Location point save operation completed successfully");
-                                    
-                                } catch (Exception e) {
-                                    Log.e(TAG, "❌ CRITICAL ERROR saving location point to database: " + e.getMessage(), e);
-                                    Log.e(TAG, "   Location: (" + location.getLatitude() + ", " + location.getLongitude() + ")");
-                                    Log.e(TAG, "   Record ID: " + currentRecordId);
-                                    Log.e(TAG, "   Distance: " + finalDistance + "m");
-                                    
-                                    // Additional debugging information
-                                    try {
-                                        RecordEntity record = db.recordDao().getRecordByIdSync(currentRecordId);
-                                        if (record == null) {
-                                            Log.e(TAG, "   Record verification: RECORD DOES NOT EXIST");
-                                        } else {
-                                            Log.e(TAG, "   Record verification: Record exists, User ID: " + record.getUserId());
-                                        }
-                                    } catch (Exception debugE) {
-                                        Log.e(TAG, "   Could not verify record existence: " + debugE.getMessage());
-                                    }                                }
-                                });
-                            } else {
-                                Log.w(TAG, "⚠️  Cannot save location point: executor not available or shutdown");
-                            }
-                        } else {
-                            Log.w(TAG, "⚠️  Cannot save location point: no active record (currentRecordId = " + currentRecordId + ")");
-                        }                        // Handle session saving and UI updates
-                        if (lastLocation != null && isAdded() && getContext() != null) {
-                            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getContext());
-                            long lastSaveTime = prefs.getLong("LAST_SAVE_TIME", 0);
-                            boolean shouldSave = System.currentTimeMillis() - lastSaveTime > 10000 || totalDistance - prefs.getFloat("LAST_SAVED_DISTANCE", 0) > 10;
-
-                            if (shouldSave) {
-                                saveTrackingSession(true, currentRecordId,
-                                        PreferenceManager.getDefaultSharedPreferences(getContext())
-                                                .getLong("SESSION_START_TIME", System.currentTimeMillis()),
-                                        totalDistance);
-
-                                prefs.edit().putLong("LAST_SAVE_TIME", System.currentTimeMillis())
-                                        .putFloat("LAST_SAVED_DISTANCE", totalDistance)
-                                        .apply();
-                            }
+        if (ActivityCompat.checkSelfPermission(requireContext(),
+                Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
+            Intent serviceIntent = new Intent(requireContext(), LocationService.class);
+            serviceIntent.setAction(LocationService.ACTION_START_TRACKING);
+            serviceIntent.putExtra(LocationService.EXTRA_RECORD_ID, currentRecordId);
+            serviceIntent.putExtra(LocationService.EXTRA_SESSION_DISTANCE, totalDistance);
+            ContextCompat.startForegroundService(requireContext(), serviceIntent);
+        }
+    }
 
-                            requireActivity().runOnUiThread(() -> {
-                                updateTrashUIAlternative();
-                            });
-                        }
+    private void onTrackingUpdate(LocationTrackingEngine.TrackingUpdate update) {
+        if (update == null || !isTracking || update.getRecordId() != currentRecordId || binding == null) {
+            return;
+        }
 
-                        lastLocation = location;
-                    }
-                }
-            };
+        // LiveData replays the latest value to new observers; skip fixes already handled
+        Location location = update.getLocation();
+        if (location.getTime() <= lastTrackingUpdateTime) {
+            return;
+        }
+        lastTrackingUpdateTime = location.getTime();
 
-            if (ActivityCompat.checkSelfPermission(requireContext(),
-                    Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-                fusedLocationClient.requestLocationUpdates(continuousRequest,
-                        trackingCallback,
-                        Looper.getMainLooper());
-            }
-        } catch (SecurityException e) {
+        LatLng currentLatLng = new LatLng(location.getLatitude(), location.getLongitude());
+        routePoints.add(currentLatLng);
 
+        if (mMap != null) {
+            addCurrentLocationMarker(currentLatLng, location.getAccuracy());
         }
+
+        // Check for location movement and start movement detection if needed
+        checkLocationMovement(location);
+
+        totalDistance = update.getTotalDistance();
+        lastLocation = location;
+        updateTrashUIAlternative();
     }
 
     private void saveTrackingSession(boolean isTracking, int recordId, long startTime, float distance) {
@@ -1509,12 +1301,6 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
     public void onDestroyView() {
         super.onDestroyView();
         try {
-            // Stop location updates to prevent callbacks after fragment is detached
-            if (fusedLocationClient != null && trackingCallback != null) {
-                fusedLocationClient.removeLocationUpdates(trackingCallback);
-                Log.d(TAG, "Location updates removed in onDestroyView");
-            }
-            
             // Hide warnings and unregister callbacks
             hideNetworkWarning();
             unregisterNetworkCallbacks();
@@ -1549,19 +1335,6 @@ public class PloggingFragment extends Fragment implements OnMapReadyCallback {
                 movementCheckHandler.removeCallbacksAndMessages(null);
             }
             
-            // Shutdown executor with proper timeout handling
-            if (executor != null && !executor.isShutdown()) {
-                executor.shutdown();
-                try {
-                    if (!executor.awaitTermination(1, java.util.concurrent.TimeUnit.SECONDS)) {
-                        executor.shutdownNow();
-                    }
-                } catch (InterruptedException e) {
-                    executor.shutdownNow();
-                    Thread.currentThread().interrupt();
-                }
-            }
-            
             // Dismiss any open dialogs
             if (networkDialog != null && networkDialog.isShowing()) {
                 networkDialog.dismiss();
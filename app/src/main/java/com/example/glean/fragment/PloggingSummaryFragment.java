@@ -37,10 +37,13 @@ import androidx.navigation.Navigation;
 import com.example.glean.R;
 import com.example.glean.databinding.FragmentPloggingSummaryBinding;
 import com.example.glean.db.AppDatabase;
-import com.example.glean.model.LocationPointEntity;
+import com.example.glean.helper.MapHelper;
 import com.example.glean.model.RecordEntity;
 import com.example.glean.model.TrashEntity;
 import com.example.glean.model.UserEntity;
+import com.example.glean.util.RouteCodec;
+import com.example.glean.util.RouteSimplifier;
+import com.example.glean.util.AppExecutors;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -49,6 +52,7 @@ import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 
 import java.io.File;
@@ -61,8 +65,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class PloggingSummaryFragment extends Fragment implements OnMapReadyCallback {    
     private static final String TAG = "PloggingSummaryFragment";
@@ -70,18 +73,18 @@ public class PloggingSummaryFragment extends Fragment implements OnMapReadyCallb
       
     private FragmentPloggingSummaryBinding binding;
     private AppDatabase db;
-    private ExecutorService executor;
+    private Executor executor;
     private int recordId;
     private GoogleMap mMap;
     
     private int currentUserId;
     private RecordEntity currentRecord;
     private Location lastKnownLocation;
-    private List<LocationPointEntity> routePoints;@Override
+    private RouteCodec.Route routePoints;@Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().dbWriter().serial(this);
         
         // Get current user ID from SharedPreferences
         SharedPreferences prefs = requireContext().getSharedPreferences("user_prefs", requireContext().MODE_PRIVATE);
@@ -204,51 +207,32 @@ public class PloggingSummaryFragment extends Fragment implements OnMapReadyCallb
                 Log.d(TAG, "   User ID: " + record.getUserId());
                 Log.d(TAG, "   Created: " + new java.util.Date(record.getCreatedAt()));
                 
-                // Load location points for the route
-                List<LocationPointEntity> locationPoints = db.locationPointDao().getLocationPointsByRecordIdSync(recordId);
+                // Load the route: sealed encoded points plus any points not yet sealed
+                RouteCodec.Route route = db.recordRouteDao().loadRoute(recordId);
                 
-                Log.d(TAG, "📍 Query result: " + (locationPoints != null ? locationPoints.size() : 0) + " location points");
+                Log.d(TAG, "📍 Query result: " + route.size() + " location points");
                 
-                if (locationPoints != null && !locationPoints.isEmpty()) {
+                if (!route.isEmpty()) {
                     Log.d(TAG, "✅ Location points found:");
-                    for (int i = 0; i < Math.min(locationPoints.size(), 5); i++) {
-                        LocationPointEntity point = locationPoints.get(i);
-                        Log.d(TAG, "   Point " + (i+1) + ": (" + point.getLatitude() + ", " + point.getLongitude() + 
-                              ") distance=" + point.getDistanceFromLast() + "m timestamp=" + new java.util.Date(point.getTimestamp()));
+                    for (int i = 0; i < Math.min(route.size(), 5); i++) {
+                        Log.d(TAG, "   Point " + (i+1) + ": (" + route.getLatitude(i) + ", " + route.getLongitude(i) + 
+                              ") distance=" + route.getDistanceFromLast(i) + "m timestamp=" + new java.util.Date(route.getTimestamp(i)));
                     }
-                    if (locationPoints.size() > 5) {
-                        Log.d(TAG, "   ... and " + (locationPoints.size() - 5) + " more points");
+                    if (route.size() > 5) {
+                        Log.d(TAG, "   ... and " + (route.size() - 5) + " more points");
                     }
                 } else {
                     Log.w(TAG, "⚠️  NO LOCATION POINTS found for record " + recordId);
-                    
-                    // Additional debugging - check if there are ANY location points in the database
-                    List<LocationPointEntity> allLocationPoints = db.locationPointDao().getAllLocationPointsSync();
-                    Log.d(TAG, "   Total location points in entire database: " + allLocationPoints.size());
-                    
-                    if (!allLocationPoints.isEmpty()) {
-                        Log.d(TAG, "   Sample location points from database:");
-                        for (int i = 0; i < Math.min(allLocationPoints.size(), 3); i++) {
-                            LocationPointEntity point = allLocationPoints.get(i);
-                            Log.d(TAG, "     Point: recordId=" + point.getRecordId() + 
-                                  " coords=(" + point.getLatitude() + ", " + point.getLongitude() + 
-                                  ") timestamp=" + new java.util.Date(point.getTimestamp()));
-                        }
-                    }
-                    
-                    // Check if the query itself is working
-                    int pointCountForRecord = db.locationPointDao().getLocationPointCountByRecordId(recordId);
-                    Log.d(TAG, "   Direct count query for record " + recordId + ": " + pointCountForRecord + " points");
                 }
                 
                 requireActivity().runOnUiThread(() -> {
                     hideMapLoading();
                     
-                    if (locationPoints != null && !locationPoints.isEmpty()) {
-                        routePoints = locationPoints;
-                        displayRouteOnMap(locationPoints);
-                        updateRouteInfo(locationPoints.size());
-                        Log.d(TAG, "✅ Successfully displayed route with " + locationPoints.size() + " points");
+                    if (!route.isEmpty()) {
+                        routePoints = route;
+                        displayRouteOnMap(route);
+                        updateRouteInfo(route.size());
+                        Log.d(TAG, "✅ Successfully displayed route with " + route.size() + " points");
                     } else {
                         Log.w(TAG, "No route data available for record " + recordId);
                         showMapError("No route data available for this plogging session");
@@ -270,23 +254,24 @@ public class PloggingSummaryFragment extends Fragment implements OnMapReadyCallb
         });
     }
 
-    private void displayRouteOnMap(List<LocationPointEntity> locationPoints) {
-        if (mMap == null || locationPoints.isEmpty()) return;
+    private void displayRouteOnMap(RouteCodec.Route route) {
+        if (mMap == null || route.isEmpty()) return;
 
         mMap.clear();
 
-        // Convert to LatLng list and create polyline
-        List<LatLng> routeLatLngs = new ArrayList<>();
-        for (LocationPointEntity point : locationPoints) {
-            routeLatLngs.add(new LatLng(point.getLatitude(), point.getLongitude()));
-        }        // Add polyline for the route with better visibility
+        // Simplify for the zoom the camera is about to fit, then create polyline
+        float fitZoom = RouteSimplifier.fitZoom(route, getResources().getDisplayMetrics().widthPixels);
+        List<LatLng> routeLatLngs = MapHelper.simplifyRoute(recordId, route, fitZoom);
+        Log.d(TAG, "Route simplified for zoom " + fitZoom + ": " + routeLatLngs.size() + "/" + route.size() + " points");
+        // Add polyline for the route with better visibility
         PolylineOptions polylineOptions = new PolylineOptions()
                 .addAll(routeLatLngs)
                 .width(12f)  // Thicker line for better visibility
                 .color(getResources().getColor(R.color.primary_color))
                 .geodesic(true)  // Better for long distances
                 .pattern(null); // Solid line
-        mMap.addPolyline(polylineOptions);
+        Polyline polyline = mMap.addPolyline(polylineOptions);
+        MapHelper.bindZoomAwareRoute(mMap, polyline, recordId, route);
 
         // Add start marker (green) with custom icon
         if (routeLatLngs.size() > 0) {
@@ -312,16 +297,12 @@ public class PloggingSummaryFragment extends Fragment implements OnMapReadyCallb
             Log.d(TAG, "Finish point: " + endPoint.latitude + ", " + endPoint.longitude);
         }
 
-        // Add distance markers every 500m for longer routes
-        if (routeLatLngs.size() > 10) {
-            addDistanceMarkers(routeLatLngs);
+        // Add distance markers every 500m for longer routes, measured along the full route
+        if (route.size() > 10) {
+            addDistanceMarkers(route);
         }// Fit camera to show entire route with proper zoom level
         if (routeLatLngs.size() > 1) {
-            LatLngBounds.Builder boundsBuilder = new LatLngBounds.Builder();
-            for (LatLng point : routeLatLngs) {
-                boundsBuilder.include(point);
-            }
-            LatLngBounds bounds = boundsBuilder.build();
+            LatLngBounds bounds = MapHelper.getRouteBounds(route);
             
             try {
                 // Calculate the distance between northeast and southwest corners
@@ -832,36 +813,33 @@ public class PloggingSummaryFragment extends Fragment implements OnMapReadyCallb
         binding = null;
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (executor != null) {
-            executor.shutdown();
-        }
-    }
 
     /**
-     * Adds distance markers every 500m along the route
-     * @param routeLatLngs List of route coordinates
+     * Adds distance markers every 500m along the route. Uses every recorded point, not the
+     * simplified polyline, so shortcuts across dropped corners don't shift the markers.
+     * @param route Full decoded route
      */
-    private void addDistanceMarkers(List<LatLng> routeLatLngs) {
-        if (mMap == null || routeLatLngs == null || routeLatLngs.size() < 2) {
+    private void addDistanceMarkers(RouteCodec.Route route) {
+        if (mMap == null || route == null || route.size() < 2) {
             Log.w(TAG, "Cannot add distance markers: map or route data not available");
             return;
         }
 
-        Log.d(TAG, "Adding distance markers for route with " + routeLatLngs.size() + " points");
+        Log.d(TAG, "Adding distance markers for route with " + route.size() + " points");
         
         float totalDistance = 0f;
         final float MARKER_INTERVAL = 500f; // 500 meters
         int markerCount = 1;
         
+        LatLng startPosition = new LatLng(route.getLatitude(0), route.getLongitude(0));
+        LatLng endPosition = new LatLng(route.getLatitude(route.size() - 1), route.getLongitude(route.size() - 1));
+        
         // Track the last marker position to avoid duplicates
-        LatLng lastMarkerPosition = routeLatLngs.get(0);
+        LatLng lastMarkerPosition = startPosition;
         
-        for (int i = 1; i < routeLatLngs.size(); i++) {
-            LatLng previousPoint = routeLatLngs.get(i - 1);
-            LatLng currentPoint = routeLatLngs.get(i);
+        for (int i = 1; i < route.size(); i++) {
+            LatLng previousPoint = new LatLng(route.getLatitude(i - 1), route.getLongitude(i - 1));
+            LatLng currentPoint = new LatLng(route.getLatitude(i), route.getLongitude(i));
             
             // Calculate distance between consecutive points
             float[] results = new float[1];
@@ -880,8 +858,7 @@ public class PloggingSummaryFragment extends Fragment implements OnMapReadyCallb
                     (markerCount * MARKER_INTERVAL - (totalDistance - results[0])) / results[0]);
                 
                 // Avoid adding markers too close to start/finish or previous markers
-                if (isValidMarkerPosition(markerPosition, lastMarkerPosition, routeLatLngs.get(0), 
-                    routeLatLngs.get(routeLatLngs.size() - 1))) {
+                if (isValidMarkerPosition(markerPosition, lastMarkerPosition, startPosition, endPosition)) {
                     
                     float distanceKm = (markerCount * MARKER_INTERVAL) / 1000f;
                     String title = String.format("%.1f km", distanceKm);
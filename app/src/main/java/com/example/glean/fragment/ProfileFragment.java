@@ -52,22 +52,23 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 import com.example.glean.model.UserStats;
 import com.example.glean.model.RankingUser;
 import com.example.glean.model.UserProfile;
+import com.example.glean.util.AppExecutors;
 
 public class ProfileFragment extends Fragment {    private static final String TAG = "ProfileFragment";    private static final int SKIN_SELECTION_REQUEST = 1005;private FragmentProfileBinding binding;
       // Firebase components
     private FirebaseAuthManager authManager;
     private FirebaseFirestore firestore;
     private com.example.glean.service.FirebaseDataManager firebaseDataManager;
+    private boolean realTimeSubscribed = false;
     
     private AppDatabase db;    private int userId;
     private UserEntity currentUser;
-    private ExecutorService executor;@Override
+    private Executor executor;@Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
           // Initialize Firebase
@@ -87,7 +88,7 @@ public class ProfileFragment extends Fragment {    private static final String T
             userId = defaultPrefs.getInt("USER_ID", -1);
         }
         
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().dbWriter().serial(this);
         
         Log.d(TAG, "ProfileFragment created with userId: " + userId);
         Log.d(TAG, "Firebase user ID: " + (authManager.isLoggedIn() ? authManager.getUserId() : "Not logged in"));
@@ -401,9 +402,14 @@ public class ProfileFragment extends Fragment {    private static final String T
      * Set up real-time listeners after fresh data is loaded
      */
     private void setupRealTimeListeners() {
+        // onResume reloads user data; the listeners of this view keep running
+        if (getView() == null || realTimeSubscribed) {
+            return;
+        }
+        realTimeSubscribed = true;
         try {
             // Subscribe to real-time user stats updates
-            firebaseDataManager.subscribeToUserStats(new com.example.glean.service.FirebaseDataManager.StatsDataCallback() {
+            firebaseDataManager.subscribeToUserStats(getViewLifecycleOwner(), new com.example.glean.service.FirebaseDataManager.StatsDataCallback() {
                 @Override
                 public void onStatsLoaded(UserStats stats) {
                     if (getActivity() != null) {
@@ -422,7 +428,7 @@ public class ProfileFragment extends Fragment {    private static final String T
             });
             
             // Subscribe to real-time user profile updates
-            firebaseDataManager.subscribeToUserProfile(new com.example.glean.service.FirebaseDataManager.ProfileDataCallback() {
+            firebaseDataManager.subscribeToUserProfile(getViewLifecycleOwner(), new com.example.glean.service.FirebaseDataManager.ProfileDataCallback() {
                 @Override
                 public void onProfileLoaded(UserProfile profile) {
                     if (getActivity() != null) {
@@ -1300,19 +1306,10 @@ public class ProfileFragment extends Fragment {    private static final String T
     public void onDestroyView() {
         super.onDestroyView();
         
-        // Stop Firebase real-time listeners
-        if (firebaseDataManager != null) {
-            Log.d(TAG, "🔥 Stopping Firebase real-time listeners");
-            firebaseDataManager.stopAllListeners();
-        }
+        // Firebase real-time listeners are bound to the view lifecycle and detach on their own
+        realTimeSubscribed = false;
         
         binding = null;
-    }    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (executor != null) {
-            executor.shutdown();
-        }
     }// Missing essential methods that are called by the UI
     private void showEditProfileDialog() {
         if (currentUser == null) {
@@ -12,6 +12,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.glean.R;
@@ -20,14 +21,20 @@ import com.example.glean.auth.FirebaseAuthManager;
 import com.example.glean.databinding.FragmentRankingTabBinding;
 import com.example.glean.model.RankingUser;
 import com.example.glean.util.AvatarManager;
+import com.example.glean.util.RankingTree;
 import com.example.glean.util.NetworkUtil;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
 import com.example.glean.service.FirebaseDataManager;
+import com.example.glean.service.LeaderboardRanker;
+import com.example.glean.service.LeaderboardService;
+import com.example.glean.service.RankService;
+import com.example.glean.service.RankingCache;
+import com.example.glean.service.RankingPager;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class RankingTabFragment extends Fragment {
     
@@ -37,8 +44,16 @@ public class RankingTabFragment extends Fragment {
     private FirebaseFirestore firestore;
     private FirebaseAuthManager authManager;
     private FirebaseDataManager dataManager;
+    private RankService rankService;
+    private RankingCache rankingCache;
+    private RankingPager rankingPager;
     private RankingAdapter adapter;
     private List<RankingUser> rankingList = new ArrayList<>();
+    private RankingTree rankingTree;
+    // Entries below the top-N shard, converted for display
+    private List<RankingUser> deepRanking = new ArrayList<>();
+    private int deepLoadedCount = 0;
+    private boolean deepRankingChanged = false;
     private boolean isPointsRanking;
     private String currentUserId;
     
@@ -55,10 +70,14 @@ public class RankingTabFragment extends Fragment {
         if (getArguments() != null) {
             isPointsRanking = getArguments().getBoolean(ARG_IS_POINTS_RANKING, true);
         }
+        rankingTree = new RankingTree(isPointsRanking ? RankingTree.BY_POINTS : RankingTree.BY_DISTANCE);
         
         firestore = FirebaseFirestore.getInstance();
         authManager = FirebaseAuthManager.getInstance(requireContext());
         dataManager = FirebaseDataManager.getInstance(requireContext());
+        rankService = RankService.getInstance();
+        rankingCache = RankingCache.getInstance(requireContext());
+        rankingPager = RankingPager.forMetric(rankingMetric(), dataManager::loadRankingPage);
         
         // Get current user ID - prioritize Firebase UID for Firebase users
         if (authManager.isLoggedIn() && authManager.getCurrentUserId() != null) {
@@ -84,19 +103,47 @@ public class RankingTabFragment extends Fragment {
         
         setupRecyclerView();
         
-        // Check network connectivity before loading data
-        if (!NetworkUtil.isNetworkAvailable(requireContext())) {
-            showNetworkError();
-            return;
-        }
-        
         // Check authentication before loading data
         if (!authManager.isLoggedIn()) {
             showAuthenticationError();
             return;
         }
         
-        loadRankingDataWithFirebase();
+        showLoading(true);
+        loadRankingFromCache();
+    }
+    
+    /**
+     * Render the cached leaderboard first, then revalidate from Firebase only when the
+     * snapshot is missing or past its TTL and the device is online.
+     */
+    private void loadRankingFromCache() {
+        rankingCache.load(rankingMetric(), (cached, ageMillis, needsRevalidation) -> {
+            if (binding == null) {
+                return;
+            }
+            
+            if (!cached.isEmpty()) {
+                Log.d(TAG, "📦 Rendering " + cached.size() + " cached ranking entries, age " + ageMillis + "ms");
+                renderRanking(cached);
+            }
+            
+            if (!needsRevalidation) {
+                return;
+            }
+            
+            // Check network connectivity before loading data
+            if (!NetworkUtil.isNetworkAvailable(requireContext())) {
+                if (cached.isEmpty()) {
+                    showNetworkError();
+                } else {
+                    Log.d(TAG, "📦 Offline - keeping cached ranking");
+                }
+                return;
+            }
+            
+            loadRankingDataWithFirebase();
+        });
     }
     
     private void showNetworkError() {
@@ -114,189 +161,95 @@ public class RankingTabFragment extends Fragment {
     }
     
     private void setupRecyclerView() {
-        adapter = new RankingAdapter(requireContext(), rankingList, isPointsRanking, currentUserId);
+        adapter = new RankingAdapter(requireContext(), isPointsRanking, currentUserId);
         binding.recyclerViewRanking.setLayoutManager(new LinearLayoutManager(getContext()));
         binding.recyclerViewRanking.setAdapter(adapter);
-    }
-    
-    private void loadRankingData() {
-        showLoading(true);
         
-        // Determine which field to order by
-        String orderByField = isPointsRanking ? "totalPoints" : "totalDistance";
-        
-        firestore.collection("users")
-                .orderBy(orderByField, Query.Direction.DESCENDING)
-                .limit(100) // Top 100 users
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    rankingList.clear();
-                    
-                    int position = 1;
-                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        try {
-                            RankingUser user = createRankingUserFromDocument(document, position);
-                            if (user != null) {
-                                rankingList.add(user);
-                                position++;
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error parsing user document: " + document.getId(), e);
-                        }
-                    }
-                    
-                    updateUI();
-                    loadCurrentUserRanking();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading ranking data", e);
-                    showError("Gagal memuat data ranking");
-                });
+        // Fetch the next page before the user reaches the end of the list
+        binding.recyclerViewRanking.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) {
+                    return;
+                }
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager != null
+                        && RankingPager.shouldPrefetch(layoutManager.findLastVisibleItemPosition(), adapter.getItemCount())) {
+                    loadNextRankingPage();
+                }
+            }
+        });
     }
     
-    private RankingUser createRankingUserFromDocument(DocumentSnapshot document, int position) {
-        try {
-            String userId = document.getId();
-            String username = document.getString("username");
-            String profileImageUrl = document.getString("profileImageUrl");
-            
-            // Handle different data types for points and distance
-            int totalPoints = 0;
-            Object pointsObj = document.get("totalPoints");
-            if (pointsObj instanceof Number) {
-                totalPoints = ((Number) pointsObj).intValue();
-            }
-            
-            double totalDistance = 0.0;
-            Object distanceObj = document.get("totalDistance");
-            if (distanceObj instanceof Number) {
-                totalDistance = ((Number) distanceObj).doubleValue();
-            }
-            
-            int trashCount = 0;
-            Object trashObj = document.get("totalTrashCollected");
-            if (trashObj instanceof Number) {
-                trashCount = ((Number) trashObj).intValue();
+    private void loadNextRankingPage() {
+        boolean requested = rankingPager.loadNextPage(new RankingPager.PagerListener() {
+            @Override
+            public void onPageAppended(List<RankingUser> loaded) {
+                if (binding == null) {
+                    return;
+                }
+                appendDeepRanking(loaded);
+                publishRankingList();
             }
             
-            int badgeCount = 0;
-            Object badgeObj = document.get("badgeCount");
-            if (badgeObj instanceof Number) {
-                badgeCount = ((Number) badgeObj).intValue();
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, "❌ Failed to load ranking page: " + error);
             }
-            
-            RankingUser user = new RankingUser(userId, username, profileImageUrl, 
-                    totalPoints, totalDistance, trashCount, badgeCount);
-            user.setPosition(position);
-            
-            return user;
-        } catch (Exception e) {
-            Log.e(TAG, "Error creating RankingUser from document", e);
-            return null;
+        });
+        if (requested) {
+            Log.d(TAG, "📄 Requested ranking page after " + adapter.getItemCount() + " entries");
         }
     }
     
-    private void loadCurrentUserRanking() {
-        if (currentUserId == null || currentUserId.isEmpty()) {
-            // Hide current user card if not logged in
-            binding.myRankingCard.setVisibility(View.GONE);
-            return;
-        }
-        
-        // Find current user in ranking list
-        RankingUser currentUser = null;
-        int userPosition = -1;
-        
-        for (int i = 0; i < rankingList.size(); i++) {
-            if (rankingList.get(i).getUserId().equals(currentUserId)) {
-                currentUser = rankingList.get(i);
-                userPosition = i + 1;
-                break;
+    private void appendDeepRanking(List<RankingUser> loaded) {
+        for (int i = deepLoadedCount; i < loaded.size(); i++) {
+            RankingUser localUser = convertFirebaseUserToLocal(loaded.get(i));
+            if (localUser != null) {
+                deepRanking.add(localUser);
+                deepRankingChanged = true;
             }
         }
-        
-        if (currentUser != null) {
-            updateCurrentUserCard(currentUser, userPosition);
-        } else {
-            // User not in top 100, get their actual ranking
-            loadUserActualRanking();
-        }
+        deepLoadedCount = loaded.size();
     }
     
-    private void loadUserActualRanking() {
-        String orderByField = isPointsRanking ? "totalPoints" : "totalDistance";
-        
-        firestore.collection("users")
-                .document(currentUserId)
-                .get()
-                .addOnSuccessListener(userDoc -> {
-                    if (userDoc.exists()) {
-                        RankingUser currentUser = createRankingUserFromDocument(userDoc, 0);
-                        if (currentUser != null) {
-                            // Count users with higher score to get actual position
-                            Object userScore = userDoc.get(orderByField);
-                            double userScoreValue = userScore instanceof Number ? ((Number) userScore).doubleValue() : 0;
-                            
-                            firestore.collection("users")
-                                    .whereGreaterThan(orderByField, userScoreValue)
-                                    .get()
-                                    .addOnSuccessListener(higherScoreQuery -> {
-                                        int userPosition = higherScoreQuery.size() + 1;
-                                        updateCurrentUserCard(currentUser, userPosition);
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        Log.e(TAG, "Error getting user position", e);
-                                        updateCurrentUserCard(currentUser, -1);
-                                    });
-                        }
-                    } else {
-                        binding.myRankingCard.setVisibility(View.GONE);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading current user data", e);
-                    binding.myRankingCard.setVisibility(View.GONE);
-                });
+    /**
+     * Submit the top-N tree followed by the loaded pages below it.
+     */
+    private void publishRankingList() {
+        List<RankingUser> list = rankingTree.toList();
+        for (RankingUser deepUser : deepRanking) {
+            // Users who climbed into the top-N are shown there
+            if (rankingTree.find(deepUser.getUserId()) != null) {
+                continue;
+            }
+            RankingUser copy = new RankingUser(deepUser);
+            copy.setPosition(list.size() + 1);
+            list.add(copy);
+        }
+        rankingList = list;
+        deepRankingChanged = false;
+        adapter.updateData(rankingList);
     }
     
-    private void updateCurrentUserCard(RankingUser user, int position) {
-        binding.myRankingCard.setVisibility(View.VISIBLE);
-        
-        if (position > 0) {
-            binding.tvMyPosition.setText("#" + position);
-        } else {
-            binding.tvMyPosition.setText("#--");
+    /**
+     * Pages below the shard only exist once the shard is full; they start at its cutoff score.
+     */
+    private void startPagingBelowShard() {
+        int shardSize = rankingTree.size();
+        if (shardSize < LeaderboardService.TOP_N) {
+            return;
         }
-        
-        binding.tvMyUsername.setText(user.getUsername() != null ? user.getUsername() : "You");
-        
-        if (isPointsRanking) {
-            binding.tvMyScore.setText(user.getTotalPoints() + " poin");
-        } else {
-            binding.tvMyScore.setText(String.format("%.1f km", user.getTotalDistance() / 1000.0));
+        RankingUser last = rankingTree.get(shardSize - 1);
+        Object cutoff = isPointsRanking ? (Object) last.getTotalPoints() : (Object) last.getTotalDistance();
+        Set<String> shardIds = new HashSet<>();
+        for (int i = 0; i < shardSize; i++) {
+            shardIds.add(rankingTree.get(i).getUserId());
         }
+        rankingPager.start(cutoff, shardIds);
         
-        binding.tvMyStats.setText(user.getFormattedStats());
-          // Load profile image using activeAvatar (local assets only)
-        String activeAvatar = user.getActiveAvatar();
-        if (activeAvatar != null && !activeAvatar.trim().isEmpty()) {
-            // Use AvatarManager to load local avatar
-            AvatarManager.loadAvatarIntoImageView(requireContext(), binding.ivMyProfileImage, activeAvatar);
-        } else {
-            // Fallback to default avatar when activeAvatar is missing
-            binding.ivMyProfileImage.setImageResource(R.drawable.avatar_default);
-        }
-    }
-    
-    private void updateUI() {
-        showLoading(false);
-        
-        if (rankingList.isEmpty()) {
-            showEmpty(true);
-        } else {
-            showEmpty(false);
-            adapter.updateData(rankingList);
-        }
+        // Pages kept from an earlier visit are shown straight away
+        appendDeepRanking(rankingPager.getLoaded());
     }
     
     private void showLoading(boolean show) {
@@ -311,62 +264,42 @@ public class RankingTabFragment extends Fragment {
         binding.progressBar.setVisibility(View.GONE);
     }
     
-    private void showError(String message) {
-        showLoading(false);
-        showEmpty(true);
-        // You can customize error display here
-        Log.e(TAG, message);
-    }
-      private void loadRankingDataWithFirebase() {
-        showLoading(true);
+    private void loadRankingDataWithFirebase() {
+        // Keep showing the cached ranking while revalidating
+        if (rankingList.isEmpty()) {
+            showLoading(true);
+        }
         
         Log.d(TAG, "🏆 Starting Firebase ranking data load for " + (isPointsRanking ? "points" : "distance") + " ranking");        
         // Subscribe to real-time ranking updates
-        dataManager.subscribeToRanking(new FirebaseDataManager.RankingDataCallback() {
+        dataManager.subscribeToRanking(getViewLifecycleOwner(), rankingMetric(), new FirebaseDataManager.RankingDataCallback() {
             @Override
             public void onRankingLoaded(List<RankingUser> ranking) {
                 requireActivity().runOnUiThread(() -> {
-                    Log.d(TAG, "🏆 Received ranking data: " + ranking.size() + " users");
-                      // Convert Firebase ranking data to local ranking data
-                    List<RankingUser> localRanking = convertFirebaseRankingToLocal(ranking);
-                    
-                    // Sort based on current tab
-                    if (isPointsRanking) {
-                        localRanking.sort((a, b) -> Integer.compare(b.getTotalPoints(), a.getTotalPoints()));
-                        Log.d(TAG, "🏆 Sorted by points (descending)");
-                    } else {
-                        localRanking.sort((a, b) -> Double.compare(b.getTotalDistance(), a.getTotalDistance()));
-                        Log.d(TAG, "🏆 Sorted by distance (descending)");
-                    }
-                    
-                    // Update position numbers after sorting
-                    for (int i = 0; i < localRanking.size(); i++) {
-                        localRanking.get(i).setPosition(i + 1);
-                    }
-                    
-                    rankingList.clear();
-                    rankingList.addAll(localRanking);
-                    adapter.notifyDataSetChanged();
-                    
-                    showLoading(false);
-                    
-                    if (rankingList.isEmpty()) {
-                        showEmpty(true);
-                        Log.w(TAG, "⚠️ No ranking data to display");
-                    } else {
-                        showEmpty(false);
-                        Log.d(TAG, "✅ Ranking UI updated with " + rankingList.size() + " users");
+                    if (binding == null) {
+                        return;
                     }
+                    Log.d(TAG, "🏆 Received ranking data: " + ranking.size() + " users");
                     
-                    // Update current user position
-                    updateCurrentUserPosition();
+                    renderRanking(ranking);
+                    // Cache the delivery as received so cached and live rankings go through
+                    // the same conversion; every delivery revalidates, changed or not
+                    rankingCache.store(rankingMetric(), ranking);
                 });
             }
             
             @Override
             public void onError(String error) {
                 requireActivity().runOnUiThread(() -> {
+                    if (binding == null) {
+                        return;
+                    }
                     Log.e(TAG, "❌ Firebase ranking error: " + error);
+                    if (!rankingList.isEmpty()) {
+                        // Stale data beats an empty screen
+                        Log.w(TAG, "⚠️ Keeping cached ranking after error");
+                        return;
+                    }
                     showLoading(false);
                     showEmpty(true);
                     Toast.makeText(requireContext(), 
@@ -384,62 +317,105 @@ public class RankingTabFragment extends Fragment {
         Log.d(TAG, "🔄 Current user is Firebase user - skipping local data sync to prevent overwriting Firebase data");
     }
     
-    private List<RankingUser> convertFirebaseRankingToLocal(List<RankingUser> firebaseRanking) {
-        List<RankingUser> localRanking = new ArrayList<>();
+    /**
+     * Apply a ranking to the tree and refresh the list and the current user card.
+     *
+     * @return number of changed entries
+     */
+    private int renderRanking(List<RankingUser> ranking) {
+        // Only entries that changed touch the tree and the adapter
+        int changes = applyRankingChanges(ranking);
+        startPagingBelowShard();
+        if (changes > 0 || deepRankingChanged || adapter.getCurrentList().isEmpty()) {
+            publishRankingList();
+        }
+        Log.d(TAG, "🏆 Applied " + changes + " ranking changes");
+        
+        showLoading(false);
+        
+        if (rankingList.isEmpty()) {
+            showEmpty(true);
+            Log.w(TAG, "⚠️ No ranking data to display");
+        } else {
+            showEmpty(false);
+            Log.d(TAG, "✅ Ranking UI updated with " + rankingList.size() + " users");
+        }
         
-        Log.d(TAG, "🔄 Converting " + firebaseRanking.size() + " Firebase users to local ranking format");
+        // Update current user position
+        updateCurrentUserPosition();
+        return changes;
+    }
+    
+    /**
+     * Apply a leaderboard snapshot to the ranking tree as a change set: entries whose
+     * displayed stats changed are re-inserted and entries that left the board are removed.
+     *
+     * @return number of changed entries
+     */
+    private int applyRankingChanges(List<RankingUser> firebaseRanking) {
+        Set<String> present = new HashSet<>();
+        int changes = 0;
         
         for (RankingUser fbUser : firebaseRanking) {
-            try {
-                // Enhanced logging to debug the conversion issue
-                Log.d(TAG, "🔄 Processing Firebase user: " + fbUser.getUserId());
-                Log.d(TAG, "   - Username: " + fbUser.getUsername());
-                Log.d(TAG, "   - FullName: " + fbUser.getFullName());
-                Log.d(TAG, "   - Points: " + fbUser.getTotalPoints());
-                Log.d(TAG, "   - Distance: " + fbUser.getTotalDistance());
-                Log.d(TAG, "   - Trash: " + fbUser.getTotalTrashCollected());                Log.d(TAG, "   - PhotoURL: " + fbUser.getPhotoURL());
-                Log.d(TAG, "   - ActiveAvatar: " + fbUser.getActiveAvatar());
-                
-                // Use the best display name - prioritize fullName (nama) over username
-                String displayName = fbUser.getFullName();
-                if (displayName == null || displayName.trim().isEmpty()) {
-                    displayName = fbUser.getUsername();
-                }
-                if (displayName == null || displayName.trim().isEmpty()) {
-                    displayName = "User " + fbUser.getUserId().substring(0, Math.min(8, fbUser.getUserId().length()));
-                }
-                
-                // Get photo URL and activeAvatar
-                String photoURL = fbUser.getPhotoURL();
-                if (photoURL == null) photoURL = "";
-                
-                String activeAvatar = fbUser.getActiveAvatar();
-                if (activeAvatar == null || activeAvatar.trim().isEmpty()) {
-                    activeAvatar = "default"; // Default avatar if not set
-                }
-                  RankingUser localUser = new RankingUser(
-                    fbUser.getUserId(),
-                    displayName,  // Use the best name (nama field preferred)
-                    photoURL,     // Use photoURL from Firebase
-                    fbUser.getTotalPoints(),
-                    fbUser.getTotalDistance(),
-                    fbUser.getTotalTrashCollected(),
-                    0 // badge count - will be simplified in display
-                );
-                
-                // Set activeAvatar for local assets
-                localUser.setActiveAvatar(activeAvatar);
-                
-                localRanking.add(localUser);
-                
-                Log.v(TAG, "✅ Converted user: " + displayName + " (Points: " + fbUser.getTotalPoints() + ", Distance: " + fbUser.getTotalDistance() + ", Photo: " + photoURL + ")");
-            } catch (Exception e) {
-                Log.w(TAG, "⚠️ Error converting Firebase user to local format: " + fbUser.getUserId(), e);
+            RankingUser localUser = convertFirebaseUserToLocal(fbUser);
+            if (localUser == null) {
+                continue;
+            }
+            present.add(localUser.getUserId());
+            if (!localUser.hasSameStats(rankingTree.find(localUser.getUserId()))) {
+                rankingTree.upsert(localUser);
+                changes++;
             }
         }
         
-        Log.d(TAG, "✅ Conversion complete: " + localRanking.size() + " users converted successfully");
-        return localRanking;
+        if (present.size() < rankingTree.size()) {
+            for (RankingUser user : rankingTree.toList()) {
+                if (!present.contains(user.getUserId())) {
+                    rankingTree.remove(user.getUserId());
+                    changes++;
+                }
+            }
+        }
+        return changes;
+    }
+    
+    private RankingUser convertFirebaseUserToLocal(RankingUser fbUser) {
+        try {
+            // Use the best display name - prioritize fullName (nama) over username
+            String displayName = fbUser.getFullName();
+            if (displayName == null || displayName.trim().isEmpty()) {
+                displayName = fbUser.getUsername();
+            }
+            if (displayName == null || displayName.trim().isEmpty()) {
+                displayName = "User " + fbUser.getUserId().substring(0, Math.min(8, fbUser.getUserId().length()));
+            }
+            
+            // Get photo URL and activeAvatar
+            String photoURL = fbUser.getPhotoURL();
+            if (photoURL == null) photoURL = "";
+            
+            String activeAvatar = fbUser.getActiveAvatar();
+            if (activeAvatar == null || activeAvatar.trim().isEmpty()) {
+                activeAvatar = "default"; // Default avatar if not set
+            }
+            
+            RankingUser localUser = new RankingUser(
+                fbUser.getUserId(),
+                displayName,  // Use the best name (nama field preferred)
+                photoURL,     // Use photoURL from Firebase
+                fbUser.getTotalPoints(),
+                fbUser.getTotalDistance(),
+                fbUser.getTotalTrashCollected(),
+                0 // badge count - will be simplified in display
+            );
+            
+            // Set activeAvatar for local assets
+            localUser.setActiveAvatar(activeAvatar);
+            return localUser;
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Error converting Firebase user to local format: " + fbUser.getUserId(), e);
+            return null;
+        }
     }
       private void updateCurrentUserPosition() {
         if (currentUserId == null || currentUserId.isEmpty()) {
@@ -450,18 +426,12 @@ public class RankingTabFragment extends Fragment {
         
         Log.d(TAG, "🔍 Looking for current user in ranking list: " + currentUserId);
         
-        // Find current user position in ranking
-        int currentUserPosition = -1;
-        RankingUser currentRankingUser = null;
-        
-        for (int i = 0; i < rankingList.size(); i++) {
-            RankingUser user = rankingList.get(i);
-            if (currentUserId.equals(user.getUserId())) {
-                currentUserPosition = i + 1; // Position is 1-based
-                currentRankingUser = user;
-                Log.d(TAG, "✅ Found current user at position " + currentUserPosition);
-                break;
-            }        }
+        // Find current user position in ranking (O(log n) in the ranking tree)
+        int currentUserPosition = rankingTree.rankOf(currentUserId);
+        RankingUser currentRankingUser = rankingTree.find(currentUserId);
+        if (currentUserPosition > 0) {
+            Log.d(TAG, "✅ Found current user at position " + currentUserPosition);
+        }
         
         // Update UI with current user position
         if (currentUserPosition > 0 && currentRankingUser != null) {
@@ -597,6 +567,9 @@ public class RankingTabFragment extends Fragment {
                                     }
                                     
                                     Log.d(TAG, "✅ Current user stats updated - Points: " + userPoints + ", Distance: " + userDistance + ", Name: " + username);
+                                    
+                                    // Position outside the top list from a count aggregate
+                                    showCurrentUserRank(isPointsRanking ? userPoints : userDistance);
                                 })
                                 .addOnFailureListener(statsError -> {
                                     Log.e(TAG, "❌ Error fetching user_stats, using fallback data", statsError);
@@ -615,14 +588,58 @@ public class RankingTabFragment extends Fragment {
                     binding.myRankingCard.setVisibility(View.GONE);                });
     }
 
+    private String rankingMetric() {
+        return isPointsRanking ? LeaderboardRanker.METRIC_POINTS : LeaderboardRanker.METRIC_DISTANCE;
+    }
+    
+    private void showCurrentUserRank(double score) {
+        rankService.getRank(rankingMetric(), score, currentUserId, new RankService.RankCallback() {
+            @Override
+            public void onRankLoaded(int rank, boolean exact) {
+                if (binding == null) {
+                    return;
+                }
+                // The list may have reached the user meanwhile; its position wins
+                int listPosition = listPositionOf(currentUserId);
+                if (listPosition > 0) {
+                    binding.tvMyPosition.setText("#" + listPosition);
+                    return;
+                }
+                // Estimated ranks come from the score histogram and are marked with ~
+                binding.tvMyPosition.setText((exact ? "#" : "~#") + rank);
+            }
+            
+            @Override
+            public void onError(String error) {
+                Log.w(TAG, "⚠️ Could not load current user rank: " + error);
+            }
+        });
+    }
+
+    /**
+     * Position of a user in the shown list, the top-N tree or the pages loaded below it.
+     *
+     * @return 1-based position, or 0 when the list has not reached the user
+     */
+    private int listPositionOf(String userId) {
+        int treePosition = rankingTree.rankOf(userId);
+        if (treePosition > 0) {
+            return treePosition;
+        }
+        for (int i = rankingTree.size(); i < rankingList.size(); i++) {
+            RankingUser user = rankingList.get(i);
+            if (userId != null && userId.equals(user.getUserId())) {
+                return user.getPosition();
+            }
+        }
+        return 0;
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
         
-        // Stop Firebase listeners to prevent memory leaks
-        if (dataManager != null) {
-            dataManager.stopAllListeners();
-        }
+        // The ranking listener is bound to the view lifecycle and detaches on its own
         
         binding = null;
     }
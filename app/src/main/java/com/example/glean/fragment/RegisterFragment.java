@@ -24,21 +24,16 @@ import com.example.glean.model.UserEntity;
 import com.example.glean.util.PasswordValidator;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 public class RegisterFragment extends Fragment {
 
     private FragmentRegisterBinding binding;
     private AppDatabase db;
-    private ExecutorService executor;
     private FirebaseAuthManager authManager;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
         authManager = FirebaseAuthManager.getInstance(requireContext());
     }
 
@@ -174,10 +169,4 @@ public class RegisterFragment extends Fragment {
         super.onDestroyView();
         binding = null; // Prevent memory leaks
     }
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        executor.shutdown();
-    }
 }
\ No newline at end of file
@@ -16,8 +16,11 @@ import androidx.navigation.Navigation;
 import com.example.glean.R;
 import com.example.glean.databinding.FragmentRouteMapBinding;
 import com.example.glean.db.AppDatabase;
-import com.example.glean.model.LocationPointEntity;
+import com.example.glean.helper.MapHelper;
 import com.example.glean.model.RecordEntity;
+import com.example.glean.util.RouteCodec;
+import com.example.glean.util.RouteSimplifier;
+import com.example.glean.util.AppExecutors;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -26,15 +29,13 @@ import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class RouteMapFragment extends Fragment implements OnMapReadyCallback {
     private static final String TAG = "RouteMapFragment";
@@ -43,10 +44,10 @@ public class RouteMapFragment extends Fragment implements OnMapReadyCallback {
     private FragmentRouteMapBinding binding;
     private GoogleMap mMap;
     private AppDatabase db;
-    private ExecutorService executor;
+    private Executor executor;
     private int recordId = -1;
     private RecordEntity recordData;
-    private List<LatLng> routePoints;
+    private RouteCodec.Route routePoints;
 
     public static RouteMapFragment newInstance(int recordId) {
         RouteMapFragment fragment = new RouteMapFragment();
@@ -60,7 +61,7 @@ public class RouteMapFragment extends Fragment implements OnMapReadyCallback {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().io().serialUntilDestroyed(this);
 
         if (getArguments() != null) {
             recordId = getArguments().getInt(ARG_RECORD_ID, -1);
@@ -118,13 +119,7 @@ public class RouteMapFragment extends Fragment implements OnMapReadyCallback {
                     });
                     return;
                 }                // Load location points for this record
-                List<LocationPointEntity> locationPoints = db.locationPointDao().getLocationPointsByRecordIdSync(recordId);
-                
-                // Convert LocationPointEntity to LatLng
-                routePoints = new ArrayList<>();
-                for (LocationPointEntity point : locationPoints) {
-                    routePoints.add(new LatLng(point.getLatitude(), point.getLongitude()));
-                }
+                routePoints = db.recordRouteDao().loadRoute(recordId);
 
                 requireActivity().runOnUiThread(() -> {
                     updateUI();
@@ -194,8 +189,9 @@ public class RouteMapFragment extends Fragment implements OnMapReadyCallback {
             // Clear existing markers and polylines
             mMap.clear();
 
-            LatLng startPoint = routePoints.get(0);
-            LatLng endPoint = routePoints.get(routePoints.size() - 1);
+            int last = routePoints.size() - 1;
+            LatLng startPoint = new LatLng(routePoints.getLatitude(0), routePoints.getLongitude(0));
+            LatLng endPoint = new LatLng(routePoints.getLatitude(last), routePoints.getLongitude(last));
 
             // Add start marker (green)
             mMap.addMarker(new MarkerOptions()
@@ -211,22 +207,19 @@ public class RouteMapFragment extends Fragment implements OnMapReadyCallback {
                     .snippet("Plogging berakhir di sini")
                     .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
 
-            // Draw route polyline
+            // Draw route polyline, simplified for the zoom the camera is about to fit
+            float fitZoom = RouteSimplifier.fitZoom(routePoints, getResources().getDisplayMetrics().widthPixels);
             PolylineOptions polylineOptions = new PolylineOptions()
-                    .addAll(routePoints)
+                    .addAll(MapHelper.simplifyRoute(recordId, routePoints, fitZoom))
                     .width(8f)
                     .color(getResources().getColor(R.color.primary_color, null))
                     .geodesic(true);
 
-            mMap.addPolyline(polylineOptions);
+            Polyline polyline = mMap.addPolyline(polylineOptions);
+            MapHelper.bindZoomAwareRoute(mMap, polyline, recordId, routePoints);
 
             // Fit camera to show entire route
-            LatLngBounds.Builder boundsBuilder = new LatLngBounds.Builder();
-            for (LatLng point : routePoints) {
-                boundsBuilder.include(point);
-            }
-
-            LatLngBounds bounds = boundsBuilder.build();
+            LatLngBounds bounds = MapHelper.getRouteBounds(routePoints);
             int padding = 100; // pixels
             mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, padding));
 
@@ -260,9 +253,6 @@ public class RouteMapFragment extends Fragment implements OnMapReadyCallback {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
         binding = null;
     }
 }
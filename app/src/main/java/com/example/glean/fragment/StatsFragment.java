@@ -25,10 +25,12 @@ import com.example.glean.databinding.FragmentStatsBinding;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.model.RecordEntity;
 import com.example.glean.model.TrashEntity;
+import com.example.glean.model.UserAggregateEntity;
 import com.example.glean.model.UserEntity;
 import com.example.glean.model.UserStats;
 import com.example.glean.service.FirebaseDataManager;
 import com.example.glean.util.NetworkUtil;
+import com.example.glean.util.AppExecutors;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Description;
 import com.github.mikephil.charting.components.XAxis;
@@ -46,25 +48,26 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class StatsFragment extends Fragment {
 
     private FragmentStatsBinding binding;
     private AppDatabase db;
-    private ExecutorService executor;
+    private Executor executor;
     private int userId = -1;
     private UserEntity user;
+    private UserAggregateEntity aggregate;
     private List<RecordEntity> recordList = new ArrayList<>();
     private List<TrashEntity> trashList = new ArrayList<>();
     private boolean dataLoaded = false;
     private FirebaseAuthManager authManager;
-    private FirebaseDataManager dataManager;    @Override
+    private FirebaseDataManager dataManager;
+    private boolean statsSubscribed = false;    @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().io().serialUntilDestroyed(this);
         authManager = FirebaseAuthManager.getInstance(requireContext());
         dataManager = FirebaseDataManager.getInstance(requireContext());
         
@@ -140,6 +143,11 @@ public class StatsFragment extends Fragment {
                 if (userEntity != null) {
                     user = userEntity;
                 }
+            });
+            // Load running totals maintained by the database
+            db.userAggregateDao().getAggregateByUserId(userId).observe(getViewLifecycleOwner(), totals -> {
+                aggregate = totals;
+                updateUserStats();
             });
               // Load record data
             db.recordDao().getRecordsByUserId(userId).observe(getViewLifecycleOwner(), records -> {
@@ -187,19 +195,24 @@ public class StatsFragment extends Fragment {
             updateTrashAnalytics();
         }
     }    private void updateUserStats() {
-        // Calculate statistics from recordList
+        // Totals come from the user_aggregates row; fall back to recordList until it loads
         int totalRuns = recordList.size();
         int totalPoints = user != null ? user.getPoints() : 0;
-          // Calculate total distance
         float totalDistance = 0;
         long totalDuration = 0;
         
         // Calculate weekly distance (last 7 days)
         float weeklyDistance = calculateWeeklyDistance();
         
-        for (RecordEntity record : recordList) {
-            totalDistance += record.getDistance();
-            totalDuration += record.getDuration();
+        if (aggregate != null) {
+            totalRuns = aggregate.getTotalSessions();
+            totalDistance = (float) aggregate.getTotalDistance();
+            totalDuration = aggregate.getTotalDuration();
+        } else {
+            for (RecordEntity record : recordList) {
+                totalDistance += record.getDistance();
+                totalDuration += record.getDuration();
+            }
         }
           // Update UI with real user data
         binding.tvTotalRuns.setText(String.valueOf(totalRuns));
@@ -212,8 +225,8 @@ public class StatsFragment extends Fragment {
         binding.tvAchievements.setText(String.valueOf(badgeCount));
         
         // Calculate average run time
-        if (!recordList.isEmpty()) {
-            long avgDuration = totalDuration / recordList.size();
+        if (totalRuns > 0) {
+            long avgDuration = totalDuration / totalRuns;
             binding.tvAverageTime.setText(formatDuration(avgDuration / 1000)); // Convert to seconds
         } else {
             binding.tvAverageTime.setText("0 menit");
@@ -547,22 +560,13 @@ public class StatsFragment extends Fragment {
         }
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
-    }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
         
-        // Stop Firebase listeners to prevent memory leaks
-        if (dataManager != null) {
-            dataManager.stopAllListeners();
-        }
+        // Firebase listeners are bound to the view lifecycle and detach on their own
+        statsSubscribed = false;
         
         if (binding != null) {
             binding = null;
@@ -605,8 +609,13 @@ public class StatsFragment extends Fragment {
      */
     private void setupRealTimeStatsSync() {
         Log.d("StatsFragment", "🔥 Setting up real-time Firebase stats sync with local data merge");
+        // Refreshes re-run the sync; the listener of this view keeps running
+        if (getView() == null || statsSubscribed) {
+            return;
+        }
+        statsSubscribed = true;
           // Subscribe to real-time stats updates
-        dataManager.subscribeToUserStats(new FirebaseDataManager.StatsDataCallback() {
+        dataManager.subscribeToUserStats(getViewLifecycleOwner(), new FirebaseDataManager.StatsDataCallback() {
             @Override
             public void onStatsLoaded(UserStats stats) {
                 // Check if fragment is still attached to activity
@@ -661,11 +670,11 @@ public class StatsFragment extends Fragment {
             }
         });
         
-        // Sync local data to Firebase (background operation)
+        // Pull changes since the last sync (background operation)
         dataManager.syncAllUserData(new FirebaseDataManager.DataSyncCallback() {
             @Override
             public void onSuccess() {
-                Log.d("StatsFragment", "✅ Local data synced to Firebase successfully");
+                Log.d("StatsFragment", "✅ Firebase changes merged into local data");
             }
             
             @Override
@@ -757,6 +766,10 @@ public class StatsFragment extends Fragment {
                     Log.d("StatsFragment", "✅ Local user data loaded: " + user.getPoints() + " points");
                 }
             });
+            db.userAggregateDao().getAggregateByUserId(userId).observe(getViewLifecycleOwner(), totals -> {
+                aggregate = totals;
+                updateUserStats();
+            });
               
             // Load record data
             db.recordDao().getRecordsByUserId(userId).observe(getViewLifecycleOwner(), records -> {
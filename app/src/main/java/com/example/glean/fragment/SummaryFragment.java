@@ -27,6 +27,7 @@ import com.example.glean.db.AppDatabase;
 import com.example.glean.model.RecordEntity;
 import com.example.glean.model.TrashEntity;
 import com.example.glean.model.UserEntity;
+import com.example.glean.util.AppExecutors;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 
@@ -36,13 +37,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class SummaryFragment extends Fragment {
 
     private FragmentSummaryBinding binding;    private AppDatabase db;
-    private ExecutorService executor;
+    private Executor executor;
     private int recordId;
     private RecordEntity currentRecord;
     private Location lastKnownLocation;
@@ -50,7 +50,7 @@ public class SummaryFragment extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();// Get current user ID from SharedPreferences with fallback pattern
+        executor = AppExecutors.getInstance().io().serialUntilDestroyed(this);// Get current user ID from SharedPreferences with fallback pattern
         SharedPreferences prefs = requireActivity().getSharedPreferences("USER_PREFS", 0);
         currentUserId = prefs.getInt("USER_ID", -1);
         android.util.Log.d("SummaryFragment", "USER_PREFS - currentUserId: " + currentUserId);
@@ -229,11 +229,7 @@ public class SummaryFragment extends Fragment {
         binding = null;
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        executor.shutdown();
-    }    private void shareToCommunitiy() {
+    private void shareToCommunitiy() {
         // Simple success message instead of complex sharing
         Toast.makeText(requireContext(), "Plogging session completed! Great job! 🎉", 
                       Toast.LENGTH_LONG).show();
@@ -18,19 +18,19 @@ import com.example.glean.R;
 import com.example.glean.databinding.FragmentTrashDetailBinding;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.model.TrashEntity;
+import com.example.glean.util.AppExecutors;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class TrashDetailFragment extends Fragment {
 
     private FragmentTrashDetailBinding binding;
     private AppDatabase db;
-    private ExecutorService executor;
+    private Executor executor;
     private TrashEntity currentTrash;
     private long trashId = -1;
 
@@ -38,7 +38,7 @@ public class TrashDetailFragment extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().dbWriter().serial(this);
         
         if (getArguments() != null) {
             trashId = getArguments().getInt("TRASH_ID", -1); // Changed from getLong to getInt
@@ -217,12 +217,4 @@ public class TrashDetailFragment extends Fragment {
         super.onDestroyView();
         binding = null; // Prevent memory leaks
     }
-    
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
-    }
-}
\ No newline at end of file
+    }
\ No newline at end of file
@@ -24,14 +24,11 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class TrashListFragment extends Fragment implements TrashAdapter.OnTrashClickListener {
 
     private FragmentTrashListBinding binding;
     private AppDatabase db;
-    private ExecutorService executor;
     private TrashAdapter adapter;
     private List<TrashEntity> trashList = new ArrayList<>();
     private int recordId = -1;
@@ -40,7 +37,6 @@ public class TrashListFragment extends Fragment implements TrashAdapter.OnTrashC
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
         
         if (getArguments() != null) {
             recordId = getArguments().getInt("RECORD_ID", -1);
@@ -142,12 +138,4 @@ public class TrashListFragment extends Fragment implements TrashAdapter.OnTrashC
         super.onDestroyView();
         binding = null; // Prevent memory leaks
     }
-    
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
-    }
 }
\ No newline at end of file
@@ -1,10 +1,10 @@
 package com.example.glean.fragment;
 
 import android.Manifest;
+import android.content.ContentResolver;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -28,6 +28,9 @@ import com.example.glean.db.AppDatabase;
 import com.example.glean.helper.GeminiHelper;
 import com.example.glean.helper.PermissionHelper;
 import com.example.glean.model.TrashEntity;
+import com.example.glean.service.SyncOutbox;
+import com.example.glean.util.AppExecutors;
+import com.example.glean.util.SampledBitmapDecoder;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
@@ -36,8 +39,7 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class TrashMLFragment extends Fragment {
 
@@ -48,6 +50,7 @@ public class TrashMLFragment extends Fragment {
     // AI Confidence Configuration
     private static final float AI_CONFIDENCE_THRESHOLD = 0.6f; // 60% minimum confidence
     private static final float AI_VERY_LOW_CONFIDENCE = 0.3f;  // 30% - very uncertain
+    private static final int AI_IMAGE_MIN_SIZE = 512;          // shorter side sent to Gemini
     
     // Non-trash detection keywords
     private static final String[] NON_TRASH_KEYWORDS = {
@@ -57,7 +60,8 @@ public class TrashMLFragment extends Fragment {
 
     private FragmentTrashMlBinding binding;
     private AppDatabase db;
-    private ExecutorService executor;
+    private Executor executor;
+    private Executor decodeExecutor;
     private FusedLocationProviderClient fusedLocationClient;
     
     // Gemini API for AI classification
@@ -74,7 +78,8 @@ public class TrashMLFragment extends Fragment {
         
         // Initialize components
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().dbWriter().serial(this);
+        decodeExecutor = AppExecutors.getInstance().io().serialUntilDestroyed(this);
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireContext());
         
         // Initialize Gemini Helper - ONLY AI Classification Method
@@ -266,14 +271,7 @@ public class TrashMLFragment extends Fragment {
         if (requestCode == REQUEST_IMAGE_CAPTURE) {
             if (resultCode == requireActivity().RESULT_OK) {
                 if (photoFile != null && photoFile.exists()) {
-                    capturedImage = BitmapFactory.decodeFile(photoFile.getAbsolutePath());
-                      if (capturedImage != null) {
-                        displayCapturedImage();                    enableStartDetectionButton();
-                        updateInstructionText(getString(R.string.photo_taken_success));
-                    } else {
-                        updateInstructionText(getString(R.string.failed_to_load_photo));
-                        cleanupTemporaryPhoto(); // Clean up if image loading failed
-                    }
+                    loadCapturedImage(Uri.fromFile(photoFile));
                 } else {
                     updateInstructionText("Gagal mengambil foto. Coba lagi.");
                     cleanupTemporaryPhoto(); // Clean up if file doesn't exist
@@ -284,7 +282,44 @@ public class TrashMLFragment extends Fragment {
                 cleanupOnCancel(); // Clean up cancelled photo capture
             }
         }
-    }private void displayCapturedImage() {
+    }
+
+    /**
+     * Decode the captured photo subsampled to the size the AI needs, upright, on the
+     * io lane instead of decoding the full camera resolution on the main thread.
+     */
+    private void loadCapturedImage(Uri photoUri) {
+        ContentResolver resolver = requireContext().getContentResolver();
+        decodeExecutor.execute(() -> {
+            Bitmap bitmap;
+            try {
+                bitmap = SampledBitmapDecoder.decode(resolver, photoUri, AI_IMAGE_MIN_SIZE);
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading captured photo", e);
+                bitmap = null;
+            }
+            if (getActivity() == null) {
+                return;
+            }
+            Bitmap decoded = bitmap;
+            requireActivity().runOnUiThread(() -> {
+                if (binding == null) {
+                    return;
+                }
+                capturedImage = decoded;
+                if (capturedImage != null) {
+                    displayCapturedImage();
+                    enableStartDetectionButton();
+                    updateInstructionText(getString(R.string.photo_taken_success));
+                } else {
+                    updateInstructionText(getString(R.string.failed_to_load_photo));
+                    cleanupTemporaryPhoto(); // Clean up if image loading failed
+                }
+            });
+        });
+    }
+
+    private void displayCapturedImage() {
         try {
             // Hide camera instruction view
             View cameraInstruction = findViewSafely("layout_camera_instruction");
@@ -633,6 +668,8 @@ public class TrashMLFragment extends Fragment {
         Log.d(TAG, "SAVE: longitude = " + longitude);
         Log.d(TAG, "SAVE: currentPhotoPath = " + currentPhotoPath);
         
+        // The task may outlive the fragment, so it only holds the application context
+        SyncOutbox outbox = SyncOutbox.getInstance(requireContext().getApplicationContext());
         executor.execute(() -> {
             try {                Log.d(TAG, "SAVE: Creating TrashEntity...");
                 TrashEntity trash = new TrashEntity();
@@ -658,6 +695,7 @@ public class TrashMLFragment extends Fragment {
                 TrashEntity savedTrash = db.trashDao().getTrashByIdSync((int)trashId);
                 if (savedTrash != null) {
                     Log.d(TAG, "SAVE: Verification successful - Trash exists in database with RecordId: " + savedTrash.getRecordId());
+                    outbox.enqueueTrash(savedTrash);
                 } else {
                     Log.e(TAG, "SAVE: Verification FAILED - Trash not found in database after insert!");
                 }
@@ -801,10 +839,7 @@ public class TrashMLFragment extends Fragment {
         
         // Final cleanup to ensure no memory leaks
         cleanupTemporaryPhoto();
-        
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
+
     }
     
     /**
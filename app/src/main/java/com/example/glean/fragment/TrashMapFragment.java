@@ -42,8 +42,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class TrashMapFragment extends Fragment implements OnMapReadyCallback, GoogleMap.OnInfoWindowClickListener {
 
@@ -53,7 +51,6 @@ public class TrashMapFragment extends Fragment implements OnMapReadyCallback, Go
     private GoogleMap mMap;
     private FusedLocationProviderClient fusedLocationClient;
     private AppDatabase db;
-    private ExecutorService executor;
     private Map<Marker, TrashEntity> markerTrashMap = new HashMap<>();
     private String currentFilter = "All";    // Add these missing variables
     private Marker currentLocationMarker;
@@ -65,7 +62,6 @@ public class TrashMapFragment extends Fragment implements OnMapReadyCallback, Go
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         db = AppDatabase.getInstance(requireContext());
-        executor = Executors.newSingleThreadExecutor();
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireContext());
     }
 
@@ -793,28 +789,6 @@ public class TrashMapFragment extends Fragment implements OnMapReadyCallback, Go
         }
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        
-        try {
-            // Shutdown executors
-            if (executor != null && !executor.isShutdown()) {
-                executor.shutdown();
-                try {
-                    if (!executor.awaitTermination(1, java.util.concurrent.TimeUnit.SECONDS)) {
-                        executor.shutdownNow();
-                    }
-                } catch (InterruptedException e) {
-                    executor.shutdownNow();
-                    Thread.currentThread().interrupt();
-                }
-            }
-        } catch (Exception e) {
-            Log.e("Fragment", "Error shutting down executor", e);
-        }
-    }
-
     private void requestNewLocation() {
         try {
             // Konfigurasi request lokasi dengan akurasi tinggi
@@ -7,19 +7,22 @@ import android.graphics.Color;
 import android.os.Environment;
 import android.util.Log;
 
-import com.example.glean.model.LocationPointEntity;
+import com.example.glean.util.RouteCodec;
+import com.example.glean.util.RouteSimplifier;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -33,57 +36,92 @@ public class MapHelper {
     }
 
     /**
-     * Draw a route on the map based on location points
+     * Draw a route on the map, simplified for the current zoom level
      */
-    public static void drawRouteOnMap(GoogleMap map, List<LocationPointEntity> locationPoints) {
-        if (map == null || locationPoints == null || locationPoints.isEmpty()) {
-            Log.e(TAG, "Cannot draw route: map or location points are null/empty");
-            return;
+    public static Polyline drawRouteOnMap(GoogleMap map, int recordId, RouteCodec.Route route) {
+        if (map == null || route == null || route.isEmpty()) {
+            Log.e(TAG, "Cannot draw route: map or route is null/empty");
+            return null;
         }
 
-        // Create a line to connect all points
+        // Create a line to connect the simplified points
         PolylineOptions polylineOptions = new PolylineOptions()
                 .width(10)
-                .color(Color.BLUE);
-
-        // Add all points to the polyline and build bounds
-        LatLngBounds.Builder boundsBuilder = new LatLngBounds.Builder();
-
-        for (LocationPointEntity point : locationPoints) {
-            LatLng position = new LatLng(point.getLatitude(), point.getLongitude());
-            polylineOptions.add(position);
-            boundsBuilder.include(position);
-        }
-
-        // Add the polyline to the map
-        map.addPolyline(polylineOptions);
-
-        // Add start and end markers
-        if (locationPoints.size() > 0) {
-            // Start marker
-            LocationPointEntity startPoint = locationPoints.get(0);
-            LatLng startLatLng = new LatLng(startPoint.getLatitude(), startPoint.getLongitude());
-            map.addMarker(new MarkerOptions()
-                    .position(startLatLng)
-                    .title("Start")
-                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_GREEN)));
-
-            // End marker
-            LocationPointEntity endPoint = locationPoints.get(locationPoints.size() - 1);
-            LatLng endLatLng = new LatLng(endPoint.getLatitude(), endPoint.getLongitude());
-            map.addMarker(new MarkerOptions()
-                    .position(endLatLng)
-                    .title("End")
-                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
-        }
+                .color(Color.BLUE)
+                .addAll(simplifyRoute(recordId, route, map.getCameraPosition().zoom));
+
+        // Add the polyline to the map and keep it simplified while zooming
+        Polyline polyline = map.addPolyline(polylineOptions);
+        bindZoomAwareRoute(map, polyline, recordId, route);
+
+        // Start marker
+        LatLng startLatLng = new LatLng(route.getLatitude(0), route.getLongitude(0));
+        map.addMarker(new MarkerOptions()
+                .position(startLatLng)
+                .title("Start")
+                .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_GREEN)));
+
+        // End marker
+        int last = route.size() - 1;
+        LatLng endLatLng = new LatLng(route.getLatitude(last), route.getLongitude(last));
+        map.addMarker(new MarkerOptions()
+                .position(endLatLng)
+                .title("End")
+                .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
 
         // Zoom to show the entire route with padding
         try {
-            LatLngBounds bounds = boundsBuilder.build();
-            map.moveCamera(CameraUpdateFactory.newLatLngBounds(bounds, 100));
+            map.moveCamera(CameraUpdateFactory.newLatLngBounds(getRouteBounds(route), 100));
         } catch (IllegalStateException e) {
             Log.e(TAG, "Error building bounds: " + e.getMessage());
         }
+        return polyline;
+    }
+
+    /**
+     * Points of a route reduced to what is visible at the given zoom level.
+     * Results are cached per record and zoom bucket by {@link RouteSimplifier}.
+     */
+    public static List<LatLng> simplifyRoute(int recordId, RouteCodec.Route route, float zoom) {
+        int[] indices = RouteSimplifier.getInstance().simplify(recordId, route, zoom);
+        List<LatLng> points = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            points.add(new LatLng(route.getLatitude(index), route.getLongitude(index)));
+        }
+        return points;
+    }
+
+    /**
+     * Re-simplify the polyline whenever the camera settles on a different zoom bucket.
+     * Replaces any camera idle listener already set on the map.
+     */
+    public static void bindZoomAwareRoute(GoogleMap map, Polyline polyline, int recordId, RouteCodec.Route route) {
+        final int[] currentBucket = {RouteSimplifier.zoomBucket(map.getCameraPosition().zoom)};
+        map.setOnCameraIdleListener(() -> {
+            float zoom = map.getCameraPosition().zoom;
+            int bucket = RouteSimplifier.zoomBucket(zoom);
+            if (bucket != currentBucket[0]) {
+                currentBucket[0] = bucket;
+                List<LatLng> points = simplifyRoute(recordId, route, zoom);
+                polyline.setPoints(points);
+                Log.d(TAG, "Route re-simplified for zoom " + bucket + ": " + points.size() + "/" + route.size() + " points");
+            }
+        });
+    }
+
+    /**
+     * Bounds of a route without creating a LatLng per point
+     */
+    public static LatLngBounds getRouteBounds(RouteCodec.Route route) {
+        double minLat = route.getLatitude(0), maxLat = minLat;
+        double minLng = route.getLongitude(0), maxLng = minLng;
+        for (int i = 1; i < route.size(); i++) {
+            minLat = Math.min(minLat, route.getLatitude(i));
+            maxLat = Math.max(maxLat, route.getLatitude(i));
+            minLng = Math.min(minLng, route.getLongitude(i));
+            maxLng = Math.max(maxLng, route.getLongitude(i));
+        }
+        return new LatLngBounds(new LatLng(minLat, minLng), new LatLng(maxLat, maxLng));
     }
 
     /**
@@ -0,0 +1,261 @@
+package com.example.glean.ml;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Picks the fastest working execution backend for a model on this device.
+ *
+ * On first use the candidate backends are micro-benchmarked on the model with a blank
+ * input, and the working ones are stored fastest first in SharedPreferences, keyed by
+ * model and build fingerprint so an OS update or a new model benchmarks again. A backend
+ * that later fails is dropped from the ranking and the next one takes its place.
+ */
+public class BackendSelector {
+
+    private static final String TAG = "BackendSelector";
+
+    private static final String PREFS = "ml_backend";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_RANKING = "ranking";
+    private static final String KEY_REPORT = "report";
+
+    static final int WARMUP_RUNS = 2;
+    static final int TIMED_RUNS = 10;
+    private static final int MAX_THREADS = 4;
+
+    private final SharedPreferences prefs;
+    private final String modelName;
+    private final String fingerprint;
+
+    /**
+     * Benchmark result of one backend; failed backends carry their error.
+     */
+    public static class Measurement {
+        public final ExecutionBackend backend;
+        public final long initMs;
+        public final double medianMs;
+        public final String error;
+
+        Measurement(ExecutionBackend backend, long initMs, double medianMs, String error) {
+            this.backend = backend;
+            this.initMs = initMs;
+            this.medianMs = medianMs;
+            this.error = error;
+        }
+
+        public boolean works() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            String name = String.format(Locale.US, "%-26s", backend);
+            return works()
+                    ? String.format(Locale.US, "%s init %4d ms  median %7.2f ms", name, initMs, medianMs)
+                    : name + " failed: " + error;
+        }
+    }
+
+    /**
+     * Measurements of every candidate, in the order they ran.
+     */
+    public static class Report {
+        public final String modelName;
+        public final List<Measurement> measurements;
+
+        Report(String modelName, List<Measurement> measurements) {
+            this.modelName = modelName;
+            this.measurements = measurements;
+        }
+
+        /**
+         * Working backends, fastest first.
+         */
+        public List<ExecutionBackend> ranking() {
+            List<Measurement> working = new ArrayList<>();
+            for (Measurement measurement : measurements) {
+                if (measurement.works()) {
+                    working.add(measurement);
+                }
+            }
+            Collections.sort(working, (a, b) -> Double.compare(a.medianMs, b.medianMs));
+            List<ExecutionBackend> ranking = new ArrayList<>();
+            for (Measurement measurement : working) {
+                ranking.add(measurement.backend);
+            }
+            return ranking;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("Backend benchmark of ").append(modelName)
+                    .append(" on ").append(Build.MANUFACTURER).append(' ').append(Build.MODEL)
+                    .append(" (API ").append(Build.VERSION.SDK_INT).append(", ")
+                    .append(TIMED_RUNS).append(" timed runs):");
+            for (Measurement measurement : measurements) {
+                text.append("\n  ").append(measurement);
+            }
+            List<ExecutionBackend> ranking = ranking();
+            text.append("\n  -> ").append(ranking.isEmpty() ? ExecutionBackend.CPU_DEFAULT : ranking.get(0));
+            return text.toString();
+        }
+    }
+
+    public BackendSelector(Context context, String modelPath, long modelBytes) {
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        this.modelName = modelPath.substring(modelPath.lastIndexOf('/') + 1);
+        this.fingerprint = modelPath + ":" + modelBytes + ":" + Build.FINGERPRINT;
+    }
+
+    /**
+     * The stored backend for this model and device, benchmarking the candidates first
+     * when there is none. Benchmarking takes a few seconds; call it off the main thread.
+     */
+    public ExecutionBackend select(ByteBuffer model) {
+        List<ExecutionBackend> ranking = storedRanking();
+        if (ranking == null) {
+            Report report = benchmark(model, candidates());
+            Log.d(TAG, report.toString());
+            ranking = report.ranking();
+            prefs.edit()
+                    .putString(KEY_FINGERPRINT, fingerprint)
+                    .putString(KEY_RANKING, encode(ranking))
+                    .putString(KEY_REPORT, report.toString())
+                    .apply();
+        }
+        return ranking.isEmpty() ? ExecutionBackend.CPU_DEFAULT : ranking.get(0);
+    }
+
+    /**
+     * Drop a backend that failed from the stored ranking and return the next one.
+     */
+    public ExecutionBackend fallBackFrom(ExecutionBackend failed) {
+        List<ExecutionBackend> ranking = storedRanking();
+        if (ranking == null) {
+            ranking = new ArrayList<>();
+        }
+        ranking.remove(failed);
+        prefs.edit()
+                .putString(KEY_FINGERPRINT, fingerprint)
+                .putString(KEY_RANKING, encode(ranking))
+                .apply();
+        ExecutionBackend next = ranking.isEmpty() ? ExecutionBackend.CPU_DEFAULT : ranking.get(0);
+        Log.w(TAG, "⚠️ " + failed + " failed on this device, falling back to " + next);
+        return next;
+    }
+
+    /**
+     * The report of the last benchmark on this device, or null if none ran yet.
+     */
+    public String getLastReport() {
+        return prefs.getString(KEY_REPORT, null);
+    }
+
+    /**
+     * Backends worth trying here: single-threaded and multi-threaded CPU with and without
+     * XNNPACK, plus NNAPI where the platform has a usable implementation.
+     */
+    public static List<ExecutionBackend> candidates() {
+        int threads = Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors());
+        List<ExecutionBackend> candidates = new ArrayList<>();
+        candidates.add(ExecutionBackend.CPU_DEFAULT);
+        candidates.add(new ExecutionBackend(1, true, false));
+        if (threads > 1) {
+            candidates.add(new ExecutionBackend(threads, false, false));
+            candidates.add(new ExecutionBackend(threads, true, false));
+        }
+        // NNAPI before Android 9 is too incomplete to be worth a benchmark run
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            candidates.add(new ExecutionBackend(threads, false, true));
+        }
+        return candidates;
+    }
+
+    /**
+     * Run every candidate on the model and measure it. Failing backends are reported,
+     * never thrown.
+     */
+    public Report benchmark(ByteBuffer model, List<ExecutionBackend> candidates) {
+        List<Measurement> measurements = new ArrayList<>();
+        for (ExecutionBackend backend : candidates) {
+            measurements.add(measure(model, backend));
+        }
+        return new Report(modelName, measurements);
+    }
+
+    private static Measurement measure(ByteBuffer model, ExecutionBackend backend) {
+        Interpreter interpreter = null;
+        try {
+            long start = SystemClock.elapsedRealtime();
+            interpreter = new Interpreter(model, backend.toOptions());
+            long initMs = SystemClock.elapsedRealtime() - start;
+
+            ByteBuffer input = ByteBuffer.allocateDirect(interpreter.getInputTensor(0).numBytes())
+                    .order(ByteOrder.nativeOrder());
+            ByteBuffer output = ByteBuffer.allocateDirect(interpreter.getOutputTensor(0).numBytes())
+                    .order(ByteOrder.nativeOrder());
+            long[] runs = new long[TIMED_RUNS];
+            for (int i = 0; i < WARMUP_RUNS + TIMED_RUNS; i++) {
+                input.rewind();
+                output.rewind();
+                long runStart = System.nanoTime();
+                interpreter.run(input, output);
+                if (i >= WARMUP_RUNS) {
+                    runs[i - WARMUP_RUNS] = System.nanoTime() - runStart;
+                }
+            }
+            Arrays.sort(runs);
+            return new Measurement(backend, initMs, runs[TIMED_RUNS / 2] / 1e6, null);
+        } catch (Exception | LinkageError e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new Measurement(backend, 0, 0, error);
+        } finally {
+            if (interpreter != null) {
+                interpreter.close();
+            }
+        }
+    }
+
+    private List<ExecutionBackend> storedRanking() {
+        if (!fingerprint.equals(prefs.getString(KEY_FINGERPRINT, null))) {
+            return null;
+        }
+        String stored = prefs.getString(KEY_RANKING, null);
+        if (stored == null) {
+            return null;
+        }
+        List<ExecutionBackend> ranking = new ArrayList<>();
+        for (String value : stored.split(";")) {
+            ExecutionBackend backend = ExecutionBackend.decode(value);
+            if (backend != null) {
+                ranking.add(backend);
+            }
+        }
+        return ranking;
+    }
+
+    private static String encode(List<ExecutionBackend> ranking) {
+        StringBuilder text = new StringBuilder();
+        for (ExecutionBackend backend : ranking) {
+            if (text.length() > 0) {
+                text.append(';');
+            }
+            text.append(backend.encode());
+        }
+        return text.toString();
+    }
+}
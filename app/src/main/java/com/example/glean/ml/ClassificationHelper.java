@@ -8,6 +8,7 @@ import android.util.Log;
 
 import com.example.glean.api.GeminiApi;
 import com.example.glean.model.WasteClassification;
+import com.example.glean.util.AppExecutors;
 
 import java.io.IOException;
 
@@ -15,7 +16,6 @@ public class ClassificationHelper {
     private static final String TAG = "ClassificationHelper";
     
     private final Context context;
-    private final WasteClassifierModel localModel;
     private final GeminiApi geminiApi;
     
     public interface ClassificationCallback {
@@ -24,23 +24,29 @@ public class ClassificationHelper {
     }
     
     public ClassificationHelper(Context context) {
-        this.context = context;
-        
-        // Initialize local model if possible
-        WasteClassifierModel model = null;
-        try {
-            model = new WasteClassifierModel(context);
-        } catch (IOException e) {
-            Log.e(TAG, "Error loading ML model", e);
-        }
-        this.localModel = model;
+        this.context = context.getApplicationContext();
         
         // Initialize Gemini API client
         this.geminiApi = new GeminiApi();
     }
     
-    // Update the classifyImage method to handle the new ClassificationResult format
+    /**
+     * Classify on the cpu lane with the shared local model, falling back to Gemini when
+     * its confidence is low. Callbacks arrive on a background thread.
+     */
     public void classifyImage(Bitmap image, ClassificationCallback callback) {
+        AppExecutors.getInstance().cpu().execute(() -> classifyOnWorker(image, callback), AppExecutors.PRIORITY_HIGH);
+    }
+    
+    private void classifyOnWorker(Bitmap image, ClassificationCallback callback) {
+        // The model is loaded once per process and shared by every helper
+        WasteClassifierModel localModel = null;
+        try {
+            localModel = WasteClassifierModel.getInstance(context);
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading ML model", e);
+        }
+        
         // Check if we have a local model available
         if (localModel != null) {
             try {
@@ -145,10 +151,4 @@ public class ClassificationHelper {
             return "Tidak ada tips tersedia untuk jenis sampah ini.";
         }
     }
-    
-    public void release() {
-        if (localModel != null) {
-            localModel.close();
-        }
-    }
 }
\ No newline at end of file
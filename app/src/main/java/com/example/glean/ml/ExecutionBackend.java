@@ -0,0 +1,82 @@
+package com.example.glean.ml;
+
+import org.tensorflow.lite.Interpreter;
+
+/**
+ * How an Interpreter executes: CPU thread count, XNNPACK and NNAPI.
+ */
+public class ExecutionBackend {
+
+    /**
+     * Single-threaded CPU with no delegate at all, the fallback that always initialises.
+     * Not the library default: TFLite 2.14 applies XNNPACK unless it is switched off.
+     */
+    public static final ExecutionBackend CPU_DEFAULT = new ExecutionBackend(1, false, false);
+
+    public final int threads;
+    public final boolean xnnpack;
+    public final boolean nnapi;
+
+    public ExecutionBackend(int threads, boolean xnnpack, boolean nnapi) {
+        this.threads = threads;
+        this.xnnpack = xnnpack;
+        this.nnapi = nnapi;
+    }
+
+    public Interpreter.Options toOptions() {
+        Interpreter.Options options = new Interpreter.Options();
+        options.setNumThreads(threads);
+        options.setUseXNNPACK(xnnpack);
+        options.setUseNNAPI(nnapi);
+        return options;
+    }
+
+    /**
+     * True if this backend hands the graph to a delegate that may fail at run time.
+     */
+    public boolean usesDelegate() {
+        return xnnpack || nnapi;
+    }
+
+    String encode() {
+        return threads + ":" + xnnpack + ":" + nnapi;
+    }
+
+    static ExecutionBackend decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(":");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new ExecutionBackend(Integer.parseInt(parts[0]),
+                    Boolean.parseBoolean(parts[1]), Boolean.parseBoolean(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ExecutionBackend)) {
+            return false;
+        }
+        ExecutionBackend other = (ExecutionBackend) o;
+        return threads == other.threads && xnnpack == other.xnnpack && nnapi == other.nnapi;
+    }
+
+    @Override
+    public int hashCode() {
+        return encode().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if (nnapi) {
+            return "NNAPI (cpu fallback " + threads + "t)";
+        }
+        return "CPU " + threads + "t" + (xnnpack ? " XNNPACK" : "");
+    }
+}
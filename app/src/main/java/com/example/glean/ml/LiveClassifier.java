@@ -0,0 +1,141 @@
+package com.example.glean.ml;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.example.glean.util.AppExecutors;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Continuous classification of camera frames with the local model, fully offline.
+ *
+ * One frame is in flight at a time: frames offered while inference is busy are dropped
+ * (and counted) instead of queueing up, so labels never lag behind the camera. A frame
+ * that is accepted is copied into a reused bitmap and classified on the cpu lane; scores
+ * are averaged over a sliding window of frames before a label is reported.
+ */
+public class LiveClassifier {
+
+    private static final String TAG = "LiveClassifier";
+    public static final int DEFAULT_WINDOW = 5;
+    private static final int STATS_WINDOW = 120;
+    private static final long STATS_LOG_INTERVAL = 100;
+
+    /**
+     * Fills the classifier's frame bitmap, synchronously, on the caller's thread.
+     */
+    public interface FrameWriter {
+        void writeTo(Bitmap frame);
+    }
+
+    /**
+     * Called on the cpu lane after every classified frame.
+     */
+    public interface Listener {
+        void onPrediction(Prediction prediction);
+    }
+
+    public static class Prediction {
+        public final WasteClassifierModel.ClassificationResult result; // Smoothed over the window
+        public final boolean settled;                                  // Window is full
+        public final LiveStats stats;
+
+        Prediction(WasteClassifierModel.ClassificationResult result, boolean settled, LiveStats stats) {
+            this.result = result;
+            this.settled = settled;
+            this.stats = stats;
+        }
+    }
+
+    private final WasteClassifierModel model;
+    private final Listener listener;
+    private final PredictionSmoother smoother;
+    private final LiveStats stats = new LiveStats(STATS_WINDOW);
+    private final float[] scores;
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+    private volatile boolean running = true;
+    private Bitmap frame; // Written only while not busy, read only while busy
+
+    public LiveClassifier(WasteClassifierModel model, int windowSize, Listener listener) {
+        this.model = model;
+        this.listener = listener;
+        this.scores = new float[model.getLabelCount()];
+        this.smoother = new PredictionSmoother(windowSize, scores.length);
+    }
+
+    /**
+     * Offer a camera frame. If the previous frame is still being classified the frame is
+     * dropped and false returned without calling the writer; otherwise the writer copies
+     * it into a width x height bitmap and classification starts in the background.
+     */
+    public boolean offer(int width, int height, int rotationDegrees, FrameWriter writer) {
+        long arrived = System.nanoTime();
+        if (!running || !busy.compareAndSet(false, true)) {
+            stats.recordDropped();
+            return false;
+        }
+        try {
+            if (frame == null || frame.getWidth() != width || frame.getHeight() != height) {
+                if (frame != null) {
+                    frame.recycle();
+                }
+                frame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            }
+            writer.writeTo(frame);
+        } catch (RuntimeException e) {
+            busy.set(false);
+            throw e;
+        }
+        AppExecutors.getInstance().cpu().execute(() -> classify(arrived, rotationDegrees),
+                AppExecutors.PRIORITY_HIGH);
+        return true;
+    }
+
+    private void classify(long arrived, int rotationDegrees) {
+        try {
+            if (!running || !model.score(frame, rotationDegrees, scores)) {
+                return;
+            }
+            smoother.add(scores);
+            int top = smoother.topIndex();
+            WasteClassifierModel.ClassificationResult result = model.resultFor(top, smoother.meanScore(top));
+            stats.recordFrame(arrived, System.nanoTime());
+            if (stats.getProcessed() % STATS_LOG_INTERVAL == 0) {
+                Log.d(TAG, "📊 " + stats);
+            }
+            if (running) {
+                listener.onPrediction(new Prediction(result, smoother.isSettled(), stats));
+            }
+        } finally {
+            busy.set(false);
+            if (!running && busy.compareAndSet(false, true)) {
+                recycleFrame();
+            }
+        }
+    }
+
+    public LiveStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Stop classifying. A frame already in flight finishes but is not reported; the frame
+     * bitmap is recycled by whichever of stop() and that frame comes last.
+     */
+    public void stop() {
+        running = false;
+        // Claiming busy for good keeps offer() away from the recycled bitmap
+        if (busy.compareAndSet(false, true)) {
+            recycleFrame();
+        }
+        Log.d(TAG, "Stopped: " + stats);
+    }
+
+    private void recycleFrame() {
+        if (frame != null) {
+            frame.recycle();
+            frame = null;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.glean.ml;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Throughput and latency of the live classifier over its most recent frames.
+ *
+ * Sustained FPS counts classified frames over the time they span, so it reflects what
+ * the user sees rather than the camera rate. Latency runs from frame arrival to the
+ * smoothed result and is reported as p50/p90/p99. Thread-safe; timestamps are in
+ * nanoseconds from {@link System#nanoTime()}.
+ */
+public class LiveStats {
+
+    private final long[] completedAt;
+    private final long[] latencies;
+    private final long[] sorted;
+    private int next = 0;
+    private int size = 0;
+    private long processed = 0;
+    private long dropped = 0;
+
+    public LiveStats(int windowSize) {
+        completedAt = new long[windowSize];
+        latencies = new long[windowSize];
+        sorted = new long[windowSize];
+    }
+
+    public synchronized void recordFrame(long arrivedNanos, long completedNanos) {
+        completedAt[next] = completedNanos;
+        latencies[next] = completedNanos - arrivedNanos;
+        next = (next + 1) % completedAt.length;
+        size = Math.min(size + 1, completedAt.length);
+        processed++;
+    }
+
+    public synchronized void recordDropped() {
+        dropped++;
+    }
+
+    /**
+     * Classified frames per second over the window, 0 until two frames are done.
+     */
+    public synchronized float getFps() {
+        if (size < 2) {
+            return 0f;
+        }
+        int newest = (next - 1 + completedAt.length) % completedAt.length;
+        int oldest = size < completedAt.length ? 0 : next;
+        long span = completedAt[newest] - completedAt[oldest];
+        return span <= 0 ? 0f : (size - 1) * 1_000_000_000f / span;
+    }
+
+    /**
+     * Latency percentile in milliseconds (nearest rank), 0 when no frame is done.
+     */
+    public synchronized float getLatencyPercentileMs(int percentile) {
+        if (size == 0) {
+            return 0f;
+        }
+        System.arraycopy(latencies, 0, sorted, 0, size);
+        Arrays.sort(sorted, 0, size);
+        int rank = (int) Math.ceil(percentile / 100.0 * size);
+        int index = Math.min(size - 1, Math.max(0, rank - 1));
+        return sorted[index] / 1_000_000f;
+    }
+
+    public synchronized long getProcessed() {
+        return processed;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    public synchronized void reset() {
+        next = 0;
+        size = 0;
+        processed = 0;
+        dropped = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%.1f FPS | p50 %.0f ms, p90 %.0f ms, p99 %.0f ms | %d classified, %d dropped",
+                getFps(), getLatencyPercentileMs(50), getLatencyPercentileMs(90), getLatencyPercentileMs(99),
+                getProcessed(), getDropped());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.glean.ml;
+
+import java.util.Arrays;
+
+/**
+ * Averages the class probabilities of the last few frames, so a live label does not
+ * flicker when single frames disagree.
+ *
+ * Keeps a ring of score vectors and their running sum; adding a frame is O(classes).
+ * Not thread-safe: feed it from one inference at a time.
+ */
+public class PredictionSmoother {
+
+    private final float[][] window;
+    private final float[] sum;
+    private int next = 0;
+    private int size = 0;
+
+    public PredictionSmoother(int windowSize, int classCount) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be at least 1");
+        }
+        window = new float[windowSize][classCount];
+        sum = new float[classCount];
+    }
+
+    /**
+     * Add the scores of one frame, evicting the oldest frame once the window is full.
+     */
+    public void add(float[] scores) {
+        float[] slot = window[next];
+        for (int i = 0; i < sum.length; i++) {
+            if (size == window.length) {
+                sum[i] -= slot[i];
+            }
+            slot[i] = scores[i];
+            sum[i] += scores[i];
+        }
+        next = (next + 1) % window.length;
+        size = Math.min(size + 1, window.length);
+    }
+
+    /**
+     * Class with the highest mean score over the window, or -1 when it is empty.
+     */
+    public int topIndex() {
+        if (size == 0) {
+            return -1;
+        }
+        int top = 0;
+        for (int i = 1; i < sum.length; i++) {
+            if (sum[i] > sum[top]) {
+                top = i;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Mean score of a class over the window.
+     */
+    public float meanScore(int index) {
+        return size == 0 ? 0f : sum[index] / size;
+    }
+
+    /**
+     * True once the window is full, i.e. the label reflects more than a single glance.
+     */
+    public boolean isSettled() {
+        return size == window.length;
+    }
+
+    public void clear() {
+        Arrays.fill(sum, 0f);
+        next = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.glean.ml;
+
+/**
+ * Scale and zero-point arithmetic of quantised tensors, kept free of TFLite types.
+ *
+ * A quantised value q stands for (q - zeroPoint) * scale. INT8 tensors hold q in
+ * -128..127, UINT8 tensors in 0..255. A scale of 0 means the tensor carries no
+ * parameters.
+ */
+final class Quantization {
+
+    private Quantization() {
+    }
+
+    /**
+     * Table from every 0-255 channel value to the tensor byte that encodes it, clamped to
+     * the tensor's range. A tensor without parameters takes the raw values, shifted by
+     * 128 when signed.
+     */
+    static byte[] inputLookup(float scale, int zeroPoint, boolean signed) {
+        if (scale == 0) {
+            scale = 1f;
+            zeroPoint = signed ? -128 : 0;
+        }
+        int min = signed ? -128 : 0;
+        int max = signed ? 127 : 255;
+
+        byte[] lookup = new byte[256];
+        for (int value = 0; value < 256; value++) {
+            int quantized = Math.round(value / scale) + zeroPoint;
+            lookup[value] = (byte) Math.max(min, Math.min(max, quantized));
+        }
+        return lookup;
+    }
+
+    /**
+     * Scale of an output tensor; without parameters it spans 0-1 over its full range.
+     */
+    static float outputScale(float scale) {
+        return scale != 0 ? scale : 1 / 255f;
+    }
+
+    static int outputZeroPoint(float scale, int zeroPoint, boolean signed) {
+        if (scale != 0) {
+            return zeroPoint;
+        }
+        return signed ? -128 : 0;
+    }
+
+    static float dequantize(byte quantized, float scale, int zeroPoint, boolean signed) {
+        int value = signed ? quantized : quantized & 0xFF;
+        return (value - zeroPoint) * scale;
+    }
+}
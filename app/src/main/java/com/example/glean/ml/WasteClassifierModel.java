@@ -2,80 +2,211 @@ package com.example.glean.ml;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.example.glean.util.AppExecutors;
+
 import org.tensorflow.lite.DataType;
-import org.tensorflow.lite.support.common.FileUtil;
-import org.tensorflow.lite.support.common.TensorOperator;
-import org.tensorflow.lite.support.common.TensorProcessor;
-import org.tensorflow.lite.support.common.ops.NormalizeOp;
-import org.tensorflow.lite.support.image.ImageProcessor;
-import org.tensorflow.lite.support.image.TensorImage;
-import org.tensorflow.lite.support.image.ops.ResizeOp;
-import org.tensorflow.lite.support.label.TensorLabel;
-import org.tensorflow.lite.support.tensorbuffer.TensorBuffer;
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+import org.tensorflow.lite.support.common.FileUtil;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Process-wide TFLite classifier for waste photos.
+ *
+ * The model, labels and interpreter are loaded once and shared by every screen. Input and
+ * output buffers, the pixel array and the scaled bitmap are allocated with the interpreter
+ * and reused, so a classification allocates nothing but its result. One interpreter serves
+ * all callers; {@link #classify(Bitmap)} is synchronized because an Interpreter is not
+ * thread-safe. The interpreter runs on the backend {@link BackendSelector} found fastest
+ * on this device.
+ *
+ * An INT8 or FP16 variant of the model is used instead of the float one when it is
+ * bundled next to it (see {@link #MODEL_VARIANTS}). Preprocessing follows the input
+ * tensor type, so a quantised model gets its uint8/int8 pixels without a float pass.
+ */
 public class WasteClassifierModel {
     private static final String TAG = "WasteClassifierModel";
-    
-    private static final String MODEL_PATH = "model/waste_classifier_model.tflite";
+    private static WasteClassifierModel instance;
+
+    private static final String MODEL_DIR = "model";
     private static final String LABEL_PATH = "model/waste_labels.txt";
     
-    private static final int IMAGE_SIZE = 224; // Common input size for models
-    private static final float IMAGE_MEAN = 127.5f;
-    private static final float IMAGE_STD = 127.5f;
+    // Variants in order of preference; the first one bundled is used
+    static final String MODEL_INT8 = "model/waste_classifier_model_int8.tflite";
+    static final String MODEL_FP16 = "model/waste_classifier_model_fp16.tflite";
+    static final String MODEL_FLOAT = "model/waste_classifier_model.tflite";
+    static final String[] MODEL_VARIANTS = {MODEL_INT8, MODEL_FP16, MODEL_FLOAT};
+
     private static final float CONFIDENCE_THRESHOLD = 0.8f; // Threshold for high confidence
-    
+
+    /** Input resolution of the bundled variants; decode photos for the classifier at this size. */
+    public static final int INPUT_SIZE = 224;
+
+    private final String modelPath;
+    private final MappedByteBuffer modelFile;
+    private final BackendSelector backendSelector;
+    private ExecutionBackend backend;
     private Interpreter tflite;
     private List<String> labels;
-    private TensorImage inputImageBuffer;
-    private TensorBuffer outputBuffer;
-    private TensorProcessor probabilityProcessor;
     private Map<String, String> wasteGroupMap;
-    
+
+    private final int inputWidth;
+    private final int inputHeight;
+    private final DataType inputType;
+    private final DataType outputType;
+    // Quantised input: tensor byte for every 0-255 channel value
+    private final byte[] inputLookup;
+    private final float outputScale;
+    private final int outputZeroPoint;
+    private final ByteBuffer inputBuffer;
+    private final ByteBuffer outputBuffer;
+    private final float[] probabilities;
+    private final int[] pixels;
+    private final Bitmap scaledBitmap;
+    private final Canvas scaledCanvas;
+    private final Rect scaledBounds;
+    private final Paint scalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Matrix frameMatrix = new Matrix();
+
+    // Metrics, guarded by this
+    private final long loadTimeMs;
+    private long inferenceCount = 0;
+    private long totalPreprocessNanos = 0;
+    private long totalInferenceNanos = 0;
+    private long maxInferenceNanos = 0;
+    private long lastInferenceNanos = 0;
+
     public static class ClassificationResult {
         public final String wasteType;        // Original label like "plastic", "paper"
         public final String wasteCategory;    // Mapped category: "ORGANIK", "ANORGANIK", "B3"
         public final float confidence;
-        
+
         public ClassificationResult(String wasteType, String wasteCategory, float confidence) {
             this.wasteType = wasteType;
             this.wasteCategory = wasteCategory;
             this.confidence = confidence;
         }
-        
+
         public boolean isHighConfidence() {
             return confidence >= CONFIDENCE_THRESHOLD;
         }
     }
-    
-    public WasteClassifierModel(Context context) throws IOException {
-        // Load model
-        MappedByteBuffer modelFile = FileUtil.loadMappedFile(context, MODEL_PATH);
-        Interpreter.Options options = new Interpreter.Options();
-        tflite = new Interpreter(modelFile, options);
-        
+
+    /**
+     * The shared classifier, loading it on first use. Loading takes a few hundred
+     * milliseconds, and a few seconds more when the backends are benchmarked on first
+     * launch, so call it off the main thread.
+     */
+    public static synchronized WasteClassifierModel getInstance(Context context) throws IOException {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new WasteClassifierModel(appContext, bundledModelPath(appContext));
+        }
+        return instance;
+    }
+
+    /**
+     * Load the classifier in the background, so the classify screen finds it ready.
+     */
+    public static void preload(Context context) {
+        Context appContext = context.getApplicationContext();
+        AppExecutors.getInstance().cpu().execute(() -> {
+            try {
+                getInstance(appContext);
+            } catch (IOException e) {
+                Log.e(TAG, "Error preloading ML model", e);
+            }
+        }, AppExecutors.PRIORITY_LOW);
+    }
+
+    /**
+     * Close the shared classifier, e.g. under memory pressure. The next getInstance()
+     * loads it again.
+     */
+    public static synchronized void releaseInstance() {
+        if (instance != null) {
+            Log.d(TAG, "Releasing classifier: " + instance.getStats());
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * The preferred model variant among those bundled in the assets.
+     */
+    static String bundledModelPath(Context context) throws IOException {
+        String[] files = context.getAssets().list(MODEL_DIR);
+        List<String> bundled = files != null ? Arrays.asList(files) : Collections.emptyList();
+        for (String variant : MODEL_VARIANTS) {
+            if (bundled.contains(variant.substring(MODEL_DIR.length() + 1))) {
+                return variant;
+            }
+        }
+        throw new IOException("No classifier model in assets/" + MODEL_DIR);
+    }
+
+    /**
+     * Load one model variant. Use {@link #getInstance(Context)} in the app; this is for
+     * comparing variants side by side.
+     */
+    WasteClassifierModel(Context context, String modelPath) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+
+        // Load model on the fastest backend that works on this device
+        this.modelPath = modelPath;
+        modelFile = FileUtil.loadMappedFile(context, modelPath);
+        backendSelector = new BackendSelector(context, modelPath, modelFile.capacity());
+        tflite = openInterpreter(backendSelector.select(modelFile));
+
         // Load labels
         labels = FileUtil.loadLabels(context, LABEL_PATH);
-        
-        // Setup input and output buffers
-        int[] inputShape = tflite.getInputTensor(0).shape();
-        DataType inputDataType = tflite.getInputTensor(0).dataType();
-        inputImageBuffer = new TensorImage(inputDataType);
-        
+
+        // Input is [1, height, width, 3] RGB; output is [1, classes]. FP16 variants keep
+        // float32 tensors, INT8 variants may take and return quantised ones
+        Tensor input = tflite.getInputTensor(0);
+        Tensor output = tflite.getOutputTensor(0);
+        int[] inputShape = input.shape();
+        inputHeight = inputShape[1];
+        inputWidth = inputShape[2];
+        inputType = input.dataType();
+        outputType = output.dataType();
+        if (!isSupported(inputType) || !isSupported(outputType)) {
+            throw new IOException("Unsupported tensor types " + inputType + " -> " + outputType);
+        }
+        inputLookup = inputType == DataType.FLOAT32 ? null : quantizeLookup(input);
+        Tensor.QuantizationParams outputQuantization = output.quantizationParams();
+        outputScale = Quantization.outputScale(outputQuantization.getScale());
+        outputZeroPoint = Quantization.outputZeroPoint(outputQuantization.getScale(),
+                outputQuantization.getZeroPoint(), outputType == DataType.INT8);
+        inputBuffer = ByteBuffer.allocateDirect(tflite.getInputTensor(0).numBytes()).order(ByteOrder.nativeOrder());
+        outputBuffer = ByteBuffer.allocateDirect(tflite.getOutputTensor(0).numBytes()).order(ByteOrder.nativeOrder());
+
         int[] outputShape = tflite.getOutputTensor(0).shape();
-        DataType outputDataType = tflite.getOutputTensor(0).dataType();
-        outputBuffer = TensorBuffer.createFixedSize(outputShape, outputDataType);
-        
-        // Validate model output matches labels
         int expectedClasses = outputShape[outputShape.length - 1]; // Last dimension is number of classes
+        probabilities = new float[expectedClasses];
+
+        pixels = new int[inputWidth * inputHeight];
+        scaledBitmap = Bitmap.createBitmap(inputWidth, inputHeight, Bitmap.Config.ARGB_8888);
+        scaledCanvas = new Canvas(scaledBitmap);
+        scaledBounds = new Rect(0, 0, inputWidth, inputHeight);
+
+        // Validate model output matches labels
         if (labels.size() != expectedClasses) {
             Log.w(TAG, "Label count (" + labels.size() + ") doesn't match model output (" + expectedClasses + ")");
             // Adjust labels list to match model output
@@ -88,18 +219,52 @@ public class WasteClassifierModel {
                 }
             }
         }
-        
-        // Setup normalization
-        TensorOperator normalizationOp = new NormalizeOp(IMAGE_MEAN, IMAGE_STD);
-        probabilityProcessor = new TensorProcessor.Builder().add(normalizationOp).build();
-        
+
         // Initialize waste type to category mapping
         initializeWasteGroupMap();
+
+        loadTimeMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "🧠 Model loaded in " + loadTimeMs + " ms (" + inputWidth + "x" + inputHeight
+                + ", " + expectedClasses + " classes, " + describe() + ")");
+    }
+
+    private static boolean isSupported(DataType type) {
+        return type == DataType.FLOAT32 || type == DataType.UINT8 || type == DataType.INT8;
+    }
+
+    /**
+     * Map 0-255 channel values to the quantised input with the tensor's scale and zero
+     * point, so preprocessing copies bytes instead of converting every pixel to float.
+     */
+    private static byte[] quantizeLookup(Tensor input) {
+        Tensor.QuantizationParams params = input.quantizationParams();
+        return Quantization.inputLookup(params.getScale(), params.getZeroPoint(),
+                input.dataType() == DataType.INT8);
+    }
+
+    /**
+     * Create an interpreter on the given backend, moving down the stored ranking while
+     * backends fail to initialise.
+     */
+    private Interpreter openInterpreter(ExecutionBackend chosen) throws IOException {
+        while (true) {
+            try {
+                Interpreter interpreter = new Interpreter(modelFile, chosen.toOptions());
+                backend = chosen;
+                return interpreter;
+            } catch (RuntimeException e) {
+                if (chosen.equals(ExecutionBackend.CPU_DEFAULT)) {
+                    throw new IOException("Cannot create interpreter", e);
+                }
+                Log.w(TAG, "⚠️ Cannot initialise " + chosen, e);
+                chosen = backendSelector.fallBackFrom(chosen);
+            }
+        }
     }
 
     private void initializeWasteGroupMap() {
         wasteGroupMap = new HashMap<>();
-        
+
         // Anorganik items
         wasteGroupMap.put("paper", "ANORGANIK");
         wasteGroupMap.put("cardboard", "ANORGANIK");
@@ -112,7 +277,7 @@ public class WasteClassifierModel {
         wasteGroupMap.put("brown-glass", "ANORGANIK");
         wasteGroupMap.put("white-glass", "ANORGANIK");
         wasteGroupMap.put("glass", "ANORGANIK");
-        
+
         // Organik items
         wasteGroupMap.put("biological", "ORGANIK");
         wasteGroupMap.put("food", "ORGANIK");
@@ -121,7 +286,7 @@ public class WasteClassifierModel {
         wasteGroupMap.put("leaves", "ORGANIK");
         wasteGroupMap.put("wood", "ORGANIK");
         wasteGroupMap.put("organic", "ORGANIK");
-        
+
         // B3 items
         wasteGroupMap.put("battery", "B3");
         wasteGroupMap.put("electronic", "B3");
@@ -130,45 +295,124 @@ public class WasteClassifierModel {
         wasteGroupMap.put("medical", "B3");
     }
 
-    public ClassificationResult classify(Bitmap bitmap) {
+    public synchronized ClassificationResult classify(Bitmap bitmap) {
+        if (tflite == null) {
+            Log.w(TAG, "Classifier was released");
+            return new ClassificationResult("unknown", "ANORGANIK", 0.0f);
+        }
         try {
+            long start = System.nanoTime();
+
             // Preprocess image
-            inputImageBuffer = loadImage(bitmap);
-            
+            loadImage(bitmap, 0);
+            long preprocessed = System.nanoTime();
+
             // Run inference
-            tflite.run(inputImageBuffer.getBuffer(), outputBuffer.getBuffer());
-            
-            // Post-process results manually to avoid TensorLabel issues
-            float[] probabilities = outputBuffer.getFloatArray();
-            
+            runInference();
+            long inferred = System.nanoTime();
+            recordLatency(preprocessed - start, inferred - preprocessed);
+
+            readProbabilities();
+
             // Find the class with highest probability
             int maxIndex = 0;
             float maxProbability = probabilities[0];
-            
+
             for (int i = 1; i < probabilities.length; i++) {
                 if (probabilities[i] > maxProbability) {
                     maxProbability = probabilities[i];
                     maxIndex = i;
                 }
             }
-            
-            // Get predicted label safely
-            String predictedLabel = "unknown";
-            if (maxIndex < labels.size()) {
-                predictedLabel = labels.get(maxIndex);
-            }
-            
-            // Map to waste category
-            String wasteCategory = mapToWasteCategory(predictedLabel);
-            
-            return new ClassificationResult(predictedLabel, wasteCategory, maxProbability);
+
+            return resultFor(maxIndex, maxProbability);
         } catch (Exception e) {
             Log.e(TAG, "Error during classification", e);
             // Return default result
             return new ClassificationResult("unknown", "ANORGANIK", 0.0f);
         }
     }
-    
+
+    /**
+     * Score one camera frame into the caller's array, one entry per label. The frame is
+     * rotated by rotationDegrees (a multiple of 90) while it is scaled into the input,
+     * so no upright copy is made. Returns false if the classifier was released or failed.
+     */
+    public synchronized boolean score(Bitmap frame, int rotationDegrees, float[] scores) {
+        if (tflite == null) {
+            Log.w(TAG, "Classifier was released");
+            return false;
+        }
+        try {
+            long start = System.nanoTime();
+            loadImage(frame, rotationDegrees);
+            long preprocessed = System.nanoTime();
+            runInference();
+            recordLatency(preprocessed - start, System.nanoTime() - preprocessed);
+
+            readProbabilities();
+            System.arraycopy(probabilities, 0, scores, 0, Math.min(scores.length, probabilities.length));
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error scoring frame", e);
+            return false;
+        }
+    }
+
+    /**
+     * Result for the label at index, e.g. the top class of averaged scores.
+     */
+    public ClassificationResult resultFor(int index, float confidence) {
+        // Get predicted label safely
+        String predictedLabel = "unknown";
+        if (index >= 0 && index < labels.size()) {
+            predictedLabel = labels.get(index);
+        }
+
+        // Map to waste category
+        String wasteCategory = mapToWasteCategory(predictedLabel);
+
+        return new ClassificationResult(predictedLabel, wasteCategory, confidence);
+    }
+
+    public int getLabelCount() {
+        return probabilities.length;
+    }
+
+    /**
+     * Run the interpreter on the input buffer. If a delegate fails, the interpreter is
+     * rebuilt on the next backend and the run repeated once.
+     */
+    private void runInference() throws IOException {
+        outputBuffer.rewind();
+        try {
+            tflite.run(inputBuffer, outputBuffer);
+        } catch (RuntimeException e) {
+            if (!backend.usesDelegate()) {
+                throw e;
+            }
+            Log.w(TAG, "⚠️ Inference failed on " + backend, e);
+            tflite.close();
+            tflite = null;
+            tflite = openInterpreter(backendSelector.fallBackFrom(backend));
+            inputBuffer.rewind();
+            outputBuffer.rewind();
+            tflite.run(inputBuffer, outputBuffer);
+        }
+    }
+
+    private void readProbabilities() {
+        outputBuffer.rewind();
+        if (outputType == DataType.FLOAT32) {
+            outputBuffer.asFloatBuffer().get(probabilities);
+            return;
+        }
+        boolean signed = outputType == DataType.INT8;
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = Quantization.dequantize(outputBuffer.get(), outputScale, outputZeroPoint, signed);
+        }
+    }
+
     // Map specific waste label to broader category
     public String mapToWasteCategory(String wasteLabel) {
         // Case insensitive lookup in the map
@@ -177,28 +421,110 @@ public class WasteClassifierModel {
                 return entry.getValue();
             }
         }
-        
+
         // Default to ANORGANIK for unknown types (most common)
         Log.d(TAG, "Unknown waste type: " + wasteLabel + ", defaulting to ANORGANIK");
         return "ANORGANIK";
     }
-    
-    private TensorImage loadImage(Bitmap bitmap) {
-        // Load bitmap into TensorImage
-        inputImageBuffer.load(bitmap);
-        
-        // Create image processor for resizing
-        ImageProcessor imageProcessor = new ImageProcessor.Builder()
-                .add(new ResizeOp(IMAGE_SIZE, IMAGE_SIZE, ResizeOp.ResizeMethod.BILINEAR))
-                .build();
-        
-        return imageProcessor.process(inputImageBuffer);
+
+    /**
+     * Scale the bitmap bilinearly to the input size, turning it upright by rotationDegrees,
+     * and write its RGB values into the input buffer: as 0-255 floats (as TensorImage
+     * loaded them) for float models, or as quantised bytes straight from the lookup table.
+     */
+    private void loadImage(Bitmap bitmap, int rotationDegrees) {
+        if (rotationDegrees % 360 == 0) {
+            scaledCanvas.drawBitmap(bitmap, null, scaledBounds, scalePaint);
+        } else {
+            boolean quarterTurn = rotationDegrees % 180 != 0;
+            float uprightWidth = quarterTurn ? bitmap.getHeight() : bitmap.getWidth();
+            float uprightHeight = quarterTurn ? bitmap.getWidth() : bitmap.getHeight();
+            frameMatrix.setTranslate(-bitmap.getWidth() / 2f, -bitmap.getHeight() / 2f);
+            frameMatrix.postRotate(rotationDegrees);
+            frameMatrix.postScale(inputWidth / uprightWidth, inputHeight / uprightHeight);
+            frameMatrix.postTranslate(inputWidth / 2f, inputHeight / 2f);
+            scaledCanvas.drawBitmap(bitmap, frameMatrix, scalePaint);
+        }
+        scaledBitmap.getPixels(pixels, 0, inputWidth, 0, 0, inputWidth, inputHeight);
+
+        inputBuffer.rewind();
+        if (inputLookup == null) {
+            for (int pixel : pixels) {
+                inputBuffer.putFloat((pixel >> 16) & 0xFF);
+                inputBuffer.putFloat((pixel >> 8) & 0xFF);
+                inputBuffer.putFloat(pixel & 0xFF);
+            }
+        } else {
+            for (int pixel : pixels) {
+                inputBuffer.put(inputLookup[(pixel >> 16) & 0xFF]);
+                inputBuffer.put(inputLookup[(pixel >> 8) & 0xFF]);
+                inputBuffer.put(inputLookup[pixel & 0xFF]);
+            }
+        }
+        inputBuffer.rewind();
     }
-    
-    public void close() {
+
+    private void recordLatency(long preprocessNanos, long inferenceNanos) {
+        inferenceCount++;
+        totalPreprocessNanos += preprocessNanos;
+        totalInferenceNanos += inferenceNanos;
+        maxInferenceNanos = Math.max(maxInferenceNanos, inferenceNanos);
+        lastInferenceNanos = inferenceNanos;
+        Log.d(TAG, "⏱️ Preprocess " + preprocessNanos / 1000000 + " ms, inference "
+                + inferenceNanos / 1000000 + " ms");
+    }
+
+    /**
+     * Model variant, input precision and backend, e.g. "waste_classifier_model FLOAT32 on CPU 4t XNNPACK".
+     */
+    public synchronized String describe() {
+        String name = modelPath.substring(modelPath.lastIndexOf('/') + 1).replace(".tflite", "");
+        return name + " " + inputType + " on " + backend;
+    }
+
+    public DataType getInputType() {
+        return inputType;
+    }
+
+    public synchronized ExecutionBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Benchmark report of the backends on this device, or null before the first benchmark.
+     */
+    public String getBackendReport() {
+        return backendSelector.getLastReport();
+    }
+
+    public long getLoadTimeMs() {
+        return loadTimeMs;
+    }
+
+    public synchronized long getInferenceCount() {
+        return inferenceCount;
+    }
+
+    public synchronized long getAverageInferenceMs() {
+        return inferenceCount == 0 ? 0 : totalInferenceNanos / inferenceCount / 1000000;
+    }
+
+    public synchronized long getLastInferenceMs() {
+        return lastInferenceNanos / 1000000;
+    }
+
+    public synchronized String getStats() {
+        long avgPreprocess = inferenceCount == 0 ? 0 : totalPreprocessNanos / inferenceCount / 1000000;
+        return describe() + " load=" + loadTimeMs + "ms runs=" + inferenceCount + " preprocess avg=" + avgPreprocess
+                + "ms inference avg/max/last=" + getAverageInferenceMs() + "/" + maxInferenceNanos / 1000000
+                + "/" + getLastInferenceMs() + "ms";
+    }
+
+    synchronized void close() {
         if (tflite != null) {
             tflite.close();
             tflite = null;
         }
+        scaledBitmap.recycle();
     }
-}
\ No newline at end of file
+}
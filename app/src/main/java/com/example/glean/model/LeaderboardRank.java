@@ -0,0 +1,43 @@
+package com.example.glean.model;
+
+/**
+ * Cached leaderboard position of one user, stored in leaderboard_ranks/{userId}.
+ * A rank of 0 means the user is outside the top-N of that metric; the cutoff is the
+ * score needed to enter it at the time the rank was computed.
+ */
+public class LeaderboardRank {
+    private int pointsRank;
+    private int distanceRank;
+    private int totalPoints;
+    private double totalDistance;
+    private double pointsCutoff;
+    private double distanceCutoff;
+    private long updatedAt;
+
+    public LeaderboardRank() {} // Required for Firebase
+
+    public int getPointsRank() { return pointsRank; }
+    public void setPointsRank(int pointsRank) { this.pointsRank = pointsRank; }
+
+    public int getDistanceRank() { return distanceRank; }
+    public void setDistanceRank(int distanceRank) { this.distanceRank = distanceRank; }
+
+    public int getTotalPoints() { return totalPoints; }
+    public void setTotalPoints(int totalPoints) { this.totalPoints = totalPoints; }
+
+    public double getTotalDistance() { return totalDistance; }
+    public void setTotalDistance(double totalDistance) { this.totalDistance = totalDistance; }
+
+    public double getPointsCutoff() { return pointsCutoff; }
+    public void setPointsCutoff(double pointsCutoff) { this.pointsCutoff = pointsCutoff; }
+
+    public double getDistanceCutoff() { return distanceCutoff; }
+    public void setDistanceCutoff(double distanceCutoff) { this.distanceCutoff = distanceCutoff; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    public int getRank(boolean byPoints) {
+        return byPoints ? pointsRank : distanceRank;
+    }
+}
@@ -14,7 +14,7 @@ import androidx.room.PrimaryKey;
         childColumns = "recordId",
         onDelete = ForeignKey.CASCADE
     ),
-    indices = {@Index("recordId")}
+    indices = {@Index(value = {"recordId", "timestamp"})}
 )
 public class LocationPointEntity {
     @PrimaryKey(autoGenerate = true)
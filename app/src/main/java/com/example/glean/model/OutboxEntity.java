@@ -0,0 +1,138 @@
+package com.example.glean.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A Firestore mutation waiting to be uploaded by SyncOutboxWorker.
+ *
+ * opId is generated on the device and used as the target document id (or is carried in
+ * the payload), so uploading the same operation twice leaves Firestore unchanged.
+ */
+@Entity(
+    tableName = "sync_outbox",
+    indices = {
+        @Index(value = {"opId"}, unique = true),
+        @Index(value = {"type", "targetId"}),
+        @Index(value = {"userId"})
+    }
+)
+public class OutboxEntity {
+
+    public static final String TYPE_SESSION = "session";
+    public static final String TYPE_TRASH = "trash";
+    public static final String TYPE_PROFILE = "profile";
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    @NonNull
+    private String opId;
+    @NonNull
+    private String type;
+    @NonNull
+    private String userId;
+    private long targetId; // local record or trash id, 0 for profile changes
+    @NonNull
+    private String payload; // JSON object of the fields to write
+    private long createdAt;
+    private int attempts;
+    private String lastError;
+
+    public OutboxEntity() {
+        this.opId = "";
+        this.type = "";
+        this.userId = "";
+        this.payload = "{}";
+    }
+
+    @Ignore
+    public OutboxEntity(@NonNull String opId, @NonNull String type, @NonNull String userId,
+                        long targetId, @NonNull String payload) {
+        this.opId = opId;
+        this.type = type;
+        this.userId = userId;
+        this.targetId = targetId;
+        this.payload = payload;
+        this.createdAt = System.currentTimeMillis();
+        this.attempts = 0;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getOpId() {
+        return opId;
+    }
+
+    public void setOpId(@NonNull String opId) {
+        this.opId = opId;
+    }
+
+    @NonNull
+    public String getType() {
+        return type;
+    }
+
+    public void setType(@NonNull String type) {
+        this.type = type;
+    }
+
+    @NonNull
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(@NonNull String userId) {
+        this.userId = userId;
+    }
+
+    public long getTargetId() {
+        return targetId;
+    }
+
+    public void setTargetId(long targetId) {
+        this.targetId = targetId;
+    }
+
+    @NonNull
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(@NonNull String payload) {
+        this.payload = payload;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.glean.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+
+/**
+ * One row of the last leaderboard snapshot seen for a metric ("totalPoints" or
+ * "totalDistance"), so the ranking tabs can render offline and without waiting.
+ */
+@Entity(
+    tableName = "ranking_cache",
+    primaryKeys = {"metric", "userId"},
+    indices = {@Index(value = {"metric", "position"})}
+)
+public class RankingCacheEntity {
+    @NonNull
+    private String metric;
+    @NonNull
+    private String userId;
+    private int position;
+    private String username;
+    private String fullName;
+    private String photoURL;
+    private String activeAvatar;
+    private int totalPoints;
+    private double totalDistance;
+    private int totalTrashCollected;
+    private long cachedAt;
+
+    public RankingCacheEntity() {
+        this.metric = "";
+        this.userId = "";
+    }
+
+    @Ignore
+    public RankingCacheEntity(@NonNull String metric, RankingUser user, int position, long cachedAt) {
+        this.metric = metric;
+        this.userId = user.getUserId() != null ? user.getUserId() : "";
+        this.position = position;
+        this.username = user.getUsername();
+        this.fullName = user.getFullName();
+        this.photoURL = user.getPhotoURL();
+        this.activeAvatar = user.getActiveAvatar();
+        this.totalPoints = user.getTotalPoints();
+        this.totalDistance = user.getTotalDistance();
+        this.totalTrashCollected = user.getTotalTrashCollected();
+        this.cachedAt = cachedAt;
+    }
+
+    public RankingUser toRankingUser() {
+        RankingUser user = new RankingUser(userId, username, fullName, totalPoints,
+                totalDistance, totalTrashCollected, cachedAt);
+        user.setPhotoURL(photoURL);
+        user.setActiveAvatar(activeAvatar);
+        user.setPosition(position);
+        return user;
+    }
+
+    @NonNull
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(@NonNull String metric) {
+        this.metric = metric;
+    }
+
+    @NonNull
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(@NonNull String userId) {
+        this.userId = userId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+
+    public String getPhotoURL() {
+        return photoURL;
+    }
+
+    public void setPhotoURL(String photoURL) {
+        this.photoURL = photoURL;
+    }
+
+    public String getActiveAvatar() {
+        return activeAvatar;
+    }
+
+    public void setActiveAvatar(String activeAvatar) {
+        this.activeAvatar = activeAvatar;
+    }
+
+    public int getTotalPoints() {
+        return totalPoints;
+    }
+
+    public void setTotalPoints(int totalPoints) {
+        this.totalPoints = totalPoints;
+    }
+
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    public void setTotalDistance(double totalDistance) {
+        this.totalDistance = totalDistance;
+    }
+
+    public int getTotalTrashCollected() {
+        return totalTrashCollected;
+    }
+
+    public void setTotalTrashCollected(int totalTrashCollected) {
+        this.totalTrashCollected = totalTrashCollected;
+    }
+
+    public long getCachedAt() {
+        return cachedAt;
+    }
+
+    public void setCachedAt(long cachedAt) {
+        this.cachedAt = cachedAt;
+    }
+}
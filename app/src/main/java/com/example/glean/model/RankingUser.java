@@ -1,6 +1,7 @@
 package com.example.glean.model;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 public class RankingUser implements Serializable {
     private String userId;
@@ -32,6 +33,22 @@ public class RankingUser implements Serializable {
         this.position = 0;
     }
     
+    public RankingUser(RankingUser other) {
+        this.userId = other.userId;
+        this.username = other.username;
+        this.fullName = other.fullName;
+        this.photoURL = other.photoURL;
+        this.profileImageUrl = other.profileImageUrl;
+        this.activeAvatar = other.activeAvatar;
+        this.totalPoints = other.totalPoints;
+        this.totalDistance = other.totalDistance;
+        this.totalTrashCollected = other.totalTrashCollected;
+        this.trashCount = other.trashCount;
+        this.badgeCount = other.badgeCount;
+        this.position = other.position;
+        this.lastUpdated = other.lastUpdated;
+    }
+    
     // Getters and setters
     public String getUserId() { return userId; }
     public void setUserId(String userId) { this.userId = userId; }
@@ -75,6 +92,21 @@ public class RankingUser implements Serializable {
     public int getPosition() { return position; }
     public void setPosition(int position) { this.position = position; }
     
+    /**
+     * True when everything a ranking row shows is equal, ignoring the position.
+     */
+    public boolean hasSameStats(RankingUser other) {
+        return other != null
+                && Objects.equals(userId, other.userId)
+                && Objects.equals(username, other.username)
+                && Objects.equals(fullName, other.fullName)
+                && Objects.equals(activeAvatar, other.activeAvatar)
+                && Objects.equals(getProfileImageUrl(), other.getProfileImageUrl())
+                && totalPoints == other.totalPoints
+                && Double.compare(totalDistance, other.totalDistance) == 0
+                && totalTrashCollected == other.totalTrashCollected;
+    }
+    
     public String getFormattedStats() {
         return String.format("Points: %d • Distance: %.1fkm • Trash: %d", 
                            totalPoints, totalDistance, totalTrashCollected);
@@ -11,7 +11,7 @@ import androidx.room.Index;
                 parentColumns = "id",
                 childColumns = "userId",
                 onDelete = ForeignKey.CASCADE),
-        indices = {@Index(value = "userId")})
+        indices = {@Index(value = {"userId", "createdAt"})})
 public class RecordEntity {
 
     @PrimaryKey(autoGenerate = true)
@@ -0,0 +1,75 @@
+package com.example.glean.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * Sealed route of a finished plogging record, encoded with
+ * {@link com.example.glean.util.RouteCodec}. Live points stay in location_points
+ * until the session is finished.
+ */
+@Entity(
+    tableName = "record_routes",
+    foreignKeys = @ForeignKey(
+        entity = RecordEntity.class,
+        parentColumns = "id",
+        childColumns = "recordId",
+        onDelete = ForeignKey.CASCADE
+    )
+)
+public class RecordRouteEntity {
+    @PrimaryKey
+    private int recordId;
+    private int pointCount;
+    private int formatVersion;
+    @NonNull
+    private byte[] encodedPoints;
+    
+    public RecordRouteEntity() {
+        this.encodedPoints = new byte[0];
+    }
+    
+    @Ignore
+    public RecordRouteEntity(int recordId, int pointCount, int formatVersion, @NonNull byte[] encodedPoints) {
+        this.recordId = recordId;
+        this.pointCount = pointCount;
+        this.formatVersion = formatVersion;
+        this.encodedPoints = encodedPoints;
+    }
+    
+    public int getRecordId() {
+        return recordId;
+    }
+    
+    public void setRecordId(int recordId) {
+        this.recordId = recordId;
+    }
+    
+    public int getPointCount() {
+        return pointCount;
+    }
+    
+    public void setPointCount(int pointCount) {
+        this.pointCount = pointCount;
+    }
+    
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+    
+    public void setFormatVersion(int formatVersion) {
+        this.formatVersion = formatVersion;
+    }
+    
+    @NonNull
+    public byte[] getEncodedPoints() {
+        return encodedPoints;
+    }
+    
+    public void setEncodedPoints(@NonNull byte[] encodedPoints) {
+        this.encodedPoints = encodedPoints;
+    }
+}
@@ -2,9 +2,12 @@ package com.example.glean.model;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "trash")
+@Entity(tableName = "trash",
+        indices = {@Index(value = {"recordId", "timestamp"}),
+                @Index(value = {"trashType", "timestamp"})})
 public class TrashEntity {
     @PrimaryKey(autoGenerate = true)
     private int id;
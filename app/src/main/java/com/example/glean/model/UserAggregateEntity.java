@@ -0,0 +1,93 @@
+package com.example.glean.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * Running totals of a user's plogging history. Maintained by SQL triggers on the
+ * records and trash tables (see {@link com.example.glean.db.UserAggregateTriggers}),
+ * so dashboards read one row instead of scanning every record.
+ */
+@Entity(
+    tableName = "user_aggregates",
+    foreignKeys = @ForeignKey(
+        entity = UserEntity.class,
+        parentColumns = "id",
+        childColumns = "userId",
+        onDelete = ForeignKey.CASCADE
+    )
+)
+public class UserAggregateEntity {
+    @PrimaryKey
+    private int userId;
+    @ColumnInfo(defaultValue = "0")
+    private int totalPoints;
+    @ColumnInfo(defaultValue = "0")
+    private double totalDistance; // in meters
+    @ColumnInfo(defaultValue = "0")
+    private long totalDuration; // in milliseconds
+    @ColumnInfo(defaultValue = "0")
+    private int totalSessions;
+    @ColumnInfo(defaultValue = "0")
+    private int totalTrash;
+    @ColumnInfo(defaultValue = "0")
+    private long updatedAt;
+    
+    public int getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+    
+    public int getTotalPoints() {
+        return totalPoints;
+    }
+    
+    public void setTotalPoints(int totalPoints) {
+        this.totalPoints = totalPoints;
+    }
+    
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+    
+    public void setTotalDistance(double totalDistance) {
+        this.totalDistance = totalDistance;
+    }
+    
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+    
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+    
+    public int getTotalSessions() {
+        return totalSessions;
+    }
+    
+    public void setTotalSessions(int totalSessions) {
+        this.totalSessions = totalSessions;
+    }
+    
+    public int getTotalTrash() {
+        return totalTrash;
+    }
+    
+    public void setTotalTrash(int totalTrash) {
+        this.totalTrash = totalTrash;
+    }
+    
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -2,9 +2,13 @@ package com.example.glean.model;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "users")
+@Entity(tableName = "users",
+        indices = {@Index(value = "username"),
+                @Index(value = "email"),
+                @Index(value = "points")})
 public class UserEntity {
     @PrimaryKey(autoGenerate = true)
     private int id;
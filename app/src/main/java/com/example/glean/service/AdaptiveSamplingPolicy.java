@@ -0,0 +1,190 @@
+package com.example.glean.service;
+
+import com.example.glean.util.GeoUtils;
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Chooses the GPS sampling rate for an active plogging session.
+ *
+ * Stillness uses the same anchor-and-radius idea as
+ * PloggingFragment.checkLocationMovement(): while every fix stays within
+ * {@link #STILL_RADIUS_METERS} of an anchor for {@link #STILL_WINDOW_MS} the user is
+ * treated as stationary and sampling drops to balanced power. Fast pace or a sharp
+ * change of heading tightens the interval. Walking uses no displacement filter so
+ * fixes keep arriving while standing still and stillness can be detected.
+ *
+ * Every decision is counted in {@link Metrics} so fixes per km and time spent per
+ * mode can be compared across sessions.
+ */
+public class AdaptiveSamplingPolicy {
+
+    public enum Mode {
+        STATIONARY(15000, 10000, 5f, LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY),
+        WALKING(4000, 2000, 0f, LocationRequest.PRIORITY_HIGH_ACCURACY),
+        FAST(2000, 1000, 1f, LocationRequest.PRIORITY_HIGH_ACCURACY);
+
+        public final long intervalMs;
+        public final long fastestIntervalMs;
+        public final float smallestDisplacementMeters;
+        public final int priority;
+
+        Mode(long intervalMs, long fastestIntervalMs, float smallestDisplacementMeters, int priority) {
+            this.intervalMs = intervalMs;
+            this.fastestIntervalMs = fastestIntervalMs;
+            this.smallestDisplacementMeters = smallestDisplacementMeters;
+            this.priority = priority;
+        }
+    }
+
+    static final float STILL_RADIUS_METERS = 15f;
+    static final long STILL_WINDOW_MS = 60 * 1000; // 1 minute
+    static final float FAST_SPEED_MPS = 2.5f; // brisk jog
+    static final float SHARP_TURN_DEGREES = 45f;
+    static final long TURN_HOLD_MS = 20 * 1000; // keep the fast rate through a turn
+
+    private final Metrics metrics = new Metrics();
+
+    private Mode mode = Mode.WALKING;
+    private long modeSince = -1;
+    private double anchorLat;
+    private double anchorLng;
+    private long anchorTime = -1;
+    private float lastBearing = Float.NaN;
+    private long fastUntil = 0;
+
+    /**
+     * Counters describing the policy's decisions for one session.
+     */
+    public static class Metrics {
+        private int fixCount;
+        private double distanceMeters;
+        private int modeSwitches;
+        private final long[] timeInModeMs = new long[Mode.values().length];
+        private final int[] fixesInMode = new int[Mode.values().length];
+
+        public int getFixCount() {
+            return fixCount;
+        }
+
+        public double getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        public int getModeSwitches() {
+            return modeSwitches;
+        }
+
+        public long getTimeInModeMs(Mode mode) {
+            return timeInModeMs[mode.ordinal()];
+        }
+
+        public int getFixesInMode(Mode mode) {
+            return fixesInMode[mode.ordinal()];
+        }
+
+        /**
+         * @return fixes per kilometer, or 0 before the first kilometer fraction
+         */
+        public double getFixesPerKm() {
+            return distanceMeters > 0 ? fixCount / (distanceMeters / 1000.0) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US,
+                    "fixes=%d distance=%.0fm fixes/km=%.1f switches=%d still=%ds walking=%ds fast=%ds",
+                    fixCount, distanceMeters, getFixesPerKm(), modeSwitches,
+                    timeInModeMs[Mode.STATIONARY.ordinal()] / 1000,
+                    timeInModeMs[Mode.WALKING.ordinal()] / 1000,
+                    timeInModeMs[Mode.FAST.ordinal()] / 1000);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Feed an accepted fix.
+     *
+     * @param timeMs           fix time in milliseconds
+     * @param distanceFromLast distance to the previous fix in meters
+     * @param speed            reported speed in m/s, or a negative value if unknown
+     * @param bearing          reported bearing in degrees, or NaN if unknown
+     * @return true if the mode changed and the location request should be updated
+     */
+    public boolean onFix(long timeMs, double latitude, double longitude,
+                         float distanceFromLast, float speed, float bearing) {
+        if (modeSince < 0) {
+            modeSince = timeMs;
+        }
+        metrics.fixCount++;
+        metrics.fixesInMode[mode.ordinal()]++;
+        metrics.distanceMeters += distanceFromLast;
+
+        boolean movedOffAnchor = false;
+        if (anchorTime < 0) {
+            resetAnchor(timeMs, latitude, longitude);
+        } else if (GeoUtils.distanceMeters(anchorLat, anchorLng, latitude, longitude) > STILL_RADIUS_METERS) {
+            movedOffAnchor = true;
+            resetAnchor(timeMs, latitude, longitude);
+        }
+
+        if (!Float.isNaN(bearing) && !Float.isNaN(lastBearing)
+                && headingChange(lastBearing, bearing) >= SHARP_TURN_DEGREES) {
+            fastUntil = timeMs + TURN_HOLD_MS;
+        }
+        if (!Float.isNaN(bearing)) {
+            lastBearing = bearing;
+        }
+
+        Mode next;
+        if (!movedOffAnchor && timeMs - anchorTime >= STILL_WINDOW_MS) {
+            next = Mode.STATIONARY;
+        } else if (speed >= FAST_SPEED_MPS || timeMs < fastUntil) {
+            next = Mode.FAST;
+        } else if (mode == Mode.STATIONARY && !movedOffAnchor) {
+            // Stay put until the user actually leaves the anchor radius
+            next = Mode.STATIONARY;
+        } else {
+            next = Mode.WALKING;
+        }
+
+        return switchTo(next, timeMs);
+    }
+
+    /**
+     * Close the current mode interval so time-in-mode is complete.
+     */
+    public void finish(long timeMs) {
+        if (modeSince >= 0 && timeMs > modeSince) {
+            metrics.timeInModeMs[mode.ordinal()] += timeMs - modeSince;
+            modeSince = timeMs;
+        }
+    }
+
+    private boolean switchTo(Mode next, long timeMs) {
+        if (next == mode) {
+            return false;
+        }
+        finish(timeMs);
+        mode = next;
+        metrics.modeSwitches++;
+        return true;
+    }
+
+    private void resetAnchor(long timeMs, double latitude, double longitude) {
+        anchorLat = latitude;
+        anchorLng = longitude;
+        anchorTime = timeMs;
+    }
+
+    static float headingChange(float from, float to) {
+        float diff = Math.abs(to - from) % 360f;
+        return diff > 180f ? 360f - diff : diff;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.glean.service;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.glean.db.AppDatabase;
+import com.example.glean.model.RecordEntity;
+import com.example.glean.model.UserProfile;
+import com.example.glean.model.UserStats;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pulls only what changed in Firestore since the last sync of a user and merges it into Room.
+ *
+ * Every source keeps a watermark, the newest change already merged, in SharedPreferences
+ * per Firebase user. Sessions are queried by their server-assigned syncedAt field; the
+ * profile and stats documents are returned only when their lastUpdated moved past the
+ * watermark. A watermark advances only once its changes are in Room: sessions are merged
+ * here, stats and profile by the caller, which then calls {@link #markMerged}. Each run
+ * reports how many documents it read.
+ */
+public class DeltaSync {
+
+    private static final String TAG = "DeltaSync";
+    private static DeltaSync instance;
+
+    private static final String PREFS_PREFIX = "delta_sync_";
+    static final String SOURCE_PROFILE = "users";
+    static final String SOURCE_STATS = "user_stats";
+    static final String SOURCE_SESSIONS = "sessions";
+
+    private static final String COLLECTION_RECORDS = "user_records";
+    static final String FIELD_SYNCED_AT = "syncedAt";
+    static final int PAGE_SIZE = 200;
+    private static final long READ_TIMEOUT_SECONDS = 30;
+
+    private final Context context;
+    private final AppDatabase localDb;
+    private final FirebaseFirestore firestore;
+
+    // Counters since process start
+    private int syncs = 0;
+    private long totalDocumentsRead = 0;
+
+    /**
+     * What one delta sync found. Stats and profile are null when they did not change;
+     * their lastUpdated values are what to pass to {@link #markMerged} once merged.
+     */
+    public static class Result {
+        public final UserStats stats;
+        public final long statsUpdatedAt;
+        public final UserProfile profile;
+        public final long profileUpdatedAt;
+        public final int sessionsMerged;
+        public final int documentsRead;
+
+        Result(UserStats stats, long statsUpdatedAt, UserProfile profile, long profileUpdatedAt,
+               int sessionsMerged, int documentsRead) {
+            this.stats = stats;
+            this.statsUpdatedAt = statsUpdatedAt;
+            this.profile = profile;
+            this.profileUpdatedAt = profileUpdatedAt;
+            this.sessionsMerged = sessionsMerged;
+            this.documentsRead = documentsRead;
+        }
+
+        @Override
+        public String toString() {
+            return "read=" + documentsRead + " sessions=" + sessionsMerged
+                    + " stats=" + (stats != null ? "changed" : "unchanged")
+                    + " profile=" + (profile != null ? "changed" : "unchanged");
+        }
+    }
+
+    private DeltaSync(Context context) {
+        this.context = context.getApplicationContext();
+        this.localDb = AppDatabase.getInstance(context);
+        this.firestore = FirebaseFirestore.getInstance();
+    }
+
+    public static synchronized DeltaSync getInstance(Context context) {
+        if (instance == null) {
+            instance = new DeltaSync(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Run one delta sync for a user. Blocks on Firestore, so call it on the network lane.
+     * Reads go to the server: offline the sync fails and every watermark stays where it was.
+     *
+     * @param localUserId Room id of the user, or -1 to skip merging sessions
+     */
+    public Result sync(String userId, int localUserId) throws Exception {
+        SharedPreferences watermarks = watermarks(userId);
+        int[] documentsRead = {0};
+
+        UserStats stats = null;
+        DocumentSnapshot statsDoc = await(firestore.collection(SOURCE_STATS).document(userId).get(Source.SERVER));
+        documentsRead[0]++;
+        long statsUpdatedAt = lastUpdated(statsDoc);
+        if (statsDoc.exists() && isNewer(watermarks, SOURCE_STATS, statsUpdatedAt)) {
+            stats = statsDoc.toObject(UserStats.class);
+        }
+
+        UserProfile profile = null;
+        DocumentSnapshot profileDoc = await(firestore.collection(SOURCE_PROFILE).document(userId).get(Source.SERVER));
+        documentsRead[0]++;
+        long profileUpdatedAt = lastUpdated(profileDoc);
+        if (profileDoc.exists() && isNewer(watermarks, SOURCE_PROFILE, profileUpdatedAt)) {
+            profile = profileDoc.toObject(UserProfile.class);
+        }
+
+        int sessionsMerged = localUserId != -1 ? pullSessions(userId, localUserId, watermarks, documentsRead) : 0;
+
+        Result result = new Result(stats, stats != null ? statsUpdatedAt : 0,
+                profile, profile != null ? profileUpdatedAt : 0, sessionsMerged, documentsRead[0]);
+        synchronized (this) {
+            syncs++;
+            totalDocumentsRead += result.documentsRead;
+        }
+        Log.d(TAG, "📉 Delta sync for " + userId + ": " + result + " (total read " + totalDocumentsRead
+                + " in " + syncs + " syncs)");
+        return result;
+    }
+
+    public synchronized long getTotalDocumentsRead() {
+        return totalDocumentsRead;
+    }
+
+    /**
+     * Record that the stats or profile change returned by {@link #sync} is now in Room,
+     * so the next sync skips it. A change that failed to merge is returned again.
+     */
+    public void markMerged(String userId, String source, long lastUpdated) {
+        advance(watermarks(userId), source, lastUpdated);
+    }
+
+    private SharedPreferences watermarks(String userId) {
+        return context.getSharedPreferences(PREFS_PREFIX + userId, Context.MODE_PRIVATE);
+    }
+
+    private static long lastUpdated(DocumentSnapshot doc) {
+        Object value = doc.get("lastUpdated");
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    static boolean isNewer(SharedPreferences watermarks, String source, long lastUpdated) {
+        return lastUpdated > watermarks.getLong(source, 0);
+    }
+
+    /**
+     * Move a watermark forward; it never moves back.
+     */
+    static void advance(SharedPreferences watermarks, String source, long merged) {
+        if (merged > watermarks.getLong(source, 0)) {
+            watermarks.edit().putLong(source, merged).apply();
+        }
+    }
+
+    /**
+     * Merge sessions uploaded since the watermark, page by page. Sessions already in Room
+     * (same user and start time) are skipped, so re-reading the boundary page is harmless.
+     */
+    private int pullSessions(String userId, int localUserId, SharedPreferences watermarks, int[] documentsRead)
+            throws Exception {
+        long watermark = watermarks.getLong(SOURCE_SESSIONS, 0);
+        if (watermark > 0 && localDb.recordDao().getRecordCountByUserId(localUserId) == 0) {
+            // Local data was wiped since the last sync: start over
+            Log.d(TAG, "🔄 No local sessions for user " + localUserId + " - resetting session watermark");
+            watermark = 0;
+        }
+
+        Query query = firestore.collection(COLLECTION_RECORDS).document(userId)
+                .collection(SOURCE_SESSIONS)
+                .whereGreaterThanOrEqualTo(FIELD_SYNCED_AT, new Timestamp(new Date(watermark)))
+                .orderBy(FIELD_SYNCED_AT)
+                .limit(PAGE_SIZE);
+
+        int merged = 0;
+        DocumentSnapshot last = null;
+        while (true) {
+            Query page = last != null ? query.startAfter(last) : query;
+            QuerySnapshot snapshot = await(page.get(Source.SERVER));
+            documentsRead[0] += snapshot.size();
+            if (snapshot.isEmpty()) {
+                break;
+            }
+
+            List<RecordEntity> records = new ArrayList<>();
+            for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                Timestamp syncedAt = doc.getTimestamp(FIELD_SYNCED_AT);
+                if (syncedAt != null) {
+                    watermark = Math.max(watermark, syncedAt.toDate().getTime());
+                }
+                RecordEntity record = toRecord(doc, localUserId);
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+            int[] inserted = {0};
+            localDb.runInTransaction(() -> {
+                for (RecordEntity record : records) {
+                    if (localDb.recordDao().countByCreatedAtSync(localUserId, record.getCreatedAt()) == 0) {
+                        localDb.recordDao().insert(record);
+                        inserted[0]++;
+                    }
+                }
+            });
+            merged += inserted[0];
+            // Advance only after the page is in Room
+            watermarks.edit().putLong(SOURCE_SESSIONS, watermark).apply();
+
+            if (snapshot.size() < PAGE_SIZE) {
+                break;
+            }
+            last = snapshot.getDocuments().get(snapshot.size() - 1);
+        }
+        return merged;
+    }
+
+    private static RecordEntity toRecord(DocumentSnapshot doc, int localUserId) {
+        Long createdAt = doc.getLong("createdAt");
+        if (createdAt == null) {
+            Log.w(TAG, "⚠️ Skipping session " + doc.getId() + " without createdAt");
+            return null;
+        }
+        RecordEntity record = new RecordEntity(localUserId,
+                (float) number(doc, "distance").doubleValue(),
+                number(doc, "duration").longValue(),
+                number(doc, "points").intValue());
+        record.setAverageSpeed((float) number(doc, "averageSpeed").doubleValue());
+        record.setStartLatitude(number(doc, "startLatitude").doubleValue());
+        record.setStartLongitude(number(doc, "startLongitude").doubleValue());
+        record.setEndLatitude(number(doc, "endLatitude").doubleValue());
+        record.setEndLongitude(number(doc, "endLongitude").doubleValue());
+        record.setType(doc.getString("type"));
+        record.setCreatedAt(createdAt);
+        Long updatedAt = doc.getLong("updatedAt");
+        record.setUpdatedAt(updatedAt != null ? updatedAt : createdAt);
+        record.setUploaded(true);
+        return record;
+    }
+
+    private static Number number(DocumentSnapshot doc, String field) {
+        Object value = doc.get(field);
+        return value instanceof Number ? (Number) value : 0;
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
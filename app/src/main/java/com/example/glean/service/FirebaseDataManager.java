@@ -6,13 +6,19 @@ import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
+import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.MutableLiveData;
 
 import com.example.glean.auth.FirebaseAuthManager;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.model.RecordEntity;
+import com.example.glean.model.UserAggregateEntity;
 import com.example.glean.model.UserEntity;
+import com.example.glean.util.AppExecutors;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
@@ -21,8 +27,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 import com.example.glean.model.UserStats;
 import com.example.glean.model.RankingUser;
 import com.example.glean.model.UserProfile;
@@ -40,12 +45,10 @@ public class FirebaseDataManager {
     
     private FirebaseFirestore firestore;
     private AppDatabase localDb;
-    private ExecutorService executor;
+    private Executor executor;
+    private Executor networkExecutor; // Work that blocks on Firestore
     private Context context;
     private FirebaseAuthManager authManager;
-    private ListenerRegistration statsListener;
-    private ListenerRegistration rankingListener;
-    private ListenerRegistration profileListener;
     
     // Cached user data objects
     private UserStats userStats;
@@ -79,8 +82,10 @@ public class FirebaseDataManager {
         this.context = context.getApplicationContext();
         this.firestore = FirebaseFirestore.getInstance();
         this.localDb = AppDatabase.getInstance(context);
-        this.executor = Executors.newSingleThreadExecutor();
+        this.executor = AppExecutors.getInstance().io().serial();
+        this.networkExecutor = AppExecutors.getInstance().network().serial();
         this.authManager = FirebaseAuthManager.getInstance(context);
+        LeaderboardService.getInstance().setCandidateSource(this::loadLeaderboardCandidates);
     }
     
     public static synchronized FirebaseDataManager getInstance(Context context) {
@@ -91,7 +96,8 @@ public class FirebaseDataManager {
     }
     
     /**
-     * Sinkronisasi semua data user ke Firebase
+     * Sinkronisasi data user dari Firebase
+     * Delta sync: only documents changed since the last sync are read and merged into Room
      */
     public void syncAllUserData(DataSyncCallback callback) {
         if (!isUserLoggedIn()) {
@@ -99,18 +105,23 @@ public class FirebaseDataManager {
             return;
         }
         
-        executor.execute(() -> {
+        networkExecutor.execute(() -> {
             try {
                 String userId = getCurrentUserId();
                 
-                // Sync stats
-                syncUserStats(userId);
-                
-                // Sync ranking data
-                syncUserRanking(userId);
+                DeltaSync deltaSync = DeltaSync.getInstance(context);
+                DeltaSync.Result result = deltaSync.sync(userId, getCurrentLocalUserId());
                 
-                // Sync profile
-                syncUserProfile(userId);
+                // The watermarks move only once the change is in Room
+                if (result.stats != null) {
+                    updateLocalStatsData(result.stats, () ->
+                            deltaSync.markMerged(userId, DeltaSync.SOURCE_STATS, result.statsUpdatedAt));
+                }
+                if (result.profile != null) {
+                    updateLocalProfileData(validateAndCompleteProfile(result.profile), () ->
+                            deltaSync.markMerged(userId, DeltaSync.SOURCE_PROFILE, result.profileUpdatedAt));
+                }
+                // Rankings are revalidated by RankingCache on their own TTL
                 
                 callback.onSuccess();
                 
@@ -121,53 +132,42 @@ public class FirebaseDataManager {
         });
     }    /**
      * Ambil dan sinkronkan data statistik user secara real-time
-     */    public void subscribeToUserStats(StatsDataCallback callback) {
+     * Observers of the same user share one listener, detached when the last owner stops
+     */    public void subscribeToUserStats(LifecycleOwner owner, StatsDataCallback callback) {
         if (!isUserLoggedIn()) {
             callback.onError("User not logged in");
             return;
         }
 
         String userId = getCurrentUserId();
-        logDataSource("UserStats", "Fresh-Firebase-Fetch", userId);
+        logDataSource("UserStats", "Firebase-Listener", userId);
 
-        // Unsubscribe previous listener
-        if (statsListener != null) {
-            statsListener.remove();
-        }
+        ListenerRegistry.getInstance().observe(owner, COLLECTION_STATS + "/" + userId,
+                dispatcher -> statsListener(userId, dispatcher),
+                new ListenerRegistry.Observer<UserStats>() {
+                    @Override
+                    public void onChanged(UserStats stats) {
+                        callback.onStatsLoaded(stats);
+                    }
 
-        // ENHANCED: First, force fresh data fetch from Firebase
-        Log.d(TAG, "🔥 First fetching fresh stats, then setting up real-time listener for user: " + userId);
-        
-        fetchFreshUserStats(new StatsDataCallback() {
-            @Override
-            public void onStatsLoaded(UserStats stats) {
-                logDataSource("UserStats", "Firebase-Fresh-Success", userId);
-                // Fresh data loaded, now callback and set up real-time listener
-                callback.onStatsLoaded(stats);
-                setupStatsRealTimeListener(userId, callback);
-            }
-            
-            @Override
-            public void onError(String error) {
-                Log.w(TAG, "Failed to fetch fresh stats, setting up real-time listener anyway: " + error);
-                logDataSource("UserStats", "Firebase-Fresh-Failed", userId);
-                // Even if fresh fetch fails, set up real-time listener
-                setupStatsRealTimeListener(userId, callback);
-            }
-        });
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                });
     }
     
     /**
-     * Set up real-time listener for user stats
+     * Real-time listener for user stats, shared through ListenerRegistry.
+     * Local side effects run once per snapshot, not once per observer.
      */
-    private void setupStatsRealTimeListener(String userId, StatsDataCallback callback) {
-        // Subscribe to real-time stats updates
-        statsListener = firestore.collection(COLLECTION_STATS)
+    private ListenerRegistration statsListener(String userId, ListenerRegistry.Observer<UserStats> dispatcher) {
+        return firestore.collection(COLLECTION_STATS)
                 .document(userId)
                 .addSnapshotListener((documentSnapshot, e) -> {
                     if (e != null) {
                         Log.w(TAG, "Listen failed for stats", e);
-                        callback.onError(e.getMessage());
+                        dispatcher.onError(e.getMessage());
                         return;
                     }
 
@@ -177,87 +177,174 @@ public class FirebaseDataManager {
                             Log.d(TAG, "🔥 Real-time stats update received: " + stats.toString());
                             // Update local database with real-time data
                             updateLocalStatsData(stats);
-                            callback.onStatsLoaded(stats);
+                            dispatcher.onChanged(stats);
                         }
                     } else {
                         Log.d(TAG, "🔥 Stats document deleted or doesn't exist");
                         // Document was deleted or doesn't exist, create default
-                        createDefaultStats(userId, callback);
+                        createDefaultStats(userId, new StatsDataCallback() {
+                            @Override
+                            public void onStatsLoaded(UserStats stats) {
+                                dispatcher.onChanged(stats);
+                            }
+
+                            @Override
+                            public void onError(String error) {
+                                dispatcher.onError(error);
+                            }
+                        });
                     }
                 });
     }
       /**
      * Ambil dan sinkronkan data ranking secara real-time
-     * Fetches all users from 'users' collection and sorts them for ranking
-     */    public void subscribeToRanking(RankingDataCallback callback) {
+     * Reads the precomputed points leaderboard (a single document)
+     */    public void subscribeToRanking(LifecycleOwner owner, RankingDataCallback callback) {
+        subscribeToRanking(owner, LeaderboardRanker.METRIC_POINTS, callback);
+    }
+    
+    /**
+     * Ambil dan sinkronkan data ranking secara real-time untuk satu metrik
+     * (LeaderboardRanker.METRIC_POINTS atau METRIC_DISTANCE)
+     */
+    public void subscribeToRanking(LifecycleOwner owner, String metric, RankingDataCallback callback) {
         if (!isUserLoggedIn()) {
             callback.onError("User not logged in");
             return;
         }
         
-        // Unsubscribe previous listener
-        if (rankingListener != null) {
-            rankingListener.remove();
-        }
-        
-        Log.d(TAG, "🏆 Subscribing to ranking data - combining users and user_stats collections");
+        Log.d(TAG, "🏆 Subscribing to " + metric + " leaderboard");
         
-        // First get all users to get basic info (nama, email, photoURL)
-        rankingListener = firestore.collection(COLLECTION_USERS)
-                .addSnapshotListener((userSnapshots, e) -> {
-                    if (e != null) {
-                        Log.w(TAG, "Listen failed for ranking users", e);
-                        callback.onError(e.getMessage());
-                        return;
+        ListenerRegistry.getInstance().observe(owner, "leaderboards/" + metric,
+                dispatcher -> LeaderboardService.getInstance().subscribe(metric, new LeaderboardService.LeaderboardListener() {
+                    @Override
+                    public void onLeaderboardLoaded(List<RankingUser> ranking) {
+                        Log.d(TAG, "🏆 Leaderboard loaded: " + ranking.size() + " users");
+                        dispatcher.onChanged(ranking);
                     }
                     
-                    if (userSnapshots != null) {
-                        Log.d(TAG, "🏆 Processing ranking data from " + userSnapshots.size() + " users");
-                        
-                        // Get all user_stats to get the actual points and distance
-                        firestore.collection(COLLECTION_STATS)
-                                .get()
-                                .addOnSuccessListener(statsSnapshots -> {
-                                    List<RankingUser> ranking = new ArrayList<>();
-                                    
-                                    // Create a map of user stats for quick lookup
-                                    Map<String, DocumentSnapshot> statsMap = new HashMap<>();
-                                    for (DocumentSnapshot statsDoc : statsSnapshots.getDocuments()) {
-                                        statsMap.put(statsDoc.getId(), statsDoc);
-                                    }
-                                    
-                                    // Process each user document
-                                    for (DocumentSnapshot userDoc : userSnapshots.getDocuments()) {
-                                        try {
-                                            RankingUser user = createRankingUserFromCombinedData(userDoc, statsMap.get(userDoc.getId()));
-                                            if (user != null) {
-                                                ranking.add(user);
-                                            }
-                                        } catch (Exception ex) {
-                                            Log.w(TAG, "⚠️ Error parsing user document for ranking: " + userDoc.getId(), ex);
-                                        }
-                                    }
-                                    
-                                    // Sort by totalPoints in descending order
-                                    ranking.sort((a, b) -> Integer.compare(b.getTotalPoints(), a.getTotalPoints()));
-                                    
-                                    // Limit to top 100 users
-                                    if (ranking.size() > 100) {
-                                        ranking = ranking.subList(0, 100);
-                                    }
-                                    
-                                    Log.d(TAG, "🏆 Ranking data processed: " + ranking.size() + " users");
-                                    callback.onRankingLoaded(ranking);
-                                })
-                                .addOnFailureListener(statsError -> {
-                                    Log.e(TAG, "❌ Failed to load user_stats for ranking", statsError);
-                                    callback.onError("Failed to load user stats: " + statsError.getMessage());
-                                });
-                    } else {
-                        Log.w(TAG, "⚠️ No ranking data available");
-                        callback.onRankingLoaded(new ArrayList<>());
+                    @Override
+                    public void onLeaderboardMissing() {
+                        seedLeaderboard(metric, new RankingDataCallback() {
+                            @Override
+                            public void onRankingLoaded(List<RankingUser> ranking) {
+                                dispatcher.onChanged(ranking);
+                            }
+                            
+                            @Override
+                            public void onError(String error) {
+                                dispatcher.onError(error);
+                            }
+                        });
+                    }
+                    
+                    @Override
+                    public void onError(String error) {
+                        dispatcher.onError(error);
+                    }
+                }),
+                new ListenerRegistry.Observer<List<RankingUser>>() {
+                    @Override
+                    public void onChanged(List<RankingUser> ranking) {
+                        callback.onRankingLoaded(ranking);
+                    }
+                    
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
                     }
                 });
+    }
+    
+    /**
+     * Build a missing leaderboard shard from the top user_stats documents.
+     * LeaderboardService runs one backfill per metric at a time and writes the shard only
+     * while it is still missing or short, so repeated missing snapshots are harmless;
+     * afterwards score changes are merged by LeaderboardService and the shard listener
+     * delivers the result.
+     */
+    private void seedLeaderboard(String metric, RankingDataCallback callback) {
+        Log.d(TAG, "🏆 No " + metric + " leaderboard yet - seeding from user_stats");
+        
+        LeaderboardService.getInstance().backfill(metric)
+                .addOnFailureListener(e -> callback.onError("Failed to build leaderboard: " + e.getMessage()));
+    }
+    
+    /**
+     * Top users of a metric from user_stats with their profiles, for leaderboard backfills.
+     */
+    private Task<List<RankingUser>> loadLeaderboardCandidates(String metric, int limit) {
+        return firestore.collection(COLLECTION_STATS)
+                .orderBy(LeaderboardRanker.scoreField(metric), Query.Direction.DESCENDING)
+                .limit(limit)
+                .get()
+                .onSuccessTask(statsSnapshots -> joinUserProfiles(statsSnapshots.getDocuments()));
+    }
+    
+    /**
+     * Load one page of a leaderboard from user_stats, ordered by score descending and then
+     * document id ascending, the tie order of the shard, RankingTree and RankService.
+     * Served by the composite indexes in firestore.indexes.json.
+     *
+     * @param cursor null for the top, a score to start at, or the last stats document of
+     *               the previous page
+     */
+    public void loadRankingPage(String metric, Object cursor, int pageSize, RankingPager.PageCallback callback) {
+        Query query = firestore.collection(COLLECTION_STATS)
+                .orderBy(LeaderboardRanker.scoreField(metric), Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.ASCENDING);
+        if (cursor instanceof DocumentSnapshot) {
+            query = query.startAfter((DocumentSnapshot) cursor);
+        } else if (cursor != null) {
+            query = query.startAt(cursor);
+        }
+        
+        query.limit(pageSize)
+                .get()
+                .addOnSuccessListener(statsSnapshots -> {
+                    List<DocumentSnapshot> statsDocs = statsSnapshots.getDocuments();
+                    DocumentSnapshot nextCursor = statsDocs.size() < pageSize
+                            ? null : statsDocs.get(statsDocs.size() - 1);
+                    joinUserProfiles(statsDocs)
+                            .addOnSuccessListener(users -> {
+                                Log.d(TAG, "📄 Loaded " + metric + " ranking page: " + users.size() + " users");
+                                callback.onPageLoaded(users, nextCursor);
+                            })
+                            .addOnFailureListener(e -> {
+                                Log.e(TAG, "❌ Failed to join profiles for " + metric + " ranking page", e);
+                                callback.onError("Failed to load ranking page: " + e.getMessage());
+                            });
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Failed to load " + metric + " ranking page", e);
+                    callback.onError("Failed to load ranking page: " + e.getMessage());
+                });
+    }
+    
+    /**
+     * Fetch the users profile of every stats document and combine them, keeping the order
+     * of the stats documents. Users without a profile are left out.
+     */
+    private Task<List<RankingUser>> joinUserProfiles(List<DocumentSnapshot> statsDocs) {
+        List<Task<DocumentSnapshot>> userTasks = new ArrayList<>();
+        for (DocumentSnapshot statsDoc : statsDocs) {
+            userTasks.add(firestore.collection(COLLECTION_USERS).document(statsDoc.getId()).get());
+        }
+        
+        return Tasks.whenAllComplete(userTasks).continueWith(done -> {
+            List<RankingUser> users = new ArrayList<>();
+            for (int i = 0; i < statsDocs.size(); i++) {
+                Task<DocumentSnapshot> userTask = userTasks.get(i);
+                if (!userTask.isSuccessful() || !userTask.getResult().exists()) {
+                    continue;
+                }
+                RankingUser user = createRankingUserFromCombinedData(userTask.getResult(), statsDocs.get(i));
+                if (user != null) {
+                    users.add(user);
+                }
+            }
+            return users;
+        });
     }    /**
      * Create RankingUser from combined user profile and stats data
      */
@@ -565,7 +652,7 @@ public class FirebaseDataManager {
     /**
      * Ambil dan sinkronkan data profile user secara real-time
      */
-    public void subscribeToUserProfile(ProfileDataCallback callback) {
+    public void subscribeToUserProfile(LifecycleOwner owner, ProfileDataCallback callback) {
         if (!isUserLoggedIn()) {
             callback.onError("User not logged in");
             return;
@@ -573,18 +660,31 @@ public class FirebaseDataManager {
         
         String userId = getCurrentUserId();
         
-        // Unsubscribe previous listener
-        if (profileListener != null) {
-            profileListener.remove();
-        }
-        
-        // Subscribe to real-time profile updates
-        profileListener = firestore.collection(COLLECTION_USERS)
+        ListenerRegistry.getInstance().observe(owner, COLLECTION_USERS + "/" + userId,
+                dispatcher -> profileListener(userId, dispatcher),
+                new ListenerRegistry.Observer<UserProfile>() {
+                    @Override
+                    public void onChanged(UserProfile profile) {
+                        callback.onProfileLoaded(profile);
+                    }
+                    
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                });
+    }
+    
+    /**
+     * Real-time listener for the user profile, shared through ListenerRegistry
+     */
+    private ListenerRegistration profileListener(String userId, ListenerRegistry.Observer<UserProfile> dispatcher) {
+        return firestore.collection(COLLECTION_USERS)
                 .document(userId)
                 .addSnapshotListener((documentSnapshot, e) -> {
                     if (e != null) {
                         Log.w(TAG, "Listen failed for profile", e);
-                        callback.onError(e.getMessage());
+                        dispatcher.onError(e.getMessage());
                         return;
                     }
                       if (documentSnapshot != null && documentSnapshot.exists()) {
@@ -595,105 +695,20 @@ public class FirebaseDataManager {
                             
                             // Update local database
                             updateLocalProfileData(profile);
-                            callback.onProfileLoaded(profile);
+                            dispatcher.onChanged(profile);
                         } else {
                             Log.w(TAG, "Profile data is null, creating fallback profile");
                             // Create a fallback profile with Firebase Auth data
-                            UserProfile fallbackProfile = validateAndCompleteProfile(null);
-                            callback.onProfileLoaded(fallbackProfile);
+                            dispatcher.onChanged(validateAndCompleteProfile(null));
                         }
                     } else {
                         Log.w(TAG, "Profile document doesn't exist, creating fallback profile");
                         // Create a fallback profile with Firebase Auth data  
-                        UserProfile fallbackProfile = validateAndCompleteProfile(null);
-                        callback.onProfileLoaded(fallbackProfile);
+                        dispatcher.onChanged(validateAndCompleteProfile(null));
                     }
                 });
     }
-      /**
-     * Sinkronisasi data statistik user ke Firebase - ONLY for local users
-     * For Firebase users, this should NOT overwrite existing Firebase data
-     */
-    private void syncUserStats(String userId) {
-        try {
-            // Check if user is logged in with Firebase
-            if (authManager.isLoggedIn() && userId != null && !userId.isEmpty()) {
-                Log.w(TAG, "⚠️ WARNING: syncUserStats() called for Firebase user: " + userId);
-                Log.w(TAG, "⚠️ Skipping stats sync to prevent overwriting Firebase data");
-                Log.w(TAG, "⚠️ Stats sync should only be used for local users, not Firebase users");
-                return;
-            }
-            
-            // Calculate stats from local data (only for local users)
-            UserStats stats = calculateUserStats();
-            
-            // Upload to Firebase
-            firestore.collection(COLLECTION_STATS)
-                    .document(userId)
-                    .set(stats)
-                    .addOnSuccessListener(aVoid -> 
-                        Log.d(TAG, "User stats synced successfully"))
-                    .addOnFailureListener(e -> 
-                        Log.e(TAG, "Error syncing user stats", e));
-                        
-        } catch (Exception e) {
-            Log.e(TAG, "Error in syncUserStats", e);
-        }
-    }/**
-     * Sinkronisasi data ranking user ke Firebase
-     */
-    private void syncUserRanking(String userId) {
-        try {
-            // Calculate ranking data from local data (safe on background thread)
-            RankingUser rankingData = calculateUserRanking();
-            
-            if (rankingData == null) {
-                Log.w(TAG, "⚠️ Cannot sync user ranking - ranking data is null");
-                return;
-            }
-            
-            // Upload to Firebase (post to main thread)
-            new Handler(Looper.getMainLooper()).post(() -> {
-                firestore.collection(COLLECTION_RANKING)
-                        .document(userId)
-                        .set(rankingData)
-                        .addOnSuccessListener(aVoid -> 
-                            Log.d(TAG, "User ranking synced successfully"))
-                        .addOnFailureListener(e -> 
-                            Log.e(TAG, "Error syncing user ranking", e));
-            });
-                    
-        } catch (Exception e) {
-            Log.e(TAG, "Error calculating user ranking", e);
-        }
-    }    /**
-     * Sinkronisasi data profile user ke Firebase
-     */
-    private void syncUserProfile(String userId) {
-        try {
-            // Get profile data from local database (safe on background thread)
-            UserProfile profile = getUserProfileFromLocal();
-            
-            if (profile == null) {
-                Log.w(TAG, "⚠️ Cannot sync user profile - profile data is null");
-                return;
-            }
-            
-            // Upload to Firebase (post to main thread)
-            new Handler(Looper.getMainLooper()).post(() -> {
-                firestore.collection(COLLECTION_USERS)
-                        .document(userId)
-                        .set(profile)
-                        .addOnSuccessListener(aVoid -> 
-                            Log.d(TAG, "User profile synced successfully"))
-                        .addOnFailureListener(e -> 
-                            Log.e(TAG, "Error syncing user profile", e));
-            });
-                        
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting user profile from local", e);
-        }
-    }    /**
+    /**
      * Hitung statistik user dari data lokal - ONLY for local users
      * For Firebase users, this should NOT be called - use Firebase data directly
      * 
@@ -730,48 +745,19 @@ public class FirebaseDataManager {
                 Log.e(TAG, "❌ CRITICAL: Cannot find valid user ID! Stats will be zero.");
                 return new UserStats(0, 0.0, 0, 0, 0, System.currentTimeMillis());
             }
-              List<RecordEntity> records = localDb.recordDao().getRecordsByUserIdSync(currentUserId);
-            Log.d(TAG, "🔍 Found " + records.size() + " records for userId: " + currentUserId);
-              // Log each record for debugging
-            for (int i = 0; i < records.size(); i++) {
-                RecordEntity record = records.get(i);
-                int trashCount = localDb.trashDao().getTrashCountByRecordIdSync(record.getId());                Log.d(TAG, "🔍 Record " + (i+1) + "/" + records.size() + ": ID=" + record.getId() + 
-                          ", points=" + record.getPoints() + ", distance=" + record.getDistance() + 
-                          ", duration=" + record.getDuration() + ", trash=" + trashCount + 
-                          ", userId=" + record.getUserId() + ", createdAt=" + record.getCreatedAt());
-            }
+            // Totals are maintained by triggers on records and trash: one row, no per-record queries
+            UserAggregateEntity aggregate = localDb.userAggregateDao().getAggregateByUserIdSync(currentUserId);
             
-            if (records.isEmpty()) {
+            if (aggregate == null || aggregate.getTotalSessions() == 0) {
                 Log.w(TAG, "⚠️ No records found for user ID: " + currentUserId + " - stats will be zero");
                 return new UserStats(0, 0.0, 0, 0, 0, System.currentTimeMillis());
             }
             
-            int totalPoints = 0;
-            double totalDistance = 0.0;
-            int totalTrashCollected = 0;
-            int totalSessions = records.size();
-            long totalDuration = 0;
-            
-            for (RecordEntity record : records) {
-                try {
-                    int recordPoints = record.getPoints();
-                    double recordDistance = record.getDistance();
-                    long recordDuration = record.getDuration();
-                    
-                    totalPoints += recordPoints;
-                    totalDistance += recordDistance;
-                    totalDuration += recordDuration;
-                    
-                    // Get trash count for this record
-                    int trashCount = localDb.trashDao().getTrashCountByRecordIdSync(record.getId());
-                    totalTrashCollected += trashCount;
-                    
-                    Log.d(TAG, "🔍 Record ID " + record.getId() + ": points=" + recordPoints + 
-                              ", distance=" + recordDistance + ", duration=" + recordDuration + ", trash=" + trashCount);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error processing record ID " + record.getId(), e);
-                }
-            }
+            int totalPoints = aggregate.getTotalPoints();
+            double totalDistance = aggregate.getTotalDistance();
+            int totalTrashCollected = aggregate.getTotalTrash();
+            int totalSessions = aggregate.getTotalSessions();
+            long totalDuration = aggregate.getTotalDuration();
             
             // Always use current timestamp for lastUpdated to ensure Firebase reflects latest sync
             long currentTimestamp = System.currentTimeMillis();
@@ -792,201 +778,157 @@ public class FirebaseDataManager {
             return new UserStats(0, 0.0, 0, 0, 0, System.currentTimeMillis());
         }
     }
-      /**
-     * Hitung data ranking user dari data lokal
+    /**
+     * Update data statistik di database lokal - ONLY for local users
+     * For Firebase users, this method should skip local database updates
+     */    private void updateLocalStatsData(UserStats stats) {
+        updateLocalStatsData(stats, null);
+    }
+    
+    /**
+     * @param onMerged run on the executor once the stats are merged, or null
      */
-    private RankingUser calculateUserRanking() {
-        try {
-            UserStats stats = calculateUserStats();
-            if (stats == null) {
-                Log.w(TAG, "⚠️ Cannot calculate user ranking - user stats is null");
-                return null;
-            }
-            
-            int localUserId = getCurrentLocalUserId();
-            if (localUserId == -1) {
-                Log.w(TAG, "⚠️ Cannot calculate user ranking - local user ID is invalid (-1)");
-                return null;
-            }
-            
-            UserEntity user = localDb.userDao().getUserByIdSync(localUserId);
-            if (user == null) {
-                Log.w(TAG, "⚠️ Cannot calculate user ranking - user entity not found for ID: " + localUserId);
-                return null;
-            }
-            
-            String firebaseUserId = getCurrentUserId();
-            if (firebaseUserId == null || firebaseUserId.isEmpty()) {
-                Log.w(TAG, "⚠️ Cannot calculate user ranking - Firebase user ID is null or empty");
-                return null;
+    private void updateLocalStatsData(UserStats stats, Runnable onMerged) {
+        Log.d(TAG, "🔄 Firebase stats update received: " + stats.toString());
+        
+        // Clear any cached data from previous user first
+        this.userStats = null;
+        this.userProfile = null;
+        
+        executor.execute(() -> {
+            if (mergeLocalStatsData(stats) && onMerged != null) {
+                onMerged.run();
             }
-              return new RankingUser(
-                firebaseUserId,
-                user.getUsername(),
-                user.getProfileImagePath() != null ? user.getProfileImagePath() : "", // profileImageUrl
-                stats.getTotalPoints(),
-                stats.getTotalDistance(),
-                stats.getTotalTrashCollected(),
-                0 // badgeCount - defaulting to 0 for now
-            );
-            
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Error calculating user ranking", e);
-            return null;
-        }
+        });
     }
-      /**
-     * Ambil data profile user dari database lokal
+    
+    /**
+     * @return false if the stats could not be merged and should be offered again
      */
-    private UserProfile getUserProfileFromLocal() {
+    private boolean mergeLocalStatsData(UserStats stats) {
         try {
+            // Check if user is logged in with Firebase
+            String firebaseUserId = authManager.getCurrentUserId();
+            if (firebaseUserId != null && !firebaseUserId.isEmpty() && authManager.isLoggedIn()) {
+                Log.d(TAG, "🔥 Firebase user detected: " + firebaseUserId + " - skipping local database updates");
+                Log.d(TAG, "🔥 Firebase stats will be used directly without local database sync");
+                return true;
+            }
+            
             int localUserId = getCurrentLocalUserId();
             if (localUserId == -1) {
-                Log.w(TAG, "⚠️ Cannot get user profile - local user ID is invalid (-1)");
-                return null;
+                Log.w(TAG, "Cannot update local stats - no valid local user ID");
+                return false;
             }
             
-            UserEntity user = localDb.userDao().getUserByIdSync(localUserId);
-            if (user == null) {
-                Log.w(TAG, "⚠️ Cannot get user profile - user entity not found for ID: " + localUserId);
-                return null;
-            }
+            // Get current local stats for comparison
+            UserStats localStats = calculateUserStats();
             
-            String firebaseUserId = getCurrentUserId();
-            if (firebaseUserId == null || firebaseUserId.isEmpty()) {
-                Log.w(TAG, "⚠️ Cannot get user profile - Firebase user ID is null or empty");
-                return null;
-            }
+            Log.d(TAG, "📊 Stats comparison:");
+            Log.d(TAG, "   Firebase - Points: " + stats.getTotalPoints() + ", Distance: " + stats.getTotalDistance() + 
+                      ", Trash: " + stats.getTotalTrashCollected() + ", Sessions: " + stats.getTotalSessions());
+            Log.d(TAG, "   Local    - Points: " + localStats.getTotalPoints() + ", Distance: " + localStats.getTotalDistance() + 
+                      ", Trash: " + localStats.getTotalTrashCollected() + ", Sessions: " + localStats.getTotalSessions());
             
-            return new UserProfile(
-                firebaseUserId,
-                user.getUsername(),
-                user.getFirstName(),
-                user.getLastName(),
-                user.getEmail(),
-                user.getProfileImagePath() != null ? user.getProfileImagePath() : "",
-                user.getActiveDecoration() != null ? user.getActiveDecoration() : "",
-                System.currentTimeMillis()
-            );
+            // Check if Firebase has newer data (manual updates from dashboard)
+            boolean firebaseHasNewerData = stats.getLastUpdated() > localStats.getLastUpdated();
+            boolean significantDifference = Math.abs(stats.getTotalPoints() - localStats.getTotalPoints()) > 0;
             
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Error getting user profile from local", e);
-            return null;
-        }
-    }    /**
-     * Update data statistik di database lokal - ONLY for local users
-     * For Firebase users, this method should skip local database updates
-     */    private void updateLocalStatsData(UserStats stats) {
-        Log.d(TAG, "🔄 Firebase stats update received: " + stats.toString());
-        
-        // Clear any cached data from previous user first
-        this.userStats = null;
-        this.userProfile = null;
-        
-        executor.execute(() -> {
-            try {
-                // Check if user is logged in with Firebase
-                String firebaseUserId = authManager.getCurrentUserId();
-                if (firebaseUserId != null && !firebaseUserId.isEmpty() && authManager.isLoggedIn()) {
-                    Log.d(TAG, "🔥 Firebase user detected: " + firebaseUserId + " - skipping local database updates");
-                    Log.d(TAG, "🔥 Firebase stats will be used directly without local database sync");
-                    return;
-                }
-                
-                int localUserId = getCurrentLocalUserId();
-                if (localUserId == -1) {
-                    Log.w(TAG, "Cannot update local stats - no valid local user ID");
-                    return;
-                }
-                
-                // Get current local stats for comparison
-                UserStats localStats = calculateUserStats();
-                
-                Log.d(TAG, "📊 Stats comparison:");
-                Log.d(TAG, "   Firebase - Points: " + stats.getTotalPoints() + ", Distance: " + stats.getTotalDistance() + 
-                          ", Trash: " + stats.getTotalTrashCollected() + ", Sessions: " + stats.getTotalSessions());
-                Log.d(TAG, "   Local    - Points: " + localStats.getTotalPoints() + ", Distance: " + localStats.getTotalDistance() + 
-                          ", Trash: " + localStats.getTotalTrashCollected() + ", Sessions: " + localStats.getTotalSessions());
+            if (firebaseHasNewerData && significantDifference) {
+                Log.d(TAG, "🔄 Firebase has newer data - updating local user entity");
                 
-                // Check if Firebase has newer data (manual updates from dashboard)
-                boolean firebaseHasNewerData = stats.getLastUpdated() > localStats.getLastUpdated();
-                boolean significantDifference = Math.abs(stats.getTotalPoints() - localStats.getTotalPoints()) > 0;
-                
-                if (firebaseHasNewerData && significantDifference) {
-                    Log.d(TAG, "🔄 Firebase has newer data - updating local user entity");
+                // Update the user's points in local database to match Firebase
+                UserEntity user = localDb.userDao().getUserByIdSync(localUserId);
+                if (user != null) {
+                    int oldPoints = user.getPoints();
+                    user.setPoints(stats.getTotalPoints());
+                    localDb.userDao().update(user);
                     
-                    // Update the user's points in local database to match Firebase
-                    UserEntity user = localDb.userDao().getUserByIdSync(localUserId);
-                    if (user != null) {
-                        int oldPoints = user.getPoints();
-                        user.setPoints(stats.getTotalPoints());
-                        localDb.userDao().update(user);
-                        
-                        Log.d(TAG, "✅ Local user points updated from " + oldPoints + " to " + stats.getTotalPoints());
-                        
-                        // Notify UI thread about the update
-                        new Handler(Looper.getMainLooper()).post(() -> {
-                            Log.d(TAG, "🔄 UI will be notified of real-time update");
-                        });
-                    }
-                } else if (significantDifference) {
-                    Log.w(TAG, "⚠️ Data discrepancy detected but local data is newer - Firebase may need update");
-                } else {
-                    Log.d(TAG, "✅ Firebase and local data are in sync");
+                    Log.d(TAG, "✅ Local user points updated from " + oldPoints + " to " + stats.getTotalPoints());
+                    
+                    // Notify UI thread about the update
+                    new Handler(Looper.getMainLooper()).post(() -> {
+                        Log.d(TAG, "🔄 UI will be notified of real-time update");
+                    });
                 }
-                
-            } catch (Exception e) {
-                Log.e(TAG, "Error updating local stats from Firebase", e);
+            } else if (significantDifference) {
+                Log.w(TAG, "⚠️ Data discrepancy detected but local data is newer - Firebase may need update");
+            } else {
+                Log.d(TAG, "✅ Firebase and local data are in sync");
             }
-        });
+            return true;
+            
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating local stats from Firebase", e);
+            return false;
+        }
     }
     private void updateLocalProfileData(UserProfile profile) {
+        updateLocalProfileData(profile, null);
+    }
+    
+    /**
+     * @param onMerged run on the executor once the profile is merged, or null
+     */
+    private void updateLocalProfileData(UserProfile profile, Runnable onMerged) {
         this.userProfile = null;
         
         executor.execute(() -> {
-            try {
-                int localUserId = getCurrentLocalUserId();
-                UserEntity user = localDb.userDao().getUserByIdSync(localUserId);
+            if (mergeLocalProfileData(profile) && onMerged != null) {
+                onMerged.run();
+            }
+        });
+    }
+    
+    /**
+     * @return false if the profile could not be merged and should be offered again
+     */
+    private boolean mergeLocalProfileData(UserProfile profile) {
+        try {
+            int localUserId = getCurrentLocalUserId();
+            UserEntity user = localDb.userDao().getUserByIdSync(localUserId);
+            
+            if (user != null) {
+                // Update user data with Firebase data using enhanced getters
+                String firstName = profile.getFirstName();
+                String lastName = profile.getLastName();
+                String email = profile.getEmail();
+                String avatarUrl = profile.getAvatarUrl();
+                String badgeUrl = profile.getBadgeUrl();
                 
-                if (user != null) {
-                    // Update user data with Firebase data using enhanced getters
-                    String firstName = profile.getFirstName();
-                    String lastName = profile.getLastName();
-                    String email = profile.getEmail();
-                    String avatarUrl = profile.getAvatarUrl();
-                    String badgeUrl = profile.getBadgeUrl();
-                    
-                    if (firstName != null && !firstName.isEmpty()) {
-                        user.setFirstName(firstName);
-                    }
-                    if (lastName != null && !lastName.isEmpty()) {
-                        user.setLastName(lastName);
-                    }
-                    if (email != null && !email.isEmpty()) {
-                        user.setEmail(email);
-                    }
-                    if (avatarUrl != null && !avatarUrl.isEmpty()) {
-                        user.setProfileImagePath(avatarUrl);
-                    }
-                    if (badgeUrl != null && !badgeUrl.isEmpty()) {
-                        user.setActiveDecoration(badgeUrl);
-                    }
-                      // Sync activeBackground from Firebase to activeAvatar in local database
-                    if (profile.getActiveBackground() != null && !profile.getActiveBackground().isEmpty()) {
-                        user.setActiveAvatar(profile.getActiveBackground());
-                        Log.d(TAG, "✅ Synced activeBackground (" + profile.getActiveBackground() + ") to local activeAvatar");
-                    }
-                    
-                    // Update user in database
-                    localDb.userDao().update(user);
-                    Log.d(TAG, "Local profile updated from Firebase with enhanced data mapping");
-                } else {
-                    Log.w(TAG, "Local user not found, cannot update profile data");
+                if (firstName != null && !firstName.isEmpty()) {
+                    user.setFirstName(firstName);
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Error updating local profile", e);
+                if (lastName != null && !lastName.isEmpty()) {
+                    user.setLastName(lastName);
+                }
+                if (email != null && !email.isEmpty()) {
+                    user.setEmail(email);
+                }
+                if (avatarUrl != null && !avatarUrl.isEmpty()) {
+                    user.setProfileImagePath(avatarUrl);
+                }
+                if (badgeUrl != null && !badgeUrl.isEmpty()) {
+                    user.setActiveDecoration(badgeUrl);
+                }
+                  // Sync activeBackground from Firebase to activeAvatar in local database
+                if (profile.getActiveBackground() != null && !profile.getActiveBackground().isEmpty()) {
+                    user.setActiveAvatar(profile.getActiveBackground());
+                    Log.d(TAG, "✅ Synced activeBackground (" + profile.getActiveBackground() + ") to local activeAvatar");
+                }
+                
+                // Update user in database
+                localDb.userDao().update(user);
+                Log.d(TAG, "Local profile updated from Firebase with enhanced data mapping");
+                return true;
+            } else {
+                Log.w(TAG, "Local user not found, cannot update profile data");
+                return false;
             }
-        });
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating local profile", e);
+            return false;
+        }
     }
       /**
      * Buat data statistik default untuk user baru
@@ -1054,20 +996,7 @@ public class FirebaseDataManager {
      * Stop semua listener
      */
     public void stopAllListeners() {
-        if (statsListener != null) {
-            statsListener.remove();
-            statsListener = null;
-        }
-        
-        if (rankingListener != null) {
-            rankingListener.remove();
-            rankingListener = null;
-        }
-        
-        if (profileListener != null) {
-            profileListener.remove();
-            profileListener = null;
-        }
+        ListenerRegistry.getInstance().removeAll();
     }
     
     /**
@@ -1079,18 +1008,7 @@ public class FirebaseDataManager {
         // Stop all Firebase listeners
         stopAllListeners();
         
-        // Shutdown executor service
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-            try {
-                // Wait for tasks to complete with timeout
-                if (!executor.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-            }
-        }
+        // Queued background work finishes on the shared pool; nothing to shut down
         
         Log.d(TAG, "🔴 FirebaseDataManager logout completed - all resources cleared");
     }
@@ -1127,17 +1045,7 @@ public class FirebaseDataManager {
                 Log.d(TAG, "🔴 Cleared userProfileLiveData");
             }
             
-            // Remove Firebase real-time listeners
-            if (statsListener != null) {
-                statsListener.remove();
-                statsListener = null;
-                Log.d(TAG, "🔴 Removed Firebase stats listener");
-            }
-            if (profileListener != null) {
-                profileListener.remove();
-                profileListener = null;
-                Log.d(TAG, "🔴 Removed Firebase profile listener");
-            }
+            // Real-time listeners are keyed by user id and detach with their observers
             
             // This ensures no previous user's data remains in memory
             Log.d(TAG, "🔴 All cached Firebase data cleared successfully");
@@ -1167,35 +1075,28 @@ public class FirebaseDataManager {
         updates.put("activeAvatar", activeAvatar);
         updates.put("lastUpdated", System.currentTimeMillis());
         
-        firestore.collection(COLLECTION_USERS)
-                .document(userId)
-                .update(updates)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "ActiveAvatar updated successfully: " + activeAvatar);
-                    
-                    // Sync to local database
-                    executor.execute(() -> {
-                        try {
-                            int localUserId = getCurrentLocalUserId();
-                            if (localUserId != -1) {
-                                UserEntity localUser = localDb.userDao().getUserByIdSync(localUserId);
-                                if (localUser != null) {
-                                    localUser.setActiveAvatar(activeAvatar);
-                                    localDb.userDao().update(localUser);
-                                    Log.d(TAG, "✅ Synced activeAvatar to local database: " + activeAvatar);
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error syncing avatar to local database", e);
-                        }
-                    });
-                    
-                    callback.onSuccess();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error updating activeAvatar", e);
-                    callback.onError("Failed to update activeAvatar: " + e.getMessage());
-                });
+        // Uploaded through the outbox so the change survives going offline or a restart
+        SyncOutbox.getInstance(context).enqueueProfileUpdate(updates);
+        Log.d(TAG, "ActiveAvatar queued for upload: " + activeAvatar + " (user " + userId + ")");
+        
+        // Sync to local database
+        executor.execute(() -> {
+            try {
+                int localUserId = getCurrentLocalUserId();
+                if (localUserId != -1) {
+                    UserEntity localUser = localDb.userDao().getUserByIdSync(localUserId);
+                    if (localUser != null) {
+                        localUser.setActiveAvatar(activeAvatar);
+                        localDb.userDao().update(localUser);
+                        Log.d(TAG, "✅ Synced activeAvatar to local database: " + activeAvatar);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error syncing avatar to local database", e);
+            }
+        });
+        
+        callback.onSuccess();
     }
 
     public void forceRefreshUserDataAfterLogin(DataSyncCallback callback) {
@@ -1209,13 +1110,10 @@ public class FirebaseDataManager {
         
         executor.execute(() -> {
             try {
-                // Stop all existing listeners first
-                stopAllListeners();
-                
                 // Clear any local cached data
                 clearAllCachedData();
                 
-                // Force fresh sync from Firebase
+                // Delta sync: only what changed since this user's last sync is read
                 syncAllUserData(new DataSyncCallback() {
                     @Override
                     public void onSuccess() {
@@ -1238,7 +1136,7 @@ public class FirebaseDataManager {
     }
       /**
      * Update Firebase stats setelah sesi plogging selesai
-     * Menggunakan increment untuk menghindari race condition
+     * Queues the upload of the latest session, which adds it to the totals exactly once
      */ public void updateUserStatsAfterPloggingSession(DataSyncCallback callback) {
         Log.d(TAG, "🔄 === UPDATE FIREBASE STATS AFTER PLOGGING SESSION ===");
         
@@ -1250,101 +1148,16 @@ public class FirebaseDataManager {
         
         executor.execute(() -> {
             try {
-                String userId = getCurrentUserId();
                 int localUserId = getCurrentLocalUserId();
-                Log.d(TAG, "🔄 Starting Firebase stats update for user: " + userId + " (local ID: " + localUserId + ")");
+                List<RecordEntity> records = localDb.recordDao().getRecordsByUserIdSync(localUserId);
+                if (records.isEmpty()) {
+                    Log.w(TAG, "⚠️ No records found for increment calculation");
+                    callback.onError("No records found");
+                    return;
+                }
                 
-                // For Firebase users, we need to increment existing Firebase data, not overwrite with local calculation                // First, fetch current Firebase stats
-                firestore.collection(COLLECTION_STATS)
-                        .document(userId)
-                        .get()
-                        .addOnSuccessListener(documentSnapshot -> {
-                            // Make the variable effectively final for lambda use
-                            final UserStats currentFirebaseStats;
-                            if (documentSnapshot.exists()) {
-                                UserStats temp = documentSnapshot.toObject(UserStats.class);
-                                if (temp == null) {
-                                    currentFirebaseStats = new UserStats(0, 0.0, 0, 0, 0, System.currentTimeMillis());
-                                } else {
-                                    currentFirebaseStats = temp;
-                                }
-                            } else {
-                                // Create default stats if no document exists
-                                currentFirebaseStats = new UserStats(0, 0.0, 0, 0, 0, System.currentTimeMillis());
-                            }
-                            
-                            Log.d(TAG, "📊 Current Firebase stats:");
-                            Log.d(TAG, "   Points: " + currentFirebaseStats.getTotalPoints());
-                            Log.d(TAG, "   Distance: " + currentFirebaseStats.getTotalDistance() + " meters");
-                            Log.d(TAG, "   Trash: " + currentFirebaseStats.getTotalTrashCollected());
-                            Log.d(TAG, "   Sessions: " + currentFirebaseStats.getTotalSessions());
-                            
-                            // Calculate increment from the latest plogging session
-                            executor.execute(() -> {
-                                try {
-                                    // Get the latest record to increment stats
-                                    List<RecordEntity> records = localDb.recordDao().getRecordsByUserIdSync(localUserId);
-                                    if (records.isEmpty()) {
-                                        Log.w(TAG, "⚠️ No records found for increment calculation");
-                                        callback.onError("No records found");
-                                        return;
-                                    }
-                                    
-                                    // Get the latest (most recent) record
-                                    RecordEntity latestRecord = records.get(records.size() - 1);
-                                    int sessionPoints = latestRecord.getPoints();
-                                    double sessionDistance = latestRecord.getDistance();
-                                    long sessionDuration = latestRecord.getDuration();
-                                    int sessionTrash = localDb.trashDao().getTrashCountByRecordIdSync(latestRecord.getId());
-                                    
-                                    Log.d(TAG, "📊 Latest session increment:");
-                                    Log.d(TAG, "   Session Points: " + sessionPoints);
-                                    Log.d(TAG, "   Session Distance: " + sessionDistance + " meters");
-                                    Log.d(TAG, "   Session Trash: " + sessionTrash);
-                                    Log.d(TAG, "   Session Duration: " + sessionDuration + " ms");
-                                    
-                                    // Create updated stats by adding session data to existing Firebase data
-                                    UserStats updatedStats = new UserStats(
-                                        currentFirebaseStats.getTotalPoints() + sessionPoints,
-                                        currentFirebaseStats.getTotalDistance() + sessionDistance,
-                                        currentFirebaseStats.getTotalTrashCollected() + sessionTrash,
-                                        currentFirebaseStats.getTotalSessions() + 1, // increment session count
-                                        currentFirebaseStats.getTotalDuration() + sessionDuration,
-                                        System.currentTimeMillis()
-                                    );
-                                    
-                                    Log.d(TAG, "📊 Updated stats to be sent to Firebase:");
-                                    Log.d(TAG, "   Points: " + updatedStats.getTotalPoints() + " (+" + sessionPoints + ")");
-                                    Log.d(TAG, "   Distance: " + updatedStats.getTotalDistance() + " meters (+" + sessionDistance + ")");
-                                    Log.d(TAG, "   Trash: " + updatedStats.getTotalTrashCollected() + " (+" + sessionTrash + ")");
-                                    Log.d(TAG, "   Sessions: " + updatedStats.getTotalSessions() + " (+1)");
-                                    Log.d(TAG, "   Duration: " + updatedStats.getTotalDuration() + " ms (+" + sessionDuration + ")");
-                                    
-                                    // Update Firebase with incremented data
-                                    firestore.collection(COLLECTION_STATS)
-                                            .document(userId)
-                                            .set(updatedStats)
-                                            .addOnSuccessListener(aVoid -> {
-                                                Log.d(TAG, "✅ Firebase user stats incremented successfully after plogging session");
-                                                Log.d(TAG, "   Final stats: " + updatedStats.toString());
-                                                callback.onSuccess();
-                                            })
-                                            .addOnFailureListener(e -> {
-                                                Log.e(TAG, "❌ Error updating Firebase user stats after plogging session", e);
-                                                callback.onError(e.getMessage());
-                                            });
-                                            
-                                } catch (Exception e) {
-                                    Log.e(TAG, "❌ Error calculating session increment", e);
-                                    callback.onError(e.getMessage());
-                                }
-                            });
-                        })
-                        .addOnFailureListener(e -> {
-                            Log.e(TAG, "❌ Error fetching current Firebase stats", e);
-                            callback.onError(e.getMessage());
-                        });
-                        
+                // Records are newest first
+                enqueueSessionStats(records.get(0), callback);
             } catch (Exception e) {
                 Log.e(TAG, "❌ Error in updateUserStatsAfterPloggingSession", e);
                 callback.onError(e.getMessage());
@@ -1354,42 +1167,45 @@ public class FirebaseDataManager {
 
     /**
      * Update Firebase stats with retry mechanism untuk meningkatkan reliabilitas
+     * Retries with backoff are handled by SyncOutboxWorker
      */
     public void updateUserStatsWithRetry(DataSyncCallback callback) {
-        updateUserStatsWithRetry(callback, 3); // Default 3 attempts
+        updateUserStatsAfterPloggingSession(callback);
     }
     
-    private void updateUserStatsWithRetry(DataSyncCallback callback, int attemptsLeft) {
-        if (!isUserLoggedIn()) {
-            callback.onError("User not logged in");
-            return;
-        }
-        
-        if (attemptsLeft <= 0) {
-            callback.onError("Failed to update Firebase stats after multiple attempts");
-            return;
+    /**
+     * Hand a finished session to the outbox, which uploads it and counts it into the
+     * user's totals once. Must run off the main thread.
+     */
+    private void enqueueSessionStats(RecordEntity record, DataSyncCallback callback) {
+        Log.d(TAG, "📊 Session stats for record " + record.getId() + ": " + record.getPoints() + " pts, "
+                + record.getDistance() + " m, " + record.getDuration() + " ms");
+        if (SyncOutbox.getInstance(context).queueSession(record.getId())) {
+            callback.onSuccess();
+        } else {
+            callback.onError("Session not queued");
         }
-        
-        updateUserStatsAfterPloggingSession(new DataSyncCallback() {
-            @Override
-            public void onSuccess() {
-                callback.onSuccess();
-            }
-
-            @Override
-            public void onError(String error) {
-                Log.w(TAG, "Firebase update attempt failed, " + (attemptsLeft - 1) + " attempts remaining: " + error);
-                
-                if (attemptsLeft > 1) {
-                    // Retry after a delay
-                    new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
-                        updateUserStatsWithRetry(callback, attemptsLeft - 1);
-                    }, 2000); // 2 second delay between retries
-                } else {
-                    callback.onError("Failed after retries: " + error);
-                }
-            }
-        });
+    }
+    
+    /**
+     * Refresh the rankings after the outbox counted uploaded sessions into the user's totals.
+     */
+    void onSessionsCounted(String userId) {
+        refreshRankingAfterStatsWrite(userId);
+    }
+    
+    /**
+     * Read back the new totals after a stats batch and push them to the ranking documents
+     */
+    private void refreshRankingAfterStatsWrite(String userId) {
+        firestore.collection(COLLECTION_STATS)
+                .document(userId)
+                .get()
+                .addOnSuccessListener(documentSnapshot -> {
+                    UserStats stats = documentSnapshot.exists() ? documentSnapshot.toObject(UserStats.class) : null;
+                    updateUserRankingInFirebase(userId, stats);
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "❌ Error reading stats for ranking refresh", e));
     }
 
     /**
@@ -1439,6 +1255,11 @@ public class FirebaseDataManager {
      * Debug method to check current local database state
      */
     public void debugCurrentDatabaseState() {
+        ListenerRegistry listeners = ListenerRegistry.getInstance();
+        Log.d(TAG, "🔍 Firestore listeners active: " + listeners.getActiveListenerCount()
+                + ", reads last minute: " + listeners.getReadsPerMinute()
+                + ", reads total: " + listeners.getTotalReads());
+        
         executor.execute(() -> {
             try {
                 Log.d(TAG, "🔍 === DEBUG DATABASE STATE ===");
@@ -1544,6 +1365,10 @@ public class FirebaseDataManager {
                                         .addOnSuccessListener(aVoid -> {
                                             Log.d(TAG, "User points updated in Firebase: " + newPoints);
                                             
+                                            // Keep the leaderboards in step with the deduction
+                                            currentStats.setTotalPoints(newPoints);
+                                            updateUserRankingInFirebase(userId, currentStats);
+                                            
                                             // Also update local database
                                             executor.execute(() -> {
                                                 try {
@@ -1597,35 +1422,28 @@ public class FirebaseDataManager {
         updates.put("activeAvatar", activeBackground); // TAMBAHKAN INI - simpan avatar juga
         updates.put("lastUpdated", System.currentTimeMillis());
         
-        firestore.collection(COLLECTION_USERS)
-                .document(userId)
-                .update(updates)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Profile customization updated successfully with activeAvatar: " + activeBackground);
-                    
-                    // Sync to local database immediately after Firebase update
-                    executor.execute(() -> {
-                        try {
-                            int localUserId = getCurrentLocalUserId();
-                            if (localUserId != -1) {
-                                UserEntity localUser = localDb.userDao().getUserByIdSync(localUserId);
-                                if (localUser != null) {
-                                    localUser.setActiveAvatar(activeBackground);
-                                    localDb.userDao().update(localUser);
-                                    Log.d(TAG, "✅ Synced new activeAvatar to local database: " + activeBackground);
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error syncing avatar to local database", e);
-                        }
-                    });
-                    
-                    callback.onSuccess();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error updating profile customization", e);
-                    callback.onError("Failed to update profile: " + e.getMessage());
-                });
+        // Uploaded through the outbox so the change survives going offline or a restart
+        SyncOutbox.getInstance(context).enqueueProfileUpdate(updates);
+        Log.d(TAG, "Profile customization queued for upload with activeAvatar: " + activeBackground + " (user " + userId + ")");
+        
+        // Sync to local database right away
+        executor.execute(() -> {
+            try {
+                int localUserId = getCurrentLocalUserId();
+                if (localUserId != -1) {
+                    UserEntity localUser = localDb.userDao().getUserByIdSync(localUserId);
+                    if (localUser != null) {
+                        localUser.setActiveAvatar(activeBackground);
+                        localDb.userDao().update(localUser);
+                        Log.d(TAG, "✅ Synced new activeAvatar to local database: " + activeBackground);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error syncing avatar to local database", e);
+            }
+        });
+        
+        callback.onSuccess();
     }
     
     /**
@@ -1646,7 +1464,7 @@ public class FirebaseDataManager {
                 try {
                     List<RecordEntity> records = localDb.recordDao().getRecordsByUserIdSync(localUserId);
                     if (!records.isEmpty()) {
-                        RecordEntity latestRecord = records.get(records.size() - 1);
+                        RecordEntity latestRecord = records.get(0); // Newest first
                         forceUpdateAfterPloggingSession((int) latestRecord.getId(), new DataSyncCallback() {
                             @Override
                             public void onSuccess() {
@@ -1680,122 +1498,14 @@ public class FirebaseDataManager {
         
         executor.execute(() -> {
             try {
-                String userId = getCurrentUserId();
-                int localUserId = getCurrentLocalUserId();
-                
-                Log.d(TAG, "🔍 Force update Firebase for user: " + userId + " (local ID: " + localUserId + ")");
-                Log.d(TAG, "🔍 After saving record ID: " + recordId);
-                  // Wait a moment to ensure database transaction is complete
-                Thread.sleep(500);
-                  // Add detailed logging for debugging
-                Log.d(TAG, "🔍 === DEBUGGING STATS CALCULATION ===");
-                Log.d(TAG, "🔍 Current User ID (Firebase): " + userId);
-                Log.d(TAG, "🔍 Current Local User ID: " + localUserId);
-                Log.d(TAG, "🔍 Record ID that just completed: " + recordId);
-                  // Verify the specific record exists and has data
-                RecordEntity specificRecord = localDb.recordDao().getRecordByIdSync(recordId);
-                if (specificRecord != null) {
-                    Log.d(TAG, "🔍 SPECIFIC RECORD verification:");
-                    Log.d(TAG, "   Record ID: " + specificRecord.getId());
-                    Log.d(TAG, "   User ID: " + specificRecord.getUserId()); 
-                    Log.d(TAG, "   Points: " + specificRecord.getPoints());
-                    Log.d(TAG, "   Distance: " + specificRecord.getDistance());
-                    Log.d(TAG, "   Duration: " + specificRecord.getDuration());
-                    Log.d(TAG, "   Trash count: " + localDb.trashDao().getTrashCountByRecordIdSync(recordId));
-                } else {
+                RecordEntity record = localDb.recordDao().getRecordByIdSync(recordId);
+                if (record == null) {
                     Log.e(TAG, "❌ CRITICAL: Specific record " + recordId + " not found!");
                     callback.onError("Record not found");
                     return;
                 }
                 
-                // Make specificRecord effectively final for lambda use
-                final RecordEntity finalSpecificRecord = specificRecord;
-                
-                // For Firebase users, fetch current Firebase data and increment with this session's data
-                firestore.collection(COLLECTION_STATS)
-                        .document(userId)
-                        .get()
-                        .addOnSuccessListener(documentSnapshot -> {
-                            // Make the variable effectively final for lambda use
-                            final UserStats currentFirebaseStats;
-                            if (documentSnapshot.exists()) {
-                                UserStats temp = documentSnapshot.toObject(UserStats.class);
-                                if (temp == null) {
-                                    currentFirebaseStats = new UserStats(0, 0.0, 0, 0, 0, System.currentTimeMillis());
-                                } else {
-                                    currentFirebaseStats = temp;
-                                }
-                            } else {
-                                // Create default stats if no document exists
-                                currentFirebaseStats = new UserStats(0, 0.0, 0, 0, 0, System.currentTimeMillis());
-                            }
-                            
-                            Log.d(TAG, "📊 Current Firebase stats before increment:");
-                            Log.d(TAG, "   Points: " + currentFirebaseStats.getTotalPoints());
-                            Log.d(TAG, "   Distance: " + currentFirebaseStats.getTotalDistance() + " meters");
-                            Log.d(TAG, "   Trash: " + currentFirebaseStats.getTotalTrashCollected());
-                            Log.d(TAG, "   Sessions: " + currentFirebaseStats.getTotalSessions());
-                            
-                            executor.execute(() -> {
-                                try {
-                                    // Get data from the specific record to increment
-                                    int sessionPoints = finalSpecificRecord.getPoints();
-                                    double sessionDistance = finalSpecificRecord.getDistance();
-                                    long sessionDuration = finalSpecificRecord.getDuration();
-                                    int sessionTrash = localDb.trashDao().getTrashCountByRecordIdSync(recordId);
-                                    
-                                    Log.d(TAG, "📊 Session data to increment:");
-                                    Log.d(TAG, "   Session Points: " + sessionPoints);
-                                    Log.d(TAG, "   Session Distance: " + sessionDistance + " meters");
-                                    Log.d(TAG, "   Session Trash: " + sessionTrash);
-                                    Log.d(TAG, "   Session Duration: " + sessionDuration + " ms");
-                                    
-                                    // Create updated stats by adding session data to existing Firebase data
-                                    UserStats updatedStats = new UserStats(
-                                        currentFirebaseStats.getTotalPoints() + sessionPoints,
-                                        currentFirebaseStats.getTotalDistance() + sessionDistance,
-                                        currentFirebaseStats.getTotalTrashCollected() + sessionTrash,
-                                        currentFirebaseStats.getTotalSessions() + 1, // increment session count
-                                        currentFirebaseStats.getTotalDuration() + sessionDuration,
-                                        System.currentTimeMillis()
-                                    );
-                                    
-                                    Log.d(TAG, "🚀 FORCE UPDATING Firebase with incremented stats:");
-                                    Log.d(TAG, "   Points: " + updatedStats.getTotalPoints() + " (+" + sessionPoints + ")");
-                                    Log.d(TAG, "   Distance: " + String.format("%.2f km", updatedStats.getTotalDistance()/1000) + " (+" + String.format("%.2f km", sessionDistance/1000) + ")");
-                                    Log.d(TAG, "   Trash: " + updatedStats.getTotalTrashCollected() + " (+" + sessionTrash + ")");
-                                    Log.d(TAG, "   Sessions: " + updatedStats.getTotalSessions() + " (+1)");
-                                    Log.d(TAG, "   Duration: " + updatedStats.getTotalDuration() + " ms (+" + sessionDuration + ")");
-                                    
-                                    // Force update Firebase with incremented data
-                                    firestore.collection(COLLECTION_STATS)
-                                            .document(userId)
-                                            .set(updatedStats)
-                                            .addOnSuccessListener(aVoid -> {
-                                                Log.d(TAG, "✅ FORCE UPDATE SUCCESS! Firebase stats incremented after record " + recordId);
-                                                Log.d(TAG, "   Final stats in Firebase: " + updatedStats.toString());
-                                                
-                                                // Also update ranking data
-                                                updateUserRankingInFirebase(userId, updatedStats);
-                                                
-                                                callback.onSuccess();
-                                            })
-                                            .addOnFailureListener(e -> {
-                                                Log.e(TAG, "❌ FORCE UPDATE FAILED! Error updating Firebase stats after record " + recordId, e);
-                                                callback.onError("Firebase update failed: " + e.getMessage());
-                                            });
-                                            
-                                } catch (Exception e) {
-                                    Log.e(TAG, "❌ Error calculating session increment in force update", e);
-                                    callback.onError(e.getMessage());
-                                }
-                            });
-                        })
-                        .addOnFailureListener(e -> {
-                            Log.e(TAG, "❌ Error fetching current Firebase stats in force update", e);
-                            callback.onError(e.getMessage());
-                        });
-                        
+                enqueueSessionStats(record, callback);
             } catch (Exception e) {
                 Log.e(TAG, "❌ Error in forceUpdateAfterPloggingSession", e);
                 callback.onError(e.getMessage());
@@ -1836,6 +1546,18 @@ public class FirebaseDataManager {
                         0 // badgeCount - defaulting to 0 for now
                     );
                     
+                    // Leaderboard entry uses the same name for username and full name
+                    RankingUser leaderboardEntry = new RankingUser(
+                        userId,
+                        user.getUsername(),
+                        user.getUsername(),
+                        stats.getTotalPoints(),
+                        stats.getTotalDistance(),
+                        stats.getTotalTrashCollected(),
+                        System.currentTimeMillis()
+                    );
+                    leaderboardEntry.setActiveAvatar(user.getActiveAvatar());
+                    
                     // Update ranking data in Firebase (this needs to be on main thread)
                     new Handler(Looper.getMainLooper()).post(() -> {
                         firestore.collection(COLLECTION_RANKING)
@@ -1845,6 +1567,9 @@ public class FirebaseDataManager {
                                     Log.d(TAG, "✅ User ranking updated in Firebase"))
                                 .addOnFailureListener(e -> 
                                     Log.e(TAG, "❌ Error updating user ranking in Firebase", e));
+                        
+                        // Merge into the precomputed leaderboards and rank cache
+                        LeaderboardService.getInstance().submit(leaderboardEntry);
                     });
                 } else {
                     Log.w(TAG, "⚠️ User not found for ranking update, local userId: " + localUserId);
@@ -6,16 +6,15 @@ import android.util.Log;
 
 import com.example.glean.auth.FirebaseAuthManager;
 import com.example.glean.db.AppDatabase;
-import com.example.glean.model.RecordEntity;
+import com.example.glean.model.UserAggregateEntity;
 import com.example.glean.model.UserEntity;
+import com.example.glean.util.AppExecutors;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * Service untuk sinkronisasi data ranking user ke Firebase
@@ -27,14 +26,14 @@ public class FirebaseRankingService {
     
     private FirebaseFirestore firestore;
     private AppDatabase localDb;
-    private ExecutorService executor;
+    private Executor executor;
     private Context context;
     
     private FirebaseRankingService(Context context) {
         this.context = context.getApplicationContext();
         this.firestore = FirebaseFirestore.getInstance();
         this.localDb = AppDatabase.getInstance(context);
-        this.executor = Executors.newSingleThreadExecutor();
+        this.executor = AppExecutors.getInstance().io().serial();
     }
     
     public static synchronized FirebaseRankingService getInstance(Context context) {
@@ -77,22 +76,13 @@ public class FirebaseRankingService {
     
     private UserRankingData calculateUserRankingData(UserEntity user) {
         try {
-            // Get all user's records
-            List<RecordEntity> records = localDb.recordDao().getRecordsByUserIdSync(user.getId());
+            // Read the user's running totals (maintained by triggers on records and trash)
+            UserAggregateEntity aggregate = localDb.userAggregateDao().getAggregateByUserIdSync(user.getId());
             
-            // Calculate totals
-            int totalPoints = 0;
-            double totalDistance = 0.0;
-            int totalTrashCollected = 0;
-            int totalSessions = records.size();
-            
-            for (RecordEntity record : records) {
-                totalPoints += record.getPoints();
-                totalDistance += record.getDistance();
-                // Get trash count for this record
-                int trashCount = localDb.trashDao().getTrashCountByRecordIdSync(record.getId());
-                totalTrashCollected += trashCount;
-            }
+            int totalPoints = aggregate != null ? aggregate.getTotalPoints() : 0;
+            double totalDistance = aggregate != null ? aggregate.getTotalDistance() : 0.0;
+            int totalTrashCollected = aggregate != null ? aggregate.getTotalTrash() : 0;
+            int totalSessions = aggregate != null ? aggregate.getTotalSessions() : 0;
             
             return new UserRankingData(
                 user.getUsername(),
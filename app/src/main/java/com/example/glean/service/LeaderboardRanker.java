@@ -0,0 +1,209 @@
+package com.example.glean.service;
+
+import com.example.glean.model.RankingUser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pure ranking logic behind the leaderboard shard documents.
+ *
+ * A shard is the sorted top-N list of one metric, stored as a list of maps in a single
+ * Firestore document. Entries are ordered by the metric descending and then by userId,
+ * so every client derives the same rank for equal scores.
+ */
+public final class LeaderboardRanker {
+
+    public static final String METRIC_POINTS = "points";
+    public static final String METRIC_DISTANCE = "distance";
+
+    static final String FIELD_USER_ID = "userId";
+    static final String FIELD_USERNAME = "username";
+    static final String FIELD_FULL_NAME = "fullName";
+    static final String FIELD_PHOTO_URL = "photoURL";
+    static final String FIELD_ACTIVE_AVATAR = "activeAvatar";
+    static final String FIELD_TOTAL_POINTS = "totalPoints";
+    static final String FIELD_TOTAL_DISTANCE = "totalDistance";
+    static final String FIELD_TOTAL_TRASH = "totalTrashCollected";
+    static final String FIELD_LAST_UPDATED = "lastUpdated";
+
+    private LeaderboardRanker() {
+    }
+
+    /**
+     * Field of a shard entry a metric is ranked by.
+     */
+    public static String scoreField(String metric) {
+        if (METRIC_POINTS.equals(metric)) {
+            return FIELD_TOTAL_POINTS;
+        }
+        if (METRIC_DISTANCE.equals(metric)) {
+            return FIELD_TOTAL_DISTANCE;
+        }
+        throw new IllegalArgumentException("Unknown leaderboard metric: " + metric);
+    }
+
+    /**
+     * Insert or replace the entry of one user, re-sort and truncate to the limit.
+     *
+     * @param entries shard entries, modified in place
+     * @return 1-based rank of the user, or 0 when the user falls outside the top-N
+     */
+    public static int merge(List<Map<String, Object>> entries, Map<String, Object> entry,
+                            String metric, int limit) {
+        Object userId = entry.get(FIELD_USER_ID);
+        entries.removeIf(existing -> userId != null && userId.equals(existing.get(FIELD_USER_ID)));
+        entries.add(entry);
+        entries.sort(comparator(metric));
+        while (entries.size() > limit) {
+            entries.remove(entries.size() - 1);
+        }
+        return rankOf(entries, (String) userId);
+    }
+
+    /**
+     * Like {@link #merge}, but a user who was on a full shard and now scores below its
+     * old cutoff is dropped instead of kept at the bottom: users outside the shard may
+     * rank above them now, so the spot is left for a {@link #fill} from user_stats.
+     *
+     * @return 1-based rank of the user, or 0 when they are not on the shard afterwards
+     */
+    public static int update(List<Map<String, Object>> entries, Map<String, Object> entry,
+                             String metric, int limit) {
+        String userId = (String) entry.get(FIELD_USER_ID);
+        boolean wasIn = rankOf(entries, userId) > 0;
+        double previousCutoff = cutoff(entries, metric, limit);
+        int rank = merge(entries, entry, metric, limit);
+        if (wasIn && rank > 0 && number(entry.get(scoreField(metric))) < previousCutoff) {
+            entries.remove(rank - 1);
+            return 0;
+        }
+        return rank;
+    }
+
+    /**
+     * Add the candidates that are not on the shard yet, re-sort and truncate to the limit.
+     * Entries already on the shard win over candidates, since submits keep them current.
+     *
+     * @return number of candidates that made it onto the shard
+     */
+    public static int fill(List<Map<String, Object>> entries, List<RankingUser> candidates,
+                           String metric, int limit) {
+        Set<Object> present = new HashSet<>();
+        for (Map<String, Object> existing : entries) {
+            present.add(existing.get(FIELD_USER_ID));
+        }
+        Set<Object> onShard = new HashSet<>(present);
+        for (RankingUser candidate : candidates) {
+            if (present.add(candidate.getUserId())) {
+                entries.add(toEntry(candidate));
+            }
+        }
+        entries.sort(comparator(metric));
+        while (entries.size() > limit) {
+            entries.remove(entries.size() - 1);
+        }
+        int added = 0;
+        for (Map<String, Object> entry : entries) {
+            if (!onShard.contains(entry.get(FIELD_USER_ID))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Sort entries built from unranked users and keep the top-N, used to seed a shard.
+     */
+    public static List<Map<String, Object>> build(List<RankingUser> users, String metric, int limit) {
+        List<Map<String, Object>> entries = new ArrayList<>(users.size());
+        for (RankingUser user : users) {
+            entries.add(toEntry(user));
+        }
+        entries.sort(comparator(metric));
+        return new ArrayList<>(entries.subList(0, Math.min(limit, entries.size())));
+    }
+
+    /**
+     * @return 1-based rank of the user in a sorted shard, or 0 when absent
+     */
+    public static int rankOf(List<Map<String, Object>> entries, String userId) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (userId != null && userId.equals(entries.get(i).get(FIELD_USER_ID))) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Lowest score still on a full shard; a user needs more than this to enter.
+     * Zero while the shard has room left.
+     */
+    public static double cutoff(List<Map<String, Object>> entries, String metric, int limit) {
+        if (entries.size() < limit) {
+            return 0;
+        }
+        return number(entries.get(entries.size() - 1).get(scoreField(metric)));
+    }
+
+    public static Map<String, Object> toEntry(RankingUser user) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put(FIELD_USER_ID, user.getUserId());
+        entry.put(FIELD_USERNAME, user.getUsername());
+        entry.put(FIELD_FULL_NAME, user.getFullName());
+        entry.put(FIELD_PHOTO_URL, user.getPhotoURL());
+        entry.put(FIELD_ACTIVE_AVATAR, user.getActiveAvatar());
+        entry.put(FIELD_TOTAL_POINTS, user.getTotalPoints());
+        entry.put(FIELD_TOTAL_DISTANCE, user.getTotalDistance());
+        entry.put(FIELD_TOTAL_TRASH, user.getTotalTrashCollected());
+        entry.put(FIELD_LAST_UPDATED, user.getLastUpdated());
+        return entry;
+    }
+
+    /**
+     * Convert a sorted shard to RankingUsers with their positions set.
+     */
+    public static List<RankingUser> toRankingUsers(List<Map<String, Object>> entries) {
+        List<RankingUser> ranking = new ArrayList<>(entries.size());
+        for (Map<String, Object> entry : entries) {
+            RankingUser user = new RankingUser(
+                (String) entry.get(FIELD_USER_ID),
+                (String) entry.get(FIELD_USERNAME),
+                (String) entry.get(FIELD_FULL_NAME),
+                (int) number(entry.get(FIELD_TOTAL_POINTS)),
+                number(entry.get(FIELD_TOTAL_DISTANCE)),
+                (int) number(entry.get(FIELD_TOTAL_TRASH)),
+                (long) number(entry.get(FIELD_LAST_UPDATED))
+            );
+            user.setPhotoURL((String) entry.get(FIELD_PHOTO_URL));
+            user.setActiveAvatar((String) entry.get(FIELD_ACTIVE_AVATAR));
+            user.setPosition(ranking.size() + 1);
+            ranking.add(user);
+        }
+        return ranking;
+    }
+
+    static Comparator<Map<String, Object>> comparator(String metric) {
+        String field = scoreField(metric);
+        return (a, b) -> {
+            int byScore = Double.compare(number(b.get(field)), number(a.get(field)));
+            if (byScore != 0) {
+                return byScore;
+            }
+            String idA = String.valueOf(a.get(FIELD_USER_ID));
+            String idB = String.valueOf(b.get(FIELD_USER_ID));
+            return idA.compareTo(idB);
+        };
+    }
+
+    // Firestore returns whole numbers as Long and fractions as Double
+    static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+}
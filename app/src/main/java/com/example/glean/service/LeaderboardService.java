@@ -0,0 +1,413 @@
+package com.example.glean.service;
+
+import android.util.Log;
+
+import com.example.glean.model.LeaderboardRank;
+import com.example.glean.model.RankingUser;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed leaderboards in Firestore.
+ *
+ * Each metric has one shard document, leaderboards/{points|distance}, holding the sorted
+ * top {@link #TOP_N} entries. A user's score change is merged into both shards in a
+ * single transaction, which also refreshes the user's leaderboard_ranks/{userId} cache
+ * and moves them between buckets of the leaderboard_histograms/{metric} score histogram.
+ * Clients read one document per metric instead of joining the users and user_stats
+ * collections on every change.
+ *
+ * A shard only knows its own entries, so when a member drops below the cutoff they are
+ * taken off it and the free spot is backfilled from user_stats, the same way a missing
+ * shard is seeded. The histograms only count users with a rank cache, so users who
+ * never submitted are counted in by {@link #backfillHistogramPage()}, one page per
+ * client process.
+ */
+public class LeaderboardService {
+
+    private static final String TAG = "LeaderboardService";
+    private static LeaderboardService instance;
+
+    static final String COLLECTION_LEADERBOARDS = "leaderboards";
+    static final String COLLECTION_RANKS = "leaderboard_ranks";
+    static final String COLLECTION_HISTOGRAMS = "leaderboard_histograms";
+    static final String COLLECTION_STATS = "user_stats";
+    static final String FIELD_ENTRIES = "entries";
+    static final String FIELD_CUTOFF = "cutoff";
+    static final String FIELD_UPDATED_AT = "updatedAt";
+    static final String FIELD_BUCKETS = "buckets";
+    static final String FIELD_BACKFILLED_AT = "backfilledAt";
+    static final String FIELD_BACKFILL_CURSOR = "backfillCursor";
+    static final String FIELD_BACKFILL_LEASE_UNTIL = "backfillLeaseUntil";
+
+    private static final int BACKFILL_PAGE_SIZE = 50; // Rank caches are read one by one in the transaction
+    private static final long BACKFILL_LEASE_MS = 60 * 1000;
+
+    public static final int TOP_N = 100;
+
+    private final FirebaseFirestore firestore;
+
+    public interface LeaderboardListener {
+        void onLeaderboardLoaded(List<RankingUser> ranking);
+        void onLeaderboardMissing();
+        void onError(String error);
+    }
+
+    /**
+     * Loads the top users of a metric from user_stats, joined with their profiles.
+     */
+    public interface CandidateSource {
+        Task<List<RankingUser>> loadTop(String metric, int limit);
+    }
+
+    private volatile CandidateSource candidateSource;
+    private final Map<String, Task<Integer>> backfills = new HashMap<>(); // Guarded by this
+    private volatile boolean histogramsChecked;
+
+    LeaderboardService(FirebaseFirestore firestore) {
+        this.firestore = firestore;
+    }
+
+    public static synchronized LeaderboardService getInstance() {
+        if (instance == null) {
+            instance = new LeaderboardService(FirebaseFirestore.getInstance());
+        }
+        return instance;
+    }
+
+    public void setCandidateSource(CandidateSource candidateSource) {
+        this.candidateSource = candidateSource;
+    }
+
+    /**
+     * Merge a user's current totals into both shards and refresh their rank cache.
+     * A shard the user neither was nor is part of is left untouched; a shard the user
+     * dropped off is backfilled afterwards.
+     */
+    public Task<LeaderboardRank> submit(RankingUser user) {
+        DocumentReference pointsShard = shard(LeaderboardRanker.METRIC_POINTS);
+        DocumentReference distanceShard = shard(LeaderboardRanker.METRIC_DISTANCE);
+        DocumentReference rankRef = firestore.collection(COLLECTION_RANKS).document(user.getUserId());
+        boolean[] dropped = new boolean[2]; // points, distance; written by the last attempt
+
+        return firestore.runTransaction(transaction -> {
+            // Transactions need every read before the first write
+            List<Map<String, Object>> pointsEntries = entriesOf(transaction.get(pointsShard));
+            List<Map<String, Object>> distanceEntries = entriesOf(transaction.get(distanceShard));
+            DocumentSnapshot previous = transaction.get(rankRef);
+            long now = System.currentTimeMillis();
+
+            boolean wasInPoints = LeaderboardRanker.rankOf(pointsEntries, user.getUserId()) > 0;
+            boolean wasInDistance = LeaderboardRanker.rankOf(distanceEntries, user.getUserId()) > 0;
+            int pointsRank = LeaderboardRanker.update(pointsEntries, LeaderboardRanker.toEntry(user),
+                    LeaderboardRanker.METRIC_POINTS, TOP_N);
+            int distanceRank = LeaderboardRanker.update(distanceEntries, LeaderboardRanker.toEntry(user),
+                    LeaderboardRanker.METRIC_DISTANCE, TOP_N);
+            dropped[0] = wasInPoints && pointsRank == 0;
+            dropped[1] = wasInDistance && distanceRank == 0;
+
+            if (wasInPoints || pointsRank > 0) {
+                transaction.set(pointsShard, shardData(pointsEntries, LeaderboardRanker.METRIC_POINTS, now));
+            }
+            if (wasInDistance || distanceRank > 0) {
+                transaction.set(distanceShard, shardData(distanceEntries, LeaderboardRanker.METRIC_DISTANCE, now));
+            }
+
+            moveInHistogram(transaction, LeaderboardRanker.METRIC_POINTS,
+                    previous.exists() ? previous.getDouble("totalPoints") : null, user.getTotalPoints());
+            moveInHistogram(transaction, LeaderboardRanker.METRIC_DISTANCE,
+                    previous.exists() ? previous.getDouble("totalDistance") : null, user.getTotalDistance());
+
+            LeaderboardRank rank = new LeaderboardRank();
+            rank.setPointsRank(pointsRank);
+            rank.setDistanceRank(distanceRank);
+            rank.setTotalPoints(user.getTotalPoints());
+            rank.setTotalDistance(user.getTotalDistance());
+            rank.setPointsCutoff(LeaderboardRanker.cutoff(pointsEntries, LeaderboardRanker.METRIC_POINTS, TOP_N));
+            rank.setDistanceCutoff(LeaderboardRanker.cutoff(distanceEntries, LeaderboardRanker.METRIC_DISTANCE, TOP_N));
+            rank.setUpdatedAt(now);
+            transaction.set(rankRef, rank);
+            return rank;
+        }).addOnSuccessListener(rank -> {
+                Log.d(TAG, "🏆 Leaderboard updated for " + user.getUserId()
+                        + " - points #" + rank.getPointsRank() + ", distance #" + rank.getDistanceRank());
+                if (dropped[0]) {
+                    backfill(LeaderboardRanker.METRIC_POINTS);
+                }
+                if (dropped[1]) {
+                    backfill(LeaderboardRanker.METRIC_DISTANCE);
+                }
+                if (!histogramsChecked) {
+                    histogramsChecked = true; // At most one backfill page per process
+                    backfillHistogramPage().addOnFailureListener(e -> histogramsChecked = false);
+                }
+            })
+          .addOnFailureListener(e ->
+                Log.e(TAG, "❌ Failed to update leaderboard for " + user.getUserId(), e));
+    }
+
+    /**
+     * Top a shard up from user_stats while it has fewer than {@link #TOP_N} entries,
+     * creating it when it is missing. A call for a metric that is already being
+     * backfilled shares that run, and the write re-checks the shard in a transaction,
+     * so repeated missing-shard snapshots or several clients seeding at once fill it once.
+     *
+     * @return number of entries added
+     */
+    public synchronized Task<Integer> backfill(String metric) {
+        Task<Integer> running = backfills.get(metric);
+        if (running != null) {
+            return running;
+        }
+        CandidateSource source = candidateSource;
+        if (source == null) {
+            return Tasks.forException(new IllegalStateException("No candidate source for leaderboard backfill"));
+        }
+
+        DocumentReference shardRef = shard(metric);
+        Log.d(TAG, "🏆 Backfilling " + metric + " leaderboard from user_stats");
+        Task<Integer> task = source.loadTop(metric, TOP_N)
+                .onSuccessTask(candidates -> firestore.runTransaction(transaction -> {
+                    DocumentSnapshot snapshot = transaction.get(shardRef);
+                    List<Map<String, Object>> entries = entriesOf(snapshot);
+                    if (snapshot.exists() && entries.size() >= TOP_N) {
+                        return 0;
+                    }
+                    int added = LeaderboardRanker.fill(entries, candidates, metric, TOP_N);
+                    if (!snapshot.exists() || added > 0) {
+                        transaction.set(shardRef, shardData(entries, metric, System.currentTimeMillis()));
+                    }
+                    return added;
+                }))
+                .addOnSuccessListener(added ->
+                        Log.d(TAG, "🏆 " + metric + " leaderboard backfilled with " + added + " entries"))
+                .addOnFailureListener(e ->
+                        Log.e(TAG, "❌ Failed to backfill " + metric + " leaderboard", e))
+                .addOnCompleteListener(done -> {
+                    synchronized (this) {
+                        backfills.remove(metric);
+                    }
+                });
+        backfills.put(metric, task);
+        return task;
+    }
+
+    /**
+     * Count the next page of user_stats documents into the histograms. Until the backfill
+     * is done the histograms only hold users who submitted since they were introduced,
+     * which makes estimated ranks too good.
+     *
+     * Progress is a cursor on the points histogram document, so the work is spread over
+     * clients one page at a time and survives a client dying mid-run. A client takes a
+     * short lease before reading a page; the page is counted in one transaction that also
+     * moves the cursor and only commits if the cursor is still where the page started.
+     *
+     * @return number of users counted in; 0 when done, or while another client holds the lease
+     */
+    public Task<Integer> backfillHistogramPage() {
+        DocumentReference marker = histogram(LeaderboardRanker.METRIC_POINTS);
+        long now = System.currentTimeMillis();
+
+        Task<String> claim = firestore.runTransaction(transaction -> {
+            DocumentSnapshot state = transaction.get(marker);
+            Long leaseUntil = state.getLong(FIELD_BACKFILL_LEASE_UNTIL);
+            if (state.contains(FIELD_BACKFILLED_AT) || (leaseUntil != null && leaseUntil > now)) {
+                return null;
+            }
+            transaction.set(marker, Collections.singletonMap(FIELD_BACKFILL_LEASE_UNTIL, now + BACKFILL_LEASE_MS),
+                    SetOptions.merge());
+            String cursor = state.getString(FIELD_BACKFILL_CURSOR);
+            return cursor != null ? cursor : "";
+        });
+
+        return claim.onSuccessTask(cursor -> {
+            if (cursor == null) {
+                return Tasks.forResult(0);
+            }
+            Query page = firestore.collection(COLLECTION_STATS)
+                    .orderBy(FieldPath.documentId())
+                    .limit(BACKFILL_PAGE_SIZE);
+            if (!cursor.isEmpty()) {
+                page = page.startAfter(cursor);
+            }
+            Task<DocumentSnapshot> pointsShard = shard(LeaderboardRanker.METRIC_POINTS).get();
+            Task<DocumentSnapshot> distanceShard = shard(LeaderboardRanker.METRIC_DISTANCE).get();
+            Task<QuerySnapshot> stats = page.get();
+            return Tasks.whenAllSuccess(pointsShard, distanceShard, stats).onSuccessTask(done ->
+                    countPage(cursor, stats.getResult().getDocuments(),
+                            entriesOf(pointsShard.getResult()), entriesOf(distanceShard.getResult())));
+        }).addOnSuccessListener(counted ->
+                Log.d(TAG, "📊 Leaderboard histogram backfill counted " + counted + " users"))
+          .addOnFailureListener(e ->
+                Log.e(TAG, "❌ Failed to backfill leaderboard histograms", e));
+    }
+
+    /**
+     * Count the users of one page that have no rank cache yet, create their rank caches
+     * from the shards, and move the cursor past the page, all in one transaction.
+     */
+    private Task<Integer> countPage(String cursor, List<DocumentSnapshot> statsDocs,
+                                    List<Map<String, Object>> pointsEntries,
+                                    List<Map<String, Object>> distanceEntries) {
+        DocumentReference marker = histogram(LeaderboardRanker.METRIC_POINTS);
+
+        return firestore.runTransaction(transaction -> {
+            // Transactions need every read before the first write
+            DocumentSnapshot state = transaction.get(marker);
+            String current = state.getString(FIELD_BACKFILL_CURSOR);
+            if (state.contains(FIELD_BACKFILLED_AT) || !cursor.equals(current != null ? current : "")) {
+                return 0; // Another client counted this page already
+            }
+            List<DocumentSnapshot> uncounted = new ArrayList<>();
+            for (DocumentSnapshot statsDoc : statsDocs) {
+                // A user with a rank cache was counted by their submit
+                if (!transaction.get(firestore.collection(COLLECTION_RANKS).document(statsDoc.getId())).exists()) {
+                    uncounted.add(statsDoc);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            Map<String, Object> pointsBuckets = new HashMap<>();
+            Map<String, Object> distanceBuckets = new HashMap<>();
+            for (DocumentSnapshot statsDoc : uncounted) {
+                double points = LeaderboardRanker.number(statsDoc.get(LeaderboardRanker.FIELD_TOTAL_POINTS));
+                double distance = LeaderboardRanker.number(statsDoc.get(LeaderboardRanker.FIELD_TOTAL_DISTANCE));
+                addToBucket(pointsBuckets, points);
+                addToBucket(distanceBuckets, distance);
+
+                LeaderboardRank rank = new LeaderboardRank();
+                rank.setPointsRank(LeaderboardRanker.rankOf(pointsEntries, statsDoc.getId()));
+                rank.setDistanceRank(LeaderboardRanker.rankOf(distanceEntries, statsDoc.getId()));
+                rank.setTotalPoints((int) points);
+                rank.setTotalDistance(distance);
+                rank.setPointsCutoff(LeaderboardRanker.cutoff(pointsEntries, LeaderboardRanker.METRIC_POINTS, TOP_N));
+                rank.setDistanceCutoff(LeaderboardRanker.cutoff(distanceEntries, LeaderboardRanker.METRIC_DISTANCE, TOP_N));
+                rank.setUpdatedAt(now);
+                transaction.set(firestore.collection(COLLECTION_RANKS).document(statsDoc.getId()), rank);
+            }
+
+            Map<String, Object> progress = new HashMap<>();
+            progress.put(FIELD_BUCKETS, toIncrements(pointsBuckets));
+            progress.put(FIELD_BACKFILL_LEASE_UNTIL, FieldValue.delete());
+            if (statsDocs.size() < BACKFILL_PAGE_SIZE) {
+                progress.put(FIELD_BACKFILLED_AT, now);
+                progress.put(FIELD_BACKFILL_CURSOR, FieldValue.delete());
+            } else {
+                progress.put(FIELD_BACKFILL_CURSOR, statsDocs.get(statsDocs.size() - 1).getId());
+            }
+            transaction.set(marker, progress, SetOptions.merge());
+            transaction.set(histogram(LeaderboardRanker.METRIC_DISTANCE),
+                    Collections.singletonMap(FIELD_BUCKETS, toIncrements(distanceBuckets)), SetOptions.merge());
+            return uncounted.size();
+        });
+    }
+
+    private static void addToBucket(Map<String, Object> counts, double score) {
+        String bucket = String.valueOf(ScoreHistogram.bucketOf(score));
+        Object count = counts.get(bucket);
+        counts.put(bucket, count == null ? 1L : (Long) count + 1);
+    }
+
+    private static Map<String, Object> toIncrements(Map<String, Object> counts) {
+        Map<String, Object> increments = new HashMap<>();
+        for (Map.Entry<String, Object> entry : counts.entrySet()) {
+            increments.put(entry.getKey(), FieldValue.increment((Long) entry.getValue()));
+        }
+        return increments;
+    }
+
+    /**
+     * Listen to a single shard document.
+     */
+    public ListenerRegistration subscribe(String metric, LeaderboardListener listener) {
+        return shard(metric).addSnapshotListener((snapshot, e) -> {
+            if (e != null) {
+                Log.w(TAG, "Listen failed for " + metric + " leaderboard", e);
+                listener.onError(e.getMessage());
+                return;
+            }
+            if (snapshot == null || !snapshot.exists()) {
+                listener.onLeaderboardMissing();
+                return;
+            }
+            listener.onLeaderboardLoaded(LeaderboardRanker.toRankingUsers(entriesOf(snapshot)));
+        });
+    }
+
+    /**
+     * Cached rank of a user, or null when they never submitted a score.
+     */
+    public Task<LeaderboardRank> getCachedRank(String userId) {
+        return firestore.collection(COLLECTION_RANKS).document(userId).get()
+                .continueWith(task -> {
+                    DocumentSnapshot snapshot = task.getResult();
+                    return snapshot != null && snapshot.exists()
+                            ? snapshot.toObject(LeaderboardRank.class) : null;
+                });
+    }
+
+    /**
+     * Move a user from the bucket of their previous score to the bucket of the new one.
+     * Increments are blind writes, so the histogram never adds read contention.
+     */
+    private void moveInHistogram(Transaction transaction, String metric, Double previousScore, double score) {
+        int to = ScoreHistogram.bucketOf(score);
+        Integer from = previousScore != null ? ScoreHistogram.bucketOf(previousScore) : null;
+        if (from != null && from == to) {
+            return;
+        }
+        Map<String, Object> buckets = new HashMap<>();
+        buckets.put(String.valueOf(to), FieldValue.increment(1));
+        if (from != null) {
+            buckets.put(String.valueOf(from), FieldValue.increment(-1));
+        }
+        transaction.set(histogram(metric), Collections.singletonMap(FIELD_BUCKETS, buckets), SetOptions.merge());
+    }
+
+    private DocumentReference histogram(String metric) {
+        return firestore.collection(COLLECTION_HISTOGRAMS).document(metric);
+    }
+
+    private DocumentReference shard(String metric) {
+        LeaderboardRanker.scoreField(metric); // rejects unknown metrics
+        return firestore.collection(COLLECTION_LEADERBOARDS).document(metric);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> entriesOf(DocumentSnapshot snapshot) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        Object stored = snapshot.exists() ? snapshot.get(FIELD_ENTRIES) : null;
+        if (stored instanceof List) {
+            for (Object item : (List<Object>) stored) {
+                if (item instanceof Map) {
+                    entries.add(new HashMap<>((Map<String, Object>) item));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static Map<String, Object> shardData(List<Map<String, Object>> entries, String metric, long now) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_ENTRIES, entries);
+        data.put(FIELD_CUTOFF, LeaderboardRanker.cutoff(entries, metric, TOP_N));
+        data.put(FIELD_UPDATED_AT, now);
+        return data;
+    }
+}
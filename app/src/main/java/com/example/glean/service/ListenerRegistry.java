@@ -0,0 +1,227 @@
+package com.example.glean.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference-counted Firestore snapshot listeners shared by lifecycle-bound observers.
+ *
+ * Observers of the same key share one Firestore listener. An observer is active while its
+ * LifecycleOwner is started, gets the last value when it joins a running listener, and is
+ * removed when the owner is destroyed. The listener is detached as soon as the last
+ * observer stops. State is confined to the main thread, where Firestore delivers snapshots;
+ * observe() and removeAll() hop there when called from a background thread.
+ */
+public class ListenerRegistry {
+
+    private static final String TAG = "ListenerRegistry";
+    private static ListenerRegistry instance;
+
+    private static final long READ_WINDOW_MS = 60 * 1000L;
+
+    private final Map<String, Entry<?>> entries = new HashMap<>();
+    // Delivery times of the last minute; every shared listener watches a single document
+    private final ArrayDeque<Long> readTimes = new ArrayDeque<>();
+    private long totalReads = 0;
+
+    public interface Observer<T> {
+        void onChanged(T value);
+        void onError(String error);
+    }
+
+    /**
+     * Starts the Firestore listener of a key and forwards its events to the dispatcher.
+     */
+    public interface Source<T> {
+        ListenerRegistration attach(Observer<T> dispatcher);
+    }
+
+    private ListenerRegistry() {
+    }
+
+    public static synchronized ListenerRegistry getInstance() {
+        if (instance == null) {
+            instance = new ListenerRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Observe a key for the lifetime of an owner. The source is only used when no
+     * listener for the key is running yet.
+     */
+    public <T> void observe(LifecycleOwner owner, String key, Source<T> source, Observer<T> observer) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            new Handler(Looper.getMainLooper()).post(() -> observe(owner, key, source, observer));
+            return;
+        }
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+        owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner lifecycleOwner, @NonNull Lifecycle.Event event) {
+                switch (event) {
+                    case ON_START:
+                        entry(key, source).activate(observer);
+                        break;
+                    case ON_STOP:
+                        deactivate(key, observer);
+                        break;
+                    case ON_DESTROY:
+                        deactivate(key, observer);
+                        lifecycleOwner.getLifecycle().removeObserver(this);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+    }
+
+    /**
+     * Detach every listener, e.g. on logout. Observers re-attach on their next start.
+     */
+    public void removeAll() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            new Handler(Looper.getMainLooper()).post(this::removeAll);
+            return;
+        }
+        for (Entry<?> entry : entries.values()) {
+            entry.detach();
+        }
+        entries.clear();
+        Log.d(TAG, "🔇 All shared listeners detached");
+    }
+
+    public int getActiveListenerCount() {
+        return entries.size();
+    }
+
+    /**
+     * Number of started observers. Main thread only.
+     */
+    public int getObserverCount() {
+        int count = 0;
+        for (Entry<?> entry : entries.values()) {
+            count += entry.observers.size();
+        }
+        return count;
+    }
+
+    public synchronized int getReadsPerMinute() {
+        pruneReads(SystemClock.elapsedRealtime());
+        return readTimes.size();
+    }
+
+    public synchronized long getTotalReads() {
+        return totalReads;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Entry<T> entry(String key, Source<T> source) {
+        Entry<T> entry = (Entry<T>) entries.get(key);
+        if (entry == null) {
+            entry = new Entry<>(key, source);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private <T> void deactivate(String key, Observer<T> observer) {
+        Entry<?> entry = entries.get(key);
+        if (entry != null && entry.observers.remove(observer) && entry.observers.isEmpty()) {
+            entry.detach();
+            entries.remove(key);
+            Log.d(TAG, "🔇 Detached " + key + " (" + entries.size() + " listeners active)");
+        }
+    }
+
+    private synchronized void recordRead() {
+        long now = SystemClock.elapsedRealtime();
+        readTimes.addLast(now);
+        totalReads++;
+        pruneReads(now);
+    }
+
+    private void pruneReads(long now) {
+        while (!readTimes.isEmpty() && now - readTimes.peekFirst() > READ_WINDOW_MS) {
+            readTimes.pollFirst();
+        }
+    }
+
+    private class Entry<T> implements Observer<T> {
+        final String key;
+        final Source<T> source;
+        final List<Observer<T>> observers = new ArrayList<>();
+        ListenerRegistration registration;
+        T lastValue;
+        boolean hasValue;
+
+        Entry(String key, Source<T> source) {
+            this.key = key;
+            this.source = source;
+        }
+
+        void activate(Observer<T> observer) {
+            if (observers.contains(observer)) {
+                return;
+            }
+            observers.add(observer);
+            if (registration == null) {
+                registration = source.attach(this);
+                Log.d(TAG, "🎧 Attached " + key + " (" + entries.size() + " listeners active)");
+            } else if (hasValue) {
+                observer.onChanged(lastValue);
+            }
+        }
+
+        void detach() {
+            if (registration != null) {
+                registration.remove();
+                registration = null;
+            }
+            hasValue = false;
+            lastValue = null;
+        }
+
+        @Override
+        public void onChanged(T value) {
+            if (registration == null) {
+                return;
+            }
+            recordRead();
+            lastValue = value;
+            hasValue = true;
+            // Copy: an observer may stop from inside its callback
+            for (Observer<T> observer : new ArrayList<>(observers)) {
+                observer.onChanged(value);
+            }
+        }
+
+        @Override
+        public void onError(String error) {
+            if (registration == null) {
+                return;
+            }
+            for (Observer<T> observer : new ArrayList<>(observers)) {
+                observer.onError(error);
+            }
+        }
+    }
+}
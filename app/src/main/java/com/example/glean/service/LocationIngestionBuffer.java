@@ -0,0 +1,213 @@
+package com.example.glean.service;
+
+import android.database.sqlite.SQLiteConstraintException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.glean.db.AppDatabase;
+import com.example.glean.db.LocationPointDao;
+import com.example.glean.model.LocationPointEntity;
+import com.example.glean.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind stage for GPS fixes of a single plogging record.
+ *
+ * Fixes are kept in a fixed-size ring buffer and written with one bulk insert
+ * (plus one distance update) per flush. A flush happens every {@code flushSize}
+ * points or {@code flushIntervalMs} after the first pending point, whichever
+ * comes first, and callers force one on pause/stop via {@link #flush()},
+ * {@link #flushAndWait(long)} or {@link #close()}.
+ *
+ * Writes go to the shared dbWriter lane and the flush timer runs on the main looper,
+ * so a session owns no thread of its own.
+ */
+public class LocationIngestionBuffer {
+
+    private static final String TAG = "LocationIngestionBuffer";
+
+    public static final int DEFAULT_FLUSH_SIZE = 20;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 15000; // 15 seconds
+    private static final long RETRY_DELAY_MS = 5000;
+    // Room for several failed flushes before the oldest points get overwritten
+    private static final int CAPACITY_FACTOR = 8;
+
+    private final LocationPointDao locationPointDao;
+    private final int recordId;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final AppExecutors.Lane writer;
+    private final Handler timer = new Handler(Looper.getMainLooper());
+    private final Runnable timedFlush = this::flush;
+
+    // Ring buffer state, guarded by "this"
+    private final LocationPointEntity[] ring;
+    private int head = 0;
+    private int size = 0;
+    private long overwrittenCount = 0;
+    private boolean flushScheduled = false;
+    private boolean closed = false;
+
+    // Written only on the dbWriter thread
+    private int flushCount = 0;
+    private int writtenCount = 0;
+
+    public LocationIngestionBuffer(AppDatabase db, int recordId) {
+        this(db, recordId, DEFAULT_FLUSH_SIZE, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public LocationIngestionBuffer(AppDatabase db, int recordId, int flushSize, long flushIntervalMs) {
+        this.locationPointDao = db.locationPointDao();
+        this.recordId = recordId;
+        this.flushSize = Math.max(1, flushSize);
+        this.flushIntervalMs = flushIntervalMs;
+        this.ring = new LocationPointEntity[this.flushSize * CAPACITY_FACTOR];
+        this.writer = AppExecutors.getInstance().dbWriter();
+    }
+
+    public int getRecordId() {
+        return recordId;
+    }
+
+    /**
+     * Queue a point for writing. Never touches the database on the calling thread.
+     */
+    public void add(LocationPointEntity point) {
+        boolean flushNow;
+        synchronized (this) {
+            if (closed) {
+                Log.w(TAG, "Dropping location point, buffer for record " + recordId + " is closed");
+                return;
+            }
+
+            if (size == ring.length) {
+                // Writer is failing or far behind: overwrite the oldest point
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+                overwrittenCount++;
+                Log.w(TAG, "Location buffer full for record " + recordId + ", oldest point dropped");
+            }
+
+            ring[(head + size) % ring.length] = point;
+            size++;
+
+            flushNow = size >= flushSize;
+            if (!flushNow && !flushScheduled) {
+                schedule(flushIntervalMs);
+            }
+        }
+
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Write all pending points asynchronously.
+     */
+    public void flush() {
+        writer.execute(this::writePending);
+    }
+
+    /**
+     * Write all pending points and wait for the write to finish; this also covers
+     * the final flush of a closed buffer. Must not be called on the main thread.
+     * On the dbWriter thread itself the points are written inline.
+     *
+     * @return true if the flush completed within the timeout
+     */
+    public boolean flushAndWait(long timeoutMs) {
+        if (writer.isCurrentThread()) {
+            writePending();
+            return true;
+        }
+        try {
+            writer.submit(this::writePending, AppExecutors.PRIORITY_HIGH).get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.e(TAG, "Error waiting for location flush of record " + recordId, e);
+        }
+        return false;
+    }
+
+    /**
+     * Flush remaining points. Does not block; further points are dropped.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        flush();
+        writer.execute(() -> Log.d(TAG, "Closed buffer for record " + recordId + ": " + writtenCount
+                + " points in " + flushCount + " flushes, " + overwrittenCount + " dropped"));
+    }
+
+    // Called with "this" held
+    private void schedule(long delayMs) {
+        timer.postDelayed(timedFlush, delayMs);
+        flushScheduled = true;
+    }
+
+    private void writePending() {
+        List<LocationPointEntity> batch;
+        float batchDistance = 0f;
+        long overwrittenAtSnapshot;
+
+        synchronized (this) {
+            if (flushScheduled) {
+                timer.removeCallbacks(timedFlush);
+                flushScheduled = false;
+            }
+            if (size == 0) {
+                return;
+            }
+
+            batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                LocationPointEntity point = ring[(head + i) % ring.length];
+                batch.add(point);
+                batchDistance += point.getDistanceFromLast();
+            }
+            overwrittenAtSnapshot = overwrittenCount;
+        }
+
+        try {
+            locationPointDao.insertBatch(recordId, batch, batchDistance);
+            flushCount++;
+            writtenCount += batch.size();
+            removeWritten(batch.size(), overwrittenAtSnapshot);
+        } catch (SQLiteConstraintException e) {
+            // The record is gone (deleted or never created); these points can never be stored
+            Log.e(TAG, "Record " + recordId + " does not exist, dropping " + batch.size() + " location points", e);
+            removeWritten(batch.size(), overwrittenAtSnapshot);
+        } catch (Exception e) {
+            Log.e(TAG, "Error writing " + batch.size() + " location points for record " + recordId + ", will retry", e);
+            synchronized (this) {
+                if (!closed && !flushScheduled) {
+                    schedule(RETRY_DELAY_MS);
+                }
+            }
+        }
+    }
+
+    private synchronized void removeWritten(int count, long overwrittenAtSnapshot) {
+        // Points overwritten while the batch was being written are already gone from the ring
+        int remaining = count - (int) (overwrittenCount - overwrittenAtSnapshot);
+        for (int i = 0; i < remaining && size > 0; i++) {
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.glean.service;
+
+import com.example.glean.util.GeoUtils;
+
+/**
+ * Streaming GPS noise filter that runs before distance accumulation.
+ *
+ * Each fix goes through three steps:
+ * <ol>
+ *     <li>Outlier rejection: fixes with poor accuracy, or that imply an impossible
+ *     speed relative to the current estimate, are dropped.</li>
+ *     <li>Smoothing: a one-state Kalman filter per axis, using the reported accuracy
+ *     as measurement noise and a walking-speed process noise.</li>
+ *     <li>Distance gating: the smoothed position only counts as movement once it is
+ *     further from the last counted position than twice the current uncertainty, so jitter
+ *     while standing still adds no distance.</li>
+ * </ol>
+ *
+ * The filter holds only primitive state and never allocates, so it is cheap enough
+ * to run on every fix. It is not thread-safe; feed it from one thread.
+ */
+public class LocationNoiseFilter {
+
+    public static final int ACCEPTED = 0;
+    public static final int REJECTED_ACCURACY = 1;
+    public static final int REJECTED_SPEED = 2;
+
+    static final float MAX_ACCURACY_METERS = 50f;
+    static final float MIN_ACCURACY_METERS = 1f;
+    static final float UNKNOWN_ACCURACY_METERS = 10f; // typical consumer GPS outdoors
+    static final float MAX_SPEED_MPS = 15f; // well above any plogging pace
+    static final float PROCESS_NOISE_MPS = 2f;
+    static final float MIN_STEP_METERS = 2f;
+    // Movement must exceed this many standard deviations of the estimate to count
+    static final float GATE_SIGMAS = 2f;
+    // After this many speed rejections in a row the estimate is assumed wrong
+    static final int MAX_CONSECUTIVE_REJECTS = 5;
+
+    private double latitude;
+    private double longitude;
+    private double variance = -1; // meters^2, negative until the first fix
+    private long timestamp;
+
+    private double countedLatitude;
+    private double countedLongitude;
+    private float distanceFromLast;
+
+    private int consecutiveRejects = 0;
+    private int acceptedCount = 0;
+    private int rejectedCount = 0;
+
+    /**
+     * Forget all state, e.g. when a new session starts.
+     */
+    public void reset() {
+        variance = -1;
+        consecutiveRejects = 0;
+        acceptedCount = 0;
+        rejectedCount = 0;
+        distanceFromLast = 0f;
+    }
+
+    /**
+     * Feed a raw fix. When {@link #ACCEPTED} is returned the smoothed position and
+     * {@link #getDistanceFromLast()} describe this fix.
+     *
+     * @param accuracy reported horizontal accuracy in meters, or 0 if unknown
+     * @param speed    reported speed in m/s, or a negative value if unknown
+     */
+    public int process(double rawLatitude, double rawLongitude, float accuracy, float speed, long timeMs) {
+        if (accuracy > MAX_ACCURACY_METERS) {
+            rejectedCount++;
+            return REJECTED_ACCURACY;
+        }
+        if (accuracy <= 0f) {
+            accuracy = UNKNOWN_ACCURACY_METERS;
+        } else if (accuracy < MIN_ACCURACY_METERS) {
+            accuracy = MIN_ACCURACY_METERS;
+        }
+
+        if (variance < 0) {
+            initialize(rawLatitude, rawLongitude, accuracy, timeMs);
+            return ACCEPTED;
+        }
+
+        long dtMs = timeMs - timestamp;
+        double jump = GeoUtils.distanceMeters(latitude, longitude, rawLatitude, rawLongitude);
+        // Allow for the estimate's own uncertainty before judging speed
+        double excess = jump - accuracy - Math.sqrt(variance);
+        if (excess > 0 && excess > MAX_SPEED_MPS * Math.max(dtMs, 1000) / 1000.0) {
+            rejectedCount++;
+            if (++consecutiveRejects < MAX_CONSECUTIVE_REJECTS) {
+                return REJECTED_SPEED;
+            }
+            // Consistently far away: we were the outlier, start over from here
+            initialize(rawLatitude, rawLongitude, accuracy, timeMs);
+            return ACCEPTED;
+        }
+        consecutiveRejects = 0;
+
+        if (dtMs > 0) {
+            double q = Math.max(PROCESS_NOISE_MPS, speed);
+            variance += dtMs * q * q / 1000.0;
+            timestamp = timeMs;
+        }
+
+        double gain = variance / (variance + (double) accuracy * accuracy);
+        latitude += gain * (rawLatitude - latitude);
+        longitude += gain * (rawLongitude - longitude);
+        variance = (1 - gain) * variance;
+
+        double moved = GeoUtils.distanceMeters(countedLatitude, countedLongitude, latitude, longitude);
+        if (moved >= Math.max(MIN_STEP_METERS, GATE_SIGMAS * Math.sqrt(variance))) {
+            distanceFromLast = (float) moved;
+            countedLatitude = latitude;
+            countedLongitude = longitude;
+        } else {
+            distanceFromLast = 0f;
+        }
+
+        acceptedCount++;
+        return ACCEPTED;
+    }
+
+    private void initialize(double rawLatitude, double rawLongitude, float accuracy, long timeMs) {
+        latitude = rawLatitude;
+        longitude = rawLongitude;
+        variance = (double) accuracy * accuracy;
+        timestamp = timeMs;
+        countedLatitude = rawLatitude;
+        countedLongitude = rawLongitude;
+        distanceFromLast = 0f;
+        consecutiveRejects = 0;
+        acceptedCount++;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return estimated accuracy of the smoothed position in meters
+     */
+    public float getAccuracy() {
+        return variance < 0 ? 0f : (float) Math.sqrt(variance);
+    }
+
+    /**
+     * @return counted movement for the last accepted fix in meters, 0 when it was jitter
+     */
+    public float getDistanceFromLast() {
+        return distanceFromLast;
+    }
+
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+}
@@ -3,52 +3,36 @@ package com.example.glean.service;
 import android.app.Notification;
 import android.app.Service;
 import android.content.Intent;
-import android.location.Location;
+import android.content.SharedPreferences;
 import android.os.IBinder;
-import android.os.Looper;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
-import com.example.glean.db.AppDatabase;
 import com.example.glean.helper.NotificationHelper;
-import com.example.glean.model.LocationPointEntity;
-import com.example.glean.model.RecordEntity;
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
-import com.google.android.gms.location.LocationServices;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+/**
+ * Foreground service hosting the {@link LocationTrackingEngine}. It is the only
+ * component that starts or stops location tracking.
+ */
 public class LocationService extends Service {
 
     private static final String TAG = "LocationService";
-    
+
     public static final String ACTION_START_TRACKING = "com.example.glean.ACTION_START_TRACKING";
     public static final String ACTION_STOP_TRACKING = "com.example.glean.ACTION_STOP_TRACKING";
+    public static final String EXTRA_RECORD_ID = "RECORD_ID";
+    public static final String EXTRA_SESSION_DISTANCE = "SESSION_DISTANCE";
 
-    private FusedLocationProviderClient fusedLocationClient;
-    private LocationCallback locationCallback;
-    private LocationRequest locationRequest;
+    private LocationTrackingEngine trackingEngine;
     private boolean isTracking = false;
-    private AppDatabase db;
-    private ExecutorService executor;
-    private int recordId = -1;
-    private Location lastLocation;
 
     @Override
     public void onCreate() {
         super.onCreate();
-        db = AppDatabase.getInstance(this);
-        executor = Executors.newSingleThreadExecutor();
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-        
-        createLocationRequest();
-        createLocationCallback();
-        
+        trackingEngine = LocationTrackingEngine.getInstance(this);
+
         // Ensure notification channels are created
         NotificationHelper.createNotificationChannels(this);
     }
@@ -58,121 +42,47 @@ public class LocationService extends Service {
         if (intent != null) {
             String action = intent.getAction();
             if (ACTION_START_TRACKING.equals(action)) {
-                recordId = intent.getIntExtra("RECORD_ID", -1);
-                startLocationTracking();
+                startLocationTracking(intent.getIntExtra(EXTRA_RECORD_ID, -1),
+                        intent.getFloatExtra(EXTRA_SESSION_DISTANCE, 0f));
             } else if (ACTION_STOP_TRACKING.equals(action)) {
                 stopLocationTracking();
             }
+        } else {
+            // Restarted by the system after process death: resume the saved session
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+            if (prefs.getBoolean("IS_TRACKING", false)) {
+                startLocationTracking(prefs.getInt("ACTIVE_RECORD_ID", -1),
+                        prefs.getFloat("SESSION_DISTANCE", 0f));
+            } else {
+                stopSelf();
+            }
         }
         return START_STICKY;
     }
 
-    private void createLocationRequest() {
-        locationRequest = LocationRequest.create();
-        locationRequest.setInterval(10000); // Update location every 10 seconds
-        locationRequest.setFastestInterval(5000); // Fastest update interval 5 seconds
-        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-    }
-
-    private void createLocationCallback() {
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(LocationResult locationResult) {
-                if (locationResult == null) {
-                    return;
-                }
-                
-                for (Location location : locationResult.getLocations()) {
-                    onNewLocation(location);
-                }
-            }
-        };
-    }    private void onNewLocation(Location location) {
-        Log.d(TAG, "📍 LocationService received new location: (" + location.getLatitude() + ", " + location.getLongitude() + ")");
-        Log.d(TAG, "   Current record ID: " + recordId);
-        
-        if (recordId != -1) {
-            // Calculate distance from last location if available
-            float distance = 0;
-            if (lastLocation != null) {
-                distance = location.distanceTo(lastLocation);
-                Log.d(TAG, "   Distance from last location: " + distance + "m");
-            } else {
-                Log.d(TAG, "   First location point (no previous location)");
-            }
-            
-            // Make distance effectively final for lambda
-            final float finalDistance = distance;
-            
-            // Store location point in database
-            LocationPointEntity locationPoint = new LocationPointEntity(
-                    recordId,
-                    location.getLatitude(),
-                    location.getLongitude(),
-                    location.getAltitude(),
-                    System.currentTimeMillis(),
-                    finalDistance
-            );
-            
-            Log.d(TAG, "🔄 LocationService: Saving location point to database...");
-            
-            executor.execute(() -> {
-                try {
-                    // Verify record exists before inserting
-                    RecordEntity record = db.recordDao().getRecordByIdSync(recordId);
-                    if (record == null) {
-                        Log.e(TAG, "❌ LocationService ERROR: Record ID " + recordId + " does not exist!");
-                        return;
-                    }
-                    
-                    // Get count before insertion
-                    int countBefore = db.locationPointDao().getLocationPointCountByRecordId(recordId);
-                    
-                    // Insert location point
-                    long insertedId = db.locationPointDao().insert(locationPoint);
-                    Log.d(TAG, "✅ LocationService: Location point inserted with ID " + insertedId);
-                    
-                    // Verify insertion
-                    int countAfter = db.locationPointDao().getLocationPointCountByRecordId(recordId);
-                    Log.d(TAG, "   LocationService: Points before=" + countBefore + ", after=" + countAfter);
-                    
-                    // Update route distance in record
-                    if (finalDistance > 0) {
-                        db.recordDao().updateDistance(recordId, finalDistance);
-                        Log.d(TAG, "✅ LocationService: Record distance updated by " + finalDistance + "m");
-                    }
-                    
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ LocationService ERROR saving location point: " + e.getMessage(), e);
-                }
-            });
-            
-            lastLocation = location;
-        } else {
-            Log.w(TAG, "⚠️  LocationService: Cannot save location - no active record (recordId = " + recordId + ")");
+    private void startLocationTracking(int recordId, float sessionDistance) {
+        if (recordId == -1) {
+            Log.w(TAG, "⚠️  LocationService: Cannot start tracking - no active record");
+            return;
         }
-    }
 
-    private void startLocationTracking() {
-        if (!isTracking) {
+        try {
+            // Use NotificationHelper to create the notification
+            Notification notification = NotificationHelper.createTrackingNotification(this).build();
+            startForeground(NotificationHelper.NOTIFICATION_ID_TRACKING, notification);
+
+            trackingEngine.start(recordId, sessionDistance);
             isTracking = true;
-            
-            try {
-                fusedLocationClient.requestLocationUpdates(
-                        locationRequest, locationCallback, Looper.getMainLooper());
-                
-                // Use NotificationHelper to create the notification
-                Notification notification = NotificationHelper.createTrackingNotification(this).build();
-                startForeground(NotificationHelper.NOTIFICATION_ID_TRACKING, notification);
-            } catch (SecurityException e) {
-                e.printStackTrace();
-            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission missing, cannot start tracking", e);
+            stopForeground(true);
+            stopSelf();
         }
     }
 
     private void stopLocationTracking() {
         isTracking = false;
-        fusedLocationClient.removeLocationUpdates(locationCallback);
+        trackingEngine.stop();
         stopForeground(true);
         stopSelf();
     }
@@ -183,12 +93,19 @@ public class LocationService extends Service {
         return null;
     }
 
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        super.onTaskRemoved(rootIntent);
+        // The process may be killed soon after the task is swiped away
+        trackingEngine.flush();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         if (isTracking) {
-            stopLocationTracking();
+            trackingEngine.stop();
+            isTracking = false;
         }
-        executor.shutdown();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,358 @@
+package com.example.glean.service;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+import android.os.BatteryManager;
+import android.os.HandlerThread;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.glean.db.AppDatabase;
+import com.example.glean.model.LocationPointEntity;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+
+/**
+ * Single owner of the plogging location subscription, distance accumulator and
+ * route persistence. Only {@link LocationService} starts and stops it; the UI
+ * observes {@link #getUpdates()} and never talks to GPS or Room for tracking.
+ */
+public class LocationTrackingEngine {
+
+    private static final String TAG = "LocationTrackingEngine";
+
+    private static final String METRICS_PREFS_NAME = "TrackingMetrics";
+    private static final long DISTANCE_SAVE_INTERVAL_MS = 10000;
+    private static final float DISTANCE_SAVE_STEP_METERS = 10f;
+    private static final long FLUSH_WAIT_TIMEOUT_MS = 2000;
+
+    private static LocationTrackingEngine instance;
+
+    private final Context context;
+    private final AppDatabase db;
+    private final FusedLocationProviderClient fusedLocationClient;
+    private final MutableLiveData<TrackingUpdate> updates = new MutableLiveData<>();
+    private final LocationCallback locationCallback;
+
+    private HandlerThread callbackThread;
+    private LocationIngestionBuffer locationBuffer;
+    private volatile boolean tracking = false;
+    private volatile int recordId = -1;
+    private volatile float totalDistance = 0f;
+    private AdaptiveSamplingPolicy samplingPolicy = new AdaptiveSamplingPolicy();
+    private final LocationNoiseFilter noiseFilter = new LocationNoiseFilter();
+    private int batteryAtStart = -1;
+
+    // Only touched on the callback thread
+    private long lastDistanceSaveTime = 0;
+    private float lastSavedDistance = 0f;
+
+    /**
+     * Immutable snapshot posted to observers for every accepted fix.
+     */
+    public static class TrackingUpdate {
+        private final int recordId;
+        private final Location location;
+        private final float distanceFromLast;
+        private final float totalDistance;
+
+        TrackingUpdate(int recordId, Location location, float distanceFromLast, float totalDistance) {
+            this.recordId = recordId;
+            this.location = location;
+            this.distanceFromLast = distanceFromLast;
+            this.totalDistance = totalDistance;
+        }
+
+        public int getRecordId() {
+            return recordId;
+        }
+
+        public Location getLocation() {
+            return location;
+        }
+
+        public float getDistanceFromLast() {
+            return distanceFromLast;
+        }
+
+        public float getTotalDistance() {
+            return totalDistance;
+        }
+    }
+
+    private LocationTrackingEngine(Context context) {
+        this.context = context.getApplicationContext();
+        this.db = AppDatabase.getInstance(this.context);
+        this.fusedLocationClient = LocationServices.getFusedLocationProviderClient(this.context);
+        this.locationCallback = new LocationCallback() {
+            @Override
+            public void onLocationResult(LocationResult locationResult) {
+                if (locationResult == null) {
+                    return;
+                }
+                for (Location location : locationResult.getLocations()) {
+                    onNewLocation(location);
+                }
+            }
+        };
+    }
+
+    public static synchronized LocationTrackingEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocationTrackingEngine(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Stream of accepted fixes. Values are posted from the tracking thread, so
+     * observers may see only the latest of several quick fixes.
+     */
+    public LiveData<TrackingUpdate> getUpdates() {
+        return updates;
+    }
+
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    public int getRecordId() {
+        return recordId;
+    }
+
+    public float getTotalDistance() {
+        return totalDistance;
+    }
+
+    /**
+     * Start (or continue) tracking a record. Called by {@link LocationService} only.
+     *
+     * @param initialDistance distance already accumulated for the record, in meters
+     */
+    synchronized void start(int recordId, float initialDistance) throws SecurityException {
+        if (tracking && this.recordId == recordId) {
+            return;
+        }
+        if (tracking) {
+            stop();
+        }
+
+        this.recordId = recordId;
+        this.totalDistance = initialDistance;
+        this.lastSavedDistance = initialDistance;
+        this.noiseFilter.reset();
+        this.locationBuffer = new LocationIngestionBuffer(db, recordId);
+        this.samplingPolicy = new AdaptiveSamplingPolicy();
+        this.batteryAtStart = readBatteryPercent();
+
+        callbackThread = new HandlerThread(TAG);
+        callbackThread.start();
+
+        tracking = true;
+        try {
+            fusedLocationClient.requestLocationUpdates(createLocationRequest(samplingPolicy.getMode()),
+                    locationCallback, callbackThread.getLooper());
+        } catch (SecurityException e) {
+            stop();
+            throw e;
+        }
+        Log.d(TAG, "Tracking started for record " + recordId + " at " + initialDistance + "m");
+    }
+
+    /**
+     * Stop the subscription and flush buffered points. Called by {@link LocationService},
+     * and by {@link #stopAndWait()} when a session is finished.
+     */
+    synchronized void stop() {
+        if (!tracking) {
+            return;
+        }
+        tracking = false;
+
+        fusedLocationClient.removeLocationUpdates(locationCallback);
+        if (callbackThread != null) {
+            callbackThread.quitSafely();
+            callbackThread = null;
+        }
+        if (locationBuffer != null) {
+            locationBuffer.close();
+        }
+        recordSamplingMetrics();
+        Log.d(TAG, "Tracking stopped for record " + recordId + " at " + totalDistance + "m, "
+                + noiseFilter.getRejectedCount() + " fixes rejected");
+    }
+
+    /**
+     * Sampling decisions of the current (or last) session.
+     */
+    public AdaptiveSamplingPolicy.Metrics getSamplingMetrics() {
+        return samplingPolicy.getMetrics();
+    }
+
+    /**
+     * Totals of all sessions recorded so far, for comparing sampling cost over time.
+     */
+    public String getCumulativeSamplingSummary() {
+        SharedPreferences prefs = context.getSharedPreferences(METRICS_PREFS_NAME, Context.MODE_PRIVATE);
+        int fixes = prefs.getInt("fixes", 0);
+        float meters = prefs.getFloat("distance_meters", 0f);
+        return String.format(java.util.Locale.US,
+                "sessions=%d fixes=%d distance=%.0fm fixes/km=%.1f still=%ds walking=%ds fast=%ds battery=%d%%",
+                prefs.getInt("sessions", 0), fixes, meters,
+                meters > 0 ? fixes / (meters / 1000f) : 0f,
+                prefs.getLong("stationary_ms", 0) / 1000,
+                prefs.getLong("walking_ms", 0) / 1000,
+                prefs.getLong("fast_ms", 0) / 1000,
+                prefs.getInt("battery_used_percent", 0));
+    }
+
+    /**
+     * Write buffered points without waiting.
+     */
+    public void flush() {
+        LocationIngestionBuffer buffer = locationBuffer;
+        if (buffer != null) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * Block until all points received so far are on disk. Must not be called on
+     * the main thread.
+     */
+    public boolean flushAndWait() {
+        LocationIngestionBuffer buffer = locationBuffer;
+        return buffer == null || buffer.flushAndWait(FLUSH_WAIT_TIMEOUT_MS);
+    }
+
+    /**
+     * Stop tracking and block until every point received is on disk, so the route can be
+     * sealed right after; the stop intent LocationService gets later then finds nothing
+     * left to stop. Must not be called on the main thread.
+     *
+     * @return true if the final flush completed within the timeout
+     */
+    public boolean stopAndWait() {
+        stop();
+        return flushAndWait();
+    }
+
+    private LocationRequest createLocationRequest(AdaptiveSamplingPolicy.Mode mode) {
+        return LocationRequest.create()
+                .setPriority(mode.priority)
+                .setInterval(mode.intervalMs)
+                .setFastestInterval(mode.fastestIntervalMs)
+                .setSmallestDisplacement(mode.smallestDisplacementMeters);
+    }
+
+    private void applySamplingMode(AdaptiveSamplingPolicy.Mode mode) {
+        HandlerThread thread = callbackThread;
+        if (!tracking || thread == null) {
+            return;
+        }
+        try {
+            // Re-requesting with the same callback replaces the active request
+            fusedLocationClient.requestLocationUpdates(createLocationRequest(mode), locationCallback,
+                    thread.getLooper());
+            Log.d(TAG, "Sampling mode -> " + mode + " (" + samplingPolicy.getMetrics() + ")");
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission lost while changing sampling mode", e);
+        }
+    }
+
+    private void recordSamplingMetrics() {
+        samplingPolicy.finish(System.currentTimeMillis());
+        AdaptiveSamplingPolicy.Metrics metrics = samplingPolicy.getMetrics();
+        int batteryUsed = 0;
+        int batteryNow = readBatteryPercent();
+        if (batteryAtStart >= 0 && batteryNow >= 0 && batteryNow < batteryAtStart) {
+            batteryUsed = batteryAtStart - batteryNow;
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(METRICS_PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit()
+                .putInt("sessions", prefs.getInt("sessions", 0) + 1)
+                .putInt("fixes", prefs.getInt("fixes", 0) + metrics.getFixCount())
+                .putFloat("distance_meters", prefs.getFloat("distance_meters", 0f) + (float) metrics.getDistanceMeters())
+                .putInt("mode_switches", prefs.getInt("mode_switches", 0) + metrics.getModeSwitches())
+                .putLong("stationary_ms", prefs.getLong("stationary_ms", 0)
+                        + metrics.getTimeInModeMs(AdaptiveSamplingPolicy.Mode.STATIONARY))
+                .putLong("walking_ms", prefs.getLong("walking_ms", 0)
+                        + metrics.getTimeInModeMs(AdaptiveSamplingPolicy.Mode.WALKING))
+                .putLong("fast_ms", prefs.getLong("fast_ms", 0)
+                        + metrics.getTimeInModeMs(AdaptiveSamplingPolicy.Mode.FAST))
+                .putInt("battery_used_percent", prefs.getInt("battery_used_percent", 0) + batteryUsed)
+                .apply();
+
+        Log.d(TAG, "Session sampling: " + metrics + " battery=" + batteryUsed + "%");
+        Log.d(TAG, "All sessions: " + getCumulativeSamplingSummary());
+    }
+
+    private int readBatteryPercent() {
+        BatteryManager batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        return batteryManager != null
+                ? batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY)
+                : -1;
+    }
+
+    private void onNewLocation(Location location) {
+        if (!tracking || locationBuffer == null) {
+            return;
+        }
+
+        int result = noiseFilter.process(location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : 0f,
+                location.hasSpeed() ? location.getSpeed() : -1f,
+                location.getTime());
+        if (result != LocationNoiseFilter.ACCEPTED) {
+            Log.d(TAG, "Fix rejected (" + result + "), accuracy " + location.getAccuracy() + "m");
+            return;
+        }
+
+        // Continue with the smoothed position; the Location instance is ours to modify
+        location.setLatitude(noiseFilter.getLatitude());
+        location.setLongitude(noiseFilter.getLongitude());
+        location.setAccuracy(noiseFilter.getAccuracy());
+
+        float distance = noiseFilter.getDistanceFromLast();
+        totalDistance += distance;
+
+        if (samplingPolicy.onFix(location.getTime(), location.getLatitude(), location.getLongitude(), distance,
+                location.hasSpeed() ? location.getSpeed() : -1f,
+                location.hasBearing() ? location.getBearing() : Float.NaN)) {
+            applySamplingMode(samplingPolicy.getMode());
+        }
+
+        locationBuffer.add(new LocationPointEntity(
+                recordId,
+                location.getLatitude(),
+                location.getLongitude(),
+                location.getAltitude(),
+                System.currentTimeMillis(),
+                distance
+        ));
+
+        long now = System.currentTimeMillis();
+        if (now - lastDistanceSaveTime > DISTANCE_SAVE_INTERVAL_MS
+                || totalDistance - lastSavedDistance > DISTANCE_SAVE_STEP_METERS) {
+            saveSessionDistance();
+            lastDistanceSaveTime = now;
+        }
+
+        updates.postValue(new TrackingUpdate(recordId, location, distance, totalDistance));
+    }
+
+    private void saveSessionDistance() {
+        // Same key PloggingFragment restores the session from
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        prefs.edit().putFloat("SESSION_DISTANCE", totalDistance).apply();
+        lastSavedDistance = totalDistance;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.glean.service;
+
+import android.util.Log;
+
+import com.example.glean.db.AppDatabase;
+import com.example.glean.db.OutboxDao;
+import com.example.glean.model.OutboxEntity;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Upload loop of SyncOutboxWorker, separate from Firestore so its retry rules can be tested.
+ *
+ * Trash and profile operations go up as one batch per page. If a batch is rejected it is
+ * split into single operations, so only the operation that actually fails is charged an
+ * attempt; sessions are committed one by one anyway. Timeouts and UNAVAILABLE-like errors
+ * are the network's fault and stop the run without charging anyone. An operation is
+ * dropped once it has been rejected {@link #MAX_OPERATION_ATTEMPTS} times on its own.
+ */
+class OutboxDrainer {
+
+    private static final String TAG = "OutboxDrainer";
+
+    static final int BATCH_SIZE = 100;
+    // An operation still rejected after this many attempts is dropped so it cannot block the queue
+    static final int MAX_OPERATION_ATTEMPTS = 10;
+
+    /**
+     * Writes operations to the server. Both calls block until the write is committed.
+     */
+    interface Uploader {
+        void commitBatch(List<OutboxEntity> operations) throws Exception;
+
+        /**
+         * @return true if this call counted the session, false if an earlier one already had
+         */
+        boolean commitSession(OutboxEntity session) throws Exception;
+    }
+
+    static class Report {
+        int uploaded = 0;
+        int dropped = 0;
+        boolean sessionsCounted = false;
+        boolean retry = false;
+    }
+
+    private final AppDatabase db;
+    private final OutboxDao outboxDao;
+    private final Uploader uploader;
+
+    OutboxDrainer(AppDatabase db, Uploader uploader) {
+        this.db = db;
+        this.outboxDao = db.outboxDao();
+        this.uploader = uploader;
+    }
+
+    /**
+     * Upload everything queued for the user. Stops early when stopped, on a network error,
+     * or after a page with rejected operations, which are retried on the next run.
+     */
+    Report drain(String userId, BooleanSupplier stopped) {
+        Report report = new Report();
+        while (!stopped.getAsBoolean() && !report.retry) {
+            List<OutboxEntity> operations = outboxDao.getPendingForUserSync(userId, BATCH_SIZE);
+            if (operations.isEmpty()) {
+                break;
+            }
+
+            List<Long> dropped = new ArrayList<>();
+            List<OutboxEntity> writes = new ArrayList<>();
+            List<OutboxEntity> sessions = new ArrayList<>();
+            for (OutboxEntity operation : operations) {
+                if (operation.getAttempts() >= MAX_OPERATION_ATTEMPTS) {
+                    Log.e(TAG, "❌ Dropping " + operation.getType() + " " + operation.getOpId()
+                            + " after " + operation.getAttempts() + " attempts: " + operation.getLastError());
+                    dropped.add(operation.getId());
+                } else if (OutboxEntity.TYPE_SESSION.equals(operation.getType())) {
+                    sessions.add(operation);
+                } else {
+                    writes.add(operation);
+                }
+            }
+            if (!dropped.isEmpty()) {
+                outboxDao.deleteByIds(dropped);
+                report.dropped += dropped.size();
+            }
+
+            if (!writes.isEmpty() && !uploadWrites(writes, report)) {
+                return report;
+            }
+            for (OutboxEntity session : sessions) {
+                if (!uploadSession(session, report)) {
+                    return report;
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * @return false if the run has to stop because the network failed
+     */
+    private boolean uploadWrites(List<OutboxEntity> writes, Report report) {
+        try {
+            uploader.commitBatch(writes);
+            outboxDao.deleteByIds(ids(writes));
+            report.uploaded += writes.size();
+            return true;
+        } catch (Exception e) {
+            if (isTransient(e)) {
+                return stopForNetwork(e, report);
+            }
+            Log.w(TAG, "⚠️ Batch of " + writes.size() + " rejected, retrying one by one: " + errorMessage(e));
+        }
+
+        for (OutboxEntity operation : writes) {
+            try {
+                uploader.commitBatch(Collections.singletonList(operation));
+                outboxDao.deleteByIds(Collections.singletonList(operation.getId()));
+                report.uploaded++;
+            } catch (Exception e) {
+                if (isTransient(e)) {
+                    return stopForNetwork(e, report);
+                }
+                reject(operation, e, report);
+            }
+        }
+        return true;
+    }
+
+    private boolean uploadSession(OutboxEntity session, Report report) {
+        try {
+            report.sessionsCounted |= uploader.commitSession(session);
+        } catch (Exception e) {
+            if (isTransient(e)) {
+                return stopForNetwork(e, report);
+            }
+            reject(session, e, report);
+            return true;
+        }
+        // The totals are on the server now; only then is the operation forgotten
+        db.runInTransaction(() -> {
+            outboxDao.deleteByIds(Collections.singletonList(session.getId()));
+            db.recordDao().markUploaded(Collections.singletonList((int) session.getTargetId()));
+        });
+        report.uploaded++;
+        return true;
+    }
+
+    private void reject(OutboxEntity operation, Exception e, Report report) {
+        String error = errorMessage(e);
+        outboxDao.markFailed(Collections.singletonList(operation.getId()), error);
+        report.retry = true;
+        Log.w(TAG, "⚠️ " + operation.getType() + " " + operation.getOpId() + " rejected (attempt "
+                + (operation.getAttempts() + 1) + "): " + error);
+    }
+
+    private static boolean stopForNetwork(Exception e, Report report) {
+        report.retry = true;
+        Log.w(TAG, "⚠️ Network error, will retry without charging attempts: " + errorMessage(e));
+        return false;
+    }
+
+    /**
+     * Whether a failed write may succeed unchanged later: timeouts, interruptions and the
+     * Firestore codes for an unreachable, overloaded or contended backend.
+     */
+    static boolean isTransient(Throwable e) {
+        Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof TimeoutException || cause instanceof InterruptedException) {
+            return true;
+        }
+        if (cause instanceof FirebaseFirestoreException) {
+            switch (((FirebaseFirestoreException) cause).getCode()) {
+                case UNAVAILABLE:
+                case DEADLINE_EXCEEDED:
+                case ABORTED:
+                case RESOURCE_EXHAUSTED:
+                case CANCELLED:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private static List<Long> ids(List<OutboxEntity> operations) {
+        List<Long> ids = new ArrayList<>(operations.size());
+        for (OutboxEntity operation : operations) {
+            ids.add(operation.getId());
+        }
+        return ids;
+    }
+
+    private static String errorMessage(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+}
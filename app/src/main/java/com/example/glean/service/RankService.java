@@ -0,0 +1,100 @@
+package com.example.glean.service;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.Map;
+
+/**
+ * Rank of a score on a leaderboard metric without downloading the users above it.
+ *
+ * The exact rank comes from server-side count() aggregates over user_stats, billed as
+ * one read per 1000 counted documents; equal scores are ordered by user id, as on the
+ * leaderboard list. When the aggregates are not available (offline, or a backend
+ * without aggregation support) the rank is estimated from the
+ * leaderboard_histograms/{metric} document maintained by {@link LeaderboardService}.
+ * Either way a lookup costs a few small responses regardless of the user's position.
+ */
+public class RankService {
+
+    private static final String TAG = "RankService";
+    private static RankService instance;
+
+    private static final String COLLECTION_STATS = "user_stats";
+
+    private final FirebaseFirestore firestore;
+
+    public interface RankCallback {
+        /**
+         * @param exact false when the rank was estimated from the score histogram
+         */
+        void onRankLoaded(int rank, boolean exact);
+        void onError(String error);
+    }
+
+    RankService(FirebaseFirestore firestore) {
+        this.firestore = firestore;
+    }
+
+    public static synchronized RankService getInstance() {
+        if (instance == null) {
+            instance = new RankService(FirebaseFirestore.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * 1-based rank of a user's score on a metric (LeaderboardRanker.METRIC_POINTS or
+     * METRIC_DISTANCE): everyone with a higher score, plus those with the same score and
+     * a smaller user id.
+     */
+    public void getRank(String metric, double score, String userId, RankCallback callback) {
+        String field = LeaderboardRanker.scoreField(metric);
+        Task<AggregateQuerySnapshot> higher = firestore.collection(COLLECTION_STATS)
+                .whereGreaterThan(field, score)
+                .count()
+                .get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> tiedBefore = firestore.collection(COLLECTION_STATS)
+                .whereEqualTo(field, score)
+                .whereLessThan(FieldPath.documentId(), userId)
+                .count()
+                .get(AggregateSource.SERVER);
+        Tasks.whenAllSuccess(higher, tiedBefore)
+                .addOnSuccessListener(done -> {
+                    int rank = (int) (higher.getResult().getCount() + tiedBefore.getResult().getCount()) + 1;
+                    Log.d(TAG, "🏆 Exact " + metric + " rank for " + score + ": #" + rank);
+                    callback.onRankLoaded(rank, true);
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "⚠️ Count aggregate failed, estimating " + metric + " rank from histogram", e);
+                    estimateRank(metric, score, callback);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void estimateRank(String metric, double score, RankCallback callback) {
+        firestore.collection(LeaderboardService.COLLECTION_HISTOGRAMS)
+                .document(metric)
+                .get()
+                .addOnSuccessListener(document -> {
+                    Object buckets = document.exists() ? document.get(LeaderboardService.FIELD_BUCKETS) : null;
+                    if (!(buckets instanceof Map)) {
+                        callback.onError("No rank data for " + metric);
+                        return;
+                    }
+                    int rank = ScoreHistogram.estimateRank((Map<String, Object>) buckets, score);
+                    Log.d(TAG, "🏆 Estimated " + metric + " rank for " + score + ": #" + rank);
+                    callback.onRankLoaded(rank, false);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Failed to load " + metric + " histogram", e);
+                    callback.onError(e.getMessage());
+                });
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.glean.service;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.glean.db.AppDatabase;
+import com.example.glean.db.RankingCacheDao;
+import com.example.glean.model.RankingCacheEntity;
+import com.example.glean.model.RankingUser;
+import com.example.glean.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Room-backed snapshot of the leaderboards for stale-while-revalidate rendering.
+ *
+ * The ranking tabs render the last snapshot of a metric immediately, even offline, and
+ * only go to Firestore when the snapshot is missing or older than the TTL. Snapshots
+ * are keyed by the score field ("totalPoints" or "totalDistance").
+ */
+public class RankingCache {
+
+    private static final String TAG = "RankingCache";
+    private static RankingCache instance;
+
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000L;
+
+    private final RankingCacheDao dao;
+    private final Executor executor;
+    private final Handler mainHandler;
+    private volatile long ttlMillis = DEFAULT_TTL_MS;
+
+    // Counters since process start
+    private int hits = 0;
+    private int staleHits = 0;
+    private int misses = 0;
+    private int revalidations = 0;
+    private long lastAgeMillis = -1;
+
+    public interface CacheCallback {
+        /**
+         * Called on the main thread.
+         *
+         * @param ranking cached snapshot in rank order, empty on a miss
+         * @param ageMillis age of the snapshot, or -1 on a miss
+         * @param needsRevalidation true when the snapshot is missing or older than the TTL
+         */
+        void onCacheLoaded(List<RankingUser> ranking, long ageMillis, boolean needsRevalidation);
+    }
+
+    /**
+     * Counters of cache use since process start.
+     */
+    public static class Metrics {
+        public final int hits;
+        public final int staleHits;
+        public final int misses;
+        public final int revalidations;
+        public final long lastAgeMillis;
+
+        Metrics(int hits, int staleHits, int misses, int revalidations, long lastAgeMillis) {
+            this.hits = hits;
+            this.staleHits = staleHits;
+            this.misses = misses;
+            this.revalidations = revalidations;
+            this.lastAgeMillis = lastAgeMillis;
+        }
+
+        public float getHitRate() {
+            int lookups = hits + staleHits + misses;
+            return lookups == 0 ? 0f : (hits + staleHits) / (float) lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + " stale=" + staleHits + " misses=" + misses
+                    + " revalidations=" + revalidations + " lastAge=" + lastAgeMillis + "ms";
+        }
+    }
+
+    private RankingCache(Context context) {
+        this.dao = AppDatabase.getInstance(context).rankingCacheDao();
+        this.executor = AppExecutors.getInstance().io().serial();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public static synchronized RankingCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new RankingCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = Math.max(0, ttlMillis);
+    }
+
+    /**
+     * Read the cached snapshot of a metric (LeaderboardRanker.METRIC_POINTS or METRIC_DISTANCE).
+     */
+    public void load(String metric, CacheCallback callback) {
+        String key = LeaderboardRanker.scoreField(metric);
+        executor.execute(() -> {
+            List<RankingUser> ranking = new ArrayList<>();
+            long age = -1;
+            try {
+                Long cachedAt = dao.getCachedAtSync(key);
+                if (cachedAt != null) {
+                    for (RankingCacheEntity entry : dao.getRankingSync(key)) {
+                        ranking.add(entry.toRankingUser());
+                    }
+                    age = Math.max(0, System.currentTimeMillis() - cachedAt);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Error reading ranking cache for " + key, e);
+            }
+
+            boolean needsRevalidation = ranking.isEmpty() || age > ttlMillis;
+            synchronized (this) {
+                if (ranking.isEmpty()) {
+                    misses++;
+                } else if (needsRevalidation) {
+                    staleHits++;
+                } else {
+                    hits++;
+                }
+                lastAgeMillis = age;
+            }
+            Log.d(TAG, "🏆 Ranking cache " + key + ": " + ranking.size() + " entries, age " + age
+                    + "ms, revalidate=" + needsRevalidation + " (" + getMetrics() + ")");
+
+            final List<RankingUser> result = ranking;
+            final long resultAge = age;
+            mainHandler.post(() -> callback.onCacheLoaded(result, resultAge, needsRevalidation));
+        });
+    }
+
+    /**
+     * Replace the cached snapshot of a metric with a freshly loaded ranking.
+     */
+    public void store(String metric, List<RankingUser> ranking) {
+        String key = LeaderboardRanker.scoreField(metric);
+        List<RankingUser> snapshot = new ArrayList<>(ranking);
+        executor.execute(() -> {
+            try {
+                long now = System.currentTimeMillis();
+                List<RankingCacheEntity> entries = new ArrayList<>(snapshot.size());
+                for (int i = 0; i < snapshot.size(); i++) {
+                    entries.add(new RankingCacheEntity(key, snapshot.get(i), i + 1, now));
+                }
+                dao.replaceRanking(key, entries);
+                synchronized (this) {
+                    revalidations++;
+                }
+                Log.d(TAG, "✅ Ranking cache " + key + " updated with " + entries.size() + " entries");
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Error writing ranking cache for " + key, e);
+            }
+        });
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(hits, staleHits, misses, revalidations, lastAgeMillis);
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.glean.service;
+
+import com.example.glean.model.RankingUser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cursor-based pager for the part of a leaderboard below the top-N shard.
+ *
+ * Pages are requested from a {@link PageSource} with an opaque cursor, appended in order
+ * and kept per metric, so going back to a ranking tab does not reload what was already
+ * scrolled. A page is only requested when the list is scrolled to within
+ * {@link #PREFETCH_DISTANCE} rows of its end, which keeps first-page latency and memory
+ * independent of how deep the leaderboard is.
+ */
+public class RankingPager {
+
+    public static final int PAGE_SIZE = 50;
+    public static final int PREFETCH_DISTANCE = 15;
+    public static final long PAGE_TTL_MS = 5 * 60 * 1000L;
+
+    private static final Map<String, RankingPager> pagers = new HashMap<>();
+
+    /**
+     * Loads one page of ranking entries in rank order.
+     */
+    public interface PageSource {
+        /**
+         * @param cursor null for the first page, otherwise the cursor returned with the previous page
+         */
+        void loadPage(String metric, Object cursor, int pageSize, PageCallback callback);
+    }
+
+    public interface PageCallback {
+        /**
+         * @param nextCursor cursor for the following page, or null when this was the last page
+         */
+        void onPageLoaded(List<RankingUser> users, Object nextCursor);
+        void onError(String error);
+    }
+
+    public interface PagerListener {
+        void onPageAppended(List<RankingUser> loaded);
+        void onError(String error);
+    }
+
+    private final String metric;
+    private final PageSource source;
+    private final int pageSize;
+    private final List<RankingUser> loaded = new ArrayList<>();
+    private final Set<String> loadedIds = new HashSet<>();
+    private Object cursor;
+    private boolean started = false;
+    private boolean loading = false;
+    private boolean endReached = false;
+    private long createdAt;
+    private int generation = 0;
+
+    RankingPager(String metric, PageSource source, int pageSize) {
+        this.metric = metric;
+        this.source = source;
+        this.pageSize = pageSize;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Pager of a metric, reusing its loaded pages while they are younger than {@link #PAGE_TTL_MS}.
+     */
+    public static synchronized RankingPager forMetric(String metric, PageSource source) {
+        RankingPager pager = pagers.get(metric);
+        if (pager == null) {
+            pager = new RankingPager(metric, source, PAGE_SIZE);
+            pagers.put(metric, pager);
+        } else if (System.currentTimeMillis() - pager.createdAt > PAGE_TTL_MS) {
+            pager.reset();
+        }
+        return pager;
+    }
+
+    /**
+     * Entries loaded so far, in rank order.
+     */
+    public synchronized List<RankingUser> getLoaded() {
+        return Collections.unmodifiableList(new ArrayList<>(loaded));
+    }
+
+    public synchronized boolean isLoading() {
+        return loading;
+    }
+
+    public synchronized boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * True when the last visible row is close enough to the end of the list to fetch the next page.
+     */
+    public static boolean shouldPrefetch(int lastVisiblePosition, int itemCount) {
+        return itemCount > 0 && lastVisiblePosition >= itemCount - 1 - PREFETCH_DISTANCE;
+    }
+
+    /**
+     * Start paging below the top-N shard. The first page begins at the shard cutoff score,
+     * so entries tied with the cutoff are fetched again and skipped by id.
+     */
+    public synchronized void start(Object startCursor, Set<String> shardIds) {
+        if (started) {
+            return;
+        }
+        started = true;
+        cursor = startCursor;
+        loadedIds.addAll(shardIds);
+    }
+
+    /**
+     * Request the next page unless one is in flight or the end was reached.
+     *
+     * @return true when a page was requested
+     */
+    public boolean loadNextPage(PagerListener listener) {
+        final Object pageCursor;
+        final int pageGeneration;
+        synchronized (this) {
+            if (!started || loading || endReached) {
+                return false;
+            }
+            loading = true;
+            pageCursor = cursor;
+            pageGeneration = generation;
+        }
+
+        source.loadPage(metric, pageCursor, pageSize, new PageCallback() {
+            @Override
+            public void onPageLoaded(List<RankingUser> users, Object nextCursor) {
+                List<RankingUser> snapshot;
+                synchronized (RankingPager.this) {
+                    if (pageGeneration != generation) {
+                        return;
+                    }
+                    loading = false;
+                    for (RankingUser user : users) {
+                        if (user != null && loadedIds.add(user.getUserId())) {
+                            loaded.add(user);
+                        }
+                    }
+                    cursor = nextCursor;
+                    endReached = nextCursor == null;
+                    snapshot = Collections.unmodifiableList(new ArrayList<>(loaded));
+                }
+                listener.onPageAppended(snapshot);
+            }
+
+            @Override
+            public void onError(String error) {
+                synchronized (RankingPager.this) {
+                    if (pageGeneration != generation) {
+                        return;
+                    }
+                    loading = false;
+                }
+                listener.onError(error);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Drop all cached pages; the next {@link #start} begins from the top again.
+     */
+    public synchronized void reset() {
+        generation++;
+        loaded.clear();
+        loadedIds.clear();
+        cursor = null;
+        started = false;
+        loading = false;
+        endReached = false;
+        createdAt = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.glean.service;
+
+import java.util.Map;
+
+/**
+ * Bucketed score distribution used to estimate a rank without counting documents.
+ *
+ * Buckets are logarithmic (four per doubling of the score), so one small map covers
+ * everything from a first session to the top of the leaderboard with a bounded number
+ * of keys. Within a bucket, scores are assumed to be spread evenly.
+ */
+public final class ScoreHistogram {
+
+    static final int BUCKETS_PER_DOUBLING = 4;
+
+    private ScoreHistogram() {
+    }
+
+    /**
+     * Bucket index of a score; 0 holds every score below 1.
+     */
+    public static int bucketOf(double score) {
+        if (score < 1) {
+            return 0;
+        }
+        return 1 + (int) Math.floor(Math.log(score) / Math.log(2) * BUCKETS_PER_DOUBLING);
+    }
+
+    /**
+     * Smallest score that falls into a bucket.
+     */
+    public static double lowerBound(int bucket) {
+        if (bucket <= 0) {
+            return 0;
+        }
+        return Math.pow(2, (bucket - 1) / (double) BUCKETS_PER_DOUBLING);
+    }
+
+    /**
+     * Estimated 1-based rank of a score.
+     *
+     * @param buckets Firestore map of bucket index (as string) to user count
+     */
+    public static int estimateRank(Map<String, Object> buckets, double score) {
+        if (buckets == null) {
+            return 1;
+        }
+        int own = bucketOf(score);
+        double above = 0;
+        for (Map.Entry<String, Object> entry : buckets.entrySet()) {
+            int bucket;
+            try {
+                bucket = Integer.parseInt(entry.getKey());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            double count = entry.getValue() instanceof Number
+                    ? Math.max(0, ((Number) entry.getValue()).doubleValue()) : 0;
+            if (bucket > own) {
+                above += count;
+            } else if (bucket == own && count > 1) {
+                // Share of the other users in this bucket that score higher
+                double low = lowerBound(own);
+                double high = lowerBound(own + 1);
+                double fraction = high > low ? (high - score) / (high - low) : 0;
+                above += (count - 1) * Math.max(0, Math.min(1, fraction));
+            }
+        }
+        return 1 + (int) Math.round(above);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.glean.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stats increments waiting to be written for one user, merged per plogging session.
+ *
+ * A session is only counted once however many writers report it, so the totals that
+ * reach Firestore match the sessions that were actually recorded.
+ */
+public class StatsDelta {
+
+    private int points;
+    private double distance;
+    private int trash;
+    private int sessions;
+    private long duration;
+    private final Set<Long> recordIds = new LinkedHashSet<>();
+
+    /**
+     * @return false when the session was already part of this delta
+     */
+    public boolean addSession(long recordId, int points, double distance, int trash, long duration) {
+        if (!recordIds.add(recordId)) {
+            return false;
+        }
+        this.points += points;
+        this.distance += distance;
+        this.trash += trash;
+        this.sessions += 1;
+        this.duration += duration;
+        return true;
+    }
+
+    /**
+     * Fold another delta into this one, e.g. a failed write back into the pending one.
+     */
+    public void merge(StatsDelta other) {
+        for (Long recordId : other.recordIds) {
+            recordIds.add(recordId);
+        }
+        points += other.points;
+        distance += other.distance;
+        trash += other.trash;
+        sessions += other.sessions;
+        duration += other.duration;
+    }
+
+    public boolean contains(long recordId) {
+        return recordIds.contains(recordId);
+    }
+
+    public boolean isEmpty() {
+        return recordIds.isEmpty();
+    }
+
+    public Set<Long> getRecordIds() {
+        return recordIds;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public int getTrash() {
+        return trash;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Field increments for a stats document; values are wrapped by the writer.
+     */
+    public Map<String, Number> toIncrements(boolean includeDuration) {
+        Map<String, Number> increments = new HashMap<>();
+        increments.put("totalPoints", points);
+        increments.put("totalDistance", distance);
+        increments.put("totalTrashCollected", trash);
+        increments.put("totalSessions", sessions);
+        if (includeDuration) {
+            increments.put("totalDuration", duration);
+        }
+        return increments;
+    }
+
+    @Override
+    public String toString() {
+        return "+" + points + " pts, +" + distance + " m, +" + trash + " trash, +" + sessions
+                + " sessions, +" + duration + " ms " + recordIds;
+    }
+}
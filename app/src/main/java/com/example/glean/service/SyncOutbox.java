@@ -0,0 +1,406 @@
+package com.example.glean.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.glean.auth.FirebaseAuthManager;
+import com.example.glean.db.AppDatabase;
+import com.example.glean.db.OutboxDao;
+import com.example.glean.model.OutboxEntity;
+import com.example.glean.model.RecordEntity;
+import com.example.glean.model.TrashEntity;
+import com.example.glean.util.AppExecutors;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of Firestore mutations for sessions, trash items and profile changes.
+ *
+ * Operations are stored in the sync_outbox table first and uploaded by
+ * {@link SyncOutboxWorker}, so a write survives process death and network loss and never
+ * blocks the screen that produced it. Every operation has a client-generated opId that
+ * becomes its document id, which makes a repeated upload a no-op.
+ */
+public class SyncOutbox {
+
+    private static final String TAG = "SyncOutbox";
+    private static SyncOutbox instance;
+
+    static final String UNIQUE_UPLOAD_WORK = "sync_outbox_upload";
+    static final String UNIQUE_SWEEP_WORK = "sync_outbox_sweep";
+
+    private static final String COLLECTION_USERS = "users";
+    private static final String COLLECTION_STATS = "user_stats";
+    private static final String COLLECTION_RECORDS = "user_records";
+    private static final String SUBCOLLECTION_SESSIONS = "sessions";
+    private static final String SUBCOLLECTION_TRASH = "trash";
+
+    private final Context context;
+    private final AppDatabase db;
+    private final OutboxDao outboxDao;
+    private final FirebaseAuthManager authManager;
+    private final Executor executor;
+    private final Gson gson = new Gson();
+
+    private SyncOutbox(Context context) {
+        this.context = context.getApplicationContext();
+        this.db = AppDatabase.getInstance(context);
+        this.outboxDao = db.outboxDao();
+        this.authManager = FirebaseAuthManager.getInstance(context);
+        this.executor = AppExecutors.getInstance().dbWriter();
+    }
+
+    public static synchronized SyncOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncOutbox(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Finish a plogging session: its totals, the user's points and the upload of its
+     * summary are written in one Room transaction, so after a crash either all of them
+     * are on disk or none. Blocks on the database; call it off the main thread.
+     *
+     * @param distance route distance in meters, as measured by the tracking engine
+     * @return the finished record, or null if it does not exist
+     */
+    public RecordEntity finishSession(int recordId, float distance) {
+        String userId = authManager.getCurrentUserId();
+        boolean signedIn = userId != null && !userId.isEmpty() && !userId.equals("-1");
+        RecordEntity[] finished = new RecordEntity[1];
+        boolean[] queued = {false};
+
+        db.runInTransaction(() -> {
+            RecordEntity record = db.recordDao().finalizeSession(recordId, distance, System.currentTimeMillis());
+            if (record == null) {
+                return;
+            }
+            finished[0] = record;
+            if (signedIn) {
+                queued[0] = insertSessionOperation(userId, record);
+            }
+        });
+
+        if (finished[0] == null) {
+            Log.w(TAG, "⚠️ Cannot finish session - record " + recordId + " not found");
+        } else if (queued[0]) {
+            Log.d(TAG, "📥 Finished record " + recordId + " and queued its upload");
+            scheduleUpload(context);
+        } else if (!signedIn) {
+            Log.w(TAG, "⚠️ No signed-in user - session " + recordId + " stays local");
+        }
+        return finished[0];
+    }
+
+    /**
+     * Queue the upload of a finished session unless it was uploaded or queued already.
+     * The record's isUploaded flag and its outbox row are durable, so however often a
+     * session is reported, even across restarts, it is counted into the Firestore totals
+     * once. Blocks on the database; call it off the main thread.
+     *
+     * @return true if the session is uploaded or on its way
+     */
+    public boolean queueSession(int recordId) {
+        String userId = authManager.getCurrentUserId();
+        if (userId == null || userId.isEmpty() || userId.equals("-1")) {
+            Log.w(TAG, "⚠️ No signed-in user - session " + recordId + " stays local");
+            return false;
+        }
+        boolean[] result = {false, false};
+        db.runInTransaction(() -> {
+            RecordEntity record = db.recordDao().getRecordByIdSync(recordId);
+            if (record == null) {
+                return;
+            }
+            result[0] = true;
+            result[1] = insertSessionOperation(userId, record);
+        });
+        if (result[1]) {
+            Log.d(TAG, "📥 Queued upload of record " + recordId);
+            scheduleUpload(context);
+        }
+        return result[0];
+    }
+
+    /**
+     * Insert the session's outbox row unless the record is uploaded or already queued.
+     * Runs inside the caller's transaction.
+     */
+    private boolean insertSessionOperation(String userId, RecordEntity record) {
+        if (record.isUploaded() || outboxDao.countByTargetSync(OutboxEntity.TYPE_SESSION, record.getId()) > 0) {
+            return false;
+        }
+        int trashCount = db.trashDao().getTrashCountByRecordIdSync(record.getId());
+        outboxDao.insert(operation(OutboxEntity.TYPE_SESSION, userId, record.getId(), sessionFields(record, trashCount)));
+        return true;
+    }
+
+    private static Map<String, Object> sessionFields(RecordEntity record, int trashCount) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("localRecordId", record.getId());
+        fields.put("type", record.getType());
+        fields.put("distance", (double) record.getDistance());
+        fields.put("duration", record.getDuration());
+        fields.put("averageSpeed", (double) record.getAverageSpeed());
+        fields.put("points", record.getPoints());
+        fields.put("trashCount", trashCount);
+        fields.put("startLatitude", record.getStartLatitude());
+        fields.put("startLongitude", record.getStartLongitude());
+        fields.put("endLatitude", record.getEndLatitude());
+        fields.put("endLongitude", record.getEndLongitude());
+        fields.put("createdAt", record.getCreatedAt());
+        fields.put("updatedAt", record.getUpdatedAt());
+        return fields;
+    }
+
+    /**
+     * Queue a collected trash item.
+     */
+    public void enqueueTrash(TrashEntity trash) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("localTrashId", trash.getId());
+        fields.put("localRecordId", trash.getRecordId());
+        fields.put("trashType", trash.getTrashType());
+        fields.put("mlLabel", trash.getMlLabel());
+        fields.put("confidence", (double) trash.getConfidence());
+        fields.put("description", trash.getDescription());
+        fields.put("latitude", trash.getLatitude());
+        fields.put("longitude", trash.getLongitude());
+        fields.put("timestamp", trash.getTimestamp());
+        enqueue(OutboxEntity.TYPE_TRASH, trash.getId(), fields, true);
+    }
+
+    /**
+     * Queue fields to merge into the user's profile document. Values are absolute, so
+     * replaying the operation gives the same document.
+     */
+    public void enqueueProfileUpdate(Map<String, Object> fields) {
+        enqueue(OutboxEntity.TYPE_PROFILE, 0, fields, false);
+    }
+
+    private void enqueue(String type, long targetId, Map<String, Object> fields, boolean oncePerTarget) {
+        String userId = authManager.getCurrentUserId();
+        if (userId == null || userId.isEmpty() || userId.equals("-1")) {
+            Log.w(TAG, "⚠️ No signed-in user - " + type + " change stays local");
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                if (oncePerTarget && outboxDao.countByTargetSync(type, targetId) > 0) {
+                    Log.d(TAG, "⏭️ " + type + " " + targetId + " already queued");
+                    return;
+                }
+                OutboxEntity operation = operation(type, userId, targetId, fields);
+                outboxDao.insert(operation);
+                Log.d(TAG, "📥 Queued " + type + " " + targetId + " as " + operation.getOpId());
+                scheduleUpload(context);
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Error queueing " + type + " change", e);
+            }
+        });
+    }
+
+    private OutboxEntity operation(String type, String userId, long targetId, Map<String, Object> fields) {
+        String opId = UUID.randomUUID().toString();
+        Map<String, Object> payload = new HashMap<>(fields);
+        payload.put("clientOpId", opId);
+        return new OutboxEntity(opId, type, userId, targetId, gson.toJson(payload));
+    }
+
+    /**
+     * Upload pending operations as soon as the device is online.
+     */
+    public static void scheduleUpload(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SyncOutboxWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+                .build();
+        // A running upload drains everything queued before it finishes
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_UPLOAD_WORK, ExistingWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Background sweep for anything a failed upload left behind, limited to unmetered
+     * networks while charging.
+     */
+    public static void schedulePeriodicSweep(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresCharging(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(SyncOutboxWorker.class, 6, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(UNIQUE_SWEEP_WORK, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Add one trash or profile operation to a batch. Trash items are written to their own
+     * documents named by opId and stamped with the server time of the upload, which is
+     * what DeltaSync pages by; profile changes are merged into the user document. Sessions
+     * go through {@link #commitSession} instead.
+     */
+    static void apply(FirebaseFirestore firestore, WriteBatch batch, OutboxEntity operation) {
+        Map<String, Object> fields = fromJson(operation.getPayload());
+        String userId = operation.getUserId();
+        DocumentReference target;
+        switch (operation.getType()) {
+            case OutboxEntity.TYPE_TRASH:
+                target = firestore.collection(COLLECTION_RECORDS).document(userId)
+                        .collection(SUBCOLLECTION_TRASH).document(operation.getOpId());
+                fields.put(DeltaSync.FIELD_SYNCED_AT, FieldValue.serverTimestamp());
+                batch.set(target, fields);
+                break;
+            case OutboxEntity.TYPE_PROFILE:
+                fields.remove("clientOpId");
+                target = firestore.collection(COLLECTION_USERS).document(userId);
+                batch.set(target, fields, SetOptions.merge());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown outbox operation: " + operation.getType());
+        }
+    }
+
+    /**
+     * Upload a session summary and add it to the user's user_stats and users totals in one
+     * Firestore transaction. The session document is named by opId, so if it already
+     * exists an earlier attempt committed both and nothing is written again.
+     *
+     * @return task resolving to true if this call counted the session, false if it already was
+     */
+    static Task<Boolean> commitSession(FirebaseFirestore firestore, OutboxEntity operation) {
+        Map<String, Object> fields = fromJson(operation.getPayload());
+        String userId = operation.getUserId();
+        DocumentReference session = firestore.collection(COLLECTION_RECORDS).document(userId)
+                .collection(SUBCOLLECTION_SESSIONS).document(operation.getOpId());
+        DocumentReference stats = firestore.collection(COLLECTION_STATS).document(userId);
+        DocumentReference user = firestore.collection(COLLECTION_USERS).document(userId);
+        fields.put(DeltaSync.FIELD_SYNCED_AT, FieldValue.serverTimestamp());
+
+        StatsDelta delta = sessionDelta(fields);
+        long now = System.currentTimeMillis();
+        Map<String, Object> statsUpdate = increments(delta.toIncrements(true));
+        statsUpdate.put("lastUpdated", now);
+        Map<String, Object> userUpdate = increments(delta.toIncrements(false));
+        userUpdate.put("lastUpdated", now);
+        userUpdate.put("updatedAt", now);
+
+        return firestore.runTransaction(transaction -> {
+            if (transaction.get(session).exists()) {
+                return false;
+            }
+            transaction.set(session, fields);
+            transaction.set(stats, statsUpdate, SetOptions.merge());
+            transaction.set(user, userUpdate, SetOptions.merge());
+            return true;
+        });
+    }
+
+    /**
+     * Totals a session adds to the user's stats, from its payload fields.
+     */
+    static StatsDelta sessionDelta(Map<String, Object> fields) {
+        StatsDelta delta = new StatsDelta();
+        delta.addSession(number(fields, "localRecordId").longValue(), number(fields, "points").intValue(),
+                number(fields, "distance").doubleValue(), number(fields, "trashCount").intValue(),
+                number(fields, "duration").longValue());
+        return delta;
+    }
+
+    /**
+     * Wrap values as FieldValue.increment, so no read is needed before the write and
+     * concurrent devices cannot overwrite each other.
+     */
+    private static Map<String, Object> increments(Map<String, Number> values) {
+        Map<String, Object> update = new HashMap<>();
+        for (Map.Entry<String, Number> entry : values.entrySet()) {
+            Number value = entry.getValue();
+            update.put(entry.getKey(), value instanceof Double
+                    ? FieldValue.increment(value.doubleValue())
+                    : FieldValue.increment(value.longValue()));
+        }
+        return update;
+    }
+
+    private static Number number(Map<String, Object> fields, String key) {
+        Object value = fields.get(key);
+        return value instanceof Number ? (Number) value : 0;
+    }
+
+    /**
+     * Parse a payload back into Firestore values, keeping whole numbers as longs.
+     */
+    static Map<String, Object> fromJson(String json) {
+        JsonObject object = JsonParser.parseString(json).getAsJsonObject();
+        Map<String, Object> fields = new HashMap<>();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            fields.put(entry.getKey(), toValue(entry.getValue()));
+        }
+        return fields;
+    }
+
+    private static Object toValue(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            List<Object> values = new ArrayList<>(array.size());
+            for (JsonElement item : array) {
+                values.add(toValue(item));
+            }
+            return values;
+        }
+        if (element.isJsonObject()) {
+            Map<String, Object> values = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                values.put(entry.getKey(), toValue(entry.getValue()));
+            }
+            return values;
+        }
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean();
+        }
+        if (primitive.isNumber()) {
+            String text = primitive.getAsString();
+            boolean decimal = text.contains(".") || text.contains("e") || text.contains("E");
+            return decimal ? (Object) primitive.getAsDouble() : (Object) primitive.getAsLong();
+        }
+        return primitive.getAsString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.glean.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glean.auth.FirebaseAuthManager;
+import com.example.glean.db.AppDatabase;
+import com.example.glean.model.OutboxEntity;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the sync outbox of the signed-in user through {@link OutboxDrainer}.
+ *
+ * Trash and profile operations of a page are one atomic Firestore commit. Each session
+ * is its own transaction that writes the summary and adds it to the user's totals, and
+ * is skipped if its document already exists, so the totals are counted exactly once.
+ * Operations are deleted only after their commit succeeded; otherwise they stay queued
+ * and WorkManager retries with exponential backoff. Operations of other accounts wait
+ * until that user signs in.
+ */
+public class SyncOutboxWorker extends Worker {
+
+    private static final String TAG = "SyncOutboxWorker";
+
+    private static final long COMMIT_TIMEOUT_SECONDS = 30;
+
+    public SyncOutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String userId = FirebaseAuthManager.getInstance(getApplicationContext()).getCurrentUserId();
+        if (userId == null || userId.isEmpty() || userId.equals("-1")) {
+            Log.d(TAG, "No signed-in user - leaving outbox for later");
+            return Result.success();
+        }
+
+        FirebaseFirestore firestore = FirebaseFirestore.getInstance();
+        OutboxDrainer drainer = new OutboxDrainer(AppDatabase.getInstance(getApplicationContext()),
+                new OutboxDrainer.Uploader() {
+                    @Override
+                    public void commitBatch(List<OutboxEntity> operations) throws Exception {
+                        WriteBatch batch = firestore.batch();
+                        for (OutboxEntity operation : operations) {
+                            SyncOutbox.apply(firestore, batch, operation);
+                        }
+                        Tasks.await(batch.commit(), COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    }
+
+                    @Override
+                    public boolean commitSession(OutboxEntity session) throws Exception {
+                        return Tasks.await(SyncOutbox.commitSession(firestore, session),
+                                COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    }
+                });
+
+        OutboxDrainer.Report report = drainer.drain(userId, this::isStopped);
+        if (report.sessionsCounted) {
+            FirebaseDataManager.getInstance(getApplicationContext()).onSessionsCounted(userId);
+        }
+        Log.d(TAG, "✅ Uploaded " + report.uploaded + " outbox operations, dropped " + report.dropped
+                + (report.retry ? ", retrying the rest" : ""));
+        return report.retry ? Result.retry() : Result.success();
+    }
+}
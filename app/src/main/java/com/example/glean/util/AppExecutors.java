@@ -0,0 +1,323 @@
+package com.example.glean.util;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-wide worker pools, created once in EcosortifyApplication.
+ *
+ * Four lanes replace the single-thread executors screens and services used to create
+ * on every visit:
+ * - io: bounded pool for Room reads, including Room's LiveData queries
+ * - network: bounded pool for calls that block on Firestore, so a slow network never
+ *   holds up the io threads that screens read from
+ * - cpu: one thread per core for decoding and inference
+ * - dbWriter: a single thread, so local writes never race each other
+ *
+ * Queued tasks run in priority order, FIFO within a priority. Screens take a
+ * {@link SerialExecutor} bound to their lifecycle, which keeps the one-task-at-a-time
+ * ordering of the old executors while sharing the lane's threads.
+ */
+public class AppExecutors {
+
+    private static final String TAG = "AppExecutors";
+    private static AppExecutors instance;
+
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    private static final int IO_THREADS = 4;
+    private static final int NETWORK_THREADS = 3;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final Lane io;
+    private final Lane network;
+    private final Lane cpu;
+    private final Lane dbWriter;
+
+    private AppExecutors() {
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+        io = new Lane("io", IO_THREADS, Process.THREAD_PRIORITY_BACKGROUND);
+        network = new Lane("network", NETWORK_THREADS, Process.THREAD_PRIORITY_BACKGROUND);
+        cpu = new Lane("cpu", cores, Process.THREAD_PRIORITY_DEFAULT);
+        dbWriter = new Lane("db-writer", 1, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    public Lane io() {
+        return io;
+    }
+
+    public Lane network() {
+        return network;
+    }
+
+    public Lane cpu() {
+        return cpu;
+    }
+
+    public Lane dbWriter() {
+        return dbWriter;
+    }
+
+    @Override
+    public String toString() {
+        return io + "\n" + network + "\n" + cpu + "\n" + dbWriter;
+    }
+
+    /**
+     * A fixed pool with a priority queue and queue-wait / run-time metrics.
+     */
+    public static class Lane implements Executor {
+        private final String name;
+        private final ThreadPoolExecutor pool;
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+        // Set on the lane's own threads when they run their first task
+        private final ThreadLocal<Boolean> onLane = new ThreadLocal<>();
+
+        Lane(String name, int threads, int threadPriority) {
+            this.name = name;
+            this.pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<>(), new LaneThreadFactory(name, threadPriority));
+            this.pool.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(@NonNull Runnable task) {
+            submit(task, PRIORITY_NORMAL);
+        }
+
+        public void execute(Runnable task, int priority) {
+            submit(task, priority);
+        }
+
+        public Future<?> submit(Runnable task, int priority) {
+            Task queued = new Task(task, priority, sequence.getAndIncrement());
+            pool.execute(queued);
+            return queued;
+        }
+
+        /**
+         * Serial executor that never closes, for application-scoped services.
+         */
+        public SerialExecutor serial() {
+            return new SerialExecutor(this, PRIORITY_NORMAL, false);
+        }
+
+        /**
+         * Serial executor for a screen. Once the owner is destroyed new tasks are dropped,
+         * while tasks already queued still run, like ExecutorService.shutdown(). Use it
+         * on the dbWriter lane for work that writes.
+         */
+        public SerialExecutor serial(LifecycleOwner owner) {
+            return bind(owner, new SerialExecutor(this, PRIORITY_NORMAL, false));
+        }
+
+        /**
+         * Serial executor for read-only screen work: tasks still waiting when the owner is
+         * destroyed are dropped as well.
+         */
+        public SerialExecutor serialUntilDestroyed(LifecycleOwner owner) {
+            return bind(owner, new SerialExecutor(this, PRIORITY_NORMAL, true));
+        }
+
+        private SerialExecutor bind(LifecycleOwner owner, SerialExecutor executor) {
+            owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+                @Override
+                public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                    if (event == Lifecycle.Event.ON_DESTROY) {
+                        executor.close();
+                        source.getLifecycle().removeObserver(this);
+                    }
+                }
+            });
+            return executor;
+        }
+
+        /**
+         * Whether the caller runs on one of this lane's threads. Waiting there for another
+         * task of a single-thread lane, such as dbWriter, would never return.
+         */
+        public boolean isCurrentThread() {
+            return Boolean.TRUE.equals(onLane.get());
+        }
+
+        public int getQueueDepth() {
+            return pool.getQueue().size();
+        }
+
+        public int getActiveCount() {
+            return pool.getActiveCount();
+        }
+
+        public long getCompletedCount() {
+            return completed.get();
+        }
+
+        public long getAverageWaitMillis() {
+            long done = completed.get();
+            return done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / done);
+        }
+
+        public long getMaxWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+        }
+
+        public long getAverageRunMillis() {
+            long done = completed.get();
+            return done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNanos.get() / done);
+        }
+
+        @Override
+        public String toString() {
+            return name + ": queued=" + getQueueDepth() + " active=" + getActiveCount()
+                    + " done=" + getCompletedCount() + " wait avg/max=" + getAverageWaitMillis()
+                    + "/" + getMaxWaitMillis() + "ms run avg=" + getAverageRunMillis() + "ms";
+        }
+
+        private class Task extends FutureTask<Void> implements Comparable<Task> {
+            private final int priority;
+            private final long order;
+            private final long enqueuedAt = System.nanoTime();
+
+            Task(Runnable runnable, int priority, long order) {
+                super(runnable, null);
+                this.priority = priority;
+                this.order = order;
+            }
+
+            @Override
+            public void run() {
+                onLane.set(Boolean.TRUE);
+                long started = System.nanoTime();
+                long wait = started - enqueuedAt;
+                super.run();
+                completed.incrementAndGet();
+                totalWaitNanos.addAndGet(wait);
+                totalRunNanos.addAndGet(System.nanoTime() - started);
+                long max;
+                while (wait > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, wait)) {
+                    // retry
+                }
+            }
+
+            @Override
+            protected void done() {
+                // FutureTask keeps exceptions to itself; surface them like a plain executor would
+                try {
+                    get();
+                } catch (CancellationException | InterruptedException ignored) {
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "❌ Task failed on " + name, e.getCause());
+                }
+            }
+
+            @Override
+            public int compareTo(Task other) {
+                if (priority != other.priority) {
+                    return Integer.compare(priority, other.priority);
+                }
+                return Long.compare(order, other.order);
+            }
+        }
+    }
+
+    /**
+     * Runs its tasks one after another on a lane, in submission order.
+     */
+    public static class SerialExecutor implements Executor {
+        private final Lane lane;
+        private final int priority;
+        private final boolean dropPendingOnClose;
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private Runnable active;
+        private boolean closed;
+
+        SerialExecutor(Lane lane, int priority, boolean dropPendingOnClose) {
+            this.lane = lane;
+            this.priority = priority;
+            this.dropPendingOnClose = dropPendingOnClose;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable task) {
+            if (closed) {
+                Log.w(TAG, "⚠️ Dropping task submitted after its owner was destroyed");
+                return;
+            }
+            pending.offer(() -> {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = pending.poll();
+            if (active != null) {
+                lane.execute(active, priority);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (dropPendingOnClose && !pending.isEmpty()) {
+                Log.d(TAG, "Dropping " + pending.size() + " pending tasks of a destroyed owner");
+                pending.clear();
+            }
+        }
+    }
+
+    private static class LaneThreadFactory implements ThreadFactory {
+        private final String name;
+        private final int threadPriority;
+        private final AtomicInteger count = new AtomicInteger();
+
+        LaneThreadFactory(String name, int threadPriority) {
+            this.name = name;
+            this.threadPriority = threadPriority;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(threadPriority);
+                runnable.run();
+            }, "glean-" + name + "-" + count.incrementAndGet());
+        }
+    }
+}
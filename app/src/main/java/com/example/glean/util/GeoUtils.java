@@ -0,0 +1,40 @@
+package com.example.glean.util;
+
+/**
+ * Plain-Java geodesy helpers shared by the tracking pipeline.
+ * Usable off the main thread and in local unit tests.
+ */
+public class GeoUtils {
+
+    public static final double EARTH_RADIUS_METERS = 6371000.0;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Great-circle distance between two coordinates.
+     * @return distance in meters
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Meters per degree of latitude (constant on a spherical earth).
+     */
+    public static double metersPerDegreeLatitude() {
+        return Math.PI * EARTH_RADIUS_METERS / 180.0;
+    }
+
+    /**
+     * Meters per degree of longitude at the given latitude.
+     */
+    public static double metersPerDegreeLongitude(double latitude) {
+        return metersPerDegreeLatitude() * Math.cos(Math.toRadians(latitude));
+    }
+}
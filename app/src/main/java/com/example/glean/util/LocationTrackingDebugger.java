@@ -6,10 +6,9 @@ import android.util.Log;
 import com.example.glean.db.AppDatabase;
 import com.example.glean.model.LocationPointEntity;
 import com.example.glean.model.RecordEntity;
+import com.example.glean.service.LocationNoiseFilter;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Debug utility for location tracking issues
@@ -18,11 +17,12 @@ import java.util.concurrent.Executors;
 public class LocationTrackingDebugger {
     private static final String TAG = "LocationDebugger";
     private final AppDatabase db;
-    private final ExecutorService executor;
+    private final AppExecutors.SerialExecutor executor;
     
     public LocationTrackingDebugger(Context context) {
         db = AppDatabase.getInstance(context);
-        executor = Executors.newSingleThreadExecutor();
+        // It inserts test points, so it queues behind the app's other writes
+        executor = AppExecutors.getInstance().dbWriter().serial();
     }
     
     /**
@@ -49,32 +49,33 @@ public class LocationTrackingDebugger {
                 Log.d(TAG, "   - Duration: " + record.getDuration());
                 Log.d(TAG, "   - Created: " + new java.util.Date(record.getCreatedAt()));
                 
-                // 2. Check location points for this record
-                List<LocationPointEntity> locationPoints = db.locationPointDao().getLocationPointsByRecordIdSync(recordId);
-                Log.d(TAG, "📍 Found " + locationPoints.size() + " location points for record " + recordId);
+                // 2. Check location points for this record, sealed route and live points
+                RouteCodec.Route route = db.recordRouteDao().loadRoute(recordId);
+                Log.d(TAG, "📍 Found " + route.size() + " location points for record " + recordId);
                 
-                if (locationPoints.isEmpty()) {
+                if (route.isEmpty()) {
                     Log.w(TAG, "⚠️  NO LOCATION POINTS found for record " + recordId);
                     Log.w(TAG, "This explains why the map shows 'No route data available'");
                 } else {
                     Log.d(TAG, "✅ Location points details:");
-                    for (int i = 0; i < Math.min(locationPoints.size(), 5); i++) {
-                        LocationPointEntity point = locationPoints.get(i);
-                        Log.d(TAG, "   Point " + (i+1) + ": (" + point.getLatitude() + ", " + point.getLongitude() + 
-                              ") at " + new java.util.Date(point.getTimestamp()) + 
-                              " distance: " + point.getDistanceFromLast() + "m");
+                    for (int i = 0; i < Math.min(route.size(), 5); i++) {
+                        Log.d(TAG, "   Point " + (i+1) + ": (" + route.getLatitude(i) + ", " + route.getLongitude(i) + 
+                              ") at " + new java.util.Date(route.getTimestamp(i)) + 
+                              " distance: " + route.getDistanceFromLast(i) + "m");
                     }
-                    if (locationPoints.size() > 5) {
-                        Log.d(TAG, "   ... and " + (locationPoints.size() - 5) + " more points");
+                    if (route.size() > 5) {
+                        Log.d(TAG, "   ... and " + (route.size() - 5) + " more points");
                     }
                 }
                 
                 // 3. Check database statistics
-                int totalLocationPoints = db.locationPointDao().getLocationPointCountByRecordId(recordId);
-                float totalDistance = db.locationPointDao().getTotalDistanceByRecordId(recordId);
+                int totalLocationPoints = route.size();
+                int livePoints = db.locationPointDao().getLocationPointCountByRecordId(recordId);
+                float totalDistance = route.getTotalDistance();
                 
                 Log.d(TAG, "📊 Database statistics for record " + recordId + ":");
-                Log.d(TAG, "   - Total location points: " + totalLocationPoints);
+                Log.d(TAG, "   - Total location points: " + totalLocationPoints
+                        + " (" + (totalLocationPoints - livePoints) + " sealed, " + livePoints + " live)");
                 Log.d(TAG, "   - Calculated total distance: " + totalDistance + "m");
                 Log.d(TAG, "   - Record stored distance: " + record.getDistance() + "m");
                 
@@ -236,11 +237,11 @@ public class LocationTrackingDebugger {
                 
                 Log.d(TAG, "📊 DATABASE SUMMARY:");
                 Log.d(TAG, "   Total records: " + allRecords.size());
-                Log.d(TAG, "   Total location points: " + allLocationPoints.size());
+                Log.d(TAG, "   Live location points: " + allLocationPoints.size());
                 
                 // Group location points by record
                 for (RecordEntity record : allRecords) {
-                    int pointCount = db.locationPointDao().getLocationPointCountByRecordId(record.getId());
+                    int pointCount = db.recordRouteDao().getPointCountSync(record.getId());
                     Log.d(TAG, "   Record " + record.getId() + ": " + pointCount + " location points");
                 }
                 
@@ -250,9 +251,60 @@ public class LocationTrackingDebugger {
         });
     }
     
+    /**
+     * Replay the stored points of a record through the tracking noise filter and
+     * report distance before/after filtering, rejections and per-fix CPU cost.
+     * location_points has no accuracy column, so the filter's default accuracy is used.
+     */
+    public void replayThroughNoiseFilter(int recordId) {
+        executor.execute(() -> {
+            try {
+                RouteCodec.Route points = db.recordRouteDao().loadRoute(recordId);
+                if (points.size() < 2) {
+                    Log.w(TAG, "⚠️  Not enough location points to replay for record " + recordId);
+                    return;
+                }
+
+                LocationNoiseFilter filter = new LocationNoiseFilter();
+                double rawDistance = 0;
+                double filteredDistance = 0;
+                double totalCorrection = 0;
+
+                long startNanos = System.nanoTime();
+                for (int i = 0; i < points.size(); i++) {
+                    double latitude = points.getLatitude(i);
+                    double longitude = points.getLongitude(i);
+                    if (i > 0) {
+                        rawDistance += GeoUtils.distanceMeters(points.getLatitude(i - 1), points.getLongitude(i - 1),
+                                latitude, longitude);
+                    }
+
+                    if (filter.process(latitude, longitude, 0f, -1f,
+                            points.getTimestamp(i)) == LocationNoiseFilter.ACCEPTED) {
+                        filteredDistance += filter.getDistanceFromLast();
+                        totalCorrection += GeoUtils.distanceMeters(latitude, longitude,
+                                filter.getLatitude(), filter.getLongitude());
+                    }
+                }
+                long elapsedNanos = System.nanoTime() - startNanos;
+
+                Log.d(TAG, "🧪 NOISE FILTER REPLAY for record " + recordId + ":");
+                Log.d(TAG, "   Points: " + points.size() + ", accepted: " + filter.getAcceptedCount()
+                        + ", rejected: " + filter.getRejectedCount());
+                Log.d(TAG, "   Raw distance: " + Math.round(rawDistance) + "m, filtered: "
+                        + Math.round(filteredDistance) + "m");
+                Log.d(TAG, "   Mean position correction: "
+                        + String.format(java.util.Locale.US, "%.1f", totalCorrection / Math.max(1, filter.getAcceptedCount())) + "m");
+                Log.d(TAG, "   CPU: " + (elapsedNanos / points.size()) + " ns per fix");
+
+            } catch (Exception e) {
+                Log.e(TAG, "Error replaying location points: " + e.getMessage(), e);
+            }
+        });
+    }
+    
     public void close() {
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
+        // Drops later requests; checks already queued still run, as with shutdown()
+        executor.close();
     }
 }
@@ -8,8 +8,7 @@ import com.example.glean.model.RecordEntity;
 import com.example.glean.model.TrashEntity;
 import com.example.glean.model.UserEntity;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * Utility class to create test data for ranking functionality
@@ -18,11 +17,11 @@ import java.util.concurrent.Executors;
 public class RankingTestData {
     private static final String TAG = "RankingTestData";
     private AppDatabase database;
-    private ExecutorService executor;
+    private Executor executor;
     
     public RankingTestData(Context context) {
         database = AppDatabase.getInstance(context);
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().dbWriter().serial();
     }
     
     /**
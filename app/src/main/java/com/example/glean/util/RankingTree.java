@@ -0,0 +1,235 @@
+package com.example.glean.util;
+
+import com.example.glean.model.RankingUser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Order-statistics tree of ranking entries.
+ *
+ * A treap ordered by score (descending, ties by userId) where every node knows the size
+ * of its subtree, plus a userId index. Updating one user, finding a user's rank and
+ * reading the entry at a rank are all O(log n), so a leaderboard refresh costs work
+ * proportional to the entries that actually changed.
+ */
+public class RankingTree {
+
+    public static final Comparator<RankingUser> BY_POINTS = (a, b) -> {
+        int byScore = Integer.compare(b.getTotalPoints(), a.getTotalPoints());
+        return byScore != 0 ? byScore : compareIds(a, b);
+    };
+
+    public static final Comparator<RankingUser> BY_DISTANCE = (a, b) -> {
+        int byScore = Double.compare(b.getTotalDistance(), a.getTotalDistance());
+        return byScore != 0 ? byScore : compareIds(a, b);
+    };
+
+    private static class Node {
+        final RankingUser user;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(RankingUser user, int priority) {
+            this.user = user;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<RankingUser> order;
+    private final Map<String, RankingUser> byUserId = new HashMap<>();
+    private final Random random;
+    private Node root;
+
+    public RankingTree(Comparator<RankingUser> order) {
+        this(order, new Random());
+    }
+
+    RankingTree(Comparator<RankingUser> order, Random random) {
+        this.order = order;
+        this.random = random;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Entry of a user as stored; it must not be modified while in the tree.
+     */
+    public RankingUser find(String userId) {
+        return byUserId.get(userId);
+    }
+
+    /**
+     * Insert a user or replace their previous entry.
+     *
+     * @return 1-based rank of the user afterwards
+     */
+    public int upsert(RankingUser user) {
+        remove(user.getUserId());
+        byUserId.put(user.getUserId(), user);
+        Node[] parts = split(root, user);
+        root = merge(merge(parts[0], new Node(user, random.nextInt())), parts[1]);
+        return rankOf(user.getUserId());
+    }
+
+    /**
+     * @return true when the user was in the tree
+     */
+    public boolean remove(String userId) {
+        RankingUser existing = byUserId.remove(userId);
+        if (existing == null) {
+            return false;
+        }
+        root = remove(root, existing);
+        return true;
+    }
+
+    /**
+     * @return 1-based rank of a user, or 0 when absent
+     */
+    public int rankOf(String userId) {
+        RankingUser user = byUserId.get(userId);
+        if (user == null) {
+            return 0;
+        }
+        int before = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = order.compare(user, node.user);
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left);
+                if (cmp == 0) {
+                    return before + 1;
+                }
+                before += 1;
+                node = node.right;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Entry at a 0-based position.
+     */
+    public RankingUser get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.user;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * In-order snapshot for display. Entries are copies with their position set, so a
+     * user whose position moved compares as changed in DiffUtil.
+     */
+    public List<RankingUser> toList() {
+        List<RankingUser> list = new ArrayList<>(size());
+        List<Node> stack = new ArrayList<>();
+        Node node = root;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.add(node);
+                node = node.left;
+            }
+            node = stack.remove(stack.size() - 1);
+            RankingUser copy = new RankingUser(node.user);
+            copy.setPosition(list.size() + 1);
+            list.add(copy);
+            node = node.right;
+        }
+        return list;
+    }
+
+    public void clear() {
+        root = null;
+        byUserId.clear();
+    }
+
+    // Split into entries ordered before the key and the rest
+    private Node[] split(Node node, RankingUser key) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (order.compare(node.user, key) < 0) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            update(node);
+            return new Node[]{node, parts[1]};
+        } else {
+            Node[] parts = split(node.left, key);
+            node.left = parts[1];
+            update(node);
+            return new Node[]{parts[0], node};
+        }
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    private Node remove(Node node, RankingUser key) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = order.compare(key, node.user);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, key);
+        } else {
+            node.right = remove(node.right, key);
+        }
+        update(node);
+        return node;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int compareIds(RankingUser a, RankingUser b) {
+        String idA = a.getUserId() != null ? a.getUserId() : "";
+        String idB = b.getUserId() != null ? b.getUserId() : "";
+        return idA.compareTo(idB);
+    }
+}
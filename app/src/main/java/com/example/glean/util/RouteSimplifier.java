@@ -0,0 +1,240 @@
+package com.example.glean.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Zoom-aware Douglas-Peucker simplification for drawing routes on the map.
+ *
+ * The tolerance is the ground size of {@link #PIXEL_TOLERANCE} screen pixels at the
+ * given zoom, so the simplified polyline is visually identical to the full one while
+ * holding far fewer vertices. Results are cached per record and integer zoom bucket;
+ * a cached entry is reused only while the route still has the same number of points.
+ */
+public class RouteSimplifier {
+
+    static final double PIXEL_TOLERANCE = 1.0;
+    static final int MIN_ZOOM_BUCKET = 2;
+    static final int MAX_ZOOM_BUCKET = 21;
+    static final int MAX_CACHE_ENTRIES = 24;
+
+    // Ground resolution of one 256px tile pixel at zoom 0 on the equator
+    private static final double METERS_PER_PIXEL_ZOOM_0 = 156543.03392;
+
+    private static RouteSimplifier instance;
+
+    private final Map<Long, CacheEntry> cache =
+            new LinkedHashMap<Long, CacheEntry>(MAX_CACHE_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+                    return size() > MAX_CACHE_ENTRIES;
+                }
+            };
+    private int cacheHits = 0;
+    private int cacheMisses = 0;
+
+    private static class CacheEntry {
+        final int pointCount;
+        final int[] indices;
+
+        CacheEntry(int pointCount, int[] indices) {
+            this.pointCount = pointCount;
+            this.indices = indices;
+        }
+    }
+
+    RouteSimplifier() {
+    }
+
+    public static synchronized RouteSimplifier getInstance() {
+        if (instance == null) {
+            instance = new RouteSimplifier();
+        }
+        return instance;
+    }
+
+    /**
+     * Indices of the route points to draw at the given camera zoom.
+     *
+     * @param recordId record the route belongs to, or a negative value to skip caching
+     */
+    public int[] simplify(int recordId, RouteCodec.Route route, float zoom) {
+        int bucket = zoomBucket(zoom);
+        long key = ((long) recordId << 8) | bucket;
+
+        if (recordId >= 0) {
+            synchronized (cache) {
+                CacheEntry entry = cache.get(key);
+                if (entry != null && entry.pointCount == route.size()) {
+                    cacheHits++;
+                    return entry.indices;
+                }
+                cacheMisses++;
+            }
+        }
+
+        int[] indices = douglasPeucker(route, toleranceMeters(bucket, centerLatitude(route)));
+
+        if (recordId >= 0) {
+            synchronized (cache) {
+                cache.put(key, new CacheEntry(route.size(), indices));
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Drop cached geometry of a record, e.g. after it was deleted.
+     */
+    public void invalidate(int recordId) {
+        synchronized (cache) {
+            cache.keySet().removeIf(key -> (key >> 8) == recordId);
+        }
+    }
+
+    public int getCacheHits() {
+        synchronized (cache) {
+            return cacheHits;
+        }
+    }
+
+    public int getCacheMisses() {
+        synchronized (cache) {
+            return cacheMisses;
+        }
+    }
+
+    public static int zoomBucket(float zoom) {
+        return Math.max(MIN_ZOOM_BUCKET, Math.min(MAX_ZOOM_BUCKET, (int) Math.floor(zoom)));
+    }
+
+    /**
+     * @return maximum allowed deviation in meters for a zoom bucket at a latitude
+     */
+    public static double toleranceMeters(int zoomBucket, double latitude) {
+        double metersPerPixel = METERS_PER_PIXEL_ZOOM_0 * Math.cos(Math.toRadians(latitude))
+                / (1L << zoomBucket);
+        return metersPerPixel * PIXEL_TOLERANCE;
+    }
+
+    /**
+     * Zoom level at which the whole route fits into the given width in pixels.
+     * Used to pick a bucket before the camera has been moved to the route.
+     */
+    public static float fitZoom(RouteCodec.Route route, int widthPixels) {
+        if (route.size() < 2 || widthPixels <= 0) {
+            return MAX_ZOOM_BUCKET;
+        }
+        double minLat = route.getLatitude(0), maxLat = minLat;
+        double minLng = route.getLongitude(0), maxLng = minLng;
+        for (int i = 1; i < route.size(); i++) {
+            minLat = Math.min(minLat, route.getLatitude(i));
+            maxLat = Math.max(maxLat, route.getLatitude(i));
+            minLng = Math.min(minLng, route.getLongitude(i));
+            maxLng = Math.max(maxLng, route.getLongitude(i));
+        }
+        double span = GeoUtils.distanceMeters(minLat, minLng, maxLat, maxLng);
+        if (span <= 0) {
+            return MAX_ZOOM_BUCKET;
+        }
+        double latitude = (minLat + maxLat) / 2;
+        double zoom = Math.log(METERS_PER_PIXEL_ZOOM_0 * Math.cos(Math.toRadians(latitude))
+                * widthPixels / span) / Math.log(2);
+        return (float) Math.max(MIN_ZOOM_BUCKET, Math.min(MAX_ZOOM_BUCKET, zoom));
+    }
+
+    /**
+     * Iterative Douglas-Peucker on a local equirectangular projection, which is
+     * accurate to well under a pixel over the extent of a plogging route.
+     *
+     * @return ascending indices of the points to keep; first and last are always kept
+     */
+    public static int[] douglasPeucker(RouteCodec.Route route, double toleranceMeters) {
+        int n = route.size();
+        if (n <= 2) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        double originLat = route.getLatitude(0);
+        double originLng = route.getLongitude(0);
+        double metersPerLat = GeoUtils.metersPerDegreeLatitude();
+        double metersPerLng = GeoUtils.metersPerDegreeLongitude(originLat);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (route.getLongitude(i) - originLng) * metersPerLng;
+            y[i] = (route.getLatitude(i) - originLat) * metersPerLat;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+
+        double toleranceSquared = toleranceMeters * toleranceMeters;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = start + 1; i < end; i++) {
+                double d = segmentDistanceSquared(x[i], y[i], x[start], y[start], x[end], y[end]);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    farthest = i;
+                }
+            }
+
+            if (farthest != -1 && maxDistance > toleranceSquared) {
+                keep[farthest] = true;
+                kept++;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = start;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = end;
+            }
+        }
+
+        int[] indices = new int[kept];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                indices[k++] = i;
+            }
+        }
+        return indices;
+    }
+
+    private static double centerLatitude(RouteCodec.Route route) {
+        if (route.isEmpty()) {
+            return 0;
+        }
+        return (route.getLatitude(0) + route.getLatitude(route.size() - 1)) / 2;
+    }
+
+    static double segmentDistanceSquared(double px, double py,
+                                         double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? ((px - ax) * dx + (py - ay) * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.glean.util;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes photos at the resolution they are needed at instead of the camera's.
+ *
+ * The JPEG is subsampled while it is decoded (inSampleSize), so a 12 MP photo needed at
+ * 224 px never exists in memory at full size: it decodes to about 500x375, under 1 MB.
+ * The EXIF orientation is applied to the small bitmap afterwards. Works for content://
+ * and file:// URIs. Decoding reads the stream three times; call it off the main thread.
+ */
+public final class SampledBitmapDecoder {
+
+    private static final String TAG = "SampledBitmapDecoder";
+
+    private SampledBitmapDecoder() {
+    }
+
+    /**
+     * Decode an image whose shorter side ends up between minSize and twice that (or the
+     * full image if it is smaller), upright according to its EXIF orientation.
+     */
+    public static Bitmap decode(ContentResolver resolver, Uri uri, int minSize) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream stream = open(resolver, uri)) {
+            BitmapFactory.decodeStream(stream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Not a decodable image: " + uri);
+        }
+
+        int orientation;
+        try (InputStream stream = open(resolver, uri)) {
+            orientation = new ExifInterface(stream).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, minSize);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap sampled;
+        try (InputStream stream = open(resolver, uri)) {
+            sampled = BitmapFactory.decodeStream(stream, null, options);
+        }
+        if (sampled == null) {
+            throw new IOException("Failed to decode " + uri);
+        }
+        Log.d(TAG, "Decoded " + bounds.outWidth + "x" + bounds.outHeight + " at 1/" + options.inSampleSize
+                + " -> " + sampled.getWidth() + "x" + sampled.getHeight()
+                + " (" + sampled.getByteCount() / 1024 + " KB)");
+
+        return applyOrientation(sampled, orientation);
+    }
+
+    /**
+     * Largest power of two that keeps the shorter side at or above minSize. JPEG decoders
+     * subsample by powers of two for free.
+     */
+    static int calculateInSampleSize(int width, int height, int minSize) {
+        int shorter = Math.min(width, height);
+        int sampleSize = 1;
+        while (shorter / (sampleSize * 2) >= minSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static InputStream open(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream stream = resolver.openInputStream(uri);
+        if (stream == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        return stream;
+    }
+
+    private static Bitmap applyOrientation(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(270);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            default:
+                return bitmap;
+        }
+        Bitmap oriented = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (oriented != bitmap) {
+            bitmap.recycle();
+        }
+        return oriented;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.glean.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * FPS and latency percentiles of the live classifier.
+ */
+public class LiveStatsTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void testSustainedFpsSpansCompletedFrames() {
+        LiveStats stats = new LiveStats(10);
+        // One frame every 100 ms for 3 seconds: only the last 10 are kept
+        for (int i = 0; i < 30; i++) {
+            long completed = i * 100 * MS;
+            stats.recordFrame(completed - 40 * MS, completed);
+        }
+
+        assertEquals(10f, stats.getFps(), 0.01f);
+        assertEquals(30, stats.getProcessed());
+    }
+
+    @Test
+    public void testLatencyPercentiles() {
+        LiveStats stats = new LiveStats(100);
+        for (int i = 1; i <= 100; i++) {
+            long completed = i * 200 * MS;
+            stats.recordFrame(completed - i * MS, completed);
+        }
+
+        assertEquals(50f, stats.getLatencyPercentileMs(50), 0.01f);
+        assertEquals(90f, stats.getLatencyPercentileMs(90), 0.01f);
+        assertEquals(99f, stats.getLatencyPercentileMs(99), 0.01f);
+    }
+
+    @Test
+    public void testDroppedFramesAndEmptyStats() {
+        LiveStats stats = new LiveStats(10);
+        assertEquals(0f, stats.getFps(), 0f);
+        assertEquals(0f, stats.getLatencyPercentileMs(99), 0f);
+
+        stats.recordDropped();
+        stats.recordDropped();
+        stats.recordFrame(0, 30 * MS);
+
+        assertEquals(2, stats.getDropped());
+        assertEquals(1, stats.getProcessed());
+        assertEquals(0f, stats.getFps(), 0f);
+        assertEquals(30f, stats.getLatencyPercentileMs(50), 0.01f);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.glean.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sliding-window smoothing of live predictions.
+ */
+public class PredictionSmootherTest {
+
+    @Test
+    public void testSingleOutlierFrameDoesNotFlipLabel() {
+        PredictionSmoother smoother = new PredictionSmoother(5, 3);
+        for (int i = 0; i < 4; i++) {
+            smoother.add(new float[]{0.7f, 0.2f, 0.1f});
+        }
+        smoother.add(new float[]{0.1f, 0.9f, 0.0f});
+
+        assertEquals(0, smoother.topIndex());
+        assertEquals((0.7f * 4 + 0.1f) / 5, smoother.meanScore(0), 1e-5f);
+        assertTrue(smoother.isSettled());
+    }
+
+    @Test
+    public void testOldFramesLeaveTheWindow() {
+        PredictionSmoother smoother = new PredictionSmoother(3, 2);
+        for (int i = 0; i < 3; i++) {
+            smoother.add(new float[]{1f, 0f});
+        }
+        for (int i = 0; i < 3; i++) {
+            smoother.add(new float[]{0f, 1f});
+        }
+
+        assertEquals(1, smoother.topIndex());
+        assertEquals(1f, smoother.meanScore(1), 1e-5f);
+        assertEquals(0f, smoother.meanScore(0), 1e-5f);
+    }
+
+    @Test
+    public void testEmptyAndClearedWindow() {
+        PredictionSmoother smoother = new PredictionSmoother(3, 2);
+        assertEquals(-1, smoother.topIndex());
+        assertFalse(smoother.isSettled());
+
+        smoother.add(new float[]{0.4f, 0.6f});
+        assertFalse(smoother.isSettled());
+        smoother.clear();
+
+        assertEquals(-1, smoother.topIndex());
+        assertEquals(0f, smoother.meanScore(1), 0f);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.glean.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Input lookup table and output dequantisation of quantised models.
+ */
+public class QuantizationTest {
+
+    @Test
+    public void testLookupRoundTripsWithinHalfAStep() {
+        float[] scales = {1f, 2f, 0.75f};
+        int[] zeroPoints = {-128, 0, -100};
+        boolean[] signed = {true, false, true};
+        for (int c = 0; c < scales.length; c++) {
+            byte[] lookup = Quantization.inputLookup(scales[c], zeroPoints[c], signed[c]);
+            int max = signed[c] ? 127 : 255;
+            for (int value = 0; value < 256; value++) {
+                if (Math.round(value / scales[c]) + zeroPoints[c] > max) {
+                    break; // Clamped from here on, covered below
+                }
+                float restored = Quantization.dequantize(lookup[value], scales[c], zeroPoints[c], signed[c]);
+                assertEquals("scale " + scales[c] + " value " + value, value, restored, scales[c] / 2 + 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void testLookupClampsToTensorRange() {
+        // 0.5 per step: everything from 128 up saturates a UINT8 tensor
+        byte[] unsigned = Quantization.inputLookup(0.5f, 0, false);
+        assertEquals(254, unsigned[127] & 0xFF);
+        assertEquals(255, unsigned[128] & 0xFF);
+        assertEquals(255, unsigned[255] & 0xFF);
+
+        byte[] signed = Quantization.inputLookup(0.5f, -128, true);
+        assertEquals(-128, signed[0]);
+        assertEquals(127, signed[200]);
+    }
+
+    @Test
+    public void testLookupWithoutParametersTakesRawValues() {
+        byte[] unsigned = Quantization.inputLookup(0, 0, false);
+        byte[] signed = Quantization.inputLookup(0, 0, true);
+        for (int value = 0; value < 256; value++) {
+            assertEquals(value, unsigned[value] & 0xFF);
+            assertEquals(value - 128, signed[value]);
+        }
+    }
+
+    @Test
+    public void testDequantizeReadsSignedAndUnsignedBytes() {
+        // The same byte is 255 for UINT8 and -1 for INT8
+        assertEquals(1f, Quantization.dequantize((byte) 0xFF, 1 / 255f, 0, false), 1e-6f);
+        assertEquals(127 / 256f, Quantization.dequantize((byte) 0xFF, 1 / 256f, -128, true), 1e-6f);
+        assertEquals(0f, Quantization.dequantize((byte) 0x80, 1 / 256f, -128, true), 1e-6f);
+        assertEquals(-0.5f, Quantization.dequantize((byte) 10, 0.05f, 20, false), 1e-6f);
+    }
+
+    @Test
+    public void testOutputWithoutParametersSpansZeroToOne() {
+        float scale = Quantization.outputScale(0);
+        int signedZero = Quantization.outputZeroPoint(0, 42, true);
+        int unsignedZero = Quantization.outputZeroPoint(0, 42, false);
+
+        assertEquals(0f, Quantization.dequantize((byte) -128, scale, signedZero, true), 1e-6f);
+        assertEquals(1f, Quantization.dequantize((byte) 127, scale, signedZero, true), 1e-6f);
+        assertEquals(0f, Quantization.dequantize((byte) 0, scale, unsignedZero, false), 1e-6f);
+        assertEquals(1f, Quantization.dequantize((byte) 0xFF, scale, unsignedZero, false), 1e-6f);
+
+        // Parameters present: they are used as given
+        assertEquals(0.25f, Quantization.outputScale(0.25f), 0);
+        assertEquals(42, Quantization.outputZeroPoint(0.25f, 42, true));
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.glean.service;
+
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Watermarks of DeltaSync: checking a change never moves them, merging it does.
+ */
+public class DeltaSyncWatermarkTest {
+
+    @Test
+    public void testIsNewerDoesNotMoveTheWatermark() {
+        FakePreferences watermarks = new FakePreferences();
+        DeltaSync.advance(watermarks, DeltaSync.SOURCE_STATS, 1000);
+
+        assertTrue(DeltaSync.isNewer(watermarks, DeltaSync.SOURCE_STATS, 2000));
+        assertTrue(DeltaSync.isNewer(watermarks, DeltaSync.SOURCE_STATS, 2000));
+        assertEquals(1000, watermarks.getLong(DeltaSync.SOURCE_STATS, 0));
+    }
+
+    @Test
+    public void testUnmergedChangeIsOfferedAgain() {
+        FakePreferences watermarks = new FakePreferences();
+
+        // First sync finds the change but its merge fails: nothing is advanced
+        assertTrue(DeltaSync.isNewer(watermarks, DeltaSync.SOURCE_PROFILE, 5000));
+
+        // Next sync sees it again, merges it and advances
+        assertTrue(DeltaSync.isNewer(watermarks, DeltaSync.SOURCE_PROFILE, 5000));
+        DeltaSync.advance(watermarks, DeltaSync.SOURCE_PROFILE, 5000);
+
+        assertFalse(DeltaSync.isNewer(watermarks, DeltaSync.SOURCE_PROFILE, 5000));
+        assertTrue(DeltaSync.isNewer(watermarks, DeltaSync.SOURCE_PROFILE, 5001));
+    }
+
+    @Test
+    public void testAdvanceNeverMovesBack() {
+        FakePreferences watermarks = new FakePreferences();
+        DeltaSync.advance(watermarks, DeltaSync.SOURCE_STATS, 3000);
+        DeltaSync.advance(watermarks, DeltaSync.SOURCE_STATS, 2000);
+
+        assertEquals(3000, watermarks.getLong(DeltaSync.SOURCE_STATS, 0));
+        assertFalse(DeltaSync.isNewer(watermarks, DeltaSync.SOURCE_STATS, 2500));
+    }
+
+    @Test
+    public void testSourcesAreIndependent() {
+        FakePreferences watermarks = new FakePreferences();
+        DeltaSync.advance(watermarks, DeltaSync.SOURCE_STATS, 3000);
+
+        assertTrue(DeltaSync.isNewer(watermarks, DeltaSync.SOURCE_PROFILE, 1));
+        assertEquals(0, watermarks.getLong(DeltaSync.SOURCE_PROFILE, 0));
+    }
+
+    @Test
+    public void testDocumentWithoutLastUpdatedIsNeverNewer() {
+        assertFalse(DeltaSync.isNewer(new FakePreferences(), DeltaSync.SOURCE_STATS, 0));
+    }
+
+    /**
+     * In-memory SharedPreferences holding longs, enough for the watermarks.
+     */
+    private static class FakePreferences implements SharedPreferences {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            Map<String, Object> pending = new HashMap<>();
+            return new Editor() {
+                @Override
+                public Editor putString(String key, String value) {
+                    pending.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putStringSet(String key, Set<String> values) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Editor putInt(String key, int value) {
+                    pending.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putLong(String key, long value) {
+                    pending.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putFloat(String key, float value) {
+                    pending.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putBoolean(String key, boolean value) {
+                    pending.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor remove(String key) {
+                    pending.put(key, null);
+                    return this;
+                }
+
+                @Override
+                public Editor clear() {
+                    values.clear();
+                    return this;
+                }
+
+                @Override
+                public boolean commit() {
+                    apply();
+                    return true;
+                }
+
+                @Override
+                public void apply() {
+                    for (Map.Entry<String, Object> entry : pending.entrySet()) {
+                        if (entry.getValue() == null) {
+                            values.remove(entry.getKey());
+                        } else {
+                            values.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.glean.service;
+
+import com.example.glean.model.RankingUser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the shard merge against a full sort of every user, which is what
+ * subscribeToRanking used to compute on the client.
+ */
+public class LeaderboardRankerTest {
+
+    private static final int LIMIT = 100;
+
+    @Test
+    public void testIncrementalMergeMatchesFullSort() {
+        Random random = new Random(1);
+        List<RankingUser> users = new ArrayList<>();
+        List<Map<String, Object>> shard = new ArrayList<>();
+
+        // 1000 users submit scores that only ever grow, in random order
+        for (int i = 0; i < 1000; i++) {
+            users.add(user("u" + i, 0, 0));
+        }
+        for (int step = 0; step < 5000; step++) {
+            RankingUser user = users.get(random.nextInt(users.size()));
+            user.setTotalPoints(user.getTotalPoints() + random.nextInt(50));
+            LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user),
+                    LeaderboardRanker.METRIC_POINTS, LIMIT);
+        }
+
+        List<Map<String, Object>> expected = LeaderboardRanker.build(users,
+                LeaderboardRanker.METRIC_POINTS, LIMIT);
+        assertEquals(LIMIT, shard.size());
+        for (int i = 0; i < LIMIT; i++) {
+            assertEquals("Rank " + (i + 1), expected.get(i).get("userId"), shard.get(i).get("userId"));
+        }
+    }
+
+    @Test
+    public void testMergeReturnsRankAndReplacesExistingEntry() {
+        List<Map<String, Object>> shard = new ArrayList<>();
+        LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user("a", 300, 0)), LeaderboardRanker.METRIC_POINTS, 3);
+        LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user("b", 200, 0)), LeaderboardRanker.METRIC_POINTS, 3);
+        assertEquals(3, LeaderboardRanker.merge(shard,
+                LeaderboardRanker.toEntry(user("c", 100, 0)), LeaderboardRanker.METRIC_POINTS, 3));
+
+        // c overtakes everyone; no duplicate entry is left behind
+        assertEquals(1, LeaderboardRanker.merge(shard,
+                LeaderboardRanker.toEntry(user("c", 400, 0)), LeaderboardRanker.METRIC_POINTS, 3));
+        assertEquals(3, shard.size());
+        assertEquals(3, LeaderboardRanker.rankOf(shard, "b"));
+    }
+
+    @Test
+    public void testUserBelowCutoffIsNotAdded() {
+        List<Map<String, Object>> shard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user("u" + i, 100 + i, 0)),
+                    LeaderboardRanker.METRIC_POINTS, 3);
+        }
+        assertEquals(100, LeaderboardRanker.cutoff(shard, LeaderboardRanker.METRIC_POINTS, 3), 0);
+
+        assertEquals(0, LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user("late", 50, 0)),
+                LeaderboardRanker.METRIC_POINTS, 3));
+        assertEquals(0, LeaderboardRanker.rankOf(shard, "late"));
+    }
+
+    @Test
+    public void testDropBelowCutoffLeavesSpotForBackfill() {
+        List<RankingUser> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(user("u" + i, 100 + 10 * i, 0));
+        }
+        // Shard holds u4, u3, u2; u1 and u0 are only in user_stats
+        List<Map<String, Object>> shard = LeaderboardRanker.build(users, LeaderboardRanker.METRIC_POINTS, 3);
+
+        // u4 drops to 105, below u1's 110: it may not keep the last spot
+        users.get(4).setTotalPoints(105);
+        assertEquals(0, LeaderboardRanker.update(shard, LeaderboardRanker.toEntry(users.get(4)),
+                LeaderboardRanker.METRIC_POINTS, 3));
+        assertEquals(2, shard.size());
+
+        // Backfill from the full list restores the true top 3
+        assertEquals(1, LeaderboardRanker.fill(shard, users, LeaderboardRanker.METRIC_POINTS, 3));
+        List<Map<String, Object>> expected = LeaderboardRanker.build(users, LeaderboardRanker.METRIC_POINTS, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.get(i).get("userId"), shard.get(i).get("userId"));
+        }
+        assertEquals("u1", shard.get(2).get("userId"));
+    }
+
+    @Test
+    public void testDropAboveCutoffKeepsUser() {
+        List<Map<String, Object>> shard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user("u" + i, 100 + 10 * i, 0)),
+                    LeaderboardRanker.METRIC_POINTS, 3);
+        }
+        assertEquals(3, LeaderboardRanker.update(shard, LeaderboardRanker.toEntry(user("u2", 100, 0)),
+                LeaderboardRanker.METRIC_POINTS, 3));
+        assertEquals(3, shard.size());
+    }
+
+    @Test
+    public void testFillKeepsShardEntriesOverCandidates() {
+        List<Map<String, Object>> shard = new ArrayList<>();
+        LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user("a", 300, 0)), LeaderboardRanker.METRIC_POINTS, 3);
+
+        List<RankingUser> candidates = new ArrayList<>();
+        candidates.add(user("a", 50, 0)); // Stale user_stats copy
+        candidates.add(user("b", 200, 0));
+        assertEquals(1, LeaderboardRanker.fill(shard, candidates, LeaderboardRanker.METRIC_POINTS, 3));
+
+        assertEquals(2, shard.size());
+        assertEquals(1, LeaderboardRanker.rankOf(shard, "a"));
+        assertEquals(300, LeaderboardRanker.number(shard.get(0).get("totalPoints")), 0);
+    }
+
+    @Test
+    public void testTiesAreOrderedByUserId() {
+        List<Map<String, Object>> shard = new ArrayList<>();
+        LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user("b", 0, 500.0)), LeaderboardRanker.METRIC_DISTANCE, 10);
+        LeaderboardRanker.merge(shard, LeaderboardRanker.toEntry(user("a", 0, 500.0)), LeaderboardRanker.METRIC_DISTANCE, 10);
+
+        List<RankingUser> ranking = LeaderboardRanker.toRankingUsers(shard);
+        assertEquals("a", ranking.get(0).getUserId());
+        assertEquals(1, ranking.get(0).getPosition());
+        assertEquals(2, ranking.get(1).getPosition());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMetricIsRejected() {
+        LeaderboardRanker.scoreField("trash");
+    }
+
+    private RankingUser user(String id, int points, double distance) {
+        return new RankingUser(id, id, id, points, distance, 0, 0);
+    }
+}
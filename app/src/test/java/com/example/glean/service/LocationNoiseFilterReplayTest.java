@@ -0,0 +1,157 @@
+package com.example.glean.service;
+
+import com.example.glean.util.GeoUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replay harness for LocationNoiseFilter.
+ * Feeds synthetic location_points traces with known ground truth through the filter
+ * and checks distance accuracy and per-fix CPU cost.
+ */
+public class LocationNoiseFilterReplayTest {
+
+    private static final double START_LAT = -5.1477;
+    private static final double START_LNG = 119.4327;
+    private static final double NOISE_METERS = 6.0;
+    private static final float REPORTED_ACCURACY = 10f;
+
+    /** One recorded fix: latitude, longitude, timestamp. */
+    private static class Fix {
+        final double latitude;
+        final double longitude;
+        final long timestamp;
+
+        Fix(double latitude, double longitude, long timestamp) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static class ReplayResult {
+        double rawDistance;
+        double filteredDistance;
+        long nanosPerFix;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "raw=%.0fm filtered=%.0fm cpu=%dns/fix",
+                    rawDistance, filteredDistance, nanosPerFix);
+        }
+    }
+
+    @Test
+    public void testStandingStillAddsAlmostNoDistance() {
+        // 5 minutes standing still, one fix every 2 seconds
+        List<Fix> trace = stationaryTrace(new Random(1), 300000, 2000);
+
+        ReplayResult result = replay(trace);
+
+        assertTrue("Raw jitter should be large: " + result, result.rawDistance > 500);
+        assertTrue("Filtered jitter should stay under 30m: " + result, result.filteredDistance < 30);
+        assertTrue("Filter should cost well under 50us per fix: " + result, result.nanosPerFix < 50000);
+    }
+
+    @Test
+    public void testWalkingDistanceWithinTenPercent() {
+        // 1 km straight walk at 1.4 m/s
+        for (long interval : new long[]{2000, 4000, 15000}) {
+            List<Fix> trace = walkingTrace(new Random(2), 1000, 1.4, interval);
+
+            ReplayResult result = replay(trace);
+
+            assertEquals("Filtered distance should be close to 1000m at " + interval + "ms: " + result,
+                    1000, result.filteredDistance, 100);
+        }
+    }
+
+    @Test
+    public void testSingleOutlierIsRejected() {
+        List<Fix> trace = stationaryTrace(new Random(3), 60000, 2000);
+        // A 2 km jump in 2 seconds in the middle of the trace
+        Fix middle = trace.get(trace.size() / 2);
+        trace.set(trace.size() / 2, new Fix(middle.latitude + 0.018, middle.longitude, middle.timestamp));
+
+        LocationNoiseFilter filter = new LocationNoiseFilter();
+        double distance = 0;
+        for (Fix fix : trace) {
+            if (filter.process(fix.latitude, fix.longitude, REPORTED_ACCURACY, -1f, fix.timestamp)
+                    == LocationNoiseFilter.ACCEPTED) {
+                distance += filter.getDistanceFromLast();
+            }
+        }
+
+        assertEquals("Outlier should be rejected", 1, filter.getRejectedCount());
+        assertTrue("Outlier must not add distance, got " + distance, distance < 30);
+    }
+
+    @Test
+    public void testInaccurateFixIsRejected() {
+        LocationNoiseFilter filter = new LocationNoiseFilter();
+        assertEquals(LocationNoiseFilter.ACCEPTED,
+                filter.process(START_LAT, START_LNG, REPORTED_ACCURACY, -1f, 0));
+        assertEquals(LocationNoiseFilter.REJECTED_ACCURACY,
+                filter.process(START_LAT, START_LNG, 80f, -1f, 2000));
+    }
+
+    private ReplayResult replay(List<Fix> trace) {
+        ReplayResult result = new ReplayResult();
+        LocationNoiseFilter filter = new LocationNoiseFilter();
+        Fix previous = null;
+
+        long start = System.nanoTime();
+        for (Fix fix : trace) {
+            if (filter.process(fix.latitude, fix.longitude, REPORTED_ACCURACY, -1f, fix.timestamp)
+                    == LocationNoiseFilter.ACCEPTED) {
+                result.filteredDistance += filter.getDistanceFromLast();
+            }
+        }
+        result.nanosPerFix = (System.nanoTime() - start) / trace.size();
+
+        for (Fix fix : trace) {
+            if (previous != null) {
+                result.rawDistance += GeoUtils.distanceMeters(previous.latitude, previous.longitude,
+                        fix.latitude, fix.longitude);
+            }
+            previous = fix;
+        }
+        return result;
+    }
+
+    private List<Fix> stationaryTrace(Random random, long durationMs, long intervalMs) {
+        List<Fix> trace = new ArrayList<>();
+        for (long t = 0; t <= durationMs; t += intervalMs) {
+            trace.add(noisyFix(random, 0, 0, t));
+        }
+        return trace;
+    }
+
+    private List<Fix> walkingTrace(Random random, double meters, double speed, long intervalMs) {
+        List<Fix> trace = new ArrayList<>();
+        double east = 0;
+        long t = 0;
+        trace.add(noisyFix(random, 0, 0, t));
+        while (east < meters) {
+            t += intervalMs;
+            east = Math.min(meters, east + speed * intervalMs / 1000.0);
+            trace.add(noisyFix(random, 0, east, t));
+        }
+        return trace;
+    }
+
+    private Fix noisyFix(Random random, double northMeters, double eastMeters, long timestamp) {
+        double north = northMeters + random.nextGaussian() * NOISE_METERS;
+        double east = eastMeters + random.nextGaussian() * NOISE_METERS;
+        return new Fix(START_LAT + north / GeoUtils.metersPerDegreeLatitude(),
+                START_LNG + east / GeoUtils.metersPerDegreeLongitude(START_LAT),
+                timestamp);
+    }
+}
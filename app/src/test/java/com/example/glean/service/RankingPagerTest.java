@@ -0,0 +1,134 @@
+package com.example.glean.service;
+
+import com.example.glean.model.RankingUser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks RankingPager against an in-memory source: cursor hand-over, skipping shard
+ * entries, a single request in flight and the prefetch window.
+ */
+public class RankingPagerTest {
+
+    /**
+     * Source over users sorted by points, paging by list index. A start cursor given as
+     * a score begins at the first user with that score or lower.
+     */
+    private static class ListSource implements RankingPager.PageSource {
+        final List<RankingUser> users;
+        final List<Object> cursors = new ArrayList<>();
+        RankingPager.PageCallback pending;
+        boolean deferred = false;
+
+        ListSource(List<RankingUser> users) {
+            this.users = users;
+        }
+
+        @Override
+        public void loadPage(String metric, Object cursor, int pageSize, RankingPager.PageCallback callback) {
+            cursors.add(cursor);
+            pending = callback;
+            if (!deferred) {
+                complete(cursor, pageSize);
+            }
+        }
+
+        void complete(Object cursor, int pageSize) {
+            int from = 0;
+            if (cursor instanceof String) {
+                from = Integer.parseInt((String) cursor);
+            } else if (cursor instanceof Integer) {
+                int score = (Integer) cursor;
+                while (from < users.size() && users.get(from).getTotalPoints() > score) {
+                    from++;
+                }
+            }
+            int to = Math.min(users.size(), from + pageSize);
+            Object next = to - from < pageSize ? null : String.valueOf(to);
+            pending.onPageLoaded(new ArrayList<>(users.subList(from, to)), next);
+        }
+    }
+
+    private static class Collector implements RankingPager.PagerListener {
+        List<RankingUser> last = Collections.emptyList();
+        int pages = 0;
+
+        @Override
+        public void onPageAppended(List<RankingUser> loaded) {
+            last = loaded;
+            pages++;
+        }
+
+        @Override
+        public void onError(String error) {
+            fail(error);
+        }
+    }
+
+    @Test
+    public void testPagesFollowCursorAndSkipShardEntries() {
+        // 25 users with points 1000, 990, ... ; users 0-4 form the "shard", 4 and 5 tie
+        List<RankingUser> users = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            int points = i == 5 ? 960 : 1000 - i * 10;
+            users.add(new RankingUser("u" + i, "u" + i, "u" + i, points, 0, 0, 0));
+        }
+        ListSource source = new ListSource(users);
+        RankingPager pager = new RankingPager(LeaderboardRanker.METRIC_POINTS, source, 10);
+        Collector collector = new Collector();
+
+        assertFalse("Nothing to load before start", pager.loadNextPage(collector));
+        pager.start(960, new HashSet<>(Arrays.asList("u0", "u1", "u2", "u3", "u4")));
+
+        while (pager.loadNextPage(collector)) {
+            // synchronous source
+        }
+
+        assertTrue(pager.isEndReached());
+        assertEquals(3, collector.pages);
+        assertEquals(20, collector.last.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("u" + (i + 5), collector.last.get(i).getUserId());
+        }
+        assertEquals(Arrays.asList(960, "14", "24"), source.cursors);
+    }
+
+    @Test
+    public void testOnlyOneRequestInFlightAndResetDropsLatePages() {
+        List<RankingUser> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            users.add(new RankingUser("u" + i, "u" + i, "u" + i, 1000 - i, 0, 0, 0));
+        }
+        ListSource source = new ListSource(users);
+        source.deferred = true;
+        RankingPager pager = new RankingPager(LeaderboardRanker.METRIC_POINTS, source, 10);
+        Collector collector = new Collector();
+        pager.start(null, new HashSet<>());
+
+        assertTrue(pager.loadNextPage(collector));
+        assertFalse(pager.loadNextPage(collector));
+        assertTrue(pager.isLoading());
+
+        pager.reset();
+        source.complete(null, 10);
+        assertEquals("Page requested before reset is dropped", 0, collector.pages);
+        assertTrue(pager.getLoaded().isEmpty());
+        assertFalse(pager.isLoading());
+    }
+
+    @Test
+    public void testPrefetchWindow() {
+        assertFalse(RankingPager.shouldPrefetch(-1, 0));
+        assertFalse(RankingPager.shouldPrefetch(50, 100));
+        assertTrue(RankingPager.shouldPrefetch(100 - 1 - RankingPager.PREFETCH_DISTANCE, 100));
+        assertTrue(RankingPager.shouldPrefetch(99, 100));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.glean.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares histogram rank estimates with exact ranks on a skewed score distribution
+ * like the real leaderboard: many casual users, few heavy ploggers.
+ */
+public class ScoreHistogramTest {
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int bucket = 1; bucket < 80; bucket++) {
+            double low = ScoreHistogram.lowerBound(bucket);
+            assertEquals("Lower bound of bucket " + bucket, bucket, ScoreHistogram.bucketOf(low + 1e-9));
+            assertEquals(bucket - 1, ScoreHistogram.bucketOf(low - 1e-6));
+        }
+        assertEquals(0, ScoreHistogram.bucketOf(0));
+    }
+
+    @Test
+    public void testEstimateIsCloseToExactRank() {
+        Random random = new Random(1);
+        int users = 20000;
+        double[] scores = new double[users];
+        Map<String, Object> buckets = new HashMap<>();
+        for (int i = 0; i < users; i++) {
+            scores[i] = Math.floor(Math.exp(random.nextGaussian() * 1.5 + 5));
+            buckets.merge(String.valueOf(ScoreHistogram.bucketOf(scores[i])), 1L,
+                    (a, b) -> (Long) a + (Long) b);
+        }
+        double[] sorted = scores.clone();
+        Arrays.sort(sorted);
+
+        for (int i = 0; i < 200; i++) {
+            double score = scores[random.nextInt(users)];
+            int exact = 1 + users - upperBound(sorted, score);
+            int estimate = ScoreHistogram.estimateRank(buckets, score);
+            // Within 3% of the field, which is well below one bucket's population
+            assertEquals("Rank of " + score, exact, estimate, users * 0.03);
+        }
+    }
+
+    @Test
+    public void testTopScoreRanksFirst() {
+        Map<String, Object> buckets = new HashMap<>();
+        buckets.put(String.valueOf(ScoreHistogram.bucketOf(10)), 50L);
+        buckets.put(String.valueOf(ScoreHistogram.bucketOf(5000)), 1L);
+        assertEquals(1, ScoreHistogram.estimateRank(buckets, 5000));
+        assertEquals(1, ScoreHistogram.estimateRank(null, 5000));
+    }
+
+    private int upperBound(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index < sorted.length && sorted[index] == value) {
+            index++;
+        }
+        return index;
+    }
+}
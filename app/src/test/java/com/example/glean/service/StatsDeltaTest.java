@@ -0,0 +1,47 @@
+package com.example.glean.service;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that coalesced session stats count each record once.
+ */
+public class StatsDeltaTest {
+
+    @Test
+    public void testSameSessionReportedTwiceCountsOnce() {
+        StatsDelta delta = new StatsDelta();
+        assertTrue(delta.addSession(7, 120, 1500.0, 4, 60000));
+        assertFalse(delta.addSession(7, 120, 1500.0, 4, 60000));
+        assertTrue(delta.addSession(8, 30, 500.5, 1, 20000));
+
+        assertEquals(150, delta.getPoints());
+        assertEquals(2000.5, delta.getDistance(), 1e-9);
+        assertEquals(5, delta.getTrash());
+        assertEquals(2, delta.getSessions());
+        assertEquals(80000, delta.getDuration());
+
+        Map<String, Number> userIncrements = delta.toIncrements(false);
+        assertFalse(userIncrements.containsKey("totalDuration"));
+        assertEquals(2, userIncrements.get("totalSessions").intValue());
+        assertTrue(delta.toIncrements(true).get("totalDistance") instanceof Double);
+    }
+
+    @Test
+    public void testFailedDeltaMergesBackIntoPending() {
+        StatsDelta failed = new StatsDelta();
+        failed.addSession(1, 10, 100.0, 1, 1000);
+        StatsDelta queued = new StatsDelta();
+        queued.addSession(2, 20, 200.0, 2, 2000);
+
+        queued.merge(failed);
+
+        assertEquals(30, queued.getPoints());
+        assertEquals(2, queued.getSessions());
+        assertTrue(queued.contains(1));
+        assertFalse("Merged record is not added twice", queued.addSession(1, 10, 100.0, 1, 1000));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.glean.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Payload round trip and session totals of SyncOutbox operations.
+ */
+public class SyncOutboxTest {
+
+    @Test
+    public void testPayloadKeepsWholeNumbersAsLongs() {
+        Map<String, Object> fields = SyncOutbox.fromJson(
+                "{\"points\":25,\"distance\":1250.5,\"type\":\"plogging\",\"done\":true,"
+                        + "\"missing\":null,\"tags\":[1,2.5],\"nested\":{\"createdAt\":1700000000000}}");
+
+        assertEquals(25L, fields.get("points"));
+        assertEquals(1250.5, fields.get("distance"));
+        assertEquals("plogging", fields.get("type"));
+        assertEquals(true, fields.get("done"));
+        assertTrue(fields.containsKey("missing"));
+        assertNull(fields.get("missing"));
+        assertEquals(Arrays.asList(1L, 2.5), fields.get("tags"));
+        assertEquals(1700000000000L, ((Map<?, ?>) fields.get("nested")).get("createdAt"));
+    }
+
+    @Test
+    public void testSessionDeltaCountsOneSession() {
+        Map<String, Object> fields = SyncOutbox.fromJson(
+                "{\"localRecordId\":7,\"points\":40,\"distance\":2000.0,\"trashCount\":4,\"duration\":600000}");
+
+        StatsDelta delta = SyncOutbox.sessionDelta(fields);
+
+        assertTrue(delta.contains(7));
+        assertEquals(40, delta.getPoints());
+        assertEquals(2000.0, delta.getDistance(), 0.0);
+        assertEquals(4, delta.getTrash());
+        assertEquals(1, delta.getSessions());
+        assertEquals(600000L, delta.getDuration());
+        assertEquals(600000L, delta.toIncrements(true).get("totalDuration"));
+        assertFalse(delta.toIncrements(false).containsKey("totalDuration"));
+    }
+
+    @Test
+    public void testSessionDeltaDefaultsMissingFieldsToZero() {
+        StatsDelta delta = SyncOutbox.sessionDelta(SyncOutbox.fromJson("{\"localRecordId\":3}"));
+
+        assertEquals(0, delta.getPoints());
+        assertEquals(0, delta.getTrash());
+        assertEquals(1, delta.getSessions());
+    }
+}
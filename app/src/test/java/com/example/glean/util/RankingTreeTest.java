@@ -0,0 +1,105 @@
+package com.example.glean.util;
+
+import com.example.glean.model.RankingUser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks RankingTree against a plain sorted list under random updates, and counts the
+ * comparisons of a single-user update against re-sorting the whole list.
+ */
+public class RankingTreeTest {
+
+    @Test
+    public void testMatchesSortedListUnderRandomUpdates() {
+        Random random = new Random(1);
+        RankingTree tree = new RankingTree(RankingTree.BY_POINTS, new Random(2));
+        List<RankingUser> reference = new ArrayList<>();
+
+        for (int step = 0; step < 3000; step++) {
+            String userId = "u" + random.nextInt(300);
+            if (random.nextInt(10) == 0) {
+                tree.remove(userId);
+                reference.removeIf(user -> user.getUserId().equals(userId));
+            } else {
+                RankingUser user = user(userId, random.nextInt(500));
+                int rank = tree.upsert(user);
+                reference.removeIf(existing -> existing.getUserId().equals(userId));
+                reference.add(user);
+                reference.sort(RankingTree.BY_POINTS);
+                assertEquals(reference.indexOf(user) + 1, rank);
+            }
+        }
+
+        List<RankingUser> list = tree.toList();
+        assertEquals(reference.size(), tree.size());
+        for (int i = 0; i < reference.size(); i++) {
+            assertEquals(reference.get(i).getUserId(), list.get(i).getUserId());
+            assertEquals(i + 1, list.get(i).getPosition());
+            assertSame(reference.get(i), tree.get(i));
+            assertEquals(i + 1, tree.rankOf(reference.get(i).getUserId()));
+        }
+    }
+
+    @Test
+    public void testDistanceOrderAndMissingUsers() {
+        RankingTree tree = new RankingTree(RankingTree.BY_DISTANCE);
+        RankingUser near = new RankingUser("near", "near", "near", 900, 100.0, 0, 0);
+        RankingUser far = new RankingUser("far", "far", "far", 10, 5000.0, 0, 0);
+        tree.upsert(near);
+        tree.upsert(far);
+
+        assertEquals(1, tree.rankOf("far"));
+        assertEquals(0, tree.rankOf("nobody"));
+        assertFalse(tree.remove("nobody"));
+        assertNull(tree.find("nobody"));
+    }
+
+    @Test
+    public void testSingleUpdateComparesLogarithmicallyOften() {
+        int users = 50000;
+        Random random = new Random(3);
+        long[] comparisons = {0};
+        Comparator<RankingUser> counting = (a, b) -> {
+            comparisons[0]++;
+            return RankingTree.BY_POINTS.compare(a, b);
+        };
+        RankingTree tree = new RankingTree(counting, new Random(4));
+        List<RankingUser> list = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            RankingUser user = user("u" + i, random.nextInt(100000));
+            tree.upsert(user);
+            list.add(user);
+        }
+        list.sort(counting);
+
+        int updates = 200;
+        comparisons[0] = 0;
+        for (int i = 0; i < updates; i++) {
+            tree.upsert(user("u" + random.nextInt(users), random.nextInt(100000)));
+        }
+        long treeComparisons = comparisons[0] / updates;
+
+        comparisons[0] = 0;
+        list.set(random.nextInt(users), user("u0", random.nextInt(100000)));
+        list.sort(counting);
+        long sortComparisons = comparisons[0];
+
+        // An upsert walks the treap three times: remove, split and rank
+        double log2 = Math.log(users) / Math.log(2);
+        assertEquals(users, tree.size());
+        assertTrue("Upsert made " + treeComparisons + " comparisons", treeComparisons <= 10 * log2);
+        assertTrue("Re-sort made " + sortComparisons + " comparisons", sortComparisons >= users - 1);
+    }
+
+    private RankingUser user(String id, int points) {
+        return new RankingUser(id, id, id, points, 0, 0, 0);
+    }
+}
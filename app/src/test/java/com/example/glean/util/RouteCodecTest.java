@@ -0,0 +1,87 @@
+package com.example.glean.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trip and size checks for RouteCodec.
+ */
+public class RouteCodecTest {
+
+    @Test
+    public void testRoundTripKeepsPointsWithinPrecision() {
+        RouteCodec.Route route = walkingRoute(new Random(1), 2000);
+
+        RouteCodec.Route decoded = RouteCodec.decode(RouteCodec.encode(route));
+
+        assertEquals(route.size(), decoded.size());
+        for (int i = 0; i < route.size(); i++) {
+            assertEquals(route.getLatitude(i), decoded.getLatitude(i), 1e-6);
+            assertEquals(route.getLongitude(i), decoded.getLongitude(i), 1e-6);
+            assertEquals(route.getAltitude(i), decoded.getAltitude(i), 0.1);
+            assertEquals(route.getTimestamp(i), decoded.getTimestamp(i));
+            assertEquals(route.getDistanceFromLast(i), decoded.getDistanceFromLast(i), 0.01f);
+        }
+        assertEquals(route.getTotalDistance(), decoded.getTotalDistance(), 1f);
+    }
+
+    @Test
+    public void testWalkingRouteIsCompact() {
+        RouteCodec.Route route = walkingRoute(new Random(2), 10000);
+
+        byte[] encoded = RouteCodec.encode(route);
+        double bytesPerPoint = encoded.length / (double) route.size();
+
+        // RouteCodec documents about 7 bytes per point for this kind of route
+        assertTrue("Expected under 8 bytes per point, " + route.size() + " points took "
+                + encoded.length + " bytes (" + bytesPerPoint + " per point)", bytesPerPoint < 8);
+    }
+
+    @Test
+    public void testDecodeWithExtraCapacityAllowsAppending() {
+        RouteCodec.Route route = walkingRoute(new Random(3), 10);
+        RouteCodec.Route decoded = RouteCodec.decode(RouteCodec.encode(route), 5);
+
+        decoded.add(-5.0, 119.0, 10.0, 123456789L, 3.5f);
+
+        assertEquals(11, decoded.size());
+        assertEquals(-5.0, decoded.getLatitude(10), 0.0);
+        assertEquals(123456789L, decoded.getTimestamp(10));
+    }
+
+    @Test
+    public void testEmptyRoundTrip() {
+        RouteCodec.Route decoded = RouteCodec.decode(RouteCodec.encode(new RouteCodec.Route(0)));
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedDataIsRejected() {
+        byte[] encoded = RouteCodec.encode(walkingRoute(new Random(4), 100));
+        byte[] truncated = new byte[encoded.length / 2];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        RouteCodec.decode(truncated);
+    }
+
+    private RouteCodec.Route walkingRoute(Random random, int points) {
+        RouteCodec.Route route = new RouteCodec.Route(points);
+        double latitude = -5.1477;
+        double longitude = 119.4327;
+        double altitude = 25.0;
+        long timestamp = 1700000000000L;
+        for (int i = 0; i < points; i++) {
+            double north = random.nextGaussian() * 3;
+            double east = 4 + random.nextGaussian() * 3;
+            latitude += north / GeoUtils.metersPerDegreeLatitude();
+            longitude += east / GeoUtils.metersPerDegreeLongitude(latitude);
+            altitude += random.nextGaussian() * 0.5;
+            timestamp += 2000 + random.nextInt(500);
+            route.add(latitude, longitude, altitude, timestamp,
+                    i == 0 ? 0f : (float) Math.sqrt(north * north + east * east));
+        }
+        return route;
+    }
+}
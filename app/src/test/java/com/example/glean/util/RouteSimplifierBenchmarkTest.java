@@ -0,0 +1,135 @@
+package com.example.glean.util;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Simplification benchmark for RouteSimplifier on synthetic 10k and 50k point routes.
+ * Checks the vertex reduction per zoom level and reports simplification and cached
+ * lookup time in the assertion messages. Map rendering itself is not measured here.
+ */
+public class RouteSimplifierBenchmarkTest {
+
+    private static final int[] ZOOMS = {13, 15, 17, 19};
+
+    @Test
+    public void testBenchmark10k() {
+        benchmark(1, syntheticRoute(new Random(1), 10000));
+    }
+
+    @Test
+    public void testBenchmark50k() {
+        benchmark(2, syntheticRoute(new Random(2), 50000));
+    }
+
+    @Test
+    public void testSimplifiedRouteStaysWithinTolerance() {
+        RouteCodec.Route route = syntheticRoute(new Random(3), 5000);
+        for (int zoom : ZOOMS) {
+            double tolerance = RouteSimplifier.toleranceMeters(zoom, route.getLatitude(0));
+            int[] indices = RouteSimplifier.douglasPeucker(route, tolerance);
+
+            assertEquals(0, indices[0]);
+            assertEquals(route.size() - 1, indices[indices.length - 1]);
+            assertTrue("Max deviation above tolerance at zoom " + zoom,
+                    maxDeviation(route, indices) <= tolerance + 1e-6);
+        }
+    }
+
+    @Test
+    public void testCacheIsKeyedByRecordAndZoomBucket() {
+        RouteSimplifier simplifier = new RouteSimplifier();
+        RouteCodec.Route route = syntheticRoute(new Random(4), 1000);
+
+        int[] first = simplifier.simplify(7, route, 16.2f);
+        int[] second = simplifier.simplify(7, route, 16.8f);
+        assertSame(first, second);
+        assertEquals(1, simplifier.getCacheHits());
+
+        simplifier.simplify(7, route, 17.1f);
+        simplifier.simplify(8, route, 16.2f);
+        assertEquals(3, simplifier.getCacheMisses());
+
+        // A grown route must not reuse geometry simplified for fewer points
+        route.add(route.getLatitude(999) + 0.001, route.getLongitude(999), 0, 0, 111f);
+        int[] grown = simplifier.simplify(7, route, 16.5f);
+        assertEquals(route.size() - 1, grown[grown.length - 1]);
+    }
+
+    private void benchmark(int recordId, RouteCodec.Route route) {
+        RouteSimplifier simplifier = new RouteSimplifier();
+        // Warm up the JIT so timings are comparable between zoom levels
+        for (int i = 0; i < 3; i++) {
+            RouteSimplifier.douglasPeucker(route, 1.0);
+        }
+
+        for (int zoom : ZOOMS) {
+            long start = System.nanoTime();
+            int[] indices = simplifier.simplify(recordId, route, zoom);
+            long simplifyMicros = (System.nanoTime() - start) / 1000;
+
+            start = System.nanoTime();
+            int[] cached = simplifier.simplify(recordId, route, zoom);
+            long cachedMicros = (System.nanoTime() - start) / 1000;
+
+            double reduction = 100.0 * (route.size() - indices.length) / route.size();
+            String result = String.format(Locale.US, "%d -> %d vertices (%.1f%% fewer) at zoom %d, "
+                            + "simplify=%dus cached=%dus",
+                    route.size(), indices.length, reduction, zoom, simplifyMicros, cachedMicros);
+
+            assertSame("Second lookup should hit the cache: " + result, indices, cached);
+            assertTrue("Expected fewer vertices: " + result, indices.length < route.size());
+            if (zoom <= 15) {
+                assertTrue("Expected over 90% reduction: " + result, reduction > 90);
+            }
+        }
+    }
+
+    /**
+     * Filtered walking trace: 1.4 m/s every 2 s with gentle heading drift,
+     * occasional turns and a little residual noise.
+     */
+    private RouteCodec.Route syntheticRoute(Random random, int points) {
+        RouteCodec.Route route = new RouteCodec.Route(points);
+        double latitude = -5.1477;
+        double longitude = 119.4327;
+        double heading = 0;
+        long timestamp = 1700000000000L;
+        for (int i = 0; i < points; i++) {
+            heading += random.nextGaussian() * 0.05;
+            if (random.nextInt(200) == 0) {
+                heading += (random.nextBoolean() ? 1 : -1) * Math.PI / 2;
+            }
+            double step = 2.8;
+            double north = Math.cos(heading) * step + random.nextGaussian() * 0.5;
+            double east = Math.sin(heading) * step + random.nextGaussian() * 0.5;
+            latitude += north / GeoUtils.metersPerDegreeLatitude();
+            longitude += east / GeoUtils.metersPerDegreeLongitude(latitude);
+            timestamp += 2000;
+            route.add(latitude, longitude, 0, timestamp, i == 0 ? 0f : (float) step);
+        }
+        return route;
+    }
+
+    private double maxDeviation(RouteCodec.Route route, int[] indices) {
+        double metersPerLat = GeoUtils.metersPerDegreeLatitude();
+        double metersPerLng = GeoUtils.metersPerDegreeLongitude(route.getLatitude(0));
+        double max = 0;
+        for (int k = 0; k + 1 < indices.length; k++) {
+            int a = indices[k];
+            int b = indices[k + 1];
+            for (int i = a + 1; i < b; i++) {
+                double d = RouteSimplifier.segmentDistanceSquared(
+                        route.getLongitude(i) * metersPerLng, route.getLatitude(i) * metersPerLat,
+                        route.getLongitude(a) * metersPerLng, route.getLatitude(a) * metersPerLat,
+                        route.getLongitude(b) * metersPerLng, route.getLatitude(b) * metersPerLat);
+                max = Math.max(max, Math.sqrt(d));
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.glean.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sample size selection of SampledBitmapDecoder.
+ */
+public class SampledBitmapDecoderTest {
+
+    @Test
+    public void testTwelveMegapixelPhotoDecodesNearModelInput() {
+        int sampleSize = SampledBitmapDecoder.calculateInSampleSize(4000, 3000, 224);
+
+        assertEquals(8, sampleSize);
+        // 500x375 ARGB_8888 is about 0.7 MB instead of 46 MB at full size
+        assertTrue(3000 / sampleSize >= 224);
+        assertTrue(3000 / (sampleSize * 2) < 224);
+    }
+
+    @Test
+    public void testShorterSideDecidesInPortrait() {
+        assertEquals(SampledBitmapDecoder.calculateInSampleSize(4000, 3000, 224),
+                SampledBitmapDecoder.calculateInSampleSize(3000, 4000, 224));
+    }
+
+    @Test
+    public void testSmallImageIsNotSubsampled() {
+        assertEquals(1, SampledBitmapDecoder.calculateInSampleSize(300, 200, 224));
+        assertEquals(1, SampledBitmapDecoder.calculateInSampleSize(100, 100, 224));
+    }
+
+    @Test
+    public void testExactMultipleIsUsed() {
+        assertEquals(4, SampledBitmapDecoder.calculateInSampleSize(896, 896, 224));
+    }
+}